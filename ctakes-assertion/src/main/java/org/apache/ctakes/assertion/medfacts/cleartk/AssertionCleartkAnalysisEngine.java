@@ -21,6 +21,7 @@ package org.apache.ctakes.assertion.medfacts.cleartk;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.ctakes.assertion.attributes.features.selection.FeatureSelection;
 import org.apache.ctakes.assertion.medfacts.cleartk.extractors.FedaFeatureFunction;
+import org.apache.ctakes.core.cleartk.SharedClassifier;
 import org.apache.ctakes.core.util.DocumentIDAnnotationUtil;
 import org.apache.ctakes.typesystem.type.constants.CONST;
 import org.apache.ctakes.typesystem.type.syntax.BaseToken;
@@ -433,19 +434,8 @@ public abstract class AssertionCleartkAnalysisEngine extends
                }
             }
 
-            int closest = Integer.MAX_VALUE;
-            AssertionCuePhraseAnnotation closestCue = null;
-            for ( AssertionCuePhraseAnnotation cue : cues ) {
-               // It is much faster to count between BaseTokens already isolated within the same sentence.
-               final int betweenCount = countBetween( cue, identifiedAnnotation, baseTokens );
-               if ( betweenCount < closest ) {
-                  closestCue = cue;
-                  closest = betweenCount;
-               }
-
-//          instance.addAll(cuePhraseInWindowExtractor.extractBetween(jCas, cue, entityOrEventMention));
-            }
-            if ( closestCue != null && closest < 21 ) {
+            final AssertionCuePhraseAnnotation closestCue = getClosestCue( identifiedAnnotation, cues, baseTokens );
+            if ( closestCue != null ) {
                instance.add( new Feature( "ClosestCue_Word", closestCue.getCoveredText() ) );
 //          instance.add(new Feature("ClosestCue_Phrase", closestCue.getCuePhrase()));
                instance.add( new Feature( "ClosestCue_PhraseFamily", closestCue.getCuePhraseAssertionFamily() ) );
@@ -508,22 +498,7 @@ public abstract class AssertionCleartkAnalysisEngine extends
             List<Feature> feats = instance.getFeatures();
 //      List<Feature> lcFeats = new ArrayList<Feature>();
 
-            for ( Feature feat : feats ) {
-               if ( feat instanceof TreeFeature ||
-                    (feat.getName() != null && (feat.getName().startsWith( "TreeFrag" ) ||
-                                                feat.getName().startsWith( "WORD" ) ||
-                                                feat.getName().startsWith( "NEG" ))) ) {
-                  continue;
-               }
-               if ( feat.getName() != null &&
-                    (feat.getName().contains( "_TreeFrag" ) || feat.getName().contains( "_WORD" ) ||
-                     feat.getName().contains( "_NEG" )) ) {
-                  continue;
-               }
-               if ( feat.getValue() instanceof String ) {
-                  feat.setValue( ((String)feat.getValue()).toLowerCase() );
-               }
-            }
+            lowerCaseFeatureValues( feats );
 
             if ( !fileToDomain.isEmpty() && ffDomainAdaptor != null ) {
                for ( FeatureFunctionExtractor<IdentifiedAnnotation> extractor : this.featureFunctionExtractors ) {
@@ -580,6 +555,16 @@ public abstract class AssertionCleartkAnalysisEngine extends
   }
   */
 
+   /**
+    * Releases the classifier if it is shared through the classifier registry.
+    * {@inheritDoc}
+    */
+   @Override
+   public void destroy() {
+      SharedClassifier.releaseIfShared( this.classifier );
+      super.destroy();
+   }
+
    public static AnalysisEngineDescription getDescription( Object... additionalConfiguration )
          throws ResourceInitializationException {
       AnalysisEngineDescription desc = AnalysisEngineFactory
@@ -621,6 +606,56 @@ public abstract class AssertionCleartkAnalysisEngine extends
    }
 
 
+   /**
+    * Lower cases the String values of features, excepting tree, word and negation features.
+    *
+    * @param features features extracted for an annotation
+    */
+   static void lowerCaseFeatureValues( final Collection<Feature> features ) {
+      for ( Feature feat : features ) {
+         if ( feat instanceof TreeFeature ||
+              (feat.getName() != null && (feat.getName().startsWith( "TreeFrag" ) ||
+                                          feat.getName().startsWith( "WORD" ) ||
+                                          feat.getName().startsWith( "NEG" ))) ) {
+            continue;
+         }
+         if ( feat.getName() != null &&
+              (feat.getName().contains( "_TreeFrag" ) || feat.getName().contains( "_WORD" ) ||
+               feat.getName().contains( "_NEG" )) ) {
+            continue;
+         }
+         if ( feat.getValue() instanceof String ) {
+            feat.setValue( ((String)feat.getValue()).toLowerCase() );
+         }
+      }
+   }
+
+   /**
+    * @param annotation -
+    * @param cues       cue phrases within the sentence of the annotation
+    * @param baseTokens baseTokens within the sentence of the annotation
+    * @return the cue phrase with the fewest base tokens between it and the annotation,
+    * or null if there is no cue phrase within 20 tokens
+    */
+   static AssertionCuePhraseAnnotation getClosestCue( final Annotation annotation,
+                                                      final Collection<AssertionCuePhraseAnnotation> cues,
+                                                      final Collection<BaseToken> baseTokens ) {
+      int closest = Integer.MAX_VALUE;
+      AssertionCuePhraseAnnotation closestCue = null;
+      for ( AssertionCuePhraseAnnotation cue : cues ) {
+         // It is much faster to count between BaseTokens already isolated within the same sentence.
+         final int betweenCount = countBetween( cue, annotation, baseTokens );
+         if ( betweenCount < closest ) {
+            closestCue = cue;
+            closest = betweenCount;
+         }
+      }
+      if ( closestCue != null && closest < 21 ) {
+         return closestCue;
+      }
+      return null;
+   }
+
    /**
     * @param annotation1 -
     * @param annotation2 -
@@ -0,0 +1,263 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.assertion.medfacts.cleartk;
+
+import org.apache.ctakes.assertion.medfacts.cleartk.AssertionCleartkAnalysisEngine.FEATURE_CONFIG;
+import org.apache.ctakes.core.cleartk.SharedJarClassifierFactory;
+import org.apache.ctakes.core.pipeline.PipeBitInfo;
+import org.apache.ctakes.typesystem.type.constants.CONST;
+import org.apache.ctakes.typesystem.type.syntax.BaseToken;
+import org.apache.ctakes.typesystem.type.temporary.assertion.AssertionCuePhraseAnnotation;
+import org.apache.ctakes.typesystem.type.textsem.EntityMention;
+import org.apache.ctakes.typesystem.type.textsem.EventMention;
+import org.apache.ctakes.typesystem.type.textsem.IdentifiedAnnotation;
+import org.apache.ctakes.typesystem.type.textspan.Sentence;
+import org.apache.log4j.Logger;
+import org.apache.uima.UimaContext;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.fit.factory.UimaContextFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.cleartk.ml.CleartkAnnotator;
+import org.cleartk.ml.Feature;
+import org.cleartk.ml.Instance;
+import org.cleartk.ml.feature.extractor.CleartkExtractor;
+import org.cleartk.ml.feature.extractor.FeatureExtractor1;
+import org.cleartk.ml.jar.GenericJarClassifierFactory;
+
+import java.util.*;
+
+/**
+ * Assigns polarity, uncertainty, history of, conditional, generic and subject with the cleartk attribute models
+ * in a single pass over the document.
+ * <p>
+ * Running the six attribute engines in sequence indexes the sentences six times and extracts the token window
+ * and cue phrase features of every entity six times.  This engine does that work once per entity and hands
+ * the shared features to each attribute engine, which adds its own features and classifies.
+ * The attribute engines are run for each entity in the same order as the default attribute sub-pipeline,
+ * so attribute values are identical to those of running the engines in sequence.
+ * </p>
+ * This engine only classifies.  Use the individual attribute engines for training.
+ */
+@PipeBitInfo(
+      name = "Combined Attributes Annotator (ClearTK)",
+      description = "Annotates Polarity, Uncertainty, History Of, Conditional, Generic and Subject properties.",
+      dependencies = { PipeBitInfo.TypeProduct.SENTENCE, PipeBitInfo.TypeProduct.IDENTIFIED_ANNOTATION }
+)
+public class CombinedAssertionCleartkAnalysisEngine extends JCasAnnotator_ImplBase {
+
+   static private final Logger LOGGER = Logger.getLogger( "CombinedAssertionCleartkAnalysisEngine" );
+
+   public static final String PARAM_POLARITY_MODEL = "PolarityModel";
+   public static final String PARAM_UNCERTAINTY_MODEL = "UncertaintyModel";
+   public static final String PARAM_HISTORY_MODEL = "HistoryModel";
+   public static final String PARAM_CONDITIONAL_MODEL = "ConditionalModel";
+   public static final String PARAM_GENERIC_MODEL = "GenericModel";
+   public static final String PARAM_SUBJECT_MODEL = "SubjectModel";
+   public static final String PARAM_COMPILE_MODELS = "CompileModels";
+
+   @ConfigurationParameter(
+         name = PARAM_POLARITY_MODEL,
+         mandatory = false,
+         description = "Path to the polarity model jar.  Empty to skip polarity.",
+         defaultValue = "/org/apache/ctakes/assertion/models/polarity/sharpi2b2mipacqnegex/model.jar" )
+   private String _polarityModel;
+
+   @ConfigurationParameter(
+         name = PARAM_UNCERTAINTY_MODEL,
+         mandatory = false,
+         description = "Path to the uncertainty model jar.  Empty to skip uncertainty.",
+         defaultValue = "/org/apache/ctakes/assertion/models/uncertainty/model.jar" )
+   private String _uncertaintyModel;
+
+   @ConfigurationParameter(
+         name = PARAM_HISTORY_MODEL,
+         mandatory = false,
+         description = "Path to the history of model jar.  Empty to skip history of.",
+         defaultValue = "/org/apache/ctakes/assertion/models/historyOf/model.jar" )
+   private String _historyModel;
+
+   @ConfigurationParameter(
+         name = PARAM_CONDITIONAL_MODEL,
+         mandatory = false,
+         description = "Path to the conditional model jar.  Empty to skip conditional.",
+         defaultValue = "/org/apache/ctakes/assertion/models/conditional/model.jar" )
+   private String _conditionalModel;
+
+   @ConfigurationParameter(
+         name = PARAM_GENERIC_MODEL,
+         mandatory = false,
+         description = "Path to the generic model jar.  Empty to skip generic.",
+         defaultValue = "/org/apache/ctakes/assertion/models/generic/model.jar" )
+   private String _genericModel;
+
+   @ConfigurationParameter(
+         name = PARAM_SUBJECT_MODEL,
+         mandatory = false,
+         description = "Path to the subject model jar.  Empty to skip subject.",
+         defaultValue = "/org/apache/ctakes/assertion/models/subject/model.jar" )
+   private String _subjectModel;
+
+   @ConfigurationParameter(
+         name = PARAM_COMPILE_MODELS,
+         mandatory = false,
+         description = "Classify with compiled liblinear models.",
+         defaultValue = "false" )
+   private boolean _compileModels;
+
+   // attribute engines in the order that they are run for each entity
+   private final List<AssertionCleartkAnalysisEngine> _attributeEngines = new ArrayList<>();
+   // token window extractors are the same for all attribute engines that use them
+   private List<CleartkExtractor<IdentifiedAnnotation, BaseToken>> _tokenExtractors = Collections.emptyList();
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void initialize( final UimaContext context ) throws ResourceInitializationException {
+      super.initialize( context );
+      // Feature configurations are those set by the createAnnotatorDescription() of each attribute engine.
+      // Polarity sets values that are used by the uncertainty features, so it must come first.
+      addAttributeEngine( new PolarityCleartkAnalysisEngine(), _polarityModel, FEATURE_CONFIG.ALL_SYN );
+      addAttributeEngine( new UncertaintyCleartkAnalysisEngine(), _uncertaintyModel, FEATURE_CONFIG.ALL_SYN );
+      addAttributeEngine( new HistoryCleartkAnalysisEngine(), _historyModel, FEATURE_CONFIG.ALL_SYN );
+      addAttributeEngine( new ConditionalCleartkAnalysisEngine(), _conditionalModel, FEATURE_CONFIG.ALL_SYN );
+      addAttributeEngine( new GenericCleartkAnalysisEngine(), _genericModel, FEATURE_CONFIG.ALL_SYN );
+      addAttributeEngine( new SubjectCleartkAnalysisEngine(), _subjectModel, FEATURE_CONFIG.DEP_REGEX );
+      for ( AssertionCleartkAnalysisEngine engine : _attributeEngines ) {
+         if ( !engine.tokenCleartkExtractors.isEmpty() ) {
+            _tokenExtractors = engine.tokenCleartkExtractors;
+            break;
+         }
+      }
+      LOGGER.info( "Assigning " + _attributeEngines.size() + " attributes with one feature extraction pass" );
+   }
+
+   /**
+    * @param engine    attribute engine, not yet initialized
+    * @param modelPath path to the model jar for the attribute
+    * @param config    feature configuration used to train the model
+    * @throws ResourceInitializationException if the engine or its model cannot be initialized
+    */
+   private void addAttributeEngine( final AssertionCleartkAnalysisEngine engine,
+                                    final String modelPath,
+                                    final FEATURE_CONFIG config ) throws ResourceInitializationException {
+      if ( modelPath == null || modelPath.trim().isEmpty() ) {
+         return;
+      }
+      // Models are shared with any other annotators in the jvm that use the same model jars.
+      final UimaContext context = UimaContextFactory.createUimaContext(
+            CleartkAnnotator.PARAM_IS_TRAINING, false,
+            CleartkAnnotator.PARAM_CLASSIFIER_FACTORY_CLASS_NAME, SharedJarClassifierFactory.class.getName(),
+            SharedJarClassifierFactory.PARAM_COMPILE_LINEAR, _compileModels,
+            AssertionCleartkAnalysisEngine.PARAM_FEATURE_CONFIG, config.name(),
+            GenericJarClassifierFactory.PARAM_CLASSIFIER_JAR_PATH, modelPath );
+      engine.initialize( context );
+      _attributeEngines.add( engine );
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void process( final JCas jCas ) throws AnalysisEngineProcessException {
+      final Map<Sentence, Collection<Annotation>> sentenceAnnotationMap
+            = JCasUtil.indexCovered( jCas, Sentence.class, Annotation.class );
+      final Collection<IdentifiedAnnotation> entities = new ArrayList<>();
+      final Collection<AssertionCuePhraseAnnotation> cues = new ArrayList<>();
+      final Collection<BaseToken> baseTokens = new ArrayList<>();
+      final List<Feature> tokenFeatures = new ArrayList<>();
+      final List<Feature> entityFeatures = new ArrayList<>();
+      final List<Feature> attributeFeatures = new ArrayList<>();
+      for ( Sentence sentence : JCasUtil.select( jCas, Sentence.class ) ) {
+         entities.clear();
+         cues.clear();
+         baseTokens.clear();
+         for ( Annotation annotation : sentenceAnnotationMap.get( sentence ) ) {
+            if ( annotation instanceof EventMention || annotation instanceof EntityMention ) {
+               entities.add( (IdentifiedAnnotation)annotation );
+            } else if ( annotation instanceof AssertionCuePhraseAnnotation ) {
+               cues.add( (AssertionCuePhraseAnnotation)annotation );
+            } else if ( annotation instanceof BaseToken ) {
+               baseTokens.add( (BaseToken)annotation );
+            }
+         }
+         for ( IdentifiedAnnotation entity : entities ) {
+            // Features shared by all attributes, in the order that AssertionCleartkAnalysisEngine extracts them.
+            tokenFeatures.clear();
+            for ( CleartkExtractor<IdentifiedAnnotation, BaseToken> extractor : _tokenExtractors ) {
+               tokenFeatures.addAll( extractor.extractWithin( jCas, entity, sentence ) );
+            }
+            AssertionCleartkAnalysisEngine.lowerCaseFeatureValues( tokenFeatures );
+            entityFeatures.clear();
+            final AssertionCuePhraseAnnotation closestCue
+                  = AssertionCleartkAnalysisEngine.getClosestCue( entity, cues, baseTokens );
+            if ( closestCue != null ) {
+               entityFeatures.add( new Feature( "ClosestCue_Word", closestCue.getCoveredText() ) );
+               entityFeatures.add( new Feature( "ClosestCue_PhraseFamily", closestCue.getCuePhraseAssertionFamily() ) );
+               entityFeatures.add( new Feature( "ClosestCue_PhraseCategory", closestCue.getCuePhraseCategory() ) );
+            }
+            if ( entity.getTypeID() == CONST.NE_TYPE_ID_ANATOMICAL_SITE ) {
+               entityFeatures.add( new Feature( "ENTITY_TYPE_ANAT_SITE" ) );
+            }
+            AssertionCleartkAnalysisEngine.lowerCaseFeatureValues( entityFeatures );
+            for ( AssertionCleartkAnalysisEngine engine : _attributeEngines ) {
+               // Attribute features are extracted after the previous attribute has been set on the entity.
+               attributeFeatures.clear();
+               for ( FeatureExtractor1<IdentifiedAnnotation> extractor : engine.entityFeatureExtractors ) {
+                  attributeFeatures.addAll( extractor.extract( jCas, entity ) );
+               }
+               for ( FeatureExtractor1<IdentifiedAnnotation> extractor : engine.entityTreeExtractors ) {
+                  attributeFeatures.addAll( extractor.extract( jCas, entity ) );
+               }
+               AssertionCleartkAnalysisEngine.lowerCaseFeatureValues( attributeFeatures );
+               final Instance<String> instance = new Instance<>();
+               if ( !engine.tokenCleartkExtractors.isEmpty() ) {
+                  instance.addAll( tokenFeatures );
+               }
+               instance.addAll( entityFeatures );
+               instance.addAll( attributeFeatures );
+               engine.setClassLabel( entity, instance );
+            }
+         }
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void destroy() {
+      for ( AssertionCleartkAnalysisEngine engine : _attributeEngines ) {
+         engine.destroy();
+      }
+      super.destroy();
+   }
+
+   public static AnalysisEngineDescription createAnnotatorDescription() throws ResourceInitializationException {
+      return AnalysisEngineFactory.createEngineDescription( CombinedAssertionCleartkAnalysisEngine.class );
+   }
+
+}
@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.assertion.medfacts.cleartk;
+package org.apache.ctakes.assertion.medfacts.cleartk;
+
+import org.apache.ctakes.constituency.parser.ae.ConstituencyParser;
+import org.apache.ctakes.core.ae.SentenceDetector;
+import org.apache.ctakes.core.ae.SimpleSegmentAnnotator;
+import org.apache.ctakes.core.ae.TokenizerAnnotatorPTB;
+import org.apache.ctakes.dependency.parser.ae.ClearNLPDependencyParserAE;
+import org.apache.ctakes.dependency.parser.ae.ClearNLPSemanticRoleLabelerAE;
+import org.apache.ctakes.postagger.POSTagger;
+import org.apache.ctakes.typesystem.type.constants.CONST;
+import org.apache.ctakes.typesystem.type.textsem.AnatomicalSiteMention;
+import org.apache.ctakes.typesystem.type.textsem.DiseaseDisorderMention;
+import org.apache.ctakes.typesystem.type.textsem.EntityMention;
+import org.apache.ctakes.typesystem.type.textsem.EventMention;
+import org.apache.ctakes.typesystem.type.textsem.IdentifiedAnnotation;
+import org.apache.ctakes.typesystem.type.textsem.ProcedureMention;
+import org.apache.ctakes.typesystem.type.textsem.SignSymptomMention;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
+import org.apache.uima.fit.factory.AggregateBuilder;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.pipeline.SimplePipeline;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Runs the six cleartk attribute engines in sequence and the combined attribute engine on the same cas,
+ * and checks that every entity gets the same attributes from both.
+ */
+public class CombinedAssertionCleartkAnalysisEngineTest {
+
+   static private final String TEXT = "The patient denies chest pain but reports shortness of breath.  "
+         + "There is no evidence of pneumonia on the chest x-ray.  "
+         + "Possible early appendicitis, rule out abscess.  "
+         + "Her mother has a history of breast cancer.  "
+         + "He had a cholecystectomy in 2005 and a history of hypertension.  "
+         + "If the headache returns, he should take aspirin.  "
+         + "Diabetes can cause kidney failure.  "
+         + "Swelling of the left knee is noted.";
+
+   @Test
+   public void testCombinedMatchesSequential() throws Exception {
+      assertCombinedMatchesSequential( false );
+   }
+
+   @Test
+   public void testCompiledCombinedMatchesSequential() throws Exception {
+      assertCombinedMatchesSequential( true );
+   }
+
+   /**
+    * Assigns attributes with the sequential engines, resets them, assigns them again with the combined engine
+    * and compares the attributes of each entity.
+    *
+    * @param compileModels true if the combined engine should classify with compiled liblinear models
+    */
+   static private void assertCombinedMatchesSequential( final boolean compileModels ) throws Exception {
+      final JCas jCas = JCasFactory.createJCas();
+      jCas.setDocumentText( TEXT );
+      SimplePipeline.runPipeline( jCas, createPreprocessingDescription() );
+      final List<IdentifiedAnnotation> entities = new ArrayList<>();
+      for ( IdentifiedAnnotation annotation : JCasUtil.select( jCas, IdentifiedAnnotation.class ) ) {
+         if ( annotation instanceof EventMention || annotation instanceof EntityMention ) {
+            entities.add( annotation );
+         }
+      }
+      assertFalse( "No entities were annotated", entities.isEmpty() );
+      final List<List<Object>> initial = getAttributes( entities );
+
+      final AggregateBuilder sequential = new AggregateBuilder();
+      sequential.add( PolarityCleartkAnalysisEngine.createAnnotatorDescription() );
+      sequential.add( UncertaintyCleartkAnalysisEngine.createAnnotatorDescription() );
+      sequential.add( HistoryCleartkAnalysisEngine.createAnnotatorDescription() );
+      sequential.add( ConditionalCleartkAnalysisEngine.createAnnotatorDescription() );
+      sequential.add( GenericCleartkAnalysisEngine.createAnnotatorDescription() );
+      sequential.add( SubjectCleartkAnalysisEngine.createAnnotatorDescription() );
+      SimplePipeline.runPipeline( jCas, sequential.createAggregateDescription() );
+      final List<List<Object>> expected = getAttributes( entities );
+
+      setAttributes( entities, initial );
+      SimplePipeline.runPipeline( jCas, AnalysisEngineFactory.createEngineDescription(
+            CombinedAssertionCleartkAnalysisEngine.class,
+            CombinedAssertionCleartkAnalysisEngine.PARAM_COMPILE_MODELS, compileModels ) );
+      final List<List<Object>> actual = getAttributes( entities );
+
+      for ( int i = 0; i < entities.size(); i++ ) {
+         final String entity = entities.get( i ).getCoveredText();
+         // the polarity engine always assigns a polarity, so this fails if the sequential engines did not run
+         assertNotEquals( entity, initial.get( i ), expected.get( i ) );
+         assertEquals( entity, expected.get( i ), actual.get( i ) );
+      }
+   }
+
+   /**
+    * @return sentences, tokens, part of speech, constituency and dependency parses, semantic roles,
+    * entities and assertion cue phrases
+    */
+   static private AnalysisEngineDescription createPreprocessingDescription() throws ResourceInitializationException {
+      final AggregateBuilder builder = new AggregateBuilder();
+      builder.add( SimpleSegmentAnnotator.createAnnotatorDescription() );
+      builder.add( SentenceDetector.createAnnotatorDescription() );
+      builder.add( TokenizerAnnotatorPTB.createAnnotatorDescription() );
+      builder.add( POSTagger.createAnnotatorDescription() );
+      builder.add( ConstituencyParser.createAnnotatorDescription() );
+      builder.add( ClearNLPDependencyParserAE.createAnnotatorDescription() );
+      builder.add( ClearNLPSemanticRoleLabelerAE.createAnnotatorDescription() );
+      builder.add( AnalysisEngineFactory.createEngineDescription( EntityAnnotator.class ) );
+      builder.add( AnalysisEngineFactory.createEngineDescription( AlternateCuePhraseAnnotator.class ) );
+      return builder.createAggregateDescription();
+   }
+
+   /**
+    * @return polarity, uncertainty, conditional, generic, subject and history of for each entity
+    */
+   static private List<List<Object>> getAttributes( final List<IdentifiedAnnotation> entities ) {
+      final List<List<Object>> attributes = new ArrayList<>( entities.size() );
+      for ( IdentifiedAnnotation entity : entities ) {
+         attributes.add( Arrays.asList( entity.getPolarity(),
+               entity.getUncertainty(),
+               entity.getConditional(),
+               entity.getGeneric(),
+               entity.getSubject(),
+               entity.getHistoryOf() ) );
+      }
+      return attributes;
+   }
+
+   static private void setAttributes( final List<IdentifiedAnnotation> entities,
+                                      final List<List<Object>> attributes ) {
+      for ( int i = 0; i < entities.size(); i++ ) {
+         final IdentifiedAnnotation entity = entities.get( i );
+         final List<Object> values = attributes.get( i );
+         entity.setPolarity( (Integer)values.get( 0 ) );
+         entity.setUncertainty( (Integer)values.get( 1 ) );
+         entity.setConditional( (Boolean)values.get( 2 ) );
+         entity.setGeneric( (Boolean)values.get( 3 ) );
+         entity.setSubject( (String)values.get( 4 ) );
+         entity.setHistoryOf( (Integer)values.get( 5 ) );
+      }
+   }
+
+   /**
+    * Annotates a fixed list of disorders, findings, procedures and anatomical sites in the test text,
+    * standing in for dictionary lookup.
+    */
+   static public class EntityAnnotator extends JCasAnnotator_ImplBase {
+      @Override
+      public void process( final JCas jCas ) throws AnalysisEngineProcessException {
+         for ( String text : Arrays.asList( "pneumonia", "appendicitis", "abscess", "breast cancer",
+               "hypertension", "Diabetes", "kidney failure" ) ) {
+            for ( int[] span : findSpans( jCas.getDocumentText(), text ) ) {
+               addEntity( new DiseaseDisorderMention( jCas, span[ 0 ], span[ 1 ] ), CONST.NE_TYPE_ID_DISORDER );
+            }
+         }
+         for ( String text : Arrays.asList( "chest pain", "shortness of breath", "headache", "Swelling" ) ) {
+            for ( int[] span : findSpans( jCas.getDocumentText(), text ) ) {
+               addEntity( new SignSymptomMention( jCas, span[ 0 ], span[ 1 ] ), CONST.NE_TYPE_ID_FINDING );
+            }
+         }
+         for ( String text : Arrays.asList( "x-ray", "cholecystectomy" ) ) {
+            for ( int[] span : findSpans( jCas.getDocumentText(), text ) ) {
+               addEntity( new ProcedureMention( jCas, span[ 0 ], span[ 1 ] ), CONST.NE_TYPE_ID_PROCEDURE );
+            }
+         }
+         for ( String text : Arrays.asList( "chest", "breast", "kidney", "knee" ) ) {
+            for ( int[] span : findSpans( jCas.getDocumentText(), text ) ) {
+               addEntity( new AnatomicalSiteMention( jCas, span[ 0 ], span[ 1 ] ), CONST.NE_TYPE_ID_ANATOMICAL_SITE );
+            }
+         }
+      }
+
+      static private List<int[]> findSpans( final String documentText, final String text ) {
+         final List<int[]> spans = new ArrayList<>();
+         int begin = documentText.indexOf( text );
+         while ( begin >= 0 ) {
+            spans.add( new int[]{ begin, begin + text.length() } );
+            begin = documentText.indexOf( text, begin + 1 );
+         }
+         return spans;
+      }
+
+      static private void addEntity( final IdentifiedAnnotation entity, final int typeId ) {
+         entity.setTypeID( typeId );
+         entity.addToIndexes();
+      }
+   }
+
+}
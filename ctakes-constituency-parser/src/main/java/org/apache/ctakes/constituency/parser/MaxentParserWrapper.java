@@ -22,8 +22,10 @@ import opennlp.tools.parser.AbstractBottomUpParser;
 import opennlp.tools.parser.Parse;
 import opennlp.tools.parser.ParserModel;
 import opennlp.tools.parser.chunking.Parser;
+import org.apache.ctakes.constituency.parser.util.CompactParse;
 import org.apache.ctakes.constituency.parser.util.TreeUtils;
 import org.apache.ctakes.core.util.DocumentIDAnnotationUtil;
+import org.apache.ctakes.core.util.ParseCache;
 import org.apache.ctakes.typesystem.type.syntax.BaseToken;
 import org.apache.ctakes.typesystem.type.syntax.TopTreebankNode;
 import org.apache.ctakes.typesystem.type.textspan.Sentence;
@@ -38,24 +40,139 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 public class MaxentParserWrapper implements ParserWrapper {
 
+	// Parse pools shared by the parallel wrappers in the jvm, one for each thread count.
+	// A pool's parallelism is fixed, so wrappers that ask for different thread counts cannot share one.
+	static private final Map<Integer, ForkJoinPool> PARSE_POOLS = new HashMap<>();
+	static private final Map<Integer, Integer> PARSE_POOL_USERS = new HashMap<>();
+
 	Parser parser = null;
 	private String parseStr = "";
 	Logger logger = Logger.getLogger(this.getClass().getName());
 
+	private ParserModel _model = null;
+	// opennlp parsers are not thread safe, but the model that they share is
+	private ThreadLocal<Parser> _threadParser = null;
+	// shared pool on which the sentences of a document are parsed, with this wrapper's thread count
+	private ForkJoinPool _parsePool = null;
+	private int _threadCount = 1;
+	// parses of previously seen sentences, keyed by token text
+	private ParseCache<CompactParse> _parseCache = null;
+
 
 	public MaxentParserWrapper(InputStream is){
+		this( is, 1 );
+	}
+
+	/**
+	 * @param is          stream for the opennlp parser model
+	 * @param threadCount number of threads with which the sentences of a document are parsed.
+	 *                    1 parses sentences one at a time on the calling thread.
+	 *                    Wrappers with the same thread count share one pool.
+	 */
+	public MaxentParserWrapper( final InputStream is, final int threadCount ) {
 		try {
 			if (is!=null) {
-				ParserModel model = new ParserModel(is);
-				parser = new Parser(model, AbstractBottomUpParser.defaultBeamSize, AbstractBottomUpParser.defaultAdvancePercentage);
+				_model = new ParserModel(is);
 			}
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
+		if ( _model == null ) {
+			return;
+		}
+		if ( threadCount > 1 ) {
+			// each pool thread builds its own parser on first use
+			_threadParser = ThreadLocal.withInitial( () -> createParser( _model ) );
+			_threadCount = threadCount;
+			_parsePool = acquireParsePool( threadCount );
+			logger.info( "Parsing sentences with " + threadCount + " threads" );
+		} else {
+			parser = createParser( _model );
+		}
+	}
+
+	static private Parser createParser( final ParserModel model ) {
+		return new Parser( model, AbstractBottomUpParser.defaultBeamSize, AbstractBottomUpParser.defaultAdvancePercentage );
+	}
+
+	/**
+	 * @param parseCache cache of parses for repeated sentences, may be shared with other wrappers.  null to disable.
+	 */
+	public void setParseCache( final ParseCache<CompactParse> parseCache ) {
+		_parseCache = parseCache;
+	}
+
+	/**
+	 * @param sentenceParser parser to use if the sentence is not cached
+	 * @param inputTokens    parser input for the sentence
+	 * @return the parse of the sentence, rebuilt from the cache if the same tokens were parsed before
+	 */
+	private Parse parse( final Parser sentenceParser, final Parse inputTokens ) {
+		if ( _parseCache == null ) {
+			return runParser( sentenceParser, inputTokens );
+		}
+		final List<String> tokenTexts = new ArrayList<>( inputTokens.getChildCount() );
+		for ( Parse token : inputTokens.getChildren() ) {
+			tokenTexts.add( token.getCoveredText() );
+		}
+		final String key = ParseCache.createKey( tokenTexts );
+		final CompactParse cached = _parseCache.get( key );
+		if ( cached != null && cached.getTokenCount() == tokenTexts.size() ) {
+			return cached.createParse( inputTokens );
+		}
+		final Parse parse = runParser( sentenceParser, inputTokens );
+		_parseCache.put( key, CompactParse.createCompactParse( parse ) );
+		return parse;
+	}
+
+	/**
+	 * opennlp parsers are not thread safe, so a parse holds the lock of its parser.
+	 * The single parser of a sequential wrapper may be shared by documents on several threads,
+	 * everything else in a document's processing runs outside the lock.
+	 * The lock of a thread local parser is never contended.
+	 */
+	static private Parse runParser( final Parser sentenceParser, final Parse inputTokens ) {
+		synchronized ( sentenceParser ) {
+			return sentenceParser.parse( inputTokens );
+		}
+	}
+
+	/**
+	 * Releases the parallel parse pool, if there is one.  The pool is stopped when no wrapper uses it.
+	 */
+	public void shutdown() {
+		synchronized ( PARSE_POOLS ) {
+			if ( _parsePool != null ) {
+				releaseParsePool( _threadCount );
+				_parsePool = null;
+			}
+		}
+	}
+
+	static private ForkJoinPool acquireParsePool( final int threadCount ) {
+		synchronized ( PARSE_POOLS ) {
+			PARSE_POOL_USERS.merge( threadCount, 1, Integer::sum );
+			return PARSE_POOLS.computeIfAbsent( threadCount, ForkJoinPool::new );
+		}
+	}
+
+	static private void releaseParsePool( final int threadCount ) {
+		synchronized ( PARSE_POOLS ) {
+			final int users = PARSE_POOL_USERS.merge( threadCount, -1, Integer::sum );
+			if ( users <= 0 ) {
+				PARSE_POOL_USERS.remove( threadCount );
+				PARSE_POOLS.remove( threadCount ).shutdown();
+			}
+		}
 	}
 
 	@Override
@@ -72,6 +189,10 @@ public class MaxentParserWrapper implements ParserWrapper {
 	 */
 	@Override
    public void createAnnotations( final JCas jcas ) throws AnalysisEngineProcessException {
+      if ( _threadParser != null ) {
+         createAnnotationsParallel( jcas );
+         return;
+      }
       final String docId = DocumentIDAnnotationUtil.getDocumentID( jcas );
       logger.info( "Started processing: " + docId );
       // iterate over sentences
@@ -92,7 +213,7 @@ public class MaxentParserWrapper implements ParserWrapper {
             parse = null;
          } else {
             final Parse inputTokens = TreeUtils.ctakesTokensToOpennlpTokens( sentence.getBegin(), text, terminalArray );
-            parse = parser.parse( inputTokens );
+            parse = parse( parser, inputTokens );
          }
          final TopTreebankNode top = TreeUtils.buildAlignedTree( jcas, parse, terminalArray, sentence );
          top.addToIndexes();
@@ -100,6 +221,52 @@ public class MaxentParserWrapper implements ParserWrapper {
       logger.info( "Done parsing: " + docId );
    }
 
+   /**
+    * Same as {@link #createAnnotations(JCas)}, but the sentences are parsed in parallel.
+    * All access to the cas happens on the calling thread: terminals and parser input are prepared first,
+    * the opennlp parses are run on the shared pool, then tree nodes are created in sentence order.
+    *
+    * @param jcas ye olde ...
+    * @throws AnalysisEngineProcessException if a parse fails or tree nodes cannot be built
+    */
+   private void createAnnotationsParallel( final JCas jcas ) throws AnalysisEngineProcessException {
+      final String docId = DocumentIDAnnotationUtil.getDocumentID( jcas );
+      logger.info( "Started processing: " + docId );
+      final List<Sentence> sentences = new ArrayList<>();
+      final List<FSArray> terminalArrays = new ArrayList<>();
+      final List<Parse> inputs = new ArrayList<>();
+      final Map<Sentence, Collection<BaseToken>> sentenceTokenMap = JCasUtil.indexCovered( jcas, Sentence.class, BaseToken.class );
+      for ( Map.Entry<Sentence, Collection<BaseToken>> sentenceTokens : sentenceTokenMap.entrySet() ) {
+         final Sentence sentence = sentenceTokens.getKey();
+         final String text = sentence.getCoveredText();
+         if ( text.isEmpty() || isBorderOnly( text ) ) {
+            continue;
+         }
+         final FSArray terminalArray = TreeUtils.getTerminals( jcas, new ArrayList<>( sentenceTokens.getValue() ) );
+         final String tokenString = TreeUtils.getSplitSentence( terminalArray );
+         sentences.add( sentence );
+         terminalArrays.add( terminalArray );
+         inputs.add( tokenString.isEmpty()
+                     ? null
+                     : TreeUtils.ctakesTokensToOpennlpTokens( sentence.getBegin(), text, terminalArray ) );
+      }
+      final Parse[] parses = new Parse[ inputs.size() ];
+      try {
+         _parsePool.submit(
+               () -> IntStream.range( 0, parses.length ).parallel()
+                              .filter( i -> inputs.get( i ) != null )
+                              .forEach( i -> parses[ i ] = parse( _threadParser.get(), inputs.get( i ) ) ) )
+                                     .get();
+      } catch ( InterruptedException | ExecutionException multE ) {
+         throw new AnalysisEngineProcessException( multE );
+      }
+      for ( int i = 0; i < parses.length; i++ ) {
+         final TopTreebankNode top = TreeUtils.buildAlignedTree( jcas, parses[ i ], terminalArrays.get( i ), sentences.get( i ) );
+         top.addToIndexes();
+      }
+      logger.info( "Done parsing: " + docId );
+   }
+
    /**
     * The parser has a really tough time dealing with text lines that act as borders
     *
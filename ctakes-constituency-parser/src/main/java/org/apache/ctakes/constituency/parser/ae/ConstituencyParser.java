@@ -18,11 +18,14 @@
  */
 package org.apache.ctakes.constituency.parser.ae;
 
+import opennlp.tools.parser.AbstractBottomUpParser;
 import org.apache.ctakes.constituency.parser.MaxentParserWrapper;
 import org.apache.ctakes.constituency.parser.ParserWrapper;
+import org.apache.ctakes.constituency.parser.util.CompactParse;
 import org.apache.ctakes.core.pipeline.PipeBitInfo;
 import org.apache.ctakes.core.resource.FileLocator;
 import org.apache.ctakes.core.util.DotLogger;
+import org.apache.ctakes.core.util.ParseCache;
 import org.apache.log4j.Logger;
 import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_engine.AnalysisEngineDescription;
@@ -33,6 +36,7 @@ import org.apache.uima.fit.factory.AnalysisEngineFactory;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ResourceInitializationException;
 
+import java.io.File;
 import java.io.IOException;
 
 
@@ -52,6 +56,41 @@ public class ConstituencyParser extends JCasAnnotator_ImplBase {
 			defaultValue = "org/apache/ctakes/constituency/parser/models/sharpacq-3.1.bin"
 	)
 	private String modelFilename;
+
+	public static final String PARAM_PARSE_THREADS = "PARSE_THREADS";
+
+	@ConfigurationParameter(
+			name = PARAM_PARSE_THREADS,
+			description = "Number of threads used to parse the sentences of a document.  Values above 1 share the parser model"
+					+ " across threads and parse sentences in parallel.",
+			mandatory = false,
+			defaultValue = "1"
+	)
+	private int parseThreads;
+
+	public static final String PARAM_CACHE_SIZE = "PARSE_CACHE_SIZE";
+
+	@ConfigurationParameter(
+			name = PARAM_CACHE_SIZE,
+			description = "Maximum number of sentence parses to cache for reuse by repeated sentences.  0 disables the cache.",
+			mandatory = false,
+			defaultValue = "0"
+	)
+	private int cacheSize;
+
+	public static final String PARAM_CACHE_FILE = "PARSE_CACHE_FILE";
+
+	@ConfigurationParameter(
+			name = PARAM_CACHE_FILE,
+			description = "File from which the parse cache is loaded at startup and to which it is saved when the collection is complete.",
+			mandatory = false
+	)
+	private String cacheFile;
+
+	// parsers in one jvm with the same model share a single cache
+	static private final String CACHE_NAME = "ConstituencyParseCache";
+
+	private ParseCache<CompactParse> parseCache = null;
 	
 	
 	private ParserWrapper parser = null;
@@ -62,7 +101,17 @@ public class ConstituencyParser extends JCasAnnotator_ImplBase {
 		super.initialize( aContext );
 		logger.info( "Initializing ..." );
 		try ( DotLogger dotter = new DotLogger() ) {
-			parser = new MaxentParserWrapper( FileLocator.getAsStream( modelFilename ) );
+			final MaxentParserWrapper maxentParser = new MaxentParserWrapper( FileLocator.getAsStream( modelFilename ), parseThreads );
+			if ( cacheSize > 0 ) {
+				parseCache = ParseCache.getSharedCache( CACHE_NAME + ":" + ParseCache.createModelId( modelFilename,
+						"beam=" + AbstractBottomUpParser.defaultBeamSize,
+						"advance=" + AbstractBottomUpParser.defaultAdvancePercentage ), cacheSize );
+				if ( cacheFile != null && !cacheFile.isEmpty() ) {
+					parseCache.load( new File( cacheFile ) );
+				}
+				maxentParser.setParseCache( parseCache );
+			}
+			parser = maxentParser;
 		} catch ( IOException ioE ) {
 			logger.error( "Error reading parser model file/directory: " + ioE.getMessage() );
 			throw new ResourceInitializationException( ioE );
@@ -75,6 +124,30 @@ public class ConstituencyParser extends JCasAnnotator_ImplBase {
 	public void process(JCas jcas) throws AnalysisEngineProcessException {
 		parser.createAnnotations(jcas);
 	}
+
+	@Override
+	public void destroy() {
+		if ( parser instanceof MaxentParserWrapper ) {
+			((MaxentParserWrapper)parser).shutdown();
+		}
+		super.destroy();
+	}
+
+	@Override
+	public void collectionProcessComplete() throws AnalysisEngineProcessException {
+		super.collectionProcessComplete();
+		if ( parseCache == null ) {
+			return;
+		}
+		parseCache.logStatistics();
+		if ( cacheFile != null && !cacheFile.isEmpty() ) {
+			try {
+				parseCache.save( new File( cacheFile ) );
+			} catch ( IOException ioE ) {
+				throw new AnalysisEngineProcessException( ioE );
+			}
+		}
+	}
 	
 	  public static AnalysisEngineDescription createAnnotatorDescription(
 		      String modelPath) throws ResourceInitializationException {
@@ -53,6 +53,20 @@ public class ThreadSafeConstituencyParser extends ConstituencyParser {
             ConstituencyParser.PARAM_MODEL_FILENAME, modelPath );
    }
 
+   /**
+    * @param modelPath    path to the parser model
+    * @param parseThreads number of threads used to parse the sentences of each document
+    * @return description for a parser that shares one model and parses sentences in parallel
+    * @throws ResourceInitializationException -
+    */
+   public static AnalysisEngineDescription createAnnotatorDescription( final String modelPath, final int parseThreads )
+         throws ResourceInitializationException {
+      return AnalysisEngineFactory.createEngineDescription(
+            ThreadSafeConstituencyParser.class,
+            ConstituencyParser.PARAM_MODEL_FILENAME, modelPath,
+            ConstituencyParser.PARAM_PARSE_THREADS, parseThreads );
+   }
+
    public static AnalysisEngineDescription createAnnotatorDescription()
          throws ResourceInitializationException {
       return AnalysisEngineFactory.createEngineDescription( ThreadSafeConstituencyParser.class );
@@ -94,6 +108,16 @@ public class ThreadSafeConstituencyParser extends ConstituencyParser {
       public void setInitialized( final boolean initialized ) {
          _initialized = initialized;
       }
+
+      /**
+       * Documents are not serialized behind the wrapper lock.
+       * The delegate only locks the opennlp parser while a sentence is parsed,
+       * and its cas work and parse cache are safe to run concurrently.
+       */
+      @Override
+      public void process( final JCas jCas ) throws AnalysisEngineProcessException {
+         getDelegate().process( jCas );
+      }
    }
 
 
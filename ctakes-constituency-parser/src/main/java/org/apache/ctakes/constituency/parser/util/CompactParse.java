@@ -0,0 +1,112 @@
+package org.apache.ctakes.constituency.parser.util;
+
+import opennlp.tools.parser.AbstractBottomUpParser;
+import opennlp.tools.parser.Parse;
+import opennlp.tools.util.Span;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact form of an opennlp constituency parse that is independent of the sentence text and offsets.
+ * Constituents are kept in post-order as node type, head token index and covered token range.
+ * A parse can be rebuilt from this form for any sentence with the same tokens,
+ * yielding the same tree that the parser would produce for that sentence.
+ */
+final public class CompactParse implements Serializable {
+
+   private static final long serialVersionUID = 1L;
+
+   private final String _rootType;
+   private final int _rootHead;
+   // non-root constituents in post-order
+   private final String[] _types;
+   private final int[] _heads;
+   private final int[] _firstTokens;
+   private final int[] _lastTokens;
+
+   private CompactParse( final String rootType, final int rootHead, final List<String> types, final List<int[]> nodes ) {
+      _rootType = rootType;
+      _rootHead = rootHead;
+      _types = types.toArray( new String[ types.size() ] );
+      _heads = new int[ nodes.size() ];
+      _firstTokens = new int[ nodes.size() ];
+      _lastTokens = new int[ nodes.size() ];
+      for ( int i = 0; i < nodes.size(); i++ ) {
+         _heads[ i ] = nodes.get( i )[ 0 ];
+         _firstTokens[ i ] = nodes.get( i )[ 1 ];
+         _lastTokens[ i ] = nodes.get( i )[ 2 ];
+      }
+   }
+
+   /**
+    * @param parse opennlp parse output
+    * @return compact form of the parse
+    */
+   static public CompactParse createCompactParse( final Parse parse ) {
+      final List<String> types = new ArrayList<>();
+      final List<int[]> nodes = new ArrayList<>();
+      final int[] tokenCount = { 0 };
+      for ( Parse child : parse.getChildren() ) {
+         addPostOrder( child, types, nodes, tokenCount );
+      }
+      return new CompactParse( parse.getType(), parse.getHeadIndex(), types, nodes );
+   }
+
+   /**
+    * @return number of tokens expected by {@link #createParse(Parse)}
+    */
+   public int getTokenCount() {
+      int count = 0;
+      for ( int last : _lastTokens ) {
+         count = Math.max( count, last + 1 );
+      }
+      return count;
+   }
+
+   /**
+    * @param input parser input holding the sentence text and its token nodes,
+    *              as created by {@link TreeUtils#ctakesTokensToOpennlpTokens}
+    * @return a parse aligned to the input tokens
+    */
+   public Parse createParse( final Parse input ) {
+      final String text = input.getText();
+      final Parse[] tokens = input.getChildren();
+      final Parse root = new Parse( text, new Span( 0, text.length() ), _rootType, 1, _rootHead );
+      for ( int i = 0; i < tokens.length; i++ ) {
+         root.insert( new Parse( text, tokens[ i ].getSpan(), AbstractBottomUpParser.TOK_NODE, 0, i ) );
+      }
+      // Post-order insertion lets each constituent adopt its already inserted children,
+      // including a child of a unary chain that has the same span.
+      for ( int i = 0; i < _types.length; i++ ) {
+         final Span span = new Span( tokens[ _firstTokens[ i ] ].getSpan().getStart(),
+               tokens[ _lastTokens[ i ] ].getSpan().getEnd() );
+         root.insert( new Parse( text, span, _types[ i ], 1, _heads[ i ] ) );
+      }
+      return root;
+   }
+
+   /**
+    * @return the first token index covered by the node
+    */
+   static private int addPostOrder( final Parse node, final List<String> types, final List<int[]> nodes,
+                                    final int[] tokenCount ) {
+      if ( node.getType().equals( AbstractBottomUpParser.TOK_NODE ) ) {
+         final int tokenIndex = tokenCount[ 0 ];
+         tokenCount[ 0 ]++;
+         return tokenIndex;
+      }
+      int firstToken = -1;
+      for ( Parse child : node.getChildren() ) {
+         final int childFirst = addPostOrder( child, types, nodes, tokenCount );
+         if ( firstToken < 0 ) {
+            firstToken = childFirst;
+         }
+      }
+      types.add( node.getType() );
+      nodes.add( new int[]{ node.getHeadIndex(), firstToken, tokenCount[ 0 ] - 1 } );
+      return firstToken;
+   }
+
+}
@@ -0,0 +1,134 @@
+package org.apache.ctakes.constituency.parser.util;
+
+import opennlp.tools.parser.AbstractBottomUpParser;
+import opennlp.tools.parser.Parse;
+import opennlp.tools.util.Span;
+import org.apache.ctakes.core.util.ParseCache;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class CompactParseTest {
+
+   @Rule
+   public TemporaryFolder _tempFolder = new TemporaryFolder();
+
+   @Test
+   public void testSentence() {
+      assertRoundTrip( Parse.parseParse( "(TOP (S (NP (NN Patient)) (VP (VBZ denies) (NP (JJ chest) (NN pain)))"
+            + " (. .)))" ) );
+   }
+
+   @Test
+   public void testNestedPhrases() {
+      assertRoundTrip( Parse.parseParse( "(TOP (S (NP (NP (DT The) (NN pain)) (PP (IN in) (NP (PRP$ her)"
+            + " (NN chest)))) (VP (VBD was) (ADJP (RB not) (JJ severe))) (. .)))" ) );
+   }
+
+   @Test
+   public void testOneToken() {
+      // unary chain of constituents that all cover the same token
+      assertRoundTrip( Parse.parseParse( "(TOP (S (NP (NN Pain))))" ) );
+   }
+
+   @Test
+   public void testEmptySentence() {
+      final Parse parse = new Parse( "", new Span( 0, 0 ), AbstractBottomUpParser.TOP_NODE, 1, 0 );
+      final CompactParse compactParse = CompactParse.createCompactParse( parse );
+      assertEquals( 0, compactParse.getTokenCount() );
+      final Parse rebuilt = compactParse.createParse( createInput( "", new Span[ 0 ] ) );
+      assertSameTree( parse, rebuilt );
+   }
+
+   /**
+    * The cached form of a sentence is applied to a sentence with the same tokens at other offsets.
+    */
+   @Test
+   public void testOtherOffsets() {
+      final Parse parse = Parse.parseParse( "(TOP (S (NP (NN Patient)) (VP (VBZ denies) (NP (NN fever))) (. .)))" );
+      final String text = "Patient   denies fever .";
+      final Span[] tokens = { new Span( 0, 7 ), new Span( 10, 16 ), new Span( 17, 22 ), new Span( 23, 24 ) };
+      final Parse rebuilt = CompactParse.createCompactParse( parse ).createParse( createInput( text, tokens ) );
+      assertEquals( text, rebuilt.getText() );
+      assertSameTree( parse, rebuilt, false );
+      final Parse[] tagNodes = rebuilt.getTagNodes();
+      assertEquals( tokens.length, tagNodes.length );
+      for ( int i = 0; i < tokens.length; i++ ) {
+         assertEquals( tokens[ i ], tagNodes[ i ].getSpan() );
+         assertEquals( parse.getTagNodes()[ i ].getCoveredText(), tagNodes[ i ].getCoveredText() );
+      }
+      // the verb phrase covers "denies fever"
+      assertEquals( new Span( 10, 22 ), rebuilt.getChildren()[ 0 ].getChildren()[ 1 ].getSpan() );
+   }
+
+   /**
+    * Compact parses are written and read with the parse cache.
+    */
+   @Test
+   public void testSaveAndLoad() throws IOException {
+      final Parse parse = Parse.parseParse( "(TOP (S (NP (NN Patient)) (VP (VBZ denies) (NP (NN fever))) (. .)))" );
+      final ParseCache<CompactParse> cache = new ParseCache<>( "test", 10 );
+      cache.put( "a", CompactParse.createCompactParse( parse ) );
+      final File file = new File( _tempFolder.getRoot(), "parse.cache.gz" );
+      cache.save( file );
+      final ParseCache<CompactParse> loaded = new ParseCache<>( "test", 10 );
+      loaded.load( file );
+      final CompactParse compactParse = loaded.get( "a" );
+      assertNotNull( compactParse );
+      assertSameTree( parse, compactParse.createParse( createInput( parse ) ) );
+   }
+
+   static private void assertRoundTrip( final Parse parse ) {
+      final CompactParse compactParse = CompactParse.createCompactParse( parse );
+      assertEquals( parse.getTagNodes().length, compactParse.getTokenCount() );
+      assertSameTree( parse, compactParse.createParse( createInput( parse ) ) );
+   }
+
+   /**
+    * @return parser input for the tokens of the parse, as created by {@link TreeUtils#ctakesTokensToOpennlpTokens}
+    */
+   static private Parse createInput( final Parse parse ) {
+      final Parse[] tagNodes = parse.getTagNodes();
+      final Span[] tokens = new Span[ tagNodes.length ];
+      for ( int i = 0; i < tagNodes.length; i++ ) {
+         tokens[ i ] = tagNodes[ i ].getSpan();
+      }
+      return createInput( parse.getText(), tokens );
+   }
+
+   static private Parse createInput( final String text, final Span[] tokens ) {
+      final Parse input = new Parse( text, new Span( 0, text.length() ), AbstractBottomUpParser.INC_NODE, 0, 0 );
+      for ( int i = 0; i < tokens.length; i++ ) {
+         input.insert( new Parse( text, tokens[ i ], AbstractBottomUpParser.TOK_NODE, 0, i ) );
+      }
+      return input;
+   }
+
+   static private void assertSameTree( final Parse expected, final Parse actual ) {
+      assertSameTree( expected, actual, true );
+   }
+
+   /**
+    * Checks that the trees have the same labels and head token indices at every node,
+    * and optionally the same spans.
+    */
+   static private void assertSameTree( final Parse expected, final Parse actual, final boolean sameSpans ) {
+      final String node = expected.getType() + " " + expected.getSpan();
+      assertEquals( node, expected.getType(), actual.getType() );
+      if ( sameSpans ) {
+         assertEquals( node, expected.getSpan(), actual.getSpan() );
+      }
+      assertEquals( node, expected.getHeadIndex(), actual.getHeadIndex() );
+      assertEquals( node, expected.getChildCount(), actual.getChildCount() );
+      for ( int i = 0; i < expected.getChildCount(); i++ ) {
+         assertSameTree( expected.getChildren()[ i ], actual.getChildren()[ i ], sameSpans );
+      }
+   }
+
+}
@@ -8,6 +8,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Scanner;
 
+import org.apache.ctakes.core.cleartk.SharedClassifier;
 import org.apache.ctakes.core.resource.FileLocator;
 import org.apache.ctakes.typesystem.type.textspan.Segment;
 import org.apache.ctakes.typesystem.type.textspan.Sentence;
@@ -409,5 +410,11 @@ public class SentenceDetectorAnnotatorBIO extends CleartkAnnotator<String>{
   public static AnalysisEngineDescription getDescription() throws ResourceInitializationException {
     return getDescription("/org/apache/ctakes/core/sentdetect/model.jar");
   }
+
+  @Override
+  public void destroy() {
+    SharedClassifier.releaseIfShared(this.classifier);
+    super.destroy();
+  }
 }
 
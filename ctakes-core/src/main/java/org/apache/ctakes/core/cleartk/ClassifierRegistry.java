@@ -0,0 +1,331 @@
+package org.apache.ctakes.core.cleartk;
+
+import org.apache.ctakes.core.resource.FileLocator;
+import org.apache.log4j.Logger;
+import org.cleartk.ml.Classifier;
+import org.cleartk.ml.jar.JarClassifierBuilder;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarInputStream;
+import java.util.zip.CRC32;
+
+/**
+ * Jvm-wide registry of ClearTK classifiers loaded from model.jar files.
+ * <p>
+ * Models are keyed by the resolved uri and checksum of the jar, so every annotator in the jvm that uses the same
+ * model shares one classifier, whether it is in a plain or ThreadSafe annotator or in another pipeline.
+ * Each {@link SharedClassifier} holds a reference to its model, and a model is dropped when its last reference
+ * is released.
+ * A reference that is garbage collected without being released is released by the registry,
+ * so annotators that never release their classifiers do not keep models loaded forever.
+ * A model can be loaded on first use instead of when it is acquired,
+ * and models that have not been used for some time can be unloaded, to be loaded again on next use.
+ * </p>
+ * All methods are thread safe.
+ */
+public enum ClassifierRegistry {
+   INSTANCE;
+
+   static public ClassifierRegistry getInstance() {
+      return INSTANCE;
+   }
+
+   static private final Logger LOGGER = Logger.getLogger( "ClassifierRegistry" );
+
+   /**
+    * Loads a classifier from a model.jar
+    */
+   @FunctionalInterface
+   public interface ClassifierLoader {
+      Classifier<?> loadClassifier( URL jarUrl ) throws IOException;
+   }
+
+   /**
+    * Loads a classifier in the same way as ClearTK's GenericJarClassifierFactory
+    */
+   static public final ClassifierLoader JAR_LOADER = ClassifierRegistry::loadJarClassifier;
+
+   /**
+    * Loads a {@link CompiledLinearClassifier}
+    */
+   static public final ClassifierLoader COMPILED_LINEAR_LOADER = url -> {
+      try ( InputStream stream = url.openStream() ) {
+         return CompiledLinearClassifier.loadClassifier( stream );
+      }
+   };
+
+   private final Map<String, ModelEntry> _models = new HashMap<>();
+   // references that have not been released, guarded by the model map
+   private final Set<ClassifierReference> _references = new HashSet<>();
+   private final ReferenceQueue<SharedClassifier<?>> _collected = new ReferenceQueue<>();
+   private ScheduledExecutorService _evictionService;
+   private ScheduledFuture<?> _evictionTask;
+   private long _evictionMinutes;
+   private volatile long _idleMillis;
+
+   /**
+    * Acquires a reference to the classifier for a model jar.
+    *
+    * @param jarPath  path to the model.jar file or resource
+    * @param loader   loader for the classifier type, e.g. {@link #JAR_LOADER}
+    * @param lazyLoad true to load the model on first use rather than now
+    * @param <T>      classifier outcome type
+    * @return a reference to the shared classifier, to be released when no longer needed
+    * @throws IOException if the jar cannot be found or read, or the model cannot be loaded
+    */
+   public <T> SharedClassifier<T> acquire( final String jarPath,
+                                           final ClassifierLoader loader,
+                                           final boolean lazyLoad ) throws IOException {
+      final URL url = FileLocator.getResource( jarPath );
+      final String key;
+      try {
+         key = loader.getClass().getName() + '|' + url.toURI() + '|' + getChecksum( url );
+      } catch ( URISyntaxException uriE ) {
+         throw new IOException( uriE );
+      }
+      final ModelEntry entry;
+      final SharedClassifier<T> classifier;
+      synchronized ( _models ) {
+         releaseCollected();
+         entry = _models.computeIfAbsent( key, k -> new ModelEntry( k, url, loader ) );
+         entry._referenceCount++;
+         classifier = new SharedClassifier<>( entry );
+         final ClassifierReference reference = new ClassifierReference( classifier, entry, _collected );
+         classifier.setReference( reference );
+         _references.add( reference );
+      }
+      if ( !lazyLoad ) {
+         try {
+            entry.getClassifier();
+         } catch ( IOException ioE ) {
+            classifier.release();
+            throw ioE;
+         }
+      }
+      return classifier;
+   }
+
+   /**
+    * Unloads models that have not been used for some time.  They are loaded again on next use.
+    * Eviction checks run in a daemon thread.  The shortest time requested by any caller is used,
+    * and the checks are rescheduled when a shorter time is requested.
+    *
+    * @param idleMinutes minutes that a model may go unused, 0 or less for no eviction
+    */
+   public void setIdleEviction( final long idleMinutes ) {
+      if ( idleMinutes <= 0 ) {
+         return;
+      }
+      final long idleMillis = TimeUnit.MINUTES.toMillis( idleMinutes );
+      synchronized ( _models ) {
+         if ( _evictionService != null && _idleMillis <= idleMillis ) {
+            return;
+         }
+         _idleMillis = idleMillis;
+         if ( _evictionService == null ) {
+            _evictionService = Executors.newSingleThreadScheduledExecutor( r -> {
+               final Thread thread = new Thread( r, "ClassifierRegistryEviction" );
+               thread.setDaemon( true );
+               return thread;
+            } );
+         }
+         if ( _evictionTask != null ) {
+            _evictionTask.cancel( false );
+         }
+         _evictionMinutes = Math.max( 1, idleMinutes / 2 );
+         _evictionTask = _evictionService.scheduleWithFixedDelay( this::evictIdle,
+               _evictionMinutes, _evictionMinutes, TimeUnit.MINUTES );
+      }
+   }
+
+   /**
+    * @return minutes between eviction checks, 0 if there is no eviction
+    */
+   long getEvictionPeriod() {
+      synchronized ( _models ) {
+         return _evictionMinutes;
+      }
+   }
+
+   /**
+    * @return number of models with references, loaded or not
+    */
+   public int getModelCount() {
+      synchronized ( _models ) {
+         releaseCollected();
+         return _models.size();
+      }
+   }
+
+   /**
+    * @return number of models that are currently loaded
+    */
+   public int getLoadedModelCount() {
+      synchronized ( _models ) {
+         releaseCollected();
+         return (int)_models.values().stream().filter( ModelEntry::isLoaded ).count();
+      }
+   }
+
+   /**
+    * Unloads models that have not been used for the idle eviction time
+    */
+   void evictIdle() {
+      final long now = System.currentTimeMillis();
+      final long idleMillis = _idleMillis;
+      final Collection<ModelEntry> entries;
+      synchronized ( _models ) {
+         releaseCollected();
+         if ( idleMillis <= 0 ) {
+            return;
+         }
+         entries = new ArrayList<>( _models.values() );
+      }
+      for ( ModelEntry entry : entries ) {
+         entry.unloadIfIdle( now, idleMillis );
+      }
+   }
+
+   /**
+    * Called by {@link SharedClassifier#release()}
+    */
+   void release( final ClassifierReference reference ) {
+      synchronized ( _models ) {
+         reference.clear();
+         if ( _references.remove( reference ) ) {
+            releaseEntry( reference._entry );
+         }
+      }
+   }
+
+   /**
+    * Releases references that were garbage collected without being released.  Call while holding the model map.
+    */
+   private void releaseCollected() {
+      ClassifierReference reference = (ClassifierReference)_collected.poll();
+      while ( reference != null ) {
+         if ( _references.remove( reference ) ) {
+            LOGGER.warn( "Classifier for " + reference._entry._url + " was not released by its annotator" );
+            releaseEntry( reference._entry );
+         }
+         reference = (ClassifierReference)_collected.poll();
+      }
+   }
+
+   /**
+    * Drops a reference to a model, and the model with its last reference.  Call while holding the model map.
+    */
+   private void releaseEntry( final ModelEntry entry ) {
+      entry._referenceCount--;
+      if ( entry._referenceCount <= 0 ) {
+         _models.remove( entry._key );
+         entry.unload();
+         LOGGER.info( "Released " + entry._url );
+      }
+   }
+
+   static private long getChecksum( final URL url ) throws IOException {
+      final CRC32 crc = new CRC32();
+      final byte[] buffer = new byte[ 65536 ];
+      try ( InputStream stream = url.openStream() ) {
+         int count = stream.read( buffer );
+         while ( count >= 0 ) {
+            crc.update( buffer, 0, count );
+            count = stream.read( buffer );
+         }
+      }
+      return crc.getValue();
+   }
+
+   static private Classifier<?> loadJarClassifier( final URL url ) throws IOException {
+      try ( InputStream stream = url.openStream() ) {
+         final JarInputStream jarStream = new JarInputStream( new BufferedInputStream( stream ) );
+         final JarClassifierBuilder<?> builder = JarClassifierBuilder.fromManifest( jarStream.getManifest() );
+         return builder.loadClassifier( jarStream );
+      }
+   }
+
+   /**
+    * Tracks a {@link SharedClassifier} until it is released or garbage collected
+    */
+   static final class ClassifierReference extends WeakReference<SharedClassifier<?>> {
+      private final ModelEntry _entry;
+
+      private ClassifierReference( final SharedClassifier<?> classifier, final ModelEntry entry,
+                                   final ReferenceQueue<SharedClassifier<?>> queue ) {
+         super( classifier, queue );
+         _entry = entry;
+      }
+   }
+
+   /**
+    * A model jar, its classifier when loaded, and the number of references to it
+    */
+   static final class ModelEntry {
+      private final String _key;
+      private final URL _url;
+      private final ClassifierLoader _loader;
+      // guarded by the registry model map
+      private int _referenceCount;
+      private volatile Classifier<?> _classifier;
+      private volatile long _lastUsed;
+
+      private ModelEntry( final String key, final URL url, final ClassifierLoader loader ) {
+         _key = key;
+         _url = url;
+         _loader = loader;
+      }
+
+      /**
+       * @return the classifier, loaded if necessary
+       * @throws IOException if the model cannot be loaded
+       */
+      Classifier<?> getClassifier() throws IOException {
+         _lastUsed = System.currentTimeMillis();
+         Classifier<?> classifier = _classifier;
+         if ( classifier != null ) {
+            return classifier;
+         }
+         synchronized ( this ) {
+            if ( _classifier == null ) {
+               final long start = System.currentTimeMillis();
+               _classifier = _loader.loadClassifier( _url );
+               LOGGER.info( "Loaded " + _url + " in " + (System.currentTimeMillis() - start) + " ms" );
+            }
+            return _classifier;
+         }
+      }
+
+      private boolean isLoaded() {
+         return _classifier != null;
+      }
+
+      private synchronized void unloadIfIdle( final long now, final long idleMillis ) {
+         if ( _classifier != null && now - _lastUsed > idleMillis ) {
+            _classifier = null;
+            LOGGER.info( "Unloaded idle " + _url );
+         }
+      }
+
+      private synchronized void unload() {
+         _classifier = null;
+      }
+   }
+
+}
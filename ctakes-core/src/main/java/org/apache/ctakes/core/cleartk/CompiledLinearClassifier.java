@@ -0,0 +1,368 @@
+package org.apache.ctakes.core.cleartk;
+
+import de.bwaldvogel.liblinear.Linear;
+import de.bwaldvogel.liblinear.Model;
+import org.apache.ctakes.core.resource.FileLocator;
+import org.apache.log4j.Logger;
+import org.cleartk.ml.CleartkProcessingException;
+import org.cleartk.ml.Classifier;
+import org.cleartk.ml.Feature;
+import org.cleartk.ml.encoder.CleartkEncoderException;
+import org.cleartk.ml.encoder.outcome.OutcomeEncoder;
+
+import java.io.*;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+
+/**
+ * Classifier for a liblinear model.jar written by ClearTK's LibLinearStringOutcomeClassifierBuilder.
+ * <p>
+ * The stock ClearTK classifier joins the name and value of every feature, looks the joined name up in a HashMap,
+ * builds a sorted map of liblinear feature nodes and then scores them.
+ * This classifier compiles the feature lexicon of the model into a {@link FeatureLexicon}
+ * and keeps the model weights in one primitive array.
+ * Features are encoded into reusable per-thread buffers, and nodes are scored in the same order with the same
+ * arithmetic as liblinear, so outcomes and scores are identical to those of the stock classifier.
+ * </p>
+ * {@link #classifyBatch(List)} classifies many instances with one set of buffers.
+ * Instances are thread safe.
+ */
+final public class CompiledLinearClassifier implements Classifier<String> {
+
+   static private final Logger LOGGER = Logger.getLogger( "CompiledLinearClassifier" );
+
+   // written by ClearTK's EncodingJarClassifierBuilder and LibLinearStringOutcomeClassifierBuilder
+   static private final String ENCODERS_ENTRY = "encoders.ser";
+   static private final String MODEL_ENTRY = "model.liblinear";
+   // private fields of ClearTK's FeatureNodeArrayEncoder, which offers no view of its lexicon
+   static private final String LEXICON_FIELD = "stringToInt";
+   static private final String BIAS_FIELD = "biasIndex";
+
+   private final FeatureLexicon _lexicon;
+   private final int _biasIndex;
+   private final int _maxIndex;
+   // the largest feature index that has weights, as in liblinear
+   private final int _featureCount;
+   // feature-major weights as in liblinear: weights for feature index i start at (i-1) * _columnCount
+   private final double[] _weights;
+   private final int _columnCount;
+   private final int _classCount;
+   private final boolean _isProbabilityModel;
+   private final String[] _outcomes;
+   private final ThreadLocal<EncodedInstance> _encodedInstance;
+
+   /**
+    * @param lexicon   encoded feature names and their liblinear feature indices
+    * @param biasIndex index of the bias feature that is added to every instance, or 0 for none
+    * @param model     liblinear model
+    * @param outcomes  outcome for each liblinear class label, in the order of the model labels
+    */
+   public CompiledLinearClassifier( final Map<String, Integer> lexicon,
+                                    final int biasIndex,
+                                    final Model model,
+                                    final String[] outcomes ) {
+      _lexicon = new FeatureLexicon( lexicon );
+      _biasIndex = biasIndex;
+      int maxIndex = biasIndex;
+      for ( int index : lexicon.values() ) {
+         maxIndex = Math.max( maxIndex, index );
+      }
+      _maxIndex = maxIndex;
+      _featureCount = model.getBias() >= 0 ? model.getNrFeature() + 1 : model.getNrFeature();
+      _weights = model.getFeatureWeights();
+      _classCount = model.getNrClass();
+      _columnCount = _featureCount == 0 ? 1 : _weights.length / _featureCount;
+      _isProbabilityModel = model.isProbabilityModel();
+      _outcomes = outcomes;
+      _encodedInstance = ThreadLocal.withInitial( () -> new EncodedInstance( _maxIndex ) );
+   }
+
+   /**
+    * @param classifierJarPath path to a liblinear model.jar file or resource
+    * @return classifier for the model
+    * @throws IOException if the jar cannot be read or does not hold a ClearTK liblinear model
+    */
+   static public CompiledLinearClassifier loadClassifier( final String classifierJarPath ) throws IOException {
+      try ( InputStream stream = FileLocator.getAsStream( classifierJarPath ) ) {
+         final CompiledLinearClassifier classifier = loadClassifier( stream );
+         LOGGER.info( "Compiled " + classifier._lexicon.size() + " features and " + classifier._classCount
+                      + " classes from " + classifierJarPath );
+         return classifier;
+      }
+   }
+
+   /**
+    * @param jarStream stream of a liblinear model.jar, not closed by this method
+    * @return classifier for the model
+    * @throws IOException if the jar cannot be read or does not hold a ClearTK liblinear model
+    */
+   static public CompiledLinearClassifier loadClassifier( final InputStream jarStream ) throws IOException {
+      final JarInputStream jarInput = new JarInputStream( new BufferedInputStream( jarStream ) );
+      Object featuresEncoder = null;
+      OutcomeEncoder<String, Integer> outcomeEncoder = null;
+      Model model = null;
+      JarEntry entry = jarInput.getNextJarEntry();
+      while ( entry != null ) {
+         if ( entry.getName().equals( ENCODERS_ENTRY ) ) {
+            final ObjectInputStream objectInput = new ObjectInputStream( new ByteArrayInputStream( readEntry( jarInput ) ) );
+            try {
+               featuresEncoder = objectInput.readObject();
+               outcomeEncoder = castOutcomeEncoder( objectInput.readObject() );
+            } catch ( ClassNotFoundException cnfE ) {
+               throw new IOException( cnfE );
+            }
+         } else if ( entry.getName().equals( MODEL_ENTRY ) ) {
+            model = Linear.loadModel(
+                  new StringReader( new String( readEntry( jarInput ), StandardCharsets.UTF_8 ) ) );
+         }
+         entry = jarInput.getNextJarEntry();
+      }
+      if ( featuresEncoder == null || model == null ) {
+         throw new IOException( "Not a ClearTK liblinear model jar, missing " + ENCODERS_ENTRY + " or " + MODEL_ENTRY );
+      }
+      final Map<String, Integer> lexicon = getFieldValue( featuresEncoder, LEXICON_FIELD, Map.class );
+      final Integer biasIndex = getFieldValue( featuresEncoder, BIAS_FIELD, Integer.class );
+      final int[] labels = model.getLabels();
+      final String[] outcomes = new String[ labels.length ];
+      try {
+         for ( int i = 0; i < labels.length; i++ ) {
+            outcomes[ i ] = outcomeEncoder.decode( labels[ i ] );
+         }
+      } catch ( CleartkEncoderException ceE ) {
+         throw new IOException( ceE );
+      }
+      return new CompiledLinearClassifier( lexicon, biasIndex, model, outcomes );
+   }
+
+   /**
+    * @return lexicon of the model
+    */
+   FeatureLexicon getLexicon() {
+      return _lexicon;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public String classify( final List<Feature> features ) throws CleartkProcessingException {
+      final EncodedInstance instance = _encodedInstance.get();
+      final double[] values = instance.getDecisionValues( Math.max( _classCount, _columnCount ) );
+      decisionValues( encode( features, instance ), values );
+      return predict( values );
+   }
+
+   /**
+    * Classifies instances with one set of buffers.
+    *
+    * @param instances features of each instance
+    * @return outcome of each instance
+    * @throws CleartkProcessingException -
+    */
+   public List<String> classifyBatch( final List<List<Feature>> instances ) throws CleartkProcessingException {
+      final EncodedInstance instance = _encodedInstance.get();
+      final double[] values = instance.getDecisionValues( Math.max( _classCount, _columnCount ) );
+      final List<String> outcomes = new ArrayList<>( instances.size() );
+      for ( List<Feature> features : instances ) {
+         decisionValues( encode( features, instance ), values );
+         outcomes.add( predict( values ) );
+      }
+      return outcomes;
+   }
+
+   /**
+    * Scores as ClearTK's liblinear classifier does: probabilities for logistic regression models,
+    * decision values for other models, and the negated decision value for the second class of binary models.
+    * {@inheritDoc}
+    */
+   @Override
+   public Map<String, Double> score( final List<Feature> features ) throws CleartkProcessingException {
+      final EncodedInstance instance = _encodedInstance.get();
+      final double[] scores = new double[ Math.max( _classCount, _columnCount ) ];
+      decisionValues( encode( features, instance ), scores );
+      if ( _isProbabilityModel ) {
+         for ( int i = 0; i < _columnCount; i++ ) {
+            scores[ i ] = 1 / (1 + Math.exp( -scores[ i ] ));
+         }
+         if ( _classCount == 2 ) {
+            scores[ 1 ] = 1. - scores[ 0 ];
+         } else {
+            double sum = 0;
+            for ( int i = 0; i < _classCount; i++ ) {
+               sum += scores[ i ];
+            }
+            for ( int i = 0; i < _classCount; i++ ) {
+               scores[ i ] = scores[ i ] / sum;
+            }
+         }
+      }
+      if ( _classCount == 2 && scores[ 1 ] == 0.0 ) {
+         scores[ 1 ] = -scores[ 0 ];
+      }
+      final Map<String, Double> scoredOutcomes = new HashMap<>( _classCount * 2 );
+      for ( int i = 0; i < _classCount; i++ ) {
+         scoredOutcomes.put( _outcomes[ i ], scores[ i ] );
+      }
+      return scoredOutcomes;
+   }
+
+   /**
+    * Encodes features as ClearTK's FeatureNodeArrayEncoder does:
+    * numeric features by name with their value, other features by name and value with a value of 1,
+    * duplicate features summed, unknown features dropped, and the bias feature always present.
+    *
+    * @return the instance, its nodes sorted by feature index
+    */
+   private EncodedInstance encode( final List<Feature> features, final EncodedInstance instance ) {
+      instance.clear();
+      if ( _biasIndex > 0 ) {
+         instance.add( _biasIndex, 1 );
+      }
+      for ( Feature feature : features ) {
+         final Object value = feature.getValue();
+         if ( value instanceof Number ) {
+            final int index = feature.getName() == null ? 0 : _lexicon.getIndex( feature.getName() );
+            if ( index > 0 ) {
+               instance.add( index, ((Number)value).doubleValue() );
+            }
+         } else {
+            final int index = _lexicon.getIndex( feature.getName(), String.valueOf( value ) );
+            if ( index > 0 ) {
+               instance.add( index, 1 );
+            }
+         }
+      }
+      instance.sort();
+      return instance;
+   }
+
+   /**
+    * Same as liblinear's Linear.predictValues
+    */
+   private void decisionValues( final EncodedInstance instance, final double[] values ) {
+      for ( int i = 0; i < _columnCount; i++ ) {
+         values[ i ] = 0;
+      }
+      final int[] indices = instance._indices;
+      final double[] nodeValues = instance._values;
+      for ( int n = 0; n < instance._size; n++ ) {
+         final int index = indices[ n ];
+         if ( index <= _featureCount ) {
+            final double value = nodeValues[ index ];
+            final int offset = (index - 1) * _columnCount;
+            for ( int i = 0; i < _columnCount; i++ ) {
+               values[ i ] += _weights[ offset + i ] * value;
+            }
+         }
+      }
+   }
+
+   /**
+    * Same as liblinear's Linear.predict for classification models
+    */
+   private String predict( final double[] values ) {
+      if ( _classCount == 2 ) {
+         return values[ 0 ] > 0 ? _outcomes[ 0 ] : _outcomes[ 1 ];
+      }
+      int maxIndex = 0;
+      for ( int i = 1; i < _classCount; i++ ) {
+         if ( values[ i ] > values[ maxIndex ] ) {
+            maxIndex = i;
+         }
+      }
+      return _outcomes[ maxIndex ];
+   }
+
+   static private byte[] readEntry( final InputStream jarInput ) throws IOException {
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      final byte[] buffer = new byte[ 8192 ];
+      int count = jarInput.read( buffer );
+      while ( count >= 0 ) {
+         bytes.write( buffer, 0, count );
+         count = jarInput.read( buffer );
+      }
+      return bytes.toByteArray();
+   }
+
+   @SuppressWarnings( "unchecked" )
+   static private OutcomeEncoder<String, Integer> castOutcomeEncoder( final Object encoder ) throws IOException {
+      if ( !(encoder instanceof OutcomeEncoder) ) {
+         throw new IOException( "Not a ClearTK outcome encoder " + encoder );
+      }
+      return (OutcomeEncoder<String, Integer>)encoder;
+   }
+
+   @SuppressWarnings( "unchecked" )
+   static private <T> T getFieldValue( final Object object, final String fieldName, final Class<? super T> type )
+         throws IOException {
+      Class<?> objectClass = object.getClass();
+      while ( objectClass != null ) {
+         try {
+            final Field field = objectClass.getDeclaredField( fieldName );
+            field.setAccessible( true );
+            final Object value = field.get( object );
+            if ( type.isInstance( value ) ) {
+               return (T)value;
+            }
+            break;
+         } catch ( NoSuchFieldException nsfE ) {
+            objectClass = objectClass.getSuperclass();
+         } catch ( IllegalAccessException iaE ) {
+            throw new IOException( iaE );
+         }
+      }
+      throw new IOException( "Unsupported features encoder " + object.getClass().getName()
+                             + ", no " + type.getSimpleName() + " " + fieldName );
+   }
+
+   /**
+    * Reusable buffers for the feature nodes of one instance.
+    * Node values are kept by feature index so that duplicate features are summed in place.
+    */
+   static private final class EncodedInstance {
+      private final double[] _values;
+      private final boolean[] _present;
+      private final int[] _indices;
+      private int _size;
+      private double[] _decisionValues = new double[ 0 ];
+
+      private EncodedInstance( final int maxIndex ) {
+         _values = new double[ maxIndex + 1 ];
+         _present = new boolean[ maxIndex + 1 ];
+         _indices = new int[ maxIndex + 1 ];
+      }
+
+      private void add( final int index, final double value ) {
+         if ( _present[ index ] ) {
+            _values[ index ] += value;
+         } else {
+            _present[ index ] = true;
+            _values[ index ] = value;
+            _indices[ _size ] = index;
+            _size++;
+         }
+      }
+
+      private void sort() {
+         Arrays.sort( _indices, 0, _size );
+      }
+
+      private void clear() {
+         for ( int i = 0; i < _size; i++ ) {
+            _present[ _indices[ i ] ] = false;
+         }
+         _size = 0;
+      }
+
+      private double[] getDecisionValues( final int count ) {
+         if ( _decisionValues.length < count ) {
+            _decisionValues = new double[ count ];
+         }
+         return _decisionValues;
+      }
+   }
+
+}
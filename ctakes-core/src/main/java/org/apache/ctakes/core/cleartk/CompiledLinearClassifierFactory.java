@@ -0,0 +1,48 @@
+package org.apache.ctakes.core.cleartk;
+
+import org.apache.uima.UimaContext;
+import org.apache.uima.fit.component.initialize.ConfigurationParameterInitializer;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.fit.factory.initializable.Initializable;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.cleartk.ml.Classifier;
+import org.cleartk.ml.ClassifierFactory;
+import org.cleartk.ml.jar.GenericJarClassifierFactory;
+
+import java.io.IOException;
+
+/**
+ * Creates a {@link CompiledLinearClassifier} for the liblinear model.jar of a ClearTK annotator.
+ * <p>
+ * Uses the same model jar parameter as {@link GenericJarClassifierFactory}.
+ * To use it with a liblinear annotator, add the parameters
+ * {@link org.cleartk.ml.CleartkAnnotator#PARAM_CLASSIFIER_FACTORY_CLASS_NAME}
+ * with the value {@code org.apache.ctakes.core.cleartk.CompiledLinearClassifierFactory}
+ * and {@link GenericJarClassifierFactory#PARAM_CLASSIFIER_JAR_PATH} with the path to the model jar.
+ * </p>
+ */
+final public class CompiledLinearClassifierFactory implements ClassifierFactory<String>, Initializable {
+
+   @ConfigurationParameter(
+         name = GenericJarClassifierFactory.PARAM_CLASSIFIER_JAR_PATH,
+         description = "Path to the liblinear model.jar file or resource"
+   )
+   private String _classifierJarPath;
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void initialize( final UimaContext context ) throws ResourceInitializationException {
+      ConfigurationParameterInitializer.initialize( this, context );
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Classifier<String> createClassifier() throws IOException {
+      return CompiledLinearClassifier.loadClassifier( _classifierJarPath );
+   }
+
+}
@@ -0,0 +1,126 @@
+package org.apache.ctakes.core.cleartk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact, read-only map of encoded feature names to feature indices.
+ * Keys are kept in an open-addressing table with linear probing, so lookups need no entry objects.
+ * <p>
+ * A ClearTK encoder names a feature with a non-numeric value by joining the feature name and value
+ * with an underscore, as {@link org.cleartk.ml.Feature#createName(String...)} does.
+ * {@link #getIndex(String, String)} finds such a feature without building the joined name.
+ * </p>
+ * Instances are immutable and thread safe.
+ */
+final public class FeatureLexicon {
+
+   static private final char NAME_DELIMITER = '_';
+
+   private final String[] _keys;
+   private final int[] _indices;
+   private final int _mask;
+   private final int _size;
+
+   /**
+    * @param lexicon map of encoded feature names to feature indices, all indices greater than zero
+    */
+   public FeatureLexicon( final Map<String, Integer> lexicon ) {
+      // keep the load factor at or below one half
+      int capacity = 2;
+      while ( capacity < lexicon.size() * 2 ) {
+         capacity <<= 1;
+      }
+      _keys = new String[ capacity ];
+      _indices = new int[ capacity ];
+      _mask = capacity - 1;
+      _size = lexicon.size();
+      for ( Map.Entry<String, Integer> entry : lexicon.entrySet() ) {
+         int slot = mix( entry.getKey().hashCode() ) & _mask;
+         while ( _keys[ slot ] != null ) {
+            slot = (slot + 1) & _mask;
+         }
+         _keys[ slot ] = entry.getKey();
+         _indices[ slot ] = entry.getValue();
+      }
+   }
+
+   /**
+    * @return number of feature names in the lexicon
+    */
+   public int size() {
+      return _size;
+   }
+
+   /**
+    * @return encoded feature names in the lexicon, in no particular order
+    */
+   List<String> getNames() {
+      final List<String> names = new ArrayList<>( _size );
+      for ( String key : _keys ) {
+         if ( key != null ) {
+            names.add( key );
+         }
+      }
+      return names;
+   }
+
+   /**
+    * @param name encoded feature name
+    * @return index of the feature, or 0 if the feature is not in the lexicon
+    */
+   public int getIndex( final String name ) {
+      int slot = mix( name.hashCode() ) & _mask;
+      String key = _keys[ slot ];
+      while ( key != null ) {
+         if ( key.equals( name ) ) {
+            return _indices[ slot ];
+         }
+         slot = (slot + 1) & _mask;
+         key = _keys[ slot ];
+      }
+      return 0;
+   }
+
+   /**
+    * @param name  feature name, may be null
+    * @param value feature value as text
+    * @return index of the feature encoded as name_value, or 0 if the feature is not in the lexicon
+    */
+   public int getIndex( final String name, final String value ) {
+      if ( name == null ) {
+         return getIndex( value );
+      }
+      // String.hashCode of the joined name, computed without joining
+      int hash = name.hashCode() * 31 + NAME_DELIMITER;
+      final int valueLength = value.length();
+      for ( int i = 0; i < valueLength; i++ ) {
+         hash = 31 * hash + value.charAt( i );
+      }
+      final int nameLength = name.length();
+      final int length = nameLength + 1 + valueLength;
+      int slot = mix( hash ) & _mask;
+      String key = _keys[ slot ];
+      while ( key != null ) {
+         if ( key.length() == length
+              && key.charAt( nameLength ) == NAME_DELIMITER
+              && key.startsWith( name )
+              && key.regionMatches( nameLength + 1, value, 0, valueLength ) ) {
+            return _indices[ slot ];
+         }
+         slot = (slot + 1) & _mask;
+         key = _keys[ slot ];
+      }
+      return 0;
+   }
+
+   /**
+    * Spreads the bits of String hash codes, which cluster for similar feature names.
+    */
+   static private int mix( final int hash ) {
+      final int h = hash * 0x9E3779B9;
+      return h ^ (h >>> 16);
+   }
+
+}
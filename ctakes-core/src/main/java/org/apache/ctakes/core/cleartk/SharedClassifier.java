@@ -0,0 +1,92 @@
+package org.apache.ctakes.core.cleartk;
+
+import org.cleartk.ml.Classifier;
+import org.cleartk.ml.CleartkProcessingException;
+import org.cleartk.ml.Feature;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A reference to a classifier held by the {@link ClassifierRegistry}.
+ * The model is loaded on first use if it is not already loaded.
+ * Call {@link #release()} when the classifier is no longer needed.
+ *
+ * @param <T> classifier outcome type
+ */
+final public class SharedClassifier<T> implements Classifier<T> {
+
+   private final ClassifierRegistry.ModelEntry _entry;
+   private ClassifierRegistry.ClassifierReference _reference;
+   private volatile boolean _released;
+
+   SharedClassifier( final ClassifierRegistry.ModelEntry entry ) {
+      _entry = entry;
+   }
+
+   /**
+    * Called by the {@link ClassifierRegistry} when the reference is acquired
+    */
+   void setReference( final ClassifierRegistry.ClassifierReference reference ) {
+      _reference = reference;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public T classify( final List<Feature> features ) throws CleartkProcessingException {
+      return getClassifier().classify( features );
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Map<T, Double> score( final List<Feature> features ) throws CleartkProcessingException {
+      return getClassifier().score( features );
+   }
+
+   /**
+    * @return the shared classifier, loaded if necessary
+    * @throws CleartkProcessingException if the reference has been released or the model cannot be loaded
+    */
+   @SuppressWarnings( "unchecked" )
+   public Classifier<T> getClassifier() throws CleartkProcessingException {
+      if ( _released ) {
+         throw new CleartkProcessingException( new IllegalStateException( "Classifier has been released" ) );
+      }
+      try {
+         return (Classifier<T>)_entry.getClassifier();
+      } catch ( IOException ioE ) {
+         throw new CleartkProcessingException( ioE );
+      }
+   }
+
+   /**
+    * Releases this reference to the model.  The model is dropped when all references have been released.
+    */
+   public void release() {
+      synchronized ( this ) {
+         if ( _released ) {
+            return;
+         }
+         _released = true;
+      }
+      ClassifierRegistry.getInstance().release( _reference );
+   }
+
+   /**
+    * Releases a classifier if it is shared through the {@link ClassifierRegistry}.
+    * Annotators that may be given a shared classifier by their classifier factory call this on destroy.
+    *
+    * @param classifier any classifier, or null
+    */
+   static public void releaseIfShared( final Classifier<?> classifier ) {
+      if ( classifier instanceof SharedClassifier ) {
+         ((SharedClassifier<?>)classifier).release();
+      }
+   }
+
+}
@@ -0,0 +1,82 @@
+package org.apache.ctakes.core.cleartk;
+
+import org.apache.uima.UimaContext;
+import org.apache.uima.fit.component.initialize.ConfigurationParameterInitializer;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.fit.factory.initializable.Initializable;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.cleartk.ml.Classifier;
+import org.cleartk.ml.ClassifierFactory;
+import org.cleartk.ml.jar.GenericJarClassifierFactory;
+
+import java.io.IOException;
+
+/**
+ * Creates classifiers that are shared through the jvm-wide {@link ClassifierRegistry}.
+ * <p>
+ * Uses the same model jar parameter as {@link GenericJarClassifierFactory}.
+ * To use it with a ClearTK annotator, add the parameter
+ * {@link org.cleartk.ml.CleartkAnnotator#PARAM_CLASSIFIER_FACTORY_CLASS_NAME}
+ * with the value {@code org.apache.ctakes.core.cleartk.SharedJarClassifierFactory}.
+ * In a piper file, {@code set classifierFactoryClassName=org.apache.ctakes.core.cleartk.SharedJarClassifierFactory}
+ * shares the models of all ClearTK annotators that follow.
+ * </p>
+ *
+ * @param <T> classifier outcome type
+ */
+final public class SharedJarClassifierFactory<T> implements ClassifierFactory<T>, Initializable {
+
+   public static final String PARAM_LAZY_LOAD = "classifierLazyLoad";
+   public static final String PARAM_IDLE_MINUTES = "classifierIdleMinutes";
+   public static final String PARAM_COMPILE_LINEAR = "classifierCompileLinear";
+
+   @ConfigurationParameter(
+         name = GenericJarClassifierFactory.PARAM_CLASSIFIER_JAR_PATH,
+         description = "Path to the model.jar file or resource"
+   )
+   private String _classifierJarPath;
+
+   @ConfigurationParameter(
+         name = PARAM_LAZY_LOAD,
+         mandatory = false,
+         description = "Load the model on first use instead of on initialization.",
+         defaultValue = "false"
+   )
+   private boolean _lazyLoad;
+
+   @ConfigurationParameter(
+         name = PARAM_IDLE_MINUTES,
+         mandatory = false,
+         description = "Unload models unused for this many minutes, to be loaded again on next use.  0 to never unload.",
+         defaultValue = "0"
+   )
+   private int _idleMinutes;
+
+   @ConfigurationParameter(
+         name = PARAM_COMPILE_LINEAR,
+         mandatory = false,
+         description = "Load liblinear models as a CompiledLinearClassifier.",
+         defaultValue = "false"
+   )
+   private boolean _compileLinear;
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void initialize( final UimaContext context ) throws ResourceInitializationException {
+      ConfigurationParameterInitializer.initialize( this, context );
+      ClassifierRegistry.getInstance().setIdleEviction( _idleMinutes );
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Classifier<T> createClassifier() throws IOException {
+      return ClassifierRegistry.getInstance().acquire( _classifierJarPath,
+            _compileLinear ? ClassifierRegistry.COMPILED_LINEAR_LOADER : ClassifierRegistry.JAR_LOADER,
+            _lazyLoad );
+   }
+
+}
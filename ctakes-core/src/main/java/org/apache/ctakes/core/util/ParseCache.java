@@ -0,0 +1,226 @@
+package org.apache.ctakes.core.util;
+
+import org.apache.ctakes.core.resource.FileLocator;
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Size-bounded, least-recently-used cache of sentence analyses keyed by the content of the sentence,
+ * usually the normalized sequence of token texts and part of speech tags.
+ * Clinical notes repeat many template sentences, and a parser can reuse the structure found for one
+ * occurrence by aligning it to the tokens of another.
+ * <p>
+ * All methods are thread safe.  Caches can be shared across annotators and threads with {@link #getSharedCache},
+ * and can be persisted between runs with {@link #save(File)} and {@link #load(File)}.
+ * </p>
+ *
+ * @param <V> compact, serializable form of a sentence analysis
+ */
+final public class ParseCache<V extends Serializable> {
+
+   static private final Logger LOGGER = Logger.getLogger( "ParseCache" );
+
+   // separates the parts of a key.  Not expected in token text or tags.
+   static private final char KEY_DELIMITER = '\u0001';
+
+   static private final Map<String, ParseCache<?>> SHARED_CACHES = new ConcurrentHashMap<>();
+
+   private final String _name;
+   private final int _maxSize;
+   private final Map<String, V> _cache;
+   private final AtomicLong _hits = new AtomicLong();
+   private final AtomicLong _misses = new AtomicLong();
+
+   /**
+    * @param name    name of the cache, used for logging
+    * @param maxSize maximum number of sentence analyses to keep
+    */
+   public ParseCache( final String name, final int maxSize ) {
+      _name = name;
+      _maxSize = maxSize;
+      _cache = new LinkedHashMap<String, V>( Math.min( maxSize, 1024 ), 0.75f, true ) {
+         @Override
+         protected boolean removeEldestEntry( final Map.Entry<String, V> eldest ) {
+            return size() > _maxSize;
+         }
+      };
+   }
+
+   /**
+    * @param name    name of the cache shared across the jvm
+    * @param maxSize maximum number of sentence analyses to keep if the cache does not already exist
+    * @param <V>     compact, serializable form of a sentence analysis
+    * @return the cache with the given name, created if necessary
+    */
+   @SuppressWarnings( "unchecked" )
+   static public <V extends Serializable> ParseCache<V> getSharedCache( final String name, final int maxSize ) {
+      return (ParseCache<V>)SHARED_CACHES.computeIfAbsent( name, n -> new ParseCache<V>( n, maxSize ) );
+   }
+
+   /**
+    * A cache is keyed by sentence content only, so annotators must put the identity of their model
+    * in the name of a shared cache.  Otherwise a pipeline with a different model, or a run after a model
+    * upgrade, would be served the analyses of another model.
+    *
+    * @param modelPath location of the model, as given to {@link FileLocator}
+    * @param options   parser settings other than the model that change the analysis
+    * @return the model path, a checksum of the model contents and the options
+    * @throws IOException if the model cannot be read
+    */
+   static public String createModelId( final String modelPath, final String... options ) throws IOException {
+      final CRC32 crc = new CRC32();
+      long length = 0;
+      try ( InputStream stream = FileLocator.getAsStream( modelPath ) ) {
+         final byte[] buffer = new byte[ 64 * 1024 ];
+         int read;
+         while ( (read = stream.read( buffer )) >= 0 ) {
+            crc.update( buffer, 0, read );
+            length += read;
+         }
+      }
+      final StringBuilder sb = new StringBuilder( modelPath );
+      sb.append( '#' ).append( length ).append( '-' ).append( Long.toHexString( crc.getValue() ) );
+      for ( String option : options ) {
+         sb.append( ';' ).append( option );
+      }
+      return sb.toString();
+   }
+
+   /**
+    * @param parts texts, tags or other sentence content that determine the analysis
+    * @return a key for the content
+    */
+   static public String createKey( final Collection<String> parts ) {
+      final StringBuilder sb = new StringBuilder();
+      for ( String part : parts ) {
+         sb.append( part ).append( KEY_DELIMITER );
+      }
+      return sb.toString();
+   }
+
+   /**
+    * @param key content key for a sentence
+    * @return the cached analysis for the sentence, or null if there is none
+    */
+   public V get( final String key ) {
+      final V value;
+      synchronized ( _cache ) {
+         value = _cache.get( key );
+      }
+      if ( value == null ) {
+         _misses.incrementAndGet();
+      } else {
+         _hits.incrementAndGet();
+      }
+      return value;
+   }
+
+   /**
+    * @param key   content key for a sentence
+    * @param value analysis of the sentence
+    */
+   public void put( final String key, final V value ) {
+      synchronized ( _cache ) {
+         _cache.put( key, value );
+      }
+   }
+
+   /**
+    * @return number of cached analyses
+    */
+   public int size() {
+      synchronized ( _cache ) {
+         return _cache.size();
+      }
+   }
+
+   public long getHitCount() {
+      return _hits.get();
+   }
+
+   public long getMissCount() {
+      return _misses.get();
+   }
+
+   /**
+    * @return fraction of lookups that found a cached analysis, 0 if there have been no lookups
+    */
+   public double getHitRate() {
+      final long hits = _hits.get();
+      final long total = hits + _misses.get();
+      return total == 0 ? 0 : (double)hits / total;
+   }
+
+   /**
+    * Logs the hit rate and size of the cache
+    */
+   public void logStatistics() {
+      LOGGER.info( toString() );
+   }
+
+   /**
+    * Writes the name of the cache and all cached analyses to a gzipped file, least recently used first.
+    *
+    * @param file -
+    * @throws IOException if the file cannot be written
+    */
+   public void save( final File file ) throws IOException {
+      final LinkedHashMap<String, V> copy;
+      synchronized ( _cache ) {
+         copy = new LinkedHashMap<>( _cache );
+      }
+      try ( ObjectOutputStream out = new ObjectOutputStream(
+            new BufferedOutputStream( new GZIPOutputStream( new FileOutputStream( file ) ) ) ) ) {
+         out.writeObject( _name );
+         out.writeObject( copy );
+      }
+      LOGGER.info( "Saved " + copy.size() + " " + _name + " entries to " + file.getPath() );
+   }
+
+   /**
+    * Adds the analyses in a file written by {@link #save(File)} to the cache.  Does nothing if the file does not exist,
+    * or if it was written by a cache with a different name, e.g. for another model.
+    *
+    * @param file -
+    * @throws IOException if the file exists but cannot be read
+    */
+   @SuppressWarnings( "unchecked" )
+   public void load( final File file ) throws IOException {
+      if ( !file.isFile() ) {
+         return;
+      }
+      final Map<String, V> stored;
+      try ( ObjectInputStream in = new ObjectInputStream(
+            new BufferedInputStream( new GZIPInputStream( new FileInputStream( file ) ) ) ) ) {
+         final Object name = in.readObject();
+         if ( !_name.equals( name ) ) {
+            LOGGER.warn( "Ignoring " + file.getPath() + ", it was not written by " + _name );
+            return;
+         }
+         stored = (Map<String, V>)in.readObject();
+      } catch ( ClassNotFoundException cnfE ) {
+         throw new IOException( cnfE );
+      }
+      synchronized ( _cache ) {
+         _cache.putAll( stored );
+      }
+      LOGGER.info( "Loaded " + stored.size() + " " + _name + " entries from " + file.getPath() );
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public String toString() {
+      return String.format( "%s: %d entries, %d hits, %d misses, hit rate %.3f",
+            _name, size(), getHitCount(), getMissCount(), getHitRate() );
+   }
+
+}
@@ -0,0 +1,133 @@
+package org.apache.ctakes.core.cleartk;
+
+import org.cleartk.ml.Classifier;
+import org.cleartk.ml.Feature;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ClassifierRegistryTest {
+
+   @Rule
+   public TemporaryFolder _tempFolder = new TemporaryFolder();
+
+   private final AtomicInteger _loadCount = new AtomicInteger();
+
+   private final ClassifierRegistry.ClassifierLoader _loader = url -> {
+      _loadCount.incrementAndGet();
+      final String outcome = new String( Files.readAllBytes( new File( url.getPath() ).toPath() ),
+            StandardCharsets.UTF_8 );
+      return new ConstantClassifier( outcome );
+   };
+
+   @Test
+   public void testModelIsShared() throws Exception {
+      final File jar = createJar( "model.jar", "negated" );
+      final SharedClassifier<String> first = ClassifierRegistry.getInstance().acquire( jar.getPath(), _loader, false );
+      final SharedClassifier<String> second = ClassifierRegistry.getInstance().acquire( jar.getPath(), _loader, false );
+      assertEquals( 1, _loadCount.get() );
+      assertSame( first.getClassifier(), second.getClassifier() );
+      assertEquals( "negated", second.classify( Collections.emptyList() ) );
+      first.release();
+      second.release();
+   }
+
+   @Test
+   public void testLazyLoad() throws Exception {
+      final File jar = createJar( "lazy.jar", "uncertain" );
+      final SharedClassifier<String> classifier = ClassifierRegistry.getInstance().acquire( jar.getPath(), _loader, true );
+      assertEquals( 0, _loadCount.get() );
+      assertEquals( "uncertain", classifier.classify( Collections.emptyList() ) );
+      assertEquals( 1, _loadCount.get() );
+      classifier.release();
+   }
+
+   @Test
+   public void testReleaseDropsModel() throws Exception {
+      final File jar = createJar( "release.jar", "generic" );
+      final int modelCount = ClassifierRegistry.getInstance().getModelCount();
+      final SharedClassifier<String> first = ClassifierRegistry.getInstance().acquire( jar.getPath(), _loader, false );
+      final SharedClassifier<String> second = ClassifierRegistry.getInstance().acquire( jar.getPath(), _loader, false );
+      assertEquals( modelCount + 1, ClassifierRegistry.getInstance().getModelCount() );
+      first.release();
+      first.release();
+      assertEquals( modelCount + 1, ClassifierRegistry.getInstance().getModelCount() );
+      second.release();
+      assertEquals( modelCount, ClassifierRegistry.getInstance().getModelCount() );
+      final SharedClassifier<String> third = ClassifierRegistry.getInstance().acquire( jar.getPath(), _loader, false );
+      assertEquals( 2, _loadCount.get() );
+      third.release();
+   }
+
+   @Test
+   public void testChangedModelIsNotShared() throws Exception {
+      final File jar = createJar( "changed.jar", "history" );
+      final SharedClassifier<String> first = ClassifierRegistry.getInstance().acquire( jar.getPath(), _loader, false );
+      Files.write( jar.toPath(), "subject".getBytes( StandardCharsets.UTF_8 ) );
+      final SharedClassifier<String> second = ClassifierRegistry.getInstance().acquire( jar.getPath(), _loader, false );
+      assertEquals( 2, _loadCount.get() );
+      assertEquals( "history", first.classify( Collections.emptyList() ) );
+      assertEquals( "subject", second.classify( Collections.emptyList() ) );
+      first.release();
+      second.release();
+   }
+
+   @Test
+   public void testUnreleasedReferenceIsReleased() throws Exception {
+      final File jar = createJar( "unreleased.jar", "conditional" );
+      final int modelCount = ClassifierRegistry.getInstance().getModelCount();
+      ClassifierRegistry.getInstance().acquire( jar.getPath(), _loader, false );
+      assertEquals( modelCount + 1, ClassifierRegistry.getInstance().getModelCount() );
+      for ( int i = 0; i < 100 && ClassifierRegistry.getInstance().getModelCount() > modelCount; i++ ) {
+         System.gc();
+         Thread.sleep( 10 );
+      }
+      assertEquals( modelCount, ClassifierRegistry.getInstance().getModelCount() );
+   }
+
+   @Test
+   public void testShorterIdleTimeReschedules() {
+      ClassifierRegistry.getInstance().setIdleEviction( 600 );
+      assertEquals( 300, ClassifierRegistry.getInstance().getEvictionPeriod() );
+      ClassifierRegistry.getInstance().setIdleEviction( 900 );
+      assertEquals( 300, ClassifierRegistry.getInstance().getEvictionPeriod() );
+      ClassifierRegistry.getInstance().setIdleEviction( 120 );
+      assertEquals( 60, ClassifierRegistry.getInstance().getEvictionPeriod() );
+   }
+
+   private File createJar( final String name, final String outcome ) throws IOException {
+      final File jar = _tempFolder.newFile( name );
+      Files.write( jar.toPath(), outcome.getBytes( StandardCharsets.UTF_8 ) );
+      return jar;
+   }
+
+   static private final class ConstantClassifier implements Classifier<String> {
+      private final String _outcome;
+
+      private ConstantClassifier( final String outcome ) {
+         _outcome = outcome;
+      }
+
+      @Override
+      public String classify( final List<Feature> features ) {
+         return _outcome;
+      }
+
+      @Override
+      public Map<String, Double> score( final List<Feature> features ) {
+         return Collections.singletonMap( _outcome, 1.0 );
+      }
+   }
+
+}
@@ -0,0 +1,116 @@
+package org.apache.ctakes.core.cleartk;
+
+import org.cleartk.ml.Classifier;
+import org.cleartk.ml.Feature;
+import org.cleartk.ml.jar.JarClassifierBuilder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the stock ClearTK liblinear classifier of a model with a {@link CompiledLinearClassifier}.
+ * Instances are built from random features of the model lexicon.
+ * Prints the number of differing outcomes and the time taken by each classifier.
+ * <p>
+ * Usage: CompiledLinearClassifierBenchmark trainingDirectory [instanceCount] [featuresPerInstance]
+ * where the training directory holds a liblinear model.jar.
+ * </p>
+ * This is a command line tool run from {@link #main(String...)}, not a unit test, and is not run by the build.
+ * Equivalence with the stock classifier is tested by {@link CompiledLinearClassifierTest}.
+ */
+final public class CompiledLinearClassifierBenchmark {
+
+   static private final int WARMUP_ROUNDS = 3;
+   static private final int ROUNDS = 5;
+
+   private CompiledLinearClassifierBenchmark() {
+   }
+
+   @SuppressWarnings( "unchecked" )
+   public static void main( final String... args ) throws Exception {
+      if ( args.length < 1 ) {
+         System.err.println( "Usage: CompiledLinearClassifierBenchmark trainingDirectory [instanceCount] [featuresPerInstance]" );
+         System.exit( 1 );
+      }
+      final File directory = new File( args[ 0 ] );
+      final int instanceCount = args.length > 1 ? Integer.parseInt( args[ 1 ] ) : 10000;
+      final int featureCount = args.length > 2 ? Integer.parseInt( args[ 2 ] ) : 60;
+      final Classifier<String> stock
+            = (Classifier<String>)JarClassifierBuilder.loadClassifierFromTrainingDirectory( directory );
+      final CompiledLinearClassifier compiled
+            = CompiledLinearClassifier.loadClassifier( new File( directory, "model.jar" ).getPath() );
+      final List<List<Feature>> instances = createInstances( compiled.getLexicon().getNames(),
+            instanceCount, featureCount );
+
+      int differences = 0;
+      final List<String> batch = compiled.classifyBatch( instances );
+      for ( int i = 0; i < instances.size(); i++ ) {
+         if ( !stock.classify( instances.get( i ) ).equals( batch.get( i ) ) ) {
+            differences++;
+         }
+      }
+      System.out.println( "Differing outcomes: " + differences + " of " + instances.size() );
+
+      for ( int i = 0; i < WARMUP_ROUNDS; i++ ) {
+         timeStock( stock, instances );
+         timeCompiled( compiled, instances );
+      }
+      long stockNanos = 0;
+      long compiledNanos = 0;
+      for ( int i = 0; i < ROUNDS; i++ ) {
+         stockNanos += timeStock( stock, instances );
+         compiledNanos += timeCompiled( compiled, instances );
+      }
+      final double instancesTimed = (double)ROUNDS * instances.size();
+      System.out.println( String.format( "Stock encoder:       %.2f microseconds per instance",
+            stockNanos / instancesTimed / 1000 ) );
+      System.out.println( String.format( "Compiled classifier: %.2f microseconds per instance",
+            compiledNanos / instancesTimed / 1000 ) );
+   }
+
+   static private long timeStock( final Classifier<String> classifier, final List<List<Feature>> instances )
+         throws Exception {
+      final long start = System.nanoTime();
+      for ( List<Feature> features : instances ) {
+         classifier.classify( features );
+      }
+      return System.nanoTime() - start;
+   }
+
+   static private long timeCompiled( final CompiledLinearClassifier classifier, final List<List<Feature>> instances )
+         throws Exception {
+      final long start = System.nanoTime();
+      classifier.classifyBatch( instances );
+      return System.nanoTime() - start;
+   }
+
+   /**
+    * Splits lexicon names into feature name and value at the last underscore.
+    * Some random features are not in the lexicon, as in real data.
+    */
+   static private List<List<Feature>> createInstances( final List<String> names,
+                                                       final int instanceCount,
+                                                       final int featureCount ) {
+      final Random random = new Random( 0 );
+      final List<List<Feature>> instances = new ArrayList<>( instanceCount );
+      for ( int i = 0; i < instanceCount; i++ ) {
+         final List<Feature> features = new ArrayList<>( featureCount );
+         for ( int j = 0; j < featureCount; j++ ) {
+            final String name = names.get( random.nextInt( names.size() ) );
+            final int split = name.lastIndexOf( '_' );
+            if ( split <= 0 ) {
+               features.add( new Feature( name, 1 ) );
+            } else if ( random.nextInt( 10 ) == 0 ) {
+               features.add( new Feature( name.substring( 0, split ), "unseen" + j ) );
+            } else {
+               features.add( new Feature( name.substring( 0, split ), name.substring( split + 1 ) ) );
+            }
+         }
+         instances.add( features );
+      }
+      return instances;
+   }
+
+}
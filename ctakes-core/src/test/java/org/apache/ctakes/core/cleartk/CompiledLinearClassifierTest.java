@@ -0,0 +1,158 @@
+package org.apache.ctakes.core.cleartk;
+
+import de.bwaldvogel.liblinear.Linear;
+import org.cleartk.ml.Classifier;
+import org.cleartk.ml.Feature;
+import org.cleartk.ml.Instance;
+import org.cleartk.ml.jar.JarClassifierBuilder;
+import org.cleartk.ml.liblinear.LibLinearStringOutcomeDataWriter;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the {@link CompiledLinearClassifier} of a model.jar packaged by ClearTK with ClearTK's own liblinear
+ * classifier for the same jar.
+ */
+public class CompiledLinearClassifierTest {
+
+   static private final String[] CUES = { "no", "denies", "possible", "likely", "has", "with" };
+   static private final String[] WORDS = { "pain", "chest", "fever", "cough", "rash" };
+
+   @Rule
+   public TemporaryFolder _tempFolder = new TemporaryFolder();
+
+   @BeforeClass
+   static public void disableLiblinearOutput() {
+      Linear.disableDebugOutput();
+   }
+
+   @Test
+   public void testLexiconJoinsNameAndValue() {
+      final Map<String, Integer> lexicon = new HashMap<>();
+      lexicon.put( "Preceding_no", 2 );
+      lexicon.put( "Preceding_possible", 4 );
+      lexicon.put( "Covered_pain", 5 );
+      lexicon.put( "TokenCount", 6 );
+      final FeatureLexicon featureLexicon = new FeatureLexicon( lexicon );
+      assertEquals( 4, featureLexicon.size() );
+      assertEquals( 2, featureLexicon.getIndex( "Preceding", "no" ) );
+      assertEquals( 2, featureLexicon.getIndex( "Preceding_no" ) );
+      assertEquals( 5, featureLexicon.getIndex( "Covered", "pain" ) );
+      assertEquals( 6, featureLexicon.getIndex( "TokenCount" ) );
+      assertEquals( 0, featureLexicon.getIndex( "Preceding", "n" ) );
+      assertEquals( 0, featureLexicon.getIndex( "Precedin", "g_no" ) );
+      assertEquals( 0, featureLexicon.getIndex( "Following", "no" ) );
+      assertEquals( 4, featureLexicon.getIndex( null, "Preceding_possible" ) );
+   }
+
+   @Test
+   public void testMultiClassMatchesClearTK() throws Exception {
+      assertMatchesClearTK( "1", "negated", "uncertain", "present" );
+   }
+
+   @Test
+   public void testBinaryMatchesClearTK() throws Exception {
+      assertMatchesClearTK( "1", "negated", "present" );
+   }
+
+   @Test
+   public void testLogisticMatchesClearTK() throws Exception {
+      assertMatchesClearTK( "0", "negated", "uncertain", "present" );
+   }
+
+   @Test
+   public void testBinaryLogisticMatchesClearTK() throws Exception {
+      assertMatchesClearTK( "0", "negated", "present" );
+   }
+
+   @Test( expected = IOException.class )
+   public void testRejectsJarWithoutModel() throws Exception {
+      final File directory = _tempFolder.newFolder();
+      final File jar = new File( directory, "model.jar" );
+      new JarOutputStream( new FileOutputStream( jar ) ).close();
+      CompiledLinearClassifier.loadClassifier( jar.getPath() );
+   }
+
+   /**
+    * Writes training data with ClearTK's liblinear data writer, trains and packages a model.jar,
+    * and checks that outcomes and scores of the compiled classifier equal those of the stock classifier.
+    *
+    * @param solver   liblinear solver type
+    * @param outcomes outcomes of the training instances
+    */
+   @SuppressWarnings( "unchecked" )
+   private void assertMatchesClearTK( final String solver, final String... outcomes ) throws Exception {
+      final File directory = _tempFolder.newFolder();
+      final Random random = new Random( 11 );
+      final LibLinearStringOutcomeDataWriter dataWriter = new LibLinearStringOutcomeDataWriter( directory );
+      for ( int i = 0; i < 300; i++ ) {
+         final int outcome = i % outcomes.length;
+         final List<Feature> features = createFeatures( random, 4 );
+         // a cue that mostly predicts the outcome, so that the weights are not trivial
+         if ( random.nextInt( 5 ) > 0 ) {
+            features.add( new Feature( "Preceding", CUES[ outcome ] ) );
+         }
+         dataWriter.write( new Instance<>( outcomes[ outcome ], features ) );
+      }
+      dataWriter.finish();
+      JarClassifierBuilder.trainAndPackage( directory, "-s", solver, "-c", "1" );
+
+      final Classifier<String> stock
+            = (Classifier<String>)JarClassifierBuilder.loadClassifierFromTrainingDirectory( directory );
+      final CompiledLinearClassifier compiled
+            = CompiledLinearClassifier.loadClassifier( new File( directory, "model.jar" ).getPath() );
+
+      // features that were never seen in training are dropped by both classifiers
+      final List<List<Feature>> instances = new ArrayList<>();
+      for ( int i = 0; i < 200; i++ ) {
+         final List<Feature> features = createFeatures( random, 6 );
+         if ( random.nextBoolean() ) {
+            features.add( new Feature( "Unseen", "feature" ) );
+         }
+         instances.add( features );
+      }
+      instances.add( Collections.emptyList() );
+      final List<String> batch = compiled.classifyBatch( instances );
+      for ( int i = 0; i < instances.size(); i++ ) {
+         final String outcome = stock.classify( instances.get( i ) );
+         assertEquals( outcome, compiled.classify( instances.get( i ) ) );
+         assertEquals( outcome, batch.get( i ) );
+         final Map<String, Double> scores = stock.score( instances.get( i ) );
+         final Map<String, Double> compiledScores = compiled.score( instances.get( i ) );
+         assertEquals( scores.keySet(), compiledScores.keySet() );
+         for ( Map.Entry<String, Double> score : scores.entrySet() ) {
+            assertEquals( score.getValue(), compiledScores.get( score.getKey() ), 0 );
+         }
+      }
+   }
+
+   /**
+    * @return string features, sometimes repeated, and sometimes a numeric feature
+    */
+   static private List<Feature> createFeatures( final Random random, final int maxCount ) {
+      final List<Feature> features = new ArrayList<>();
+      final int count = random.nextInt( maxCount + 1 );
+      for ( int j = 0; j < count; j++ ) {
+         if ( random.nextBoolean() ) {
+            features.add( new Feature( "Preceding", CUES[ random.nextInt( CUES.length ) ] ) );
+         } else {
+            features.add( new Feature( "Covered", WORDS[ random.nextInt( WORDS.length ) ] ) );
+         }
+      }
+      if ( random.nextBoolean() ) {
+         features.add( new Feature( "TokenCount", random.nextInt( 4 ) ) );
+      }
+      return features;
+   }
+
+}
@@ -0,0 +1,97 @@
+package org.apache.ctakes.core.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ParseCacheTest {
+
+   @Rule
+   public TemporaryFolder _tempFolder = new TemporaryFolder();
+
+   @Test
+   public void testHitsAndMisses() {
+      final ParseCache<String> cache = new ParseCache<>( "test", 10 );
+      final String key = ParseCache.createKey( Arrays.asList( "Patient", "denies", "chest", "pain", "." ) );
+      assertNull( cache.get( key ) );
+      cache.put( key, "(S ...)" );
+      assertEquals( "(S ...)", cache.get( key ) );
+      assertEquals( 1, cache.getHitCount() );
+      assertEquals( 1, cache.getMissCount() );
+      assertEquals( 0.5, cache.getHitRate(), 0.0001 );
+   }
+
+   @Test
+   public void testKeyPartsAreDelimited() {
+      assertNotEquals( ParseCache.createKey( Arrays.asList( "ab", "c" ) ),
+            ParseCache.createKey( Arrays.asList( "a", "bc" ) ) );
+   }
+
+   @Test
+   public void testLeastRecentlyUsedEviction() {
+      final ParseCache<String> cache = new ParseCache<>( "test", 2 );
+      cache.put( "a", "A" );
+      cache.put( "b", "B" );
+      cache.get( "a" );
+      cache.put( "c", "C" );
+      assertEquals( 2, cache.size() );
+      assertEquals( "A", cache.get( "a" ) );
+      assertNull( cache.get( "b" ) );
+      assertEquals( "C", cache.get( "c" ) );
+   }
+
+   @Test
+   public void testSaveAndLoad() throws IOException {
+      final File file = new File( _tempFolder.getRoot(), "parse.cache.gz" );
+      final ParseCache<String> cache = new ParseCache<>( "test", 10 );
+      cache.put( "a", "A" );
+      cache.put( "b", "B" );
+      cache.save( file );
+      final ParseCache<String> loaded = new ParseCache<>( "test", 10 );
+      loaded.load( file );
+      assertEquals( 2, loaded.size() );
+      assertEquals( "B", loaded.get( "b" ) );
+   }
+
+   @Test
+   public void testLoadIgnoresOtherCache() throws IOException {
+      final File file = new File( _tempFolder.getRoot(), "parse.cache.gz" );
+      final ParseCache<String> cache = new ParseCache<>( "test:model-1", 10 );
+      cache.put( "a", "A" );
+      cache.save( file );
+      final ParseCache<String> loaded = new ParseCache<>( "test:model-2", 10 );
+      loaded.load( file );
+      assertEquals( 0, loaded.size() );
+   }
+
+   @Test
+   public void testModelId() throws IOException {
+      final File model1 = _tempFolder.newFile( "model1.bin" );
+      final File model2 = _tempFolder.newFile( "model2.bin" );
+      try ( FileOutputStream out = new FileOutputStream( model1 ) ) {
+         out.write( new byte[]{ 1, 2, 3 } );
+      }
+      try ( FileOutputStream out = new FileOutputStream( model2 ) ) {
+         out.write( new byte[]{ 1, 2, 4 } );
+      }
+      final String id1 = ParseCache.createModelId( model1.getPath(), "beam=20" );
+      assertEquals( id1, ParseCache.createModelId( model1.getPath(), "beam=20" ) );
+      assertNotEquals( id1, ParseCache.createModelId( model1.getPath(), "beam=10" ) );
+      assertNotEquals( ParseCache.createModelId( model1.getPath() ),
+            ParseCache.createModelId( model2.getPath() ).replace( model2.getPath(), model1.getPath() ) );
+   }
+
+   @Test
+   public void testSharedCache() {
+      final ParseCache<String> cache = ParseCache.getSharedCache( "ParseCacheTest", 10 );
+      assertSame( cache, ParseCache.getSharedCache( "ParseCacheTest", 100 ) );
+   }
+
+}
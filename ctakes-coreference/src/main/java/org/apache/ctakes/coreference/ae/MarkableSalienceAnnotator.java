@@ -1,5 +1,6 @@
 package org.apache.ctakes.coreference.ae;
 
+import org.apache.ctakes.core.cleartk.SharedClassifier;
 import org.apache.ctakes.core.pipeline.PipeBitInfo;
 import org.apache.ctakes.coreference.ae.features.salience.ClinicalFeatureExtractor;
 import org.apache.ctakes.coreference.ae.features.salience.GrammaticalRoleFeatureExtractor;
@@ -98,4 +99,10 @@ public class MarkableSalienceAnnotator extends CleartkAnnotator<Boolean> {
     }
     LOGGER.info( "Finished." );
   }
+
+  @Override
+  public void destroy() {
+    SharedClassifier.releaseIfShared( this.classifier );
+    super.destroy();
+  }
 }
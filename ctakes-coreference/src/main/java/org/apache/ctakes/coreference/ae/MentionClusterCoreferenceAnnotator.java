@@ -1,6 +1,7 @@
 package org.apache.ctakes.coreference.ae;
 
 import org.apache.ctakes.core.ae.NamedEngine;
+import org.apache.ctakes.core.cleartk.SharedClassifier;
 import org.apache.ctakes.core.patient.PatientViewUtil;
 import org.apache.ctakes.core.pipeline.PipeBitInfo;
 import org.apache.ctakes.core.util.DotLogger;
@@ -582,4 +583,9 @@ public class MentionClusterCoreferenceAnnotator extends CleartkAnnotator<String>
     return scoreMap;
   }
 
+  @Override
+  public void destroy() {
+    SharedClassifier.releaseIfShared( this.classifier );
+    super.destroy();
+  }
 }
@@ -1,5 +1,6 @@
 package org.apache.ctakes.coreference.ae;
 
+import org.apache.ctakes.core.cleartk.SharedClassifier;
 import org.apache.ctakes.core.pipeline.PipeBitInfo;
 import org.apache.ctakes.core.util.ListFactory;
 import org.apache.ctakes.coreference.ae.features.cluster.*;
@@ -656,4 +657,9 @@ public class MentionClusterRankingCoreferenceAnnotator extends CleartkAnnotator<
 //    }
 //  }
 
+  @Override
+  public void destroy() {
+    SharedClassifier.releaseIfShared(this.classifier);
+    super.destroy();
+  }
 }
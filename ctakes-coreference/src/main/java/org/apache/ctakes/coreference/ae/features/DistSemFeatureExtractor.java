@@ -29,7 +29,7 @@ public class DistSemFeatureExtractor implements RelationFeaturesExtractor<Identi
   private WordEmbeddings words = null;
   
   public DistSemFeatureExtractor() throws FileNotFoundException, IOException{
-    words = WordVectorReader.getEmbeddings(FileLocator.getAsStream("org/apache/ctakes/coreference/distsem/mimic_vectors.txt"));
+    words = WordVectorReader.getSharedEmbeddings(FileLocator.getFile("org/apache/ctakes/coreference/distsem/mimic_vectors.txt"));
   }
   
   @Override
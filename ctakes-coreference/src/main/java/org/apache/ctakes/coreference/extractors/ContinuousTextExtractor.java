@@ -26,7 +26,7 @@ public class ContinuousTextExtractor implements NamedFeatureExtractor1<BaseToken
   public ContinuousTextExtractor(String vecFile) throws CleartkExtractorException {
     super();
     try {
-      words = WordVectorReader.getEmbeddings(FileLocator.getAsStream(vecFile));
+      words = WordVectorReader.getSharedEmbeddings(FileLocator.getFile(vecFile));
     } catch (IOException e) {
       e.printStackTrace();
       throw new CleartkExtractorException(e);
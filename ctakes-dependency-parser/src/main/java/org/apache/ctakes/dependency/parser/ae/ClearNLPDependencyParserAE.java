@@ -25,9 +25,11 @@ import com.googlecode.clearnlp.dependency.DEPTree;
 import com.googlecode.clearnlp.morphology.AbstractMPAnalyzer;
 import com.googlecode.clearnlp.reader.AbstractReader;
 import org.apache.ctakes.core.pipeline.PipeBitInfo;
+import org.apache.ctakes.core.util.ParseCache;
 import org.apache.ctakes.dependency.parser.ae.shared.DependencySharedModel;
 import org.apache.ctakes.dependency.parser.ae.shared.LemmatizerSharedModel;
 import org.apache.ctakes.dependency.parser.util.ClearDependencyUtility;
+import org.apache.ctakes.dependency.parser.util.CompactDependencyTree;
 import org.apache.ctakes.dependency.parser.util.DependencyUtility;
 import org.apache.ctakes.typesystem.type.syntax.BaseToken;
 import org.apache.ctakes.typesystem.type.syntax.ConllDependencyNode;
@@ -48,6 +50,8 @@ import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ExternalResourceDescription;
 import org.apache.uima.resource.ResourceInitializationException;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -135,8 +139,27 @@ public class ClearNLPDependencyParserAE extends JCasAnnotator_ImplBase {
    @ExternalResource( key = LEM_MODEL_KEY, mandatory = false )
    private LemmatizerSharedModel lemmatizerModel = null;
 
+   public static final String PARAM_CACHE_SIZE = "ParseCacheSize";
+   @ConfigurationParameter(
+         name = PARAM_CACHE_SIZE,
+         mandatory = false,
+         defaultValue = "0",
+         description = "Maximum number of sentence parses to cache for reuse by repeated sentences.  0 disables the cache." )
+   private int cacheSize;
+
+   public static final String PARAM_CACHE_FILE = "ParseCacheFile";
+   @ConfigurationParameter(
+         name = PARAM_CACHE_FILE,
+         mandatory = false,
+         description = "File from which the parse cache is loaded at startup and to which it is saved when the collection is complete." )
+   private String cacheFile;
+
+   // parsers in one jvm with the same model share a single cache
+   static private final String CACHE_NAME = "DependencyParseCache";
+
    protected AbstractComponent parser = null;
    protected AbstractMPAnalyzer lemmatizer = null;
+   private ParseCache<CompactDependencyTree> parseCache = null;
 
    @Override
    public void initialize( UimaContext context ) throws ResourceInitializationException {
@@ -166,6 +189,20 @@ public class ClearNLPDependencyParserAE extends JCasAnnotator_ImplBase {
       } else {
          this.parser = parserModel.getParser();
       }
+      if ( cacheSize > 0 ) {
+         // lemmas and tags are part of the cache key, only the parser model needs to be in the name
+         final String modelPath = parserModel == null ? parserModelPath : parserModel.getModelPath();
+         try {
+            parseCache = ParseCache.getSharedCache( CACHE_NAME + ":"
+                  + ParseCache.createModelId( modelPath, "language=" + DependencySharedModel.DEFAULT_LANGUAGE ),
+                  cacheSize );
+            if ( cacheFile != null && !cacheFile.isEmpty() ) {
+               parseCache.load( new File( cacheFile ) );
+            }
+         } catch ( IOException ioE ) {
+            throw new ResourceInitializationException( ioE );
+         }
+      }
    }
 
    @Override
@@ -192,9 +229,18 @@ public class ClearNLPDependencyParserAE extends JCasAnnotator_ImplBase {
             tree.add( node );
          }
 
+         // Reuse the arcs of an identical sentence if one has been parsed
+         final String cacheKey = parseCache == null ? null : CompactDependencyTree.createCacheKey( tree );
+         final CompactDependencyTree cached = cacheKey == null ? null : parseCache.get( cacheKey );
+
          // Run parser and convert output back to CAS friendly data types
          synchronized(LOCK){
-           parser.process( tree );
+           if ( cached == null || !cached.applyTo( tree ) ) {
+             parser.process( tree );
+             if ( parseCache != null ) {
+               parseCache.put( cacheKey, CompactDependencyTree.createCompactTree( tree ) );
+             }
+           }
            ArrayList<ConllDependencyNode> nodes = ClearDependencyUtility.convert( jCas, tree, sentence, printableTokens );
            DependencyUtility.addToIndexes( jCas, nodes );
          }
@@ -202,6 +248,22 @@ public class ClearNLPDependencyParserAE extends JCasAnnotator_ImplBase {
       LOGGER.info( "Dependency parser ending with thread:" + Thread.currentThread().getName() );
    }
 
+   @Override
+   public void collectionProcessComplete() throws AnalysisEngineProcessException {
+      super.collectionProcessComplete();
+      if ( parseCache == null ) {
+         return;
+      }
+      parseCache.logStatistics();
+      if ( cacheFile != null && !cacheFile.isEmpty() ) {
+         try {
+            parseCache.save( new File( cacheFile ) );
+         } catch ( IOException ioE ) {
+            throw new AnalysisEngineProcessException( ioE );
+         }
+      }
+   }
+
    static private void logDeprecation( final String parameterName, final String resourceName ) {
       LOGGER.warn( "Use of configuration parameter " + parameterName
             + " may be deprecated in the future in favor of external resource " + resourceName );
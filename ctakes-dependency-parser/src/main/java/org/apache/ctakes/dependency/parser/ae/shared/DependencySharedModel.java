@@ -17,6 +17,7 @@ import java.net.URI;
 public class DependencySharedModel implements SharedResourceObject {
 
    private AbstractComponent parser;
+   private String modelPath;
    public static final String DEFAULT_MODEL_FILE_NAME = "org/apache/ctakes/dependency/parser/models/dependency/mayo-en-dep-1.3.0.jar";
    static public final String DEFAULT_LANGUAGE = AbstractReader.LANG_EN;
    // If this is final then why don't we just use a default such as above?  Future mutability?
@@ -36,8 +37,10 @@ public class DependencySharedModel implements SharedResourceObject {
 //      throw new ResourceInitializationException(e);
 //    }
       if ( uri != null ) {
+         this.modelPath = uri.getPath();
          this.parser = getModel( uri.getPath(), this.language );
       } else {
+         this.modelPath = DEFAULT_MODEL_FILE_NAME;
          this.parser = getDefaultModel();
       }
    }
@@ -46,6 +49,13 @@ public class DependencySharedModel implements SharedResourceObject {
       return parser;
    }
 
+   /**
+    * @return location of the loaded model
+    */
+   public String getModelPath() {
+      return modelPath;
+   }
+
    static public AbstractComponent getModel( final String modelPath, final String language ) throws ResourceInitializationException {
       try {
          final InputStream modelStream = FileLocator.getAsStream( modelPath );
@@ -0,0 +1,89 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.dependency.parser.util;
+
+import com.googlecode.clearnlp.dependency.DEPNode;
+import com.googlecode.clearnlp.dependency.DEPTree;
+import org.apache.ctakes.core.util.ParseCache;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact form of the arcs of a ClearNLP dependency tree: the head id and label of every node.
+ * Used to cache the parses of repeated sentences and apply them to new trees with the same tokens.
+ */
+final public class CompactDependencyTree implements Serializable {
+
+   private static final long serialVersionUID = 1L;
+
+   private final int[] _headIds;
+   private final String[] _labels;
+
+   private CompactDependencyTree( final int[] headIds, final String[] labels ) {
+      _headIds = headIds;
+      _labels = labels;
+   }
+
+   /**
+    * @param tree parsed tree
+    * @return arcs of the tree
+    */
+   static public CompactDependencyTree createCompactTree( final DEPTree tree ) {
+      final int[] headIds = new int[ tree.size() - 1 ];
+      final String[] labels = new String[ tree.size() - 1 ];
+      for ( int i = 1; i < tree.size(); i++ ) {
+         final DEPNode node = tree.get( i );
+         headIds[ i - 1 ] = node.getHead().id;
+         labels[ i - 1 ] = node.getLabel();
+      }
+      return new CompactDependencyTree( headIds, labels );
+   }
+
+   /**
+    * @param tree unparsed tree
+    * @return key for the parse cache built from the form, lemma and part of speech of each node
+    */
+   static public String createCacheKey( final DEPTree tree ) {
+      final List<String> parts = new ArrayList<>( 3 * tree.size() );
+      for ( int i = 1; i < tree.size(); i++ ) {
+         final DEPNode node = tree.get( i );
+         parts.add( node.form );
+         parts.add( node.lemma );
+         parts.add( node.pos );
+      }
+      return ParseCache.createKey( parts );
+   }
+
+   /**
+    * @param tree unparsed tree with the same nodes as the tree from which this was created
+    * @return false if the tree does not have the expected number of nodes and was not changed
+    */
+   public boolean applyTo( final DEPTree tree ) {
+      if ( tree.size() - 1 != _headIds.length ) {
+         return false;
+      }
+      for ( int i = 1; i < tree.size(); i++ ) {
+         tree.get( i ).setHead( tree.get( _headIds[ i - 1 ] ), _labels[ i - 1 ] );
+      }
+      return true;
+   }
+
+}
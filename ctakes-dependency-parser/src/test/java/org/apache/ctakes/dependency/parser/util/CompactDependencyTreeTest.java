@@ -0,0 +1,162 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.dependency.parser.util;
+
+import com.googlecode.clearnlp.dependency.DEPFeat;
+import com.googlecode.clearnlp.dependency.DEPNode;
+import com.googlecode.clearnlp.dependency.DEPTree;
+import org.apache.ctakes.core.util.ParseCache;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class CompactDependencyTreeTest {
+
+   @Rule
+   public TemporaryFolder _tempFolder = new TemporaryFolder();
+
+   @Test
+   public void testSentence() {
+      // Patient denies chest pain .
+      final DEPTree parsed = createTree( new String[]{ "Patient", "denies", "chest", "pain", "." },
+            new String[]{ "patient", "deny", "chest", "pain", "." },
+            new String[]{ "NN", "VBZ", "NN", "NN", "." } );
+      setHeads( parsed, new int[]{ 2, 0, 4, 2, 2 }, new String[]{ "nsubj", "root", "nn", "dobj", "punct" } );
+      assertRoundTrip( parsed );
+   }
+
+   @Test
+   public void testOneToken() {
+      final DEPTree parsed = createTree( new String[]{ "Pain" }, new String[]{ "pain" }, new String[]{ "NN" } );
+      setHeads( parsed, new int[]{ 0 }, new String[]{ "root" } );
+      assertRoundTrip( parsed );
+   }
+
+   @Test
+   public void testEmptySentence() {
+      final DEPTree parsed = createTree( new String[ 0 ], new String[ 0 ], new String[ 0 ] );
+      assertRoundTrip( parsed );
+   }
+
+   @Test
+   public void testWrongSize() {
+      final DEPTree parsed = createTree( new String[]{ "Pain" }, new String[]{ "pain" }, new String[]{ "NN" } );
+      setHeads( parsed, new int[]{ 0 }, new String[]{ "root" } );
+      final DEPTree tree = createTree( new String[]{ "No", "pain" }, new String[]{ "no", "pain" },
+            new String[]{ "DT", "NN" } );
+      assertFalse( CompactDependencyTree.createCompactTree( parsed ).applyTo( tree ) );
+      assertNull( tree.get( 1 ).getHead() );
+      assertNull( tree.get( 2 ).getHead() );
+   }
+
+   @Test
+   public void testCacheKey() {
+      final String[] forms = { "Patient", "denies", "pain" };
+      final String[] lemmas = { "patient", "deny", "pain" };
+      final DEPTree tree = createTree( forms, lemmas, new String[]{ "NN", "VBZ", "NN" } );
+      assertEquals( CompactDependencyTree.createCacheKey( tree ),
+            CompactDependencyTree.createCacheKey( createTree( forms, lemmas, new String[]{ "NN", "VBZ", "NN" } ) ) );
+      // a different tag can give a different parse
+      assertNotEquals( CompactDependencyTree.createCacheKey( tree ),
+            CompactDependencyTree.createCacheKey( createTree( forms, lemmas, new String[]{ "NN", "NNS", "NN" } ) ) );
+   }
+
+   /**
+    * Compact trees are written and read with the parse cache.
+    */
+   @Test
+   public void testSaveAndLoad() throws IOException {
+      final DEPTree parsed = createTree( new String[]{ "No", "fever" }, new String[]{ "no", "fever" },
+            new String[]{ "DT", "NN" } );
+      setHeads( parsed, new int[]{ 2, 0 }, new String[]{ "neg", "root" } );
+      final ParseCache<CompactDependencyTree> cache = new ParseCache<>( "test", 10 );
+      cache.put( "a", CompactDependencyTree.createCompactTree( parsed ) );
+      final File file = new File( _tempFolder.getRoot(), "parse.cache.gz" );
+      cache.save( file );
+      final ParseCache<CompactDependencyTree> loaded = new ParseCache<>( "test", 10 );
+      loaded.load( file );
+      final CompactDependencyTree compactTree = loaded.get( "a" );
+      assertNotNull( compactTree );
+      final DEPTree tree = copyNodes( parsed );
+      assertTrue( compactTree.applyTo( tree ) );
+      assertSameTree( parsed, tree );
+   }
+
+   static private void assertRoundTrip( final DEPTree parsed ) {
+      final DEPTree tree = copyNodes( parsed );
+      assertEquals( CompactDependencyTree.createCacheKey( parsed ), CompactDependencyTree.createCacheKey( tree ) );
+      assertTrue( CompactDependencyTree.createCompactTree( parsed ).applyTo( tree ) );
+      assertSameTree( parsed, tree );
+   }
+
+   /**
+    * Checks that the trees have the same forms, lemmas, heads and dependency labels at every node.
+    */
+   static private void assertSameTree( final DEPTree expected, final DEPTree actual ) {
+      assertEquals( expected.size(), actual.size() );
+      for ( int i = 1; i < expected.size(); i++ ) {
+         final DEPNode expectedNode = expected.get( i );
+         final DEPNode actualNode = actual.get( i );
+         assertEquals( expectedNode.form, actualNode.form );
+         assertEquals( expectedNode.form, expectedNode.lemma, actualNode.lemma );
+         assertEquals( expectedNode.form, expectedNode.pos, actualNode.pos );
+         assertEquals( expectedNode.form, expectedNode.getHead().id, actualNode.getHead().id );
+         assertSame( expectedNode.form, actual.get( expectedNode.getHead().id ), actualNode.getHead() );
+         assertEquals( expectedNode.form, expectedNode.getLabel(), actualNode.getLabel() );
+      }
+   }
+
+   /**
+    * @return unparsed tree, built as in the dependency parser annotator
+    */
+   static private DEPTree createTree( final String[] forms, final String[] lemmas, final String[] tags ) {
+      final DEPTree tree = new DEPTree();
+      for ( int i = 0; i < forms.length; i++ ) {
+         tree.add( new DEPNode( i + 1, forms[ i ], lemmas[ i ], tags[ i ], new DEPFeat() ) );
+      }
+      return tree;
+   }
+
+   static private DEPTree copyNodes( final DEPTree tree ) {
+      final String[] forms = new String[ tree.size() - 1 ];
+      final String[] lemmas = new String[ forms.length ];
+      final String[] tags = new String[ forms.length ];
+      for ( int i = 1; i < tree.size(); i++ ) {
+         forms[ i - 1 ] = tree.get( i ).form;
+         lemmas[ i - 1 ] = tree.get( i ).lemma;
+         tags[ i - 1 ] = tree.get( i ).pos;
+      }
+      return createTree( forms, lemmas, tags );
+   }
+
+   /**
+    * Sets the arcs that the parser would set.
+    */
+   static private void setHeads( final DEPTree tree, final int[] headIds, final String[] labels ) {
+      for ( int i = 1; i < tree.size(); i++ ) {
+         tree.get( i ).setHead( tree.get( headIds[ i - 1 ] ), labels[ i - 1 ] );
+      }
+   }
+
+}
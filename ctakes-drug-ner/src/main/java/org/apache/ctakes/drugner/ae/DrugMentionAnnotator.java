@@ -20,9 +20,11 @@ package org.apache.ctakes.drugner.ae;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 
@@ -41,20 +43,8 @@ import org.apache.ctakes.core.util.JCasUtil;
 import org.apache.ctakes.core.util.ParamUtil;
 import org.apache.ctakes.drugner.DrugMention;
 import org.apache.ctakes.drugner.elements.DrugChangeStatusElement;
-import org.apache.ctakes.drugner.fsm.machines.elements.DecimalStrengthFSM;
-import org.apache.ctakes.drugner.fsm.machines.elements.DosagesFSM;
-import org.apache.ctakes.drugner.fsm.machines.elements.DrugChangeStatusFSM;
-import org.apache.ctakes.drugner.fsm.machines.elements.DurationFSM;
-import org.apache.ctakes.drugner.fsm.machines.elements.FormFSM;
-import org.apache.ctakes.drugner.fsm.machines.elements.FractionStrengthFSM;
-import org.apache.ctakes.drugner.fsm.machines.elements.FrequencyFSM;
-import org.apache.ctakes.drugner.fsm.machines.elements.FrequencyUnitFSM;
-import org.apache.ctakes.drugner.fsm.machines.elements.RangeStrengthFSM;
-import org.apache.ctakes.drugner.fsm.machines.elements.RouteFSM;
-import org.apache.ctakes.drugner.fsm.machines.elements.StrengthFSM;
-import org.apache.ctakes.drugner.fsm.machines.elements.StrengthUnitFSM;
+import org.apache.ctakes.drugner.fsm.machines.elements.MedicationSignatureFSM;
 import org.apache.ctakes.drugner.fsm.machines.util.SubSectionIndicatorFSM;
-import org.apache.ctakes.drugner.fsm.machines.util.SuffixStrengthFSM;
 import org.apache.ctakes.drugner.fsm.output.elements.BaseTokenImpl;
 import org.apache.ctakes.drugner.fsm.output.elements.DosageToken;
 import org.apache.ctakes.drugner.fsm.output.elements.DrugChangeStatusToken;
@@ -66,6 +56,7 @@ import org.apache.ctakes.drugner.fsm.output.elements.RouteToken;
 import org.apache.ctakes.drugner.fsm.output.elements.StrengthToken;
 import org.apache.ctakes.drugner.fsm.output.elements.StrengthUnitCombinedToken;
 import org.apache.ctakes.drugner.fsm.output.elements.StrengthUnitToken;
+import org.apache.ctakes.drugner.fsm.output.util.MedicationSignature;
 import org.apache.ctakes.drugner.fsm.output.util.SubSectionIndicator;
 import org.apache.ctakes.drugner.fsm.output.util.SuffixStrengthToken;
 import org.apache.ctakes.drugner.type.ChunkAnnotation;
@@ -167,20 +158,15 @@ public class DrugMentionAnnotator extends JCasAnnotator_ImplBase
   	private int iAnnotationType = NO_ANNOTATION_TYPE_SPECIFIED; //type used to define a window
   	private int iBoundaryAnnType = NO_ANNOTATION_TYPE_SPECIFIED; //type used to define boundary across which pairs cannot exist.
 
-	private FractionStrengthFSM iv_fractionFSM;
-	private RangeStrengthFSM iv_rangeFSM;
 	private SubSectionIndicatorFSM iv_subMedSectionFSM;
-	private DosagesFSM iv_dosagesFSM;
-	private SuffixStrengthFSM iv_suffixFSM;
-	private DurationFSM iv_durationFSM;
-	private RouteFSM iv_routeFSM;
-	private FrequencyFSM iv_frequencyFSM;
-	private DrugChangeStatusFSM iv_statusFSM;
-	private DecimalStrengthFSM iv_decimalFSM;
-	private StrengthFSM iv_strengthFSM;
-	private StrengthUnitFSM iv_strengthUnitFSM;
-	private FrequencyUnitFSM iv_frequencyUnitFSM;
-	private FormFSM iv_formFSM;
+	private MedicationSignatureFSM iv_signatureFSM;
+
+	// FSM adapted tokens of the current document, built once in process()
+	private List<org.apache.ctakes.core.fsm.token.BaseToken> iv_fsmTokenList;
+	private int[] iv_fsmTokenBegins;
+	private int[] iv_fsmTokenEnds;
+	// key = first token index << 32 | last token index, value = signature found for that token range
+	private Map<Long, MedicationSignature> iv_signatureCache = new HashMap<Long, MedicationSignature>();
 	private static final int NERTypeIdentifier = 1;
 	private static boolean handledRanges;
 	private Set<String> iv_exclusionTagSet = null;
@@ -196,19 +182,7 @@ public class DrugMentionAnnotator extends JCasAnnotator_ImplBase
 					PARAM_SEGMENTS_MEDICATION_RELATED, annotCtx);
 
 
-		iv_fractionFSM = new FractionStrengthFSM();
-		iv_suffixFSM = new SuffixStrengthFSM();
-		iv_durationFSM = new DurationFSM();
-		iv_routeFSM = new RouteFSM();
-		iv_frequencyFSM = new FrequencyFSM();
-		iv_dosagesFSM = new DosagesFSM();
-		iv_rangeFSM = new RangeStrengthFSM();
-		iv_statusFSM = new DrugChangeStatusFSM();
-		iv_decimalFSM = new DecimalStrengthFSM();
-		iv_strengthFSM = new StrengthFSM();
-		iv_strengthUnitFSM = new StrengthUnitFSM();
-		iv_frequencyUnitFSM = new FrequencyUnitFSM();
-		iv_formFSM = new FormFSM();
+		iv_signatureFSM = new MedicationSignatureFSM();
 		iv_subMedSectionFSM = new SubSectionIndicatorFSM();
 		iv_logger.info("Finite state machines loaded.");
 		
@@ -249,6 +223,7 @@ public class DrugMentionAnnotator extends JCasAnnotator_ImplBase
 				BaseToken bta = (BaseToken) baseTokenItr.next();
 				baseTokenList.add(adaptToFSMBaseToken(bta));
 			}
+			indexFSMTokens(baseTokenList);
 
 			prepareSubSection(jcas, indexes, 
 					iv_subMedSectionFSM.execute(baseTokenList));
@@ -272,6 +247,59 @@ public class DrugMentionAnnotator extends JCasAnnotator_ImplBase
 		{
 			throw new AnalysisEngineProcessException(e);
 		}
+		finally
+		{
+			iv_fsmTokenList = null;
+			iv_signatureCache.clear();
+		}
+	}
+
+	/**
+	 * Keeps the FSM adapted tokens of the document along with their offsets so
+	 * that the tokens of any span can be taken as a sub list instead of
+	 * iterating the BaseToken index and adapting the tokens again.
+	 * @param baseTokenList all FSM adapted tokens of the document, in offset order
+	 */
+	private void indexFSMTokens(List<org.apache.ctakes.core.fsm.token.BaseToken> baseTokenList)
+	{
+		iv_fsmTokenList = baseTokenList;
+		iv_fsmTokenBegins = new int[baseTokenList.size()];
+		iv_fsmTokenEnds = new int[baseTokenList.size()];
+		for (int i = 0; i < baseTokenList.size(); i++)
+		{
+			iv_fsmTokenBegins[i] = baseTokenList.get(i).getStartOffset();
+			iv_fsmTokenEnds[i] = baseTokenList.get(i).getEndOffset();
+		}
+		iv_signatureCache.clear();
+	}
+
+	/**
+	 * Runs the signature FSMs over the tokens that lie completely within the
+	 * given span. The result for a given token range is computed only once per
+	 * document; later requests for the same range reuse it.
+	 * @param begin
+	 * @param end
+	 * @return the signature token sets found in the span
+	 * @throws Exception
+	 */
+	private MedicationSignature getSignatureInSpan(int begin, int end) throws Exception
+	{
+		int first = Arrays.binarySearch(iv_fsmTokenBegins, begin);
+		if (first < 0)
+			first = -first - 1;
+		// tokens do not overlap, so those ending within the span are contiguous
+		int last = first;
+		while (last < iv_fsmTokenEnds.length && iv_fsmTokenEnds[last] <= end)
+			last++;
+
+		Long key = Long.valueOf(((long) first << 32) | last);
+		MedicationSignature signature = iv_signatureCache.get(key);
+		if (signature == null)
+		{
+			signature = iv_signatureFSM.execute(iv_fsmTokenList.subList(first, last));
+			iv_signatureCache.put(key, signature);
+		}
+		return signature;
 	}
 
 	private int [] intermediateTypesToRemove = { 
@@ -718,46 +746,42 @@ public class DrugMentionAnnotator extends JCasAnnotator_ImplBase
  
 	//TODO: review the executeFSMs method
 	/**
-	 * The namedE consists of a list of the Named Entities (NE) found in the prior
-	 * method. wordTokenList is included in case there are tokens representing
-	 * drug names not yet discovered. If no NE is found in a provided window size
-	 * and the provided confidence level has been met then the word token is
-	 * marked as a NE and added to a cache to hold undiscovered drug names.
+	 * Runs the signature FSMs over the given span and adds an annotation for
+	 * each strength, form, dosage, route, frequency, duration and status change
+	 * element that was found.
 	 * 
 	 * @param jcas
-	 * @param baseTokenList
-	 * @param namedE
-	 * @param wordTokenList
+	 * @param spanBegin
+	 * @param spanEnd
 	 * @throws AnnotatorProcessException
 	 */
-	private void executeFSMs(JCas jcas, List baseTokenList, List namedE,
-			List wordTokenList) throws AnnotatorProcessException
+	private void executeFSMs(JCas jcas, int spanBegin, int spanEnd) throws AnnotatorProcessException
 			{
 		try
 		{
-			Set fractionTokenSet = iv_fractionFSM.execute(baseTokenList);
+			MedicationSignature signature = getSignatureInSpan(spanBegin, spanEnd);
+
+			Set fractionTokenSet = signature.getFractionSet();
 			addAnnotations(jcas, fractionTokenSet, FractionStrengthAnnotation.type);
 
-			Set decimalTokenSet = iv_decimalFSM.execute(baseTokenList);
+			Set decimalTokenSet = signature.getDecimalSet();
 
 			addAnnotations(jcas, decimalTokenSet, FractionStrengthAnnotation.type);
 
-			Set statusTokenSet = iv_statusFSM.execute(baseTokenList);
+			Set statusTokenSet = signature.getStatusSet();
 
 			addAnnotations(jcas, statusTokenSet, DrugChangeStatusAnnotation.type);    
 			//statusConfidence = true;
 
-			Set rangeTokenSet = iv_rangeFSM.execute(baseTokenList);
+			Set rangeTokenSet = signature.getRangeSet();
 
       addAnnotations(jcas, decimalTokenSet, RangeStrengthAnnotation.type);
       //Mayo SPM 2/20/2012 Changed due to separation of strength tokens
-      Set strengthTokenSet = iv_strengthUnitFSM.execute(baseTokenList, rangeTokenSet);
+      Set strengthTokenSet = signature.getStrengthUnitSet();
       Iterator measurementTokenItr = strengthTokenSet.iterator();
       int begin = 0, previous = 0;
       while (measurementTokenItr.hasNext())
       {
-        Iterator chkNE = namedE.iterator();
-        Iterator newNE = wordTokenList.iterator();
         boolean neFound = false;
       //  MedicationMention ne = null;
         WordToken we = null;
@@ -795,8 +819,7 @@ public class DrugMentionAnnotator extends JCasAnnotator_ImplBase
 //        }
 //      }
 
-			Set formTokenSet = iv_formFSM.execute(baseTokenList,
-					/* decimalTokenSet */new HashSet());
+			Set formTokenSet = signature.getFormSet();
 			Iterator formTokenItr = formTokenSet.iterator();
 
 			while (formTokenItr.hasNext())
@@ -815,7 +838,7 @@ public class DrugMentionAnnotator extends JCasAnnotator_ImplBase
 			// confidence factoring
 			//      if (!doseConfidence && decTokenSet != null)
 //      {
-        Set preTokenSet = iv_strengthFSM.execute(baseTokenList, strengthTokenSet, fractionTokenSet);
+        Set preTokenSet = signature.getStrengthSet();
         Iterator preTokenItr = preTokenSet.iterator();
 
         while (preTokenItr.hasNext())
@@ -833,8 +856,7 @@ public class DrugMentionAnnotator extends JCasAnnotator_ImplBase
 
         }
 //      }
-			Set doseTokenSet = iv_dosagesFSM.execute(baseTokenList, formTokenSet,
-					strengthTokenSet);
+			Set doseTokenSet = signature.getDosageSet();
 			Iterator dosTokenItr = doseTokenSet.iterator();
 			Iterator formCheckItr = formTokenSet.iterator();
 			Iterator strengthCheckItr = strengthTokenSet.iterator();
@@ -852,7 +874,7 @@ public class DrugMentionAnnotator extends JCasAnnotator_ImplBase
 				ma.addToIndexes();
 
 			}
-			Set suffixTokenSet = iv_suffixFSM.execute(baseTokenList, strengthTokenSet);
+			Set suffixTokenSet = signature.getSuffixSet();
 
 			Iterator suffixTokenItr = suffixTokenSet.iterator();
 			while (suffixTokenItr.hasNext())
@@ -864,7 +886,7 @@ public class DrugMentionAnnotator extends JCasAnnotator_ImplBase
 			// This needs to be handled differently. But since I'm not sure if this feature will be utilized
 			// I am going to leave 'as is' for now.
 
-			Set routeTokenSet = iv_routeFSM.execute(baseTokenList);
+			Set routeTokenSet = signature.getRouteSet();
 			boolean foundRoute = false;
 			Iterator routeTokenItr = routeTokenSet.iterator();
 			int begSegRT = 0, endSegRT = 0;
@@ -879,7 +901,7 @@ public class DrugMentionAnnotator extends JCasAnnotator_ImplBase
 
 			}
 
-			Set frequencyUnitTokenSet = iv_frequencyUnitFSM.execute(baseTokenList);
+			Set frequencyUnitTokenSet = signature.getFrequencyUnitSet();
 			boolean foundFrequencyUnit = false;
 			Iterator frequencyUnitTokenItr = frequencyUnitTokenSet.iterator();
 			int begSegFUT = 0, endSegFUT = 0;
@@ -898,8 +920,7 @@ public class DrugMentionAnnotator extends JCasAnnotator_ImplBase
 			}
 			// The frequencyFSM can take advantage of the frequencyUnit to
 			// establish conditions via the override
-			Set frequencyTokenSet = iv_frequencyFSM.execute(baseTokenList,
-					frequencyUnitTokenSet, rangeTokenSet);
+			Set frequencyTokenSet = signature.getFrequencySet();
 			boolean foundFrequency = false;
 			Iterator frequencyTokenItr = frequencyTokenSet.iterator();
 			int begSegFT = 0, endSegFT = 0;
@@ -917,8 +938,7 @@ public class DrugMentionAnnotator extends JCasAnnotator_ImplBase
 
 			/* Check again if confidence was found during frequency check */
 
-			Set durationTokenSet = iv_durationFSM.execute(baseTokenList,
-					rangeTokenSet);
+			Set durationTokenSet = signature.getDurationSet();
 			Iterator durationTokenItr = durationTokenSet.iterator();
 
 			int begSegDU = 0, endSegDU = 0;
@@ -1175,18 +1195,6 @@ public class DrugMentionAnnotator extends JCasAnnotator_ImplBase
 		return foundCoveredText;
 	}
 
-	private List getAnnotationsInSpanWithAdaptToBaseTokenFSM(JCas jcas, int type,
-			int begin, int end) throws Exception
-			{
-		List list = getAnnotationsInSpan(jcas, type, begin, end);
-		for (int i = 0; i < list.size(); i++)
-		{
-			list.add(i, adaptToFSMBaseToken((BaseToken) list.get(i)));
-			list.remove(i + 1);
-		}
-		return list;
-			}
-
 	private List<Annotation> getAnnotationsInSpan(JCas jcas, int type, int begin, int end)
 	{
 		List<Annotation> list = new ArrayList<Annotation>();
@@ -1213,12 +1221,8 @@ public class DrugMentionAnnotator extends JCasAnnotator_ImplBase
 	private void findDrugAttributesInRange(JCas jcas, int begin, int end)
 	throws Exception
 	{
-		List baseTokenList = getAnnotationsInSpanWithAdaptToBaseTokenFSM(jcas, BaseToken.type, begin, end + 1);
-		List<Annotation> neTokenList = getAnnotationsInSpan(jcas, MedicationMention.type, begin, end + 1);
-		List<Annotation> weTokenList = getAnnotationsInSpan(jcas, WordToken.type, begin, end + 1);
-	
 		// execute FSM logic
-		executeFSMs(jcas, baseTokenList, neTokenList, weTokenList);
+		executeFSMs(jcas, begin, end + 1);
 	}
 
 	private void generateDrugMentionsAndAnnotations(JCas jcas, List<MedicationMention> nerTokenList,
@@ -2721,54 +2725,8 @@ private int[] getNarrativeSpansContainingGivenSpanType(JCas jcas, int begin, int
   return span;
 }
 	private void findFSMInRange(JCas jcas, int begin, int end) throws Exception {
-		MedicationMention ne = null;
-		WordToken we = null;
-		// grab iterator over tokens within this chunk
-		Iterator btaItr = FSUtil.getAnnotationsIteratorInSpan(jcas,
-				BaseToken.type, begin,
-				end+1);
-		// do the same as above for named entities
-		// grab iterator over tokens within this chunk
-		Iterator neItr = FSUtil.getAnnotationsIteratorInSpan(jcas,
-				MedicationMention.type, begin,
-				end+1);
-		// List neTokenList = new ArrayList();
-
-		// do the same as above for word entities
-		// grab iterator over tokens within this chunk
-		Iterator weItr = FSUtil.getAnnotationsIteratorInSpan(jcas,
-				WordToken.type, begin,
-				end+1);
-		List weTokenList = new ArrayList();
-		while (weItr.hasNext()) {
-			we = (WordToken) weItr.next();
-			weTokenList.add(we);
-
-		}
-		List neTokenList = new ArrayList();
-
-
-		while (neItr.hasNext()) {
-			ne = (MedicationMention) neItr.next();
-
-			neTokenList.add(ne);
-		}
-
-
-		// adapt JCas objects into objects expected by the
-		// Finite state
-		// machines
-		List baseTokenList = new ArrayList();
-		while (btaItr.hasNext()) {
-			BaseToken bta = (BaseToken) btaItr.next();
-
-			baseTokenList.add(adaptToFSMBaseToken(bta));
-		}
-
-		// execute FSM logic
-
-		executeFSMs(jcas, baseTokenList, neTokenList,
-				weTokenList);
+		// execute FSM logic over the tokens of this chunk
+		executeFSMs(jcas, begin, end + 1);
 	}
 	/**
 	 * 
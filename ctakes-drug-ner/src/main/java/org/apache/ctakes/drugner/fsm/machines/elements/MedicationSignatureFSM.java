@@ -0,0 +1,88 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.drugner.fsm.machines.elements;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.ctakes.drugner.fsm.machines.util.SuffixStrengthFSM;
+import org.apache.ctakes.drugner.fsm.output.util.MedicationSignature;
+
+/**
+ * Runs the medication signature finite state machines (fraction, decimal,
+ * status, range, strength unit, form, strength, dosage, suffix, route,
+ * frequency unit, frequency and duration) over a single list of tokens.
+ * <p>
+ * The machines are evaluated one after the other, in dependency order, so
+ * that the override sets produced by the earlier machines (range, strength
+ * unit, fraction, form and frequency unit) are handed directly to the
+ * machines that consume them. Each machine still makes its own pass over the
+ * tokens: a consumer can only start once the override sets it depends on are
+ * complete. The adapted token list is shared by every machine, so a caller
+ * only needs to build it once per span.
+ * @author Mayo Clinic
+ */
+public class MedicationSignatureFSM
+{
+	private final FractionStrengthFSM iv_fractionFSM = new FractionStrengthFSM();
+	private final DecimalStrengthFSM iv_decimalFSM = new DecimalStrengthFSM();
+	private final DrugChangeStatusFSM iv_statusFSM = new DrugChangeStatusFSM();
+	private final RangeStrengthFSM iv_rangeFSM = new RangeStrengthFSM();
+	private final StrengthUnitFSM iv_strengthUnitFSM = new StrengthUnitFSM();
+	private final FormFSM iv_formFSM = new FormFSM();
+	private final StrengthFSM iv_strengthFSM = new StrengthFSM();
+	private final DosagesFSM iv_dosagesFSM = new DosagesFSM();
+	private final SuffixStrengthFSM iv_suffixFSM = new SuffixStrengthFSM();
+	private final RouteFSM iv_routeFSM = new RouteFSM();
+	private final FrequencyUnitFSM iv_frequencyUnitFSM = new FrequencyUnitFSM();
+	private final FrequencyFSM iv_frequencyFSM = new FrequencyFSM();
+	private final DurationFSM iv_durationFSM = new DurationFSM();
+
+	/**
+	 * Executes all of the signature machines over the given tokens.
+	 * @param tokens
+	 *            List of org.apache.ctakes.core.fsm.token.BaseToken objects.
+	 * @return the token sets found by each machine.
+	 * @throws Exception
+	 */
+	public MedicationSignature execute(List tokens) throws Exception
+	{
+		// independent machines
+		Set fractionSet = iv_fractionFSM.execute(tokens);
+		Set decimalSet = iv_decimalFSM.execute(tokens);
+		Set statusSet = iv_statusFSM.execute(tokens);
+		Set rangeSet = iv_rangeFSM.execute(tokens);
+		Set routeSet = iv_routeFSM.execute(tokens);
+		Set frequencyUnitSet = iv_frequencyUnitFSM.execute(tokens);
+
+		// machines that take the output of the ones above as overrides
+		Set strengthUnitSet = iv_strengthUnitFSM.execute(tokens, rangeSet);
+		Set formSet = iv_formFSM.execute(tokens, new HashSet());
+		Set strengthSet = iv_strengthFSM.execute(tokens, strengthUnitSet, fractionSet);
+		Set dosageSet = iv_dosagesFSM.execute(tokens, formSet, strengthUnitSet);
+		Set suffixSet = iv_suffixFSM.execute(tokens, strengthUnitSet);
+		Set frequencySet = iv_frequencyFSM.execute(tokens, frequencyUnitSet, rangeSet);
+		Set durationSet = iv_durationFSM.execute(tokens, rangeSet);
+
+		return new MedicationSignature(fractionSet, decimalSet, statusSet,
+				rangeSet, strengthUnitSet, formSet, strengthSet, dosageSet,
+				suffixSet, routeSet, frequencyUnitSet, frequencySet, durationSet);
+	}
+}
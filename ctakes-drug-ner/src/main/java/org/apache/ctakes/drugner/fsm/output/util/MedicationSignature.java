@@ -0,0 +1,128 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.drugner.fsm.output.util;
+
+import java.util.Set;
+
+/**
+ * Holds the token sets produced by one evaluation of the medication signature
+ * finite state machines over a span of tokens.
+ * @author Mayo Clinic
+ */
+public class MedicationSignature
+{
+	private final Set iv_fractionSet;
+	private final Set iv_decimalSet;
+	private final Set iv_statusSet;
+	private final Set iv_rangeSet;
+	private final Set iv_strengthUnitSet;
+	private final Set iv_formSet;
+	private final Set iv_strengthSet;
+	private final Set iv_dosageSet;
+	private final Set iv_suffixSet;
+	private final Set iv_routeSet;
+	private final Set iv_frequencyUnitSet;
+	private final Set iv_frequencySet;
+	private final Set iv_durationSet;
+
+	public MedicationSignature(Set fractionSet, Set decimalSet, Set statusSet,
+			Set rangeSet, Set strengthUnitSet, Set formSet, Set strengthSet,
+			Set dosageSet, Set suffixSet, Set routeSet, Set frequencyUnitSet,
+			Set frequencySet, Set durationSet)
+	{
+		iv_fractionSet = fractionSet;
+		iv_decimalSet = decimalSet;
+		iv_statusSet = statusSet;
+		iv_rangeSet = rangeSet;
+		iv_strengthUnitSet = strengthUnitSet;
+		iv_formSet = formSet;
+		iv_strengthSet = strengthSet;
+		iv_dosageSet = dosageSet;
+		iv_suffixSet = suffixSet;
+		iv_routeSet = routeSet;
+		iv_frequencyUnitSet = frequencyUnitSet;
+		iv_frequencySet = frequencySet;
+		iv_durationSet = durationSet;
+	}
+
+	public Set getFractionSet()
+	{
+		return iv_fractionSet;
+	}
+
+	public Set getDecimalSet()
+	{
+		return iv_decimalSet;
+	}
+
+	public Set getStatusSet()
+	{
+		return iv_statusSet;
+	}
+
+	public Set getRangeSet()
+	{
+		return iv_rangeSet;
+	}
+
+	public Set getStrengthUnitSet()
+	{
+		return iv_strengthUnitSet;
+	}
+
+	public Set getFormSet()
+	{
+		return iv_formSet;
+	}
+
+	public Set getStrengthSet()
+	{
+		return iv_strengthSet;
+	}
+
+	public Set getDosageSet()
+	{
+		return iv_dosageSet;
+	}
+
+	public Set getSuffixSet()
+	{
+		return iv_suffixSet;
+	}
+
+	public Set getRouteSet()
+	{
+		return iv_routeSet;
+	}
+
+	public Set getFrequencyUnitSet()
+	{
+		return iv_frequencyUnitSet;
+	}
+
+	public Set getFrequencySet()
+	{
+		return iv_frequencySet;
+	}
+
+	public Set getDurationSet()
+	{
+		return iv_durationSet;
+	}
+}
@@ -37,8 +37,10 @@ import org.apache.uima.resource.ResourceInitializationException;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -152,6 +154,19 @@ public class ContextAnnotator extends org.apache.uima.fit.component.JCasAnnotato
 	 * @see ContextHitConsumer
 	 */
 	public static final String CONTEXT_HIT_CONSUMER_CLASS_PARAM = "ContextHitConsumerClass";
+	/**
+	 * "ShareWindowContext" is an optional, single, boolean parameter. When true
+	 * the context annotations of each window are collected once, and the left
+	 * and right scopes of every focus annotation in the window are taken from
+	 * that array. Boundary checks are made once per context annotation, and the
+	 * context analyzer runs once per distinct scope, so focus annotations with
+	 * the same scope share one context hit. Scopes are found by offset: the
+	 * left scope holds context annotations that end at or before the focus
+	 * begins, and the right scope holds those that begin at or after the focus
+	 * ends. Context annotations added by the hit consumer are not seen until
+	 * the next window.
+	 */
+	public static final String SHARE_WINDOW_CONTEXT_PARAM = "ShareWindowContext";
 
 	public static final int LEFT_SCOPE = 1;
 	/**
@@ -200,6 +215,11 @@ public class ContextAnnotator extends org.apache.uima.fit.component.JCasAnnotato
 			description = "", defaultValue = "org.apache.ctakes.necontexts.negation.NegationContextHitConsumer" )
 	private String contextConsumerClassName;
 
+	@ConfigurationParameter( name = SHARE_WINDOW_CONTEXT_PARAM, mandatory = false,
+			description = "Collect context annotations once per window and share analyzer results between focus annotations.",
+			defaultValue = "false" )
+	private boolean shareWindowContext;
+
 
 	protected List<Integer> scopes = new ArrayList<Integer>();
 
@@ -240,6 +260,7 @@ public class ContextAnnotator extends org.apache.uima.fit.component.JCasAnnotato
 //			contextType = JCasUtil.getType((String) uimaContext.getConfigParameterValue(CONTEXT_ANNOTATION_CLASS_PARAM));
 			iv_logger.info( "Using context type: " + contextClassName );
 			contextType = JCasUtil.getType( contextClassName );
+			iv_logger.info( "Sharing window context: " + shareWindowContext );
 		} catch (Exception e) {
 			throw new ResourceInitializationException(e);
 		}
@@ -278,6 +299,11 @@ public class ContextAnnotator extends org.apache.uima.fit.component.JCasAnnotato
 				// why is this list reversed?
 				Collections.reverse(focusList);
 
+				if (shareWindowContext) {
+					processSharedWindow(jCas, window, focusList);
+					continue;
+				}
+
 				Iterator<Integer> scopeIterator = scopes.iterator();
 				while (scopeIterator.hasNext()) {
 					int scope = scopeIterator.next();
@@ -413,6 +439,141 @@ public class ContextAnnotator extends org.apache.uima.fit.component.JCasAnnotato
 		return scopeContextAnnotations;
 	}
 
+	/**
+	 * Analyzes the scopes of all focus annotations in a window using one array
+	 * of the window's context annotations.
+	 * 
+	 * @see #SHARE_WINDOW_CONTEXT_PARAM
+	 */
+	private void processSharedWindow(JCas jCas, Annotation window, List<Annotation> focusList)
+			throws AnalysisEngineProcessException {
+		WindowContext windowContext = new WindowContext(constrainToWindow(jCas, contextType, window));
+		Iterator<Integer> scopeIterator = scopes.iterator();
+		while (scopeIterator.hasNext()) {
+			int scope = scopeIterator.next();
+			Map<List<Annotation>, ContextHit> scopeHits = new HashMap<List<Annotation>, ContextHit>();
+			Iterator<Annotation> focusIterator = focusList.iterator();
+			while (focusIterator.hasNext()) {
+				Annotation focus = focusIterator.next();
+				List<Annotation> scopeContextAnnotations = new ArrayList<Annotation>();
+				if (scope == LEFT_SCOPE || scope == ALL_SCOPE) {
+					scopeContextAnnotations.addAll(windowContext.getLeftScope(focus, window));
+				}
+				if (scope == MIDDLE_SCOPE || scope == ALL_SCOPE) {
+					scopeContextAnnotations.addAll(getMiddleScopeContextAnnotations(jCas, focus));
+				}
+				if (scope == RIGHT_SCOPE || scope == ALL_SCOPE) {
+					scopeContextAnnotations.addAll(windowContext.getRightScope(focus, window));
+				}
+				ContextHit contextHit;
+				if (scopeHits.containsKey(scopeContextAnnotations)) {
+					contextHit = scopeHits.get(scopeContextAnnotations);
+				} else {
+					contextHit = contextAnalyzer.analyzeContext(scopeContextAnnotations, scope);
+					scopeHits.put(scopeContextAnnotations, contextHit);
+				}
+				if (contextHit != null) {
+					contextConsumer.consumeHit(jCas, focus, scope, contextHit);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The context annotations of one window in index order, with their begin
+	 * offsets for binary search and the boundary status of each annotation
+	 * cached per scope.
+	 */
+	private final class WindowContext {
+		private static final byte UNKNOWN = 0;
+		private static final byte NOT_BOUNDARY = 1;
+		private static final byte BOUNDARY = 2;
+
+		private final Annotation[] contextAnnotations;
+		private final int[] begins;
+		private final byte[] leftBoundaries;
+		private final byte[] rightBoundaries;
+
+		private WindowContext(List<Annotation> annotations) {
+			contextAnnotations = annotations.toArray(new Annotation[annotations.size()]);
+			begins = new int[contextAnnotations.length];
+			for (int i = 0; i < contextAnnotations.length; i++) {
+				begins[i] = contextAnnotations[i].getBegin();
+			}
+			leftBoundaries = new byte[contextAnnotations.length];
+			rightBoundaries = new byte[contextAnnotations.length];
+		}
+
+		/**
+		 * @return the context annotations ending at or before the focus begins,
+		 *         nearest first up to the boundary or maximum left scope size, in
+		 *         text order
+		 */
+		private List<Annotation> getLeftScope(Annotation focus, Annotation window)
+				throws AnalysisEngineProcessException {
+			List<Annotation> scopeContextAnnotations = new ArrayList<Annotation>();
+			if (focus.getBegin() < window.getBegin() || focus.getEnd() > window.getEnd())
+				return scopeContextAnnotations;
+			for (int i = firstBeginAfter(focus.getBegin()) - 1; i >= 0
+					&& scopeContextAnnotations.size() < leftScopeSize; i--) {
+				if (contextAnnotations[i].getEnd() > focus.getBegin()) {
+					continue;
+				}
+				if (isBoundary(i, LEFT_SCOPE, leftBoundaries)) {
+					break;
+				}
+				scopeContextAnnotations.add(contextAnnotations[i]);
+			}
+			Collections.reverse(scopeContextAnnotations);
+			return scopeContextAnnotations;
+		}
+
+		/**
+		 * @return the context annotations beginning at or after the focus ends,
+		 *         nearest first up to the boundary or maximum right scope size
+		 */
+		private List<Annotation> getRightScope(Annotation focus, Annotation window)
+				throws AnalysisEngineProcessException {
+			List<Annotation> scopeContextAnnotations = new ArrayList<Annotation>();
+			if (focus.getBegin() < window.getBegin() || focus.getEnd() > window.getEnd())
+				return scopeContextAnnotations;
+			for (int i = firstBeginAfter(focus.getEnd() - 1); i < contextAnnotations.length
+					&& scopeContextAnnotations.size() < rightScopeSize; i++) {
+				if (isBoundary(i, RIGHT_SCOPE, rightBoundaries)) {
+					break;
+				}
+				scopeContextAnnotations.add(contextAnnotations[i]);
+			}
+			return scopeContextAnnotations;
+		}
+
+		/**
+		 * @return index of the first context annotation beginning after the
+		 *         offset, or the number of context annotations if there is none
+		 */
+		private int firstBeginAfter(int offset) {
+			int low = 0;
+			int high = begins.length;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (begins[mid] <= offset) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+
+		private boolean isBoundary(int index, int scope, byte[] boundaries) throws AnalysisEngineProcessException {
+			if (boundaries[index] == UNKNOWN) {
+				boundaries[index] = contextAnalyzer.isBoundary(contextAnnotations[index], scope) ? BOUNDARY
+						: NOT_BOUNDARY;
+			}
+			return boundaries[index] == BOUNDARY;
+		}
+	}
+
 	/**
 	 * Gets a list of annotations within the specified window annotation.
 	 * 
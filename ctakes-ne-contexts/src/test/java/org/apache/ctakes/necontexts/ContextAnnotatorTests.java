@@ -19,20 +19,31 @@
 package org.apache.ctakes.necontexts;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_engine.AnalysisEngine;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.analysis_engine.annotator.AnnotatorConfigurationException;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.tcas.Annotation;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.junit.Test;
 
 import org.apache.ctakes.typesystem.type.syntax.BaseToken;
+import org.apache.ctakes.typesystem.type.syntax.WordToken;
+import org.apache.ctakes.typesystem.type.textsem.ContextAnnotation;
 import org.apache.ctakes.typesystem.type.textsem.IdentifiedAnnotation;
 import org.apache.ctakes.typesystem.type.syntax.PunctuationToken;
 import org.apache.ctakes.typesystem.type.textspan.Sentence;
@@ -504,6 +515,138 @@ public class ContextAnnotatorTests {
 
 	}
 
+	static String sharedWindowText = "No evidence of ankle edema or chest pain is noted. "
+			+ "She denies any loss of vision, double-vision, dysarthria, or dysphagia. "
+			+ "History of chest pain but no fever. "
+			+ "Possible pneumonia, rule out chest pain and ankle edema. "
+			+ "Family history of coronary artery disease; he has no history of hypoglycemia.";
+
+	static String[] sharedWindowEntities = { "edema", "ankle edema", "chest pain", "pain", "loss of vision",
+			"vision", "double-vision", "dysarthria", "dysphagia", "fever", "pneumonia", "coronary artery disease",
+			"artery disease", "disease", "hypoglycemia" };
+
+	/**
+	 * Runs the negation and status context annotators with and without
+	 * ShareWindowContext over sentences with overlapping named entities, and
+	 * checks that both paths set the same negation, status and subject values
+	 * and create the same context annotations.
+	 * 
+	 * @see ContextAnnotator#SHARE_WINDOW_CONTEXT_PARAM
+	 */
+	@Test
+	public void testSharedWindowContext() throws Exception {
+		JCas perAnnotationJCas = createSharedWindowJCas();
+		List<IdentifiedAnnotation> perAnnotationEntities = getEntities(perAnnotationJCas);
+		runNegationAndStatus(perAnnotationJCas, false);
+
+		JCas sharedJCas = createSharedWindowJCas();
+		List<IdentifiedAnnotation> sharedEntities = getEntities(sharedJCas);
+		runNegationAndStatus(sharedJCas, true);
+
+		assertEquals(perAnnotationEntities.size(), sharedEntities.size());
+		boolean negated = false;
+		boolean uncertain = false;
+		for (int i = 0; i < perAnnotationEntities.size(); i++) {
+			IdentifiedAnnotation expected = perAnnotationEntities.get(i);
+			IdentifiedAnnotation actual = sharedEntities.get(i);
+			String text = expected.getCoveredText() + "@" + expected.getBegin();
+			assertEquals(text, expected.getBegin(), actual.getBegin());
+			assertEquals(text, expected.getEnd(), actual.getEnd());
+			assertEquals(text, expected.getPolarity(), actual.getPolarity());
+			assertEquals(text, expected.getUncertainty(), actual.getUncertainty());
+			assertEquals(text, expected.getHistoryOf(), actual.getHistoryOf());
+			assertEquals(text, expected.getSubject(), actual.getSubject());
+			negated |= expected.getPolarity() == -1;
+			uncertain |= expected.getUncertainty() != 0;
+		}
+		// make sure that the text exercises both context analyzers
+		assertTrue(negated);
+		assertTrue(uncertain);
+
+		assertEquals(getContextHits(perAnnotationJCas), getContextHits(sharedJCas));
+	}
+
+	/**
+	 * @return a JCas with a sentence per period or semicolon, word and
+	 *         punctuation tokens, and an IdentifiedAnnotation for every
+	 *         occurrence of the shared window entities that starts and ends on
+	 *         token boundaries
+	 */
+	private static JCas createSharedWindowJCas() throws Exception {
+		JCas jCas = JCasFactory.createJCas();
+		jCas.setDocumentText(sharedWindowText);
+		Set<Integer> tokenBegins = new HashSet<Integer>();
+		Set<Integer> tokenEnds = new HashSet<Integer>();
+		Matcher matcher = Pattern.compile("[A-Za-z0-9]+(?:-[A-Za-z0-9]+)*|[^\\sA-Za-z0-9]").matcher(sharedWindowText);
+		while (matcher.find()) {
+			BaseToken token = Character.isLetterOrDigit(matcher.group().charAt(0))
+					? new WordToken(jCas, matcher.start(), matcher.end())
+					: new PunctuationToken(jCas, matcher.start(), matcher.end());
+			token.addToIndexes();
+			tokenBegins.add(matcher.start());
+			tokenEnds.add(matcher.end());
+		}
+		int sentenceBegin = 0;
+		for (int i = 0; i < sharedWindowText.length(); i++) {
+			char c = sharedWindowText.charAt(i);
+			if (c == '.' || c == ';') {
+				new Sentence(jCas, sentenceBegin, i + 1).addToIndexes();
+				sentenceBegin = i + 2;
+			}
+		}
+		for (String entity : sharedWindowEntities) {
+			for (int begin = sharedWindowText.indexOf(entity); begin >= 0; begin = sharedWindowText.indexOf(entity,
+					begin + 1)) {
+				int end = begin + entity.length();
+				if (tokenBegins.contains(begin) && tokenEnds.contains(end)) {
+					new IdentifiedAnnotation(jCas, begin, end).addToIndexes();
+				}
+			}
+		}
+		return jCas;
+	}
+
+	private static void runNegationAndStatus(JCas jCas, boolean shareWindowContext) throws Exception {
+		AnalysisEngine negationAE = AnalysisEngineFactory.createEngine(ContextAnnotator.class,
+				ContextAnnotator.MAX_LEFT_SCOPE_SIZE_PARAM, 10,
+				ContextAnnotator.MAX_RIGHT_SCOPE_SIZE_PARAM, 10,
+				ContextAnnotator.SCOPE_ORDER_PARAM, "LEFT,RIGHT",
+				ContextAnnotator.CONTEXT_ANALYZER_CLASS_PARAM, "org.apache.ctakes.necontexts.negation.NegationContextAnalyzer",
+				ContextAnnotator.CONTEXT_HIT_CONSUMER_CLASS_PARAM, "org.apache.ctakes.necontexts.negation.NegationContextHitConsumer",
+				ContextAnnotator.SHARE_WINDOW_CONTEXT_PARAM, shareWindowContext);
+		AnalysisEngine statusAE = AnalysisEngineFactory.createEngine(ContextAnnotator.class,
+				ContextAnnotator.MAX_LEFT_SCOPE_SIZE_PARAM, 10,
+				ContextAnnotator.MAX_RIGHT_SCOPE_SIZE_PARAM, 10,
+				ContextAnnotator.SCOPE_ORDER_PARAM, "LEFT,MIDDLE,RIGHT,ALL",
+				ContextAnnotator.CONTEXT_ANALYZER_CLASS_PARAM, "org.apache.ctakes.necontexts.status.StatusContextAnalyzer",
+				ContextAnnotator.CONTEXT_HIT_CONSUMER_CLASS_PARAM, "org.apache.ctakes.necontexts.status.StatusContextHitConsumer",
+				ContextAnnotator.SHARE_WINDOW_CONTEXT_PARAM, shareWindowContext);
+		negationAE.process(jCas);
+		statusAE.process(jCas);
+	}
+
+	/**
+	 * @return the entities created by {@link #createSharedWindowJCas()}, without
+	 *         the context annotations added by the hit consumers
+	 */
+	private static List<IdentifiedAnnotation> getEntities(JCas jCas) {
+		List<IdentifiedAnnotation> entities = new ArrayList<IdentifiedAnnotation>();
+		for (IdentifiedAnnotation annotation : JCasUtil.select(jCas, IdentifiedAnnotation.class)) {
+			if (!(annotation instanceof ContextAnnotation)) {
+				entities.add(annotation);
+			}
+		}
+		return entities;
+	}
+
+	private static List<String> getContextHits(JCas jCas) {
+		List<String> hits = new ArrayList<String>();
+		for (ContextAnnotation hit : JCasUtil.select(jCas, ContextAnnotation.class)) {
+			hits.add(hit.getBegin() + "-" + hit.getEnd() + " " + hit.getScope() + " " + hit.getFocusText());
+		}
+		return hits;
+	}
+
 	@Test
 	public void testParseScopeOrder() throws AnnotatorConfigurationException {
 		ContextAnnotator ca = new ContextAnnotator();
@@ -21,6 +21,7 @@ package org.apache.ctakes.relationextractor.ae;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.ctakes.core.cleartk.SharedClassifier;
 import org.apache.ctakes.core.pipeline.PipeBitInfo;
 import org.apache.ctakes.typesystem.type.syntax.BaseToken;
 import org.apache.ctakes.typesystem.type.syntax.NewlineToken;
@@ -134,4 +135,9 @@ public class ModifierExtractorAnnotator extends CleartkAnnotator<String> {
 
   }
 
+  @Override
+  public void destroy() {
+    SharedClassifier.releaseIfShared(this.classifier);
+    super.destroy();
+  }
 }
@@ -27,6 +27,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 
+import org.apache.ctakes.core.cleartk.SharedClassifier;
 import org.apache.ctakes.relationextractor.ae.features.DependencyPathFeaturesExtractor;
 import org.apache.ctakes.relationextractor.ae.features.DependencyTreeFeaturesExtractor;
 import org.apache.ctakes.relationextractor.ae.features.NamedEntityFeaturesExtractor;
@@ -319,4 +320,10 @@ public abstract class RelationExtractorAnnotator extends CleartkAnnotator<String
 	public static void clearCategoryFrequency() {
 		category_frequency = new LinkedHashMap<>();	
 	}
+
+	@Override
+	public void destroy() {
+		SharedClassifier.releaseIfShared(this.classifier);
+		super.destroy();
+	}
 }
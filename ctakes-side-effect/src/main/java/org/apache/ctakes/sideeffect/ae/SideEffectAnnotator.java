@@ -28,6 +28,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_component.JCasAnnotator_ImplBase;
@@ -40,6 +41,7 @@ import org.apache.ctakes.core.resource.FileResource;
 import org.apache.ctakes.core.util.DocumentIDAnnotationUtil;
 import org.apache.ctakes.core.util.FSUtil;
 import org.apache.ctakes.sideeffect.util.PatternMatch;
+import org.apache.ctakes.sideeffect.util.PatternRule;
 import org.apache.ctakes.sideeffect.util.SEUtil;
 import org.apache.ctakes.typesystem.type.textsem.IdentifiedAnnotation;
 import org.apache.ctakes.typesystem.type.textspan.Segment;
@@ -89,6 +91,26 @@ public class SideEffectAnnotator extends JCasAnnotator_ImplBase
 	private List<String> noteVerb = new ArrayList<String>();
 	private List<String> madeVerb = new ArrayList<String>();
 	private List<String> afterWord = new ArrayList<String>();
+	
+	//pattern matching rules, compiled once with the indication words
+	private PatternRule pseDueToDrugRule;
+	private PatternRule drugDueToPseRule;
+	private PatternRule discontDrugBecausePseRule;
+	private PatternRule drugDiscontBecausePseRule;
+	private PatternRule notePseWithDrugRule;
+	private PatternRule drugCausePseRule;
+	private PatternRule drugMadePseRule;
+	private PatternRule sideEffectWordRule;
+	private PatternRule pseAfterDrugRule;
+	private static final PatternRule IN_PARENTHESIS_RULE = new PatternRule("(<@DRUG>)\\s(\\(.*<@PSE>.*\\))");
+	private static final PatternRule DISCUSSED_RULE = new PatternRule(".*(dicussed|concerned).*");
+	private static final PatternRule OTHER_PSE_RULE = new PatternRule(".*(<PSE>).*");
+	private static final PatternRule CHECK_RULE = new PatternRule(".*(check).*");
+	private static final PatternRule FOR_TREATED_RULE = new PatternRule("\\(.*((for)|(treated with)).*\\)");
+	private static final PatternRule MADE_GOT_RULE = new PatternRule("\\(.*(made|got).*\\)");
+	private static final PatternRule TRIAL_RULE = new PatternRule(".*trial.*");
+	//special chars used in RegEx that are removed from named entities
+	private static final Pattern REGEX_CHARS = Pattern.compile("[\\<\\(\\[\\{\\\\^\\-\\=\\$\\!\\|\\]\\}\\)\\?\\*\\+\\.\\>]");
 
 	public void initialize(UimaContext annotCtx)
 	throws ResourceInitializationException
@@ -147,6 +169,16 @@ public class SideEffectAnnotator extends JCasAnnotator_ImplBase
 	        str = (String[]) getContext().getConfigParameterValue("hasPatternOfPseAfterDrug");
 	        for (int i = 0; i < str.length; i++)
 	        	afterWord.add(str[i]);	        
+	        
+	        pseDueToDrugRule = new PatternRule("(<@PSE>).*(KW).*(<@DRUG>)", causeWord1);
+	        drugDueToPseRule = new PatternRule("(<@DRUG>).*(KW).*(<@PSE>)", causeWord2);
+	        discontDrugBecausePseRule = new PatternRule("(KW).*(<@DRUG>).*(because|after).*(<@PSE>)", discontVerb);
+	        drugDiscontBecausePseRule = new PatternRule("(<@DRUG>).*(KW).*(because|after).*(<@PSE>)", discontVerb);
+	        notePseWithDrugRule = new PatternRule("(KW).*(<@PSE>).*(with).*(<@DRUG>)", noteVerb);
+	        drugCausePseRule = new PatternRule("(<@DRUG>).*(KW).*(<@PSE>)", causeVerb);
+	        drugMadePseRule = new PatternRule("(<@DRUG>).*(KW)\\s(him|her)\\s(<@PSE>)", madeVerb);
+	        sideEffectWordRule = new PatternRule("(KW)", sideEffectWord);
+	        pseAfterDrugRule = new PatternRule("(<@PSE>).*(KW).*(<@DRUG>)", afterWord);
 		} catch (Exception e) {
 			throw new ResourceInitializationException(e);
 		}		
@@ -481,7 +513,7 @@ public class SideEffectAnnotator extends JCasAnnotator_ImplBase
 		if(pse.drug.getPolarity()==-1) return false;
 
 		//false if not satisfied a given pattern
-		PatternMatch pm = new PatternMatch("(<@PSE>).*(KW).*(<@DRUG>)", input, causeWord1);
+		PatternMatch pm = pseDueToDrugRule.match(input);
 		if(!pm.mat.find()) return false;
 		
 		//false if there is DRUG between @PSE and KW
@@ -511,7 +543,7 @@ public class SideEffectAnnotator extends JCasAnnotator_ImplBase
 	 */
 	private boolean hasPatternOfDrugDueToPse(JCas jcas, PotentialSideEffect pse, String input) {
 		//false if not satisfied a given pattern
-		PatternMatch pm = new PatternMatch("(<@DRUG>).*(KW).*(<@PSE>)", input, causeWord2);
+		PatternMatch pm = drugDueToPseRule.match(input);
 		if(!pm.mat.find()) return false;
 		
 		//false if there is PSE between @DRUG and KW
@@ -539,7 +571,7 @@ public class SideEffectAnnotator extends JCasAnnotator_ImplBase
 	 * @return true if finds a given pattern, else false 
 	 */
 	private boolean hasPatternOfDiscontDrugBecausePse(JCas jcas, PotentialSideEffect pse, String input) {
-		PatternMatch pm = new PatternMatch("(KW).*(<@DRUG>).*(because|after).*(<@PSE>)", input, discontVerb);
+		PatternMatch pm = discontDrugBecausePseRule.match(input);
 		if(!pm.mat.find()) return false;
 		
 		if(pm.isPseBetween(pm.mat.end(1), pm.mat.start(2))) return false;
@@ -563,7 +595,7 @@ public class SideEffectAnnotator extends JCasAnnotator_ImplBase
 	 * @return true if finds a given pattern, else false 
 	 */
 	private boolean hasPatternOfDrugDiscontBecausePse(JCas jcas, PotentialSideEffect pse, String input) {
-		PatternMatch pm = new PatternMatch("(<@DRUG>).*(KW).*(because|after).*(<@PSE>)", input, discontVerb);
+		PatternMatch pm = drugDiscontBecausePseRule.match(input);
 		if(!pm.mat.find()) return false;
 		
 		if(pm.isPseBetween(pm.mat.end(2), pm.mat.start(3))) return false;
@@ -587,7 +619,7 @@ public class SideEffectAnnotator extends JCasAnnotator_ImplBase
 	 * @return true if finds a given pattern, else false 
 	 */
 	private boolean hasPatternOfNotePseWithDrug(JCas jcas, PotentialSideEffect pse, String input) {
-		PatternMatch pm = new PatternMatch("(KW).*(<@PSE>).*(with).*(<@DRUG>)", input, noteVerb);
+		PatternMatch pm = notePseWithDrugRule.match(input);
 		if(!pm.mat.find()) return false;
 		
 		if(pm.isDrugBetween(pm.mat.end(1), pm.mat.start(2))) return false;
@@ -613,7 +645,7 @@ public class SideEffectAnnotator extends JCasAnnotator_ImplBase
 	 * @return true if finds a given pattern, else false 
 	 */
 	private boolean hasPatternOfDrugCausePse(JCas jcas, PotentialSideEffect pse, String input) {
-		PatternMatch pm = new PatternMatch("(<@DRUG>).*(KW).*(<@PSE>)", input, causeVerb);
+		PatternMatch pm = drugCausePseRule.match(input);
 		if(!pm.mat.find()) return false;
 		
 		if(pm.isDrugBetween(pm.mat.end(2), pm.mat.start(3))) return false;
@@ -637,7 +669,7 @@ public class SideEffectAnnotator extends JCasAnnotator_ImplBase
 	 * @return true if finds a given pattern, else false 
 	 */
 	private boolean hasPatternOfDrugMadePse(JCas jcas, PotentialSideEffect pse, String input) {
-		PatternMatch pm = new PatternMatch("(<@DRUG>).*(KW)\\s(him|her)\\s(<@PSE>)", input, madeVerb);
+		PatternMatch pm = drugMadePseRule.match(input);
 		if(!pm.mat.find()) return false;
 		
 		int[] drugSpan={-1, -1};
@@ -666,7 +698,7 @@ public class SideEffectAnnotator extends JCasAnnotator_ImplBase
 								
 		//if there is no sideEffectWord in the sentence, return false
 		String pseSen = pse.sentence.replace('-', ' ').toLowerCase().trim();
-		PatternMatch pm = new PatternMatch("(KW)", pseSen, sideEffectWord);
+		PatternMatch pm = sideEffectWordRule.match(pseSen);
 		if(!pm.mat.find()) return false;
 		
 		//if sideEffectWord is negated return false
@@ -694,14 +726,14 @@ public class SideEffectAnnotator extends JCasAnnotator_ImplBase
 	 */	
 	private boolean hasSideEffectAsPse(JCas jcas, PotentialSideEffect pse, String input) {
 		//if the pse sentence contains certain word, return false
-		if(input.matches(".*(dicussed|concerned).*")) return false;
+		if(DISCUSSED_RULE.matches(input)) return false;
 				
 		//if pse!=sideEffectWord, return false
 		String str = pse.ne.getCoveredText().replace('-', ' ').toLowerCase().trim();
 		if(!sideEffectWord.contains(str)) return false;
 		
 		//if there is PSE, return false
-		if(input.matches(".*(<PSE>).*")) return false;
+		if(OTHER_PSE_RULE.matches(input)) return false;
 				
 		return true;
 	}
@@ -717,9 +749,9 @@ public class SideEffectAnnotator extends JCasAnnotator_ImplBase
 	 */	
 	private boolean hasPatternOfPseAfterDrug(JCas jcas, PotentialSideEffect pse, String input) {
 		//if the pse sentence contains certain word, return false
-		if(input.matches(".*(check).*")) return false;
+		if(CHECK_RULE.matches(input)) return false;
 		
-		PatternMatch pm = new PatternMatch("(<@PSE>).*(KW).*(<@DRUG>)", input, afterWord);
+		PatternMatch pm = pseAfterDrugRule.match(input);
 		if(!pm.mat.find()) return false;
 		
 		if(pm.isDrugBetween(pm.mat.end(1), pm.mat.start(2))) return false;
@@ -784,17 +816,17 @@ public class SideEffectAnnotator extends JCasAnnotator_ImplBase
 	 */
 	private boolean isInParenthesis(JCas jcas, PotentialSideEffect pse, String input) {
 		//if pse is not in the parenthesis return false		
-		PatternMatch pm = new PatternMatch("(<@DRUG>)\\s(\\(.*<@PSE>.*\\))", input); 
+		PatternMatch pm = IN_PARENTHESIS_RULE.match(input); 
 		if(!pm.mat.find()) return false;
 		
 		//if "for" or "treated with" is also in the parenthesis, return false
-		if(pm.mat.group(2).matches("\\(.*((for)|(treated with)).*\\)")) return false; 
+		if(FOR_TREATED_RULE.matches(pm.mat.group(2))) return false; 
 
 		//if there is certain words in the parenthesis, return true
-		if(pm.mat.group(2).matches("\\(.*(made|got).*\\)")) return true; 
+		if(MADE_GOT_RULE.matches(pm.mat.group(2))) return true; 
 
 		//if the pse sentence does not include "trial", return false
-		if(input.matches(".*trial.*")) return true;
+		if(TRIAL_RULE.matches(input)) return true;
 
 		return false;
 	}
@@ -847,7 +879,7 @@ public class SideEffectAnnotator extends JCasAnnotator_ImplBase
 					drug = "<DRUG>";
 				//some named entity contain special char used in RegEx (eg, ')')
 				str = str.replaceFirst(
-						nea.getCoveredText().replaceAll("[\\<\\(\\[\\{\\\\^\\-\\=\\$\\!\\|\\]\\}\\)\\?\\*\\+\\.\\>]", "").toLowerCase(),drug);
+						REGEX_CHARS.matcher(nea.getCoveredText()).replaceAll("").toLowerCase(),drug);
 			}
 			else if(nea.getTypeID()==2 || nea.getTypeID()==3) {
 				String ps="";
@@ -856,7 +888,7 @@ public class SideEffectAnnotator extends JCasAnnotator_ImplBase
 				else 
 					ps = "<PSE>";
 				str = str.replaceFirst(
-						nea.getCoveredText().replaceAll("[\\<\\(\\[\\{\\\\^\\-\\=\\$\\!\\|\\]\\}\\)\\?\\*\\+\\.\\>]", "").toLowerCase(),ps);
+						REGEX_CHARS.matcher(nea.getCoveredText()).replaceAll("").toLowerCase(),ps);
 			}			
 		}
 				
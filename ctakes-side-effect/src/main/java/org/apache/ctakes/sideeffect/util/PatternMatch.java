@@ -18,6 +18,7 @@
  */
 package org.apache.ctakes.sideeffect.util;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -33,24 +34,32 @@ import java.util.regex.Pattern;
  * PatternMatch(String expr, String in): 
  *   "expr" is an regular expression;
  *   "in" is a string to match.	
+ * 
+ * A PatternRule compiles the expression once and creates PatternMatch objects that reuse its matcher.
  *   
  * @author Mayo Clinic
  *
  */
 public class PatternMatch {
+	private static final String DRUG_TAG = "<DRUG>";
+	private static final String PSE_TAG = "<PSE>";
+	private static final Pattern TAGS = Pattern.compile("<DRUG>|<PSE>");
+	private static final Pattern CONJUNCTION = Pattern.compile("(\\sand\\s)|(\\sor\\s)|(,)|(,\\s)|(\\s,\\s)");
+	
 	private List<String> keywords; 
 	private String regex;
 	private String input;    
     public Pattern pat;
     public Matcher mat;
     
+    //offsets of <DRUG> and <PSE> tags and line terminators in input, found on first use
+    private int[] drugTags;
+    private int[] pseTags;
+    private int[] lineBreaks;
+    
     //expr: (PSE).*(KW).*(DRUG)
     public PatternMatch(String expr, String in, List<String> kw) {
-    	StringBuffer sb = new StringBuffer();
-    	for(String s : kw) 
-    		sb.append(s+"|");
-    	
-    	regex = expr.replaceAll("KW", sb.substring(0, sb.length()-1)); 
+    	regex = toRegex(expr, kw); 
     	input = in;
     	keywords = kw;  
     	pat = Pattern.compile(regex);
@@ -63,6 +72,34 @@ public class PatternMatch {
     	pat = Pattern.compile(regex);
     	mat = pat.matcher(input);
     }
+    
+    /**
+     * Used by PatternRule with a matcher that has been reset to the input
+     * 
+     * @param compiled
+     * @param in
+     * @param matcher
+     */
+    PatternMatch(Pattern compiled, String in, Matcher matcher) {
+    	regex = compiled.pattern();
+    	input = in;
+    	pat = compiled;
+    	mat = matcher;
+    }
+    
+    /**
+     * Return the regular expression for expr with "KW" replaced by the keywords as alternatives
+     * 
+     * @param expr
+     * @param kw
+     */
+    static String toRegex(String expr, List<String> kw) {
+    	StringBuffer sb = new StringBuffer();
+    	for(String s : kw) 
+    		sb.append(s+"|");
+    	
+    	return expr.replaceAll("KW", sb.substring(0, sb.length()-1)); 
+    }
         
     /**
      * Return true if finds "DRUG" in input.substring(begin, end)
@@ -71,7 +108,9 @@ public class PatternMatch {
      * @param end
      */
     public boolean isDrugBetween(int begin, int end) {
-    	return input.substring(begin, end).matches(".*<DRUG>.*");
+    	//same as input.substring(begin, end).matches(".*<DRUG>.*")
+    	if(drugTags==null) drugTags = indicesOf(DRUG_TAG);
+    	return findTag(drugTags, DRUG_TAG, begin, end)>=0 && !hasLineBreak(begin, end);
     }
     
     /**
@@ -84,15 +123,12 @@ public class PatternMatch {
      * @return
      */
     public boolean isDrugBetween(int begin, int end, int[] span) {
-       	Pattern p = Pattern.compile("(<DRUG>)");
-    	Matcher m = p.matcher(input.substring(begin, end));
-    	while(m.find()) {
-    		span[0] = m.start()+begin;
-    		span[1] = m.end()+begin;
-    		return true;
-    	}
-    	
-    	return false;
+    	if(drugTags==null) drugTags = indicesOf(DRUG_TAG);
+    	int start = findTag(drugTags, DRUG_TAG, begin, end);
+    	if(start<0) return false;
+    	span[0] = start;
+    	span[1] = start+DRUG_TAG.length();
+    	return true;
     }
     
     /**
@@ -102,7 +138,9 @@ public class PatternMatch {
      * @param end
      */
     public boolean isPseBetween(int begin, int end) {
-    	return input.substring(begin, end).matches(".*<PSE>.*");
+    	//same as input.substring(begin, end).matches(".*<PSE>.*")
+    	if(pseTags==null) pseTags = indicesOf(PSE_TAG);
+    	return findTag(pseTags, PSE_TAG, begin, end)>=0 && !hasLineBreak(begin, end);
     }
     
     /**
@@ -115,15 +153,12 @@ public class PatternMatch {
      * @return
      */
     public boolean isPseBetween(int begin, int end, int[] span) {
-       	Pattern p = Pattern.compile("(<PSE>)");
-    	Matcher m = p.matcher(input.substring(begin, end));
-    	while(m.find()) {
-    		span[0] = m.start()+begin;
-    		span[1] = m.end()+begin;
-    		return true;
-    	}
-    	
-    	return false;
+    	if(pseTags==null) pseTags = indicesOf(PSE_TAG);
+    	int start = findTag(pseTags, PSE_TAG, begin, end);
+    	if(start<0) return false;
+    	span[0] = start;
+    	span[1] = start+PSE_TAG.length();
+    	return true;
     }
     
     /**
@@ -135,7 +170,48 @@ public class PatternMatch {
      * @return
      */
     public boolean isDistantBetween(int begin, int end) {
-    	String s = input.substring(begin, end).replaceAll("<DRUG>|<PSE>", "");
-    	return !s.matches("(\\sand\\s)|(\\sor\\s)|(,)|(,\\s)|(\\s,\\s)");
-    }       
+    	String s = TAGS.matcher(input.substring(begin, end)).replaceAll("");
+    	return !CONJUNCTION.matcher(s).matches();
+    }
+    
+    /**
+     * Return the offset of the first tag in input.substring(begin, end), or -1 
+     */
+    private int findTag(int[] tags, String tag, int begin, int end) {
+    	if(begin<0 || end>input.length() || begin>end)
+    		throw new StringIndexOutOfBoundsException("begin "+begin+", end "+end+", length "+input.length());
+    	int i = Arrays.binarySearch(tags, begin);
+    	if(i<0) i = -i-1;
+    	if(i<tags.length && tags[i]+tag.length()<=end) return tags[i];
+    	return -1;
+    }
+    
+    private boolean hasLineBreak(int begin, int end) {
+    	if(lineBreaks==null) {
+    		int[] breaks = new int[input.length()];
+    		int count = 0;
+    		for(int i=0; i<input.length(); i++) {
+    			char c = input.charAt(i);
+    			//line terminators that are not matched by "."
+    			if(c=='\n' || c=='\r' || c=='\u0085' || c=='\u2028' || c=='\u2029')
+    				breaks[count++] = i;
+    		}
+    		lineBreaks = Arrays.copyOf(breaks, count);
+    	}
+    	int i = Arrays.binarySearch(lineBreaks, begin);
+    	if(i<0) i = -i-1;
+    	return i<lineBreaks.length && lineBreaks[i]<end;
+    }
+    
+    private int[] indicesOf(String tag) {
+    	int[] indices = new int[4];
+    	int count = 0;
+    	int index = input.indexOf(tag);
+    	while(index>=0) {
+    		if(count==indices.length) indices = Arrays.copyOf(indices, count*2);
+    		indices[count++] = index;
+    		index = input.indexOf(tag, index+tag.length());
+    	}
+    	return Arrays.copyOf(indices, count);
+    }
 }
@@ -0,0 +1,71 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.sideeffect.util;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Regular expression rule used in SideEffectAnnotator, compiled once:
+ * Constructor:
+ * PatternRule(String expr, List<String> kw):
+ *   "expr" is an regular expression. Note that "KW" will be replaced by the list of kw argument;
+ *   "kw" is a list of keywords;
+ *   
+ * PatternRule(String expr):
+ *   "expr" is an regular expression.
+ * 
+ * match(String in) returns a PatternMatch for "in" that uses a matcher reused by the calling thread,
+ * so the PatternMatch is valid until the next call of match(String) on the same thread.
+ * 
+ * @author Mayo Clinic
+ *
+ */
+public class PatternRule {
+	private final Pattern pat;
+	private final ThreadLocal<Matcher> matcher;
+	
+	public PatternRule(String expr, List<String> kw) {
+		this(PatternMatch.toRegex(expr, kw));
+	}
+	
+	public PatternRule(String expr) {
+		pat = Pattern.compile(expr);
+		matcher = ThreadLocal.withInitial(() -> pat.matcher(""));
+	}
+	
+	/**
+	 * Return a PatternMatch of this rule for the input string
+	 * 
+	 * @param in string to match
+	 */
+	public PatternMatch match(String in) {
+		return new PatternMatch(pat, in, matcher.get().reset(in));
+	}
+	
+	/**
+	 * Return true if the whole input string matches this rule
+	 * 
+	 * @param in string to match
+	 */
+	public boolean matches(String in) {
+		return matcher.get().reset(in).matches();
+	}
+}
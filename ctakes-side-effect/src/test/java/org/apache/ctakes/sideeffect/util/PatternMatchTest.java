@@ -0,0 +1,216 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.sideeffect.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+/**
+ * Compares PatternRule and PatternMatch with the regular expressions that
+ * PatternMatch used to compile on every call.
+ */
+public class PatternMatchTest {
+
+	private static final List<String> CAUSE_WORDS = Arrays.asList("due to",
+			"secondary to", "from");
+	private static final List<String> DISCONT_VERBS = Arrays.asList(
+			"stopped", "discontinued", "held");
+
+	// rules of SideEffectAnnotator, with and without keywords
+	private static final String[][] KEYWORD_RULES = {
+			{ "(<@PSE>).*(KW).*(<@DRUG>)", "cause" },
+			{ "(KW).*(<@DRUG>).*(because|after).*(<@PSE>)", "discont" },
+			{ "(KW)", "cause" } };
+	private static final String[] RULES = {
+			"(<@DRUG>)\\s(\\(.*<@PSE>.*\\))", ".*(dicussed|concerned).*",
+			".*(<PSE>).*", "\\(.*((for)|(treated with)).*\\)", ".*trial.*" };
+
+	private static final String[] INPUTS = {
+			"<@PSE> due to <@DRUG>",
+			"<@PSE> and <PSE> due to <DRUG> and <@DRUG>",
+			"<@PSE> from <DRUG>, <@DRUG> and <DRUG>",
+			"stopped <DRUG> and <@DRUG> because of <PSE>, <@PSE>",
+			"<@DRUG> (<PSE> and <@PSE>) trial",
+			"<@DRUG> (treated with <DRUG> for <@PSE>)",
+			"patient concerned about <PSE>",
+			"no tags here, just due to and from",
+			"<DRUG><PSE><DRUG> or <PSE>",
+			"",
+			// matches and tag checks must not cross line breaks
+			"<@PSE> due\nto <@DRUG>",
+			"<@PSE> due to <DRUG>\n<@DRUG> due to <@DRUG>",
+			"<@PSE> <PSE>\r\n secondary to <DRUG>\u2028<@DRUG>",
+			"<@DRUG> (<@PSE>\n)",
+			"held <@DRUG> after\r<@PSE>" };
+
+	@Test
+	public void testRulesWithKeywords() {
+		for (String[] rule : KEYWORD_RULES) {
+			List<String> kw = rule[1].equals("cause") ? CAUSE_WORDS
+					: DISCONT_VERBS;
+			PatternRule patternRule = new PatternRule(rule[0], kw);
+			Pattern old = Pattern.compile(oldRegex(rule[0], kw));
+			for (String in : INPUTS) {
+				assertSameMatches(rule[0] + " " + in, old.matcher(in),
+						patternRule.match(in).mat);
+				assertSameMatches(rule[0] + " " + in, old.matcher(in),
+						new PatternMatch(rule[0], in, kw).mat);
+				assertEquals(in, old.matcher(in).matches(),
+						patternRule.matches(in));
+			}
+		}
+	}
+
+	@Test
+	public void testRulesWithoutKeywords() {
+		for (String rule : RULES) {
+			PatternRule patternRule = new PatternRule(rule);
+			for (String in : INPUTS) {
+				assertSameMatches(rule + " " + in,
+						Pattern.compile(rule).matcher(in),
+						patternRule.match(in).mat);
+				assertSameMatches(rule + " " + in,
+						Pattern.compile(rule).matcher(in),
+						new PatternMatch(rule, in).mat);
+				assertEquals(in, in.matches(rule), patternRule.matches(in));
+			}
+		}
+	}
+
+	/**
+	 * the matcher of a rule is reused; a PatternMatch is valid until the next
+	 * match on the same thread
+	 */
+	@Test
+	public void testRuleReusesMatcher() {
+		PatternRule rule = new PatternRule("(<@PSE>).*(KW).*(<@DRUG>)",
+				CAUSE_WORDS);
+		PatternMatch first = rule.match(INPUTS[0]);
+		assertTrue(first.mat.find());
+		assertFalse(rule.match(INPUTS[7]).mat.find());
+		PatternMatch again = rule.match(INPUTS[1]);
+		assertTrue(again.mat.find());
+		assertEquals(INPUTS[1].indexOf("due to"), again.mat.start(2));
+	}
+
+	/**
+	 * the tag checks, for every substring of every input
+	 */
+	@Test
+	public void testTagsBetween() {
+		for (String in : INPUTS) {
+			PatternMatch pm = new PatternRule(".*").match(in);
+			for (int begin = 0; begin <= in.length(); begin++) {
+				for (int end = begin; end <= in.length(); end++) {
+					String at = "\"" + in + "\" " + begin + "-" + end;
+					assertEquals(at, oldIsBetween(in, begin, end, "<DRUG>"),
+							pm.isDrugBetween(begin, end));
+					assertEquals(at, oldIsBetween(in, begin, end, "<PSE>"),
+							pm.isPseBetween(begin, end));
+
+					int[] oldSpan = { -1, -1 };
+					int[] span = { -1, -1 };
+					assertEquals(at,
+							oldIsBetween(in, begin, end, "<DRUG>", oldSpan),
+							pm.isDrugBetween(begin, end, span));
+					assertArrayEquals(at, oldSpan, span);
+					oldSpan = new int[] { -1, -1 };
+					span = new int[] { -1, -1 };
+					assertEquals(at,
+							oldIsBetween(in, begin, end, "<PSE>", oldSpan),
+							pm.isPseBetween(begin, end, span));
+					assertArrayEquals(at, oldSpan, span);
+
+					assertEquals(at, oldIsDistantBetween(in, begin, end),
+							pm.isDistantBetween(begin, end));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testMatchAcrossLineBreak() {
+		PatternRule rule = new PatternRule("(<@PSE>).*(KW).*(<@DRUG>)",
+				CAUSE_WORDS);
+		assertTrue(rule.match("<@PSE> due to <@DRUG>").mat.find());
+		assertFalse(rule.match("<@PSE> due\nto <@DRUG>").mat.find());
+		assertFalse(rule.match("<@PSE>\ndue to <@DRUG>").mat.find());
+
+		PatternMatch pm = rule.match("<@PSE> <DRUG>\n due to <@DRUG>");
+		assertFalse(pm.isDrugBetween(0, 15));
+		assertTrue(pm.isDrugBetween(0, 13));
+		int[] span = new int[2];
+		// the span check has never looked at line breaks
+		assertTrue(pm.isDrugBetween(0, 15, span));
+		assertArrayEquals(new int[] { 7, 13 }, span);
+	}
+
+	private static void assertSameMatches(String message, Matcher expected,
+			Matcher actual) {
+		assertEquals(message, expected.groupCount(), actual.groupCount());
+		while (expected.find()) {
+			assertTrue(message, actual.find());
+			for (int g = 0; g <= expected.groupCount(); g++) {
+				assertEquals(message, expected.start(g), actual.start(g));
+				assertEquals(message, expected.end(g), actual.end(g));
+			}
+		}
+		assertFalse(message, actual.find());
+	}
+
+	// the code that PatternMatch replaced
+
+	private static String oldRegex(String expr, List<String> kw) {
+		StringBuffer sb = new StringBuffer();
+		for (String s : kw)
+			sb.append(s + "|");
+		return expr.replaceAll("KW", sb.substring(0, sb.length() - 1));
+	}
+
+	private static boolean oldIsBetween(String in, int begin, int end,
+			String tag) {
+		return in.substring(begin, end).matches(".*" + tag + ".*");
+	}
+
+	private static boolean oldIsBetween(String in, int begin, int end,
+			String tag, int[] span) {
+		Pattern p = Pattern.compile("(" + tag + ")");
+		Matcher m = p.matcher(in.substring(begin, end));
+		while (m.find()) {
+			span[0] = m.start() + begin;
+			span[1] = m.end() + begin;
+			return true;
+		}
+		return false;
+	}
+
+	private static boolean oldIsDistantBetween(String in, int begin, int end) {
+		String s = in.substring(begin, end).replaceAll("<DRUG>|<PSE>", "");
+		return !s.matches("(\\sand\\s)|(\\sor\\s)|(,)|(,\\s)|(\\s,\\s)");
+	}
+}
@@ -43,6 +43,7 @@ import org.apache.uima.analysis_component.JCasAnnotator_ImplBase;
 import org.apache.uima.analysis_engine.AnalysisEngine;
 import org.apache.uima.analysis_engine.annotator.AnnotatorProcessException;
 import org.apache.uima.cas.FSIterator;
+import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.JFSIndexRepository;
 import org.apache.uima.jcas.cas.TOP;
@@ -62,6 +63,7 @@ import org.apache.ctakes.smokingstatus.Const;
 import org.apache.ctakes.smokingstatus.util.ClassifiableEntry;
 import org.apache.ctakes.smokingstatus.util.TruthValue;
 import org.apache.ctakes.typesystem.type.structured.DocumentID;
+import org.apache.ctakes.typesystem.type.syntax.WordToken;
 import org.apache.ctakes.typesystem.type.textspan.Segment;
 import org.apache.ctakes.typesystem.type.textspan.Sentence;
 import org.apache.ctakes.smokingstatus.type.libsvm.NominalAttributeValue;
@@ -112,6 +114,28 @@ public class ClassifiableEntries extends JCasAnnotator_ImplBase {
 	 */
 	public static final String PARAM_IGNORE_SECTIONS = "SectionsToIgnore";
 
+	/**
+	 * Name of configuration parameter that determines whether the KU rules are
+	 * applied directly to sentence windows of the main CAS. Only sentences
+	 * that the rules find to be about smoking are then copied into the local
+	 * CAS and run through the nested engines. All other sentences are
+	 * UNKNOWN, which is what the nested engines would resolve them to. This
+	 * is optional and defaults to false.
+	 */
+	public static final String PARAM_SENTENCE_WINDOW = "SentenceWindow";
+
+	/**
+	 * Names of the optional configuration parameters for the KU rules that are
+	 * applied in sentence window mode. They should match the settings of the
+	 * KuRuleBasedClassifierAnnotator in the step 1 descriptor.
+	 */
+	public static final String PARAM_SMOKING_WORDS_FILE = "SmokingWordsFile";
+	public static final String PARAM_UNKNOWN_WORDS_FILE = "UnknownWordsFile";
+	public static final String PARAM_CASE_SENSITIVE = "CaseSensitive";
+
+	private static final String DEFAULT_SMOKING_WORDS_FILE = "org/apache/ctakes/smokingstatus/data/KU/keywords.txt";
+	private static final String DEFAULT_UNKNOWN_WORDS_FILE = "org/apache/ctakes/smokingstatus/data/KU/unknown_words.txt";
+
 	public void initialize(UimaContext aContext)
 			throws ResourceInitializationException {
 		boolean windowsSystem = true;
@@ -174,11 +198,36 @@ public class ClassifiableEntries extends JCasAnnotator_ImplBase {
 			sectionsToIgnore = new HashSet<String>();
 			for (int i = 0; i < sections.length; i++)
 				sectionsToIgnore.add(sections[i]);
+
+			initSentenceWindow();
 		} catch (Exception e) {
 			throw new ResourceInitializationException(e);
 		}
 	}
 
+	private void initSentenceWindow() throws Exception {
+		Object paramValue = getContext().getConfigParameterValue(
+				PARAM_SENTENCE_WINDOW);
+		if (paramValue == null || !((Boolean) paramValue).booleanValue())
+			return;
+		String smokingWordsFile = (String) getContext()
+				.getConfigParameterValue(PARAM_SMOKING_WORDS_FILE);
+		if (smokingWordsFile == null || smokingWordsFile.isEmpty())
+			smokingWordsFile = DEFAULT_SMOKING_WORDS_FILE;
+		String unknownWordsFile = (String) getContext()
+				.getConfigParameterValue(PARAM_UNKNOWN_WORDS_FILE);
+		if (unknownWordsFile == null || unknownWordsFile.isEmpty())
+			unknownWordsFile = DEFAULT_UNKNOWN_WORDS_FILE;
+		paramValue = getContext().getConfigParameterValue(PARAM_CASE_SENSITIVE);
+		boolean caseSensitive = paramValue != null
+				&& ((Boolean) paramValue).booleanValue();
+
+		kuWindow = new KuRuleBasedClassifierAnnotator();
+		kuWindow.loadWords(smokingWordsFile, unknownWordsFile, caseSensitive);
+		if (iv_logger.isInfoEnabled())
+			iv_logger.info("Classifying sentence windows of the main CAS");
+	}
+
 	private void initTruthData() throws Exception {
 		String truthFilePath = (String) getContext().getConfigParameterValue(
 				PARAM_TRUTH_FILE);
@@ -355,13 +404,24 @@ public class ClassifiableEntries extends JCasAnnotator_ImplBase {
 		try {
 			for (iv_classifiableIdx = 0; iv_classifiableIdx < iv_procEntryList
 					.size(); iv_classifiableIdx++) {
-				jcas_local.reset();
-				// create a new JCas object
-				// jcas_local.setDocumentText(jcas.getDocumentText());
-
 				// all sentences should be added to one list in iv_entryIndexMap
 				ClassifiableEntry entry = (ClassifiableEntry) iv_procEntryList
 						.get(iv_classifiableIdx);
+
+				/**
+				 * The KU classifier marks most sentences UNKNOWN, and the
+				 * ResolutionAnnotator keeps UNKNOWN for those. In sentence
+				 * window mode they are classified on the main CAS and never
+				 * reach the nested engines.
+				 */
+				if (kuWindow != null && !isSmokingStatusKnown(jcas, entry)) {
+					storeAssignedClasses(Const.CLASS_UNKNOWN);
+					continue;
+				}
+
+				jcas_local.reset();
+				// create a new JCas object
+				// jcas_local.setDocumentText(jcas.getDocumentText());
 				// add object to CAS that captures entry data
 				RecordSentence rs = new RecordSentence(jcas_local);
 				rs.setRecordID(entry.iv_recordID);
@@ -459,6 +519,22 @@ public class ClassifiableEntries extends JCasAnnotator_ImplBase {
 		return known;
 	}
 
+	/**
+	 * determines with the KU rules whether a sentence window of the main CAS
+	 * is about smoking
+	 * 
+	 * @param jcas
+	 *            the main CAS
+	 * @param entry
+	 *            the sentence window
+	 * @return
+	 */
+	private boolean isSmokingStatusKnown(JCas jcas, ClassifiableEntry entry) {
+		return kuWindow.classify(
+				JCasUtil.selectCovered(jcas, WordToken.class, entry.iv_begin,
+						entry.iv_end), entry.iv_text).equals(Const.CLASS_KNOWN);
+	}
+
 	private Segment getSegment(ClassifiableEntry rs) {
 		Segment sa;
 		for (int i = 0; i < iv_segList.size(); i++) {
@@ -651,6 +727,8 @@ public class ClassifiableEntries extends JCasAnnotator_ImplBase {
 	//private String apiMacroHome = "\\$main_root";
 	private JCas jcas_local;
 	private ResolutionAnnotator ra;
+	// applies the KU rules to the main CAS in sentence window mode, else null
+	private KuRuleBasedClassifierAnnotator kuWindow;
 	private ResourceManager ResMgr;
 	private Set<String> sectionsToIgnore;
 
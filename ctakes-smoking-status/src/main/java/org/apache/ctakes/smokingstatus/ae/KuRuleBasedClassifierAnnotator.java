@@ -22,13 +22,17 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_component.JCasAnnotator_ImplBase;
 import org.apache.uima.jcas.JCas;
+import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JFSIndexRepository;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.ctakes.smokingstatus.type.UnknownSmokerNamedEntityAnnotation;
@@ -42,6 +46,7 @@ public class KuRuleBasedClassifierAnnotator extends JCasAnnotator_ImplBase {
 	Set<String> smokingWords; // smoking related words
 	Set<String> unknownWords; // if this word/phrase appears, treat the sentence
 								// as UNKNOWN (eg: smoke detector)
+	List<Pattern> unknownPatterns; // unknownWords compiled once
 	String classAttributeName;
 	boolean caseSensitive = true;
 
@@ -50,8 +55,6 @@ public class KuRuleBasedClassifierAnnotator extends JCasAnnotator_ImplBase {
 
 		super.initialize(aContext);
 
-		smokingWords = new HashSet<String>();
-		unknownWords = new HashSet<String>();
 		try {
 
 			Object paramValue = aContext
@@ -63,32 +66,82 @@ public class KuRuleBasedClassifierAnnotator extends JCasAnnotator_ImplBase {
 					.getConfigParameterValue("classAttribute");
 			String smokingWordsFileName = (String) aContext
 					.getConfigParameterValue("SmokingWordsFile");
-
-			smokingWords = readLinesFromFile(FileLocator.getFile(
-					smokingWordsFileName).getAbsolutePath());
 			String unknownWordsFileName = (String) aContext
 					.getConfigParameterValue("UnknownWordsFile");
-			unknownWords = readLinesFromFile(FileLocator.getFile(
-					unknownWordsFileName).getAbsolutePath());
+			loadWords(smokingWordsFileName, unknownWordsFileName, caseSensitive);
 		} catch (Exception e) {
 			throw new ResourceInitializationException(e);
 		}
 
 	}
 
+	/**
+	 * Loads the word lists without a uima context, so that the rules can be
+	 * applied to sentences of another cas.
+	 * 
+	 * @param smokingWordsFileName
+	 * @param unknownWordsFileName
+	 * @param caseSensitive
+	 * @throws IOException
+	 */
+	void loadWords(String smokingWordsFileName, String unknownWordsFileName,
+			boolean caseSensitive) throws IOException {
+		this.caseSensitive = caseSensitive;
+		smokingWords = readLinesFromFile(FileLocator.getFile(
+				smokingWordsFileName).getAbsolutePath());
+		unknownWords = readLinesFromFile(FileLocator.getFile(
+				unknownWordsFileName).getAbsolutePath());
+		unknownPatterns = new ArrayList<Pattern>();
+		for (String s : unknownWords)
+			unknownPatterns.add(Pattern.compile(".*" + s + ".*"));
+	}
+
 	public void process(JCas jcas) {
 		JFSIndexRepository indexes = jcas.getJFSIndexRepository();
-		Iterator<?> tokenItr = indexes.getAnnotationIndex(WordToken.type)
-				.iterator();
 
+		String classVal = classify(JCasUtil.select(jcas, WordToken.class),
+				jcas.getDocumentText()); // This is sentence here!!
+
+		// ---
+		// 
+		Iterator<?> neItr = indexes.getAnnotationIndex(
+				UnknownSmokerNamedEntityAnnotation.type).iterator();
+		while (neItr.hasNext()) {
+			UnknownSmokerNamedEntityAnnotation neAnn = (UnknownSmokerNamedEntityAnnotation) neItr
+					.next();
+			System.out.println("***UnknownNamedEntity|"
+					+ neAnn.getCoveredText());
+			classVal = Const.CLASS_UNKNOWN;
+		}
+		// ---
+
+		// System.out.println("***" + classVal + " for " + classAttributeName +
+		// "***");
+
+		NominalAttributeValue nominalAttributeValue = new NominalAttributeValue(
+				jcas);
+		nominalAttributeValue.setAttributeName(classAttributeName);
+		nominalAttributeValue.setNominalValue(classVal);
+		nominalAttributeValue.addToIndexes();
+	}
+
+	/**
+	 * Applies the KU rules to the word tokens of a sentence.
+	 * 
+	 * @param tokens
+	 *            word tokens of the sentence
+	 * @param sen
+	 *            sentence text
+	 * @return {@link Const#CLASS_KNOWN} or {@link Const#CLASS_UNKNOWN}
+	 */
+	String classify(Iterable<WordToken> tokens, String sen) {
 		/*
 		 * some cases there is no word token for a given jcas So, if initial
 		 * classVal is "null" this null is assigned for class value and cause
 		 * error.
 		 */
 		String classVal = Const.CLASS_UNKNOWN;
-		while (tokenItr.hasNext()) {
-			WordToken token = (WordToken) tokenItr.next();
+		for (WordToken token : tokens) {
 			String strToken = token.getCoveredText();
 
 			// System.out.println("***word:" + strToken);
@@ -108,41 +161,16 @@ public class KuRuleBasedClassifierAnnotator extends JCasAnnotator_ImplBase {
 		// smoking related word
 		// e.g.: Smoke Detector in-Home------ Yes
 		if (classVal.equals(Const.CLASS_KNOWN)) {
-			String sen = jcas.getDocumentText(); // This is sentence here!!
-
-			Iterator<String> itr = unknownWords.iterator();
-			while (itr.hasNext()) {
-				String s = (String) itr.next();
-				if (sen.toLowerCase().trim().matches(".*" + s + ".*")) { // need
-																			// trim()!!
-					// System.out.println("***UnknownWords|"+s+"|");
+			String trimmed = sen.toLowerCase().trim(); // need trim()!!
+			for (Pattern p : unknownPatterns) {
+				if (p.matcher(trimmed).matches()) {
+					// System.out.println("***UnknownWords|"+p+"|");
 					classVal = Const.CLASS_UNKNOWN;
 					break;
 				}
 			}
 		}
-
-		// ---
-		// 
-		Iterator<?> neItr = indexes.getAnnotationIndex(
-				UnknownSmokerNamedEntityAnnotation.type).iterator();
-		while (neItr.hasNext()) {
-			UnknownSmokerNamedEntityAnnotation neAnn = (UnknownSmokerNamedEntityAnnotation) neItr
-					.next();
-			System.out.println("***UnknownNamedEntity|"
-					+ neAnn.getCoveredText());
-			classVal = Const.CLASS_UNKNOWN;
-		}
-		// ---
-
-		// System.out.println("***" + classVal + " for " + classAttributeName +
-		// "***");
-
-		NominalAttributeValue nominalAttributeValue = new NominalAttributeValue(
-				jcas);
-		nominalAttributeValue.setAttributeName(classAttributeName);
-		nominalAttributeValue.setNominalValue(classVal);
-		nominalAttributeValue.addToIndexes();
+		return classVal;
 	}
 
 	private Set<String> readLinesFromFile(String fileName) throws IOException {
@@ -25,7 +25,6 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -35,13 +34,14 @@ import libsvm.svm_model;
 import libsvm.svm_node;
 import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_component.JCasAnnotator_ImplBase;
-import org.apache.uima.jcas.JFSIndexRepository;
+import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ResourceInitializationException;
 
 
 import org.apache.ctakes.core.resource.FileResource;
 import org.apache.ctakes.smokingstatus.Const;
+import org.apache.ctakes.smokingstatus.util.PcsFeatureVectorizer;
 import org.apache.ctakes.typesystem.type.syntax.WordToken;
 import org.apache.ctakes.smokingstatus.type.libsvm.NominalAttributeValue;
 
@@ -51,6 +51,7 @@ public class PcsClassifierAnnotator_libsvm extends JCasAnnotator_ImplBase {
 	boolean caseSensitive = true;
 	Map<?, ?> tokenCounts;
 	svm_model model; // trained libsvm model
+	PcsFeatureVectorizer vectorizer; // keyword and date features
 
 	public void initialize(UimaContext aContext)
 			throws ResourceInitializationException {
@@ -78,106 +79,17 @@ public class PcsClassifierAnnotator_libsvm extends JCasAnnotator_ImplBase {
 
 			model = svm.svm_load_model(pathOfTrainedModel.getFile()
 					.getAbsolutePath());
+			vectorizer = new PcsFeatureVectorizer(goWords, stopWords,
+					caseSensitive);
 		} catch (Exception ace) {
 			ace.printStackTrace();
 		}
 	}
 
 	public void process(JCas jcas) {
-		List<Double> feature = new ArrayList<Double>();
-
-		JFSIndexRepository indexes = jcas.getJFSIndexRepository();
-		Iterator<?> wordTokenItr = indexes.getAnnotationIndex(WordToken.type)
-				.iterator();
-		List<String> unigrams = new ArrayList<String>();
-		List bigrams = new ArrayList();
-
-		while (wordTokenItr.hasNext()) {
-			WordToken token = (WordToken) wordTokenItr.next();
-			String tok = token.getCoveredText();
-
-			if (tok == null)
-				continue;
-			if (!caseSensitive)
-				tok = tok.toLowerCase();
-			// if(!stopWords.contains(tok)) unigrams.add(tok);
-			// -- this is the replace of the above line
-			// Since the model was trained on words without non-word characters
-			tok = tok.toLowerCase().replaceAll("-{2,}", " ").trim(); // To deal
-			// with
-			// the
-			// cases
-			// like:
-			// Tobacco--quit
-			// in
-			// 1980.
-			String[] toks = tok.split("\\s");
-			for (int i = 0; i < toks.length; i++)
-				if (!stopWords.contains(toks[i]))
-					unigrams.add(toks[i]);
-		}
-
-		for (int i = 0; i < unigrams.size() - 1; i++)
-			bigrams.add((String) unigrams.get(i) + "_"
-					+ (String) unigrams.get(i + 1));
-
-		// unigram & bigram keywords
-		Iterator<String> itr = goWords.iterator();
-		while (itr.hasNext()) {
-			String k = (String) itr.next();
-			double val = 0.0;
-
-			if (k.indexOf("_") != -1) {
-				for (int i = 0; i < bigrams.size(); i++) {
-					if (k.equalsIgnoreCase((String) bigrams.get(i))) {
-						val = 1.0;
-						break;
-					}
-				}
-			} else {
-				for (int i = 0; i < unigrams.size(); i++) {
-					if (k.equalsIgnoreCase((String) unigrams.get(i))) {
-						val = 1.0;
-						break;
-					}
-				}
-			}
-
-			feature.add(new Double(val));
-		}
-
-		// date information
-		double dateInfo = 0.0;
-
 		// Cannot access sentence by SentenceAnnotator or RecordSentence
-		String sen = jcas.getDocumentText(); // this is sentence!!
-		sen = sen.replaceAll("[.?!:;()',\"{}<>#+]", " ").trim();
-		String[] strTokens = sen.split("\\s");
-
-		for (int i = 0; i < strTokens.length; i++) {
-			String s = strTokens[i];
-			if (s.matches("19\\d\\d") || s.matches("19\\d\\ds")
-					|| s.matches("20\\d\\d") || s.matches("20\\d\\ds")
-					|| s.matches("[1-9]0s")
-					|| s.matches("\\d{1,2}[/-]\\d{1,2}")
-					|| s.matches("\\d{1,2}[/-]\\d{4}")
-					|| s.matches("\\d{1,2}[/-]\\d{1,2}[/-]\\d{2}")
-					|| s.matches("\\d{1,2}[/-]\\d{1,2}[/-]\\d{4}")) {
-				dateInfo = 1.0;
-				// System.out.println("***dateInfo|"+s+"|"+dateInfo);
-				break;
-			}
-		}
-
-		feature.add(new Double(dateInfo));
-
-		// set the libSVM feature vector
-		svm_node[] x = new svm_node[feature.size()];
-		for (int j = 0; j < feature.size(); j++) {
-			x[j] = new svm_node();
-			x[j].index = j + 1;
-			x[j].value = ((Double) feature.get(j)).doubleValue();
-		}
+		svm_node[] x = vectorizer.vectorize(
+				JCasUtil.select(jcas, WordToken.class), jcas.getDocumentText()); // this is sentence!!
 
 		double clsLabel; // 1:CURRENT_SMOKER, 2:PAST_SMOKER, 3:SMOKER
 		clsLabel = svm.svm_predict(model, x); // predict class label using
@@ -0,0 +1,159 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.smokingstatus.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import libsvm.svm_node;
+
+import org.apache.ctakes.typesystem.type.syntax.WordToken;
+
+/**
+ * Builds the libsvm feature vector of the PCS classifier for a sentence: one
+ * feature per unigram or bigram keyword and a final date feature.
+ * <p>
+ * Keywords are looked up by hash instead of being compared to every unigram
+ * and bigram, the date rules are a single precompiled pattern, and the same
+ * svm_node array is refilled for every sentence. The vectors are identical to
+ * those built by the original PcsClassifierAnnotator_libsvm loops.
+ * </p>
+ * Instances are not thread safe, and the returned array is only valid until
+ * the next call.
+ * 
+ * @author Mayo Clinic
+ */
+public class PcsFeatureVectorizer {
+
+	private static final Pattern MULTI_DASH = Pattern.compile("-{2,}");
+	private static final Pattern WHITESPACE = Pattern.compile("\\s");
+	private static final Pattern PUNCTUATION = Pattern
+			.compile("[.?!:;()',\"{}<>#+]");
+	// the nine date rules as alternatives
+	private static final Pattern DATE = Pattern.compile("19\\d\\d"
+			+ "|19\\d\\ds" + "|20\\d\\d" + "|20\\d\\ds" + "|[1-9]0s"
+			+ "|\\d{1,2}[/-]\\d{1,2}" + "|\\d{1,2}[/-]\\d{4}"
+			+ "|\\d{1,2}[/-]\\d{1,2}[/-]\\d{2}"
+			+ "|\\d{1,2}[/-]\\d{1,2}[/-]\\d{4}");
+
+	private final Set<String> iv_stopWords;
+	private final boolean iv_caseSensitive;
+	// key = lower case keyword, val = feature indices of the keyword
+	private final Map<String, int[]> iv_unigramIndices = new HashMap<String, int[]>();
+	private final Map<String, int[]> iv_bigramIndices = new HashMap<String, int[]>();
+	private final svm_node[] iv_nodes;
+	private final List<String> iv_unigrams = new ArrayList<String>();
+	private final Matcher iv_dateMatcher = DATE.matcher("");
+
+	/**
+	 * @param goWords
+	 *            ordered keywords, bigram words joined by an underscore
+	 * @param stopWords
+	 *            words that are not unigrams
+	 * @param caseSensitive
+	 *            false if tokens should be lower cased before the stop word
+	 *            check
+	 */
+	public PcsFeatureVectorizer(List<String> goWords, Set<String> stopWords,
+			boolean caseSensitive) {
+		iv_stopWords = stopWords;
+		iv_caseSensitive = caseSensitive;
+		for (int i = 0; i < goWords.size(); i++) {
+			String k = goWords.get(i);
+			// keywords were compared with equalsIgnoreCase to lower case grams
+			Map<String, int[]> indices = k.indexOf("_") != -1 ? iv_bigramIndices
+					: iv_unigramIndices;
+			String key = k.toLowerCase();
+			int[] old = indices.get(key);
+			if (old == null) {
+				indices.put(key, new int[] { i });
+			} else {
+				int[] both = Arrays.copyOf(old, old.length + 1);
+				both[old.length] = i;
+				indices.put(key, both);
+			}
+		}
+		iv_nodes = new svm_node[goWords.size() + 1];
+		for (int j = 0; j < iv_nodes.length; j++) {
+			iv_nodes[j] = new svm_node();
+			iv_nodes[j].index = j + 1;
+		}
+	}
+
+	/**
+	 * @param tokens
+	 *            word tokens of the sentence
+	 * @param sentence
+	 *            sentence text
+	 * @return the feature vector, reused by the next call
+	 */
+	public svm_node[] vectorize(Iterable<WordToken> tokens, String sentence) {
+		for (int j = 0; j < iv_nodes.length; j++)
+			iv_nodes[j].value = 0.0;
+
+		iv_unigrams.clear();
+		for (WordToken token : tokens) {
+			String tok = token.getCoveredText();
+			if (tok == null)
+				continue;
+			if (!iv_caseSensitive)
+				tok = tok.toLowerCase();
+			// Since the model was trained on words without non-word characters
+			// To deal with the cases like: Tobacco--quit in 1980.
+			tok = MULTI_DASH.matcher(tok.toLowerCase()).replaceAll(" ").trim();
+			String[] toks = WHITESPACE.split(tok);
+			for (int i = 0; i < toks.length; i++)
+				if (!iv_stopWords.contains(toks[i]))
+					iv_unigrams.add(toks[i]);
+		}
+
+		// unigram & bigram keywords
+		for (int i = 0; i < iv_unigrams.size(); i++) {
+			setFeatures(iv_unigramIndices.get(iv_unigrams.get(i)));
+			if (i < iv_unigrams.size() - 1 && !iv_bigramIndices.isEmpty())
+				setFeatures(iv_bigramIndices.get(iv_unigrams.get(i) + "_"
+						+ iv_unigrams.get(i + 1)));
+		}
+
+		// date information
+		String sen = PUNCTUATION.matcher(sentence).replaceAll(" ").trim();
+		String[] strTokens = WHITESPACE.split(sen);
+		for (int i = 0; i < strTokens.length; i++) {
+			if (iv_dateMatcher.reset(strTokens[i]).matches()) {
+				iv_nodes[iv_nodes.length - 1].value = 1.0;
+				break;
+			}
+		}
+		return iv_nodes;
+	}
+
+	private void setFeatures(int[] indices) {
+		if (indices == null)
+			return;
+		for (int i = 0; i < indices.length; i++)
+			iv_nodes[indices[i]].value = 1.0;
+	}
+
+}
@@ -0,0 +1,162 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.smokingstatus.ae;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.ctakes.smokingstatus.Const;
+import org.apache.ctakes.smokingstatus.type.SmokingDocumentClassification;
+import org.apache.ctakes.smokingstatus.type.libsvm.NominalAttributeValue;
+import org.apache.ctakes.typesystem.type.syntax.WordToken;
+import org.apache.ctakes.typesystem.type.textspan.Sentence;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.fit.factory.AggregateBuilder;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.junit.Test;
+
+/**
+ * Compares the SentenceWindow mode of {@link ClassifiableEntries}, which
+ * applies the KU rules to the word tokens of the main CAS, with the step 1
+ * engines, which tokenize each sentence again in a local CAS.
+ * <p>
+ * The descriptors are loaded from the desc directory of this module, as in
+ * {@code SimulatedProdSmokingTAE}. The LVG annotator of that pipeline is left
+ * out, as neither mode uses the canonical forms of the main CAS.
+ */
+public class ClassifiableEntriesSentenceWindowTest {
+
+	private static final String DESC = "desc/analysis_engine/";
+	private static final String CORE_DESC = "../ctakes-core/desc/analysis_engine/";
+
+	private static final String NOT_SMOKING = "Patient denies chest pain. "
+			+ "Smoke detector in the home. Lungs are clear to auscultation.";
+
+	private static final String[] DOCUMENTS = {
+			NOT_SMOKING,
+			"Patient is a current smoker, 1 ppd. Denies chest pain.",
+			"He quit smoking 10 years ago. Ex-smoker. No alcohol use.",
+			"Denies tobacco use. Lungs are clear.",
+			"Tobacco--quit in 1980.\nCigarettes: 1-2/day, 3/2004\nNothing of interest" };
+
+	/**
+	 * the KU decision on each sentence window of the main CAS is the decision
+	 * of the step 1 engines on the sentence alone
+	 */
+	@Test
+	public void testSameSentenceDecisions() throws Exception {
+		AnalysisEngine main = createMainEngine(null);
+		AnalysisEngine step1 = AnalysisEngineFactory.createEngineFromPath(DESC
+				+ "ProductionPostSentenceAggregate_step1.xml");
+		KuRuleBasedClassifierAnnotator kuWindow = new KuRuleBasedClassifierAnnotator();
+		kuWindow.loadWords("org/apache/ctakes/smokingstatus/data/KU/keywords.txt",
+				"org/apache/ctakes/smokingstatus/data/KU/unknown_words.txt",
+				false);
+		Set<String> decisions = new HashSet<String>();
+		for (String document : DOCUMENTS) {
+			JCas jcas = main.newJCas();
+			jcas.setDocumentText(document);
+			main.process(jcas);
+			for (Sentence sentence : JCasUtil.select(jcas, Sentence.class)) {
+				String text = sentence.getCoveredText();
+				String window = kuWindow.classify(JCasUtil.selectCovered(jcas,
+						WordToken.class, sentence), text);
+
+				JCas jcasLocal = step1.newJCas();
+				jcasLocal.setDocumentText(text);
+				step1.process(jcasLocal);
+				String local = null;
+				for (NominalAttributeValue nav : JCasUtil.select(jcasLocal,
+						NominalAttributeValue.class)) {
+					if (nav.getAttributeName().equalsIgnoreCase("smoking_status"))
+						local = nav.getNominalValue();
+				}
+				assertEquals(text, local, window);
+				decisions.add(window);
+			}
+		}
+		// both the UNKNOWN shortcut and the nested engines are covered
+		assertTrue(decisions.contains(Const.CLASS_KNOWN));
+		assertTrue(decisions.contains(Const.CLASS_UNKNOWN));
+		main.destroy();
+		step1.destroy();
+	}
+
+	/**
+	 * the document classification does not depend on the mode
+	 */
+	@Test
+	public void testSameDocumentClassification() throws Exception {
+		AnalysisEngine nested = createMainEngine(Boolean.FALSE);
+		AnalysisEngine window = createMainEngine(Boolean.TRUE);
+		for (String document : DOCUMENTS) {
+			String expected = classify(nested, document);
+			assertEquals(document, expected, classify(window, document));
+			if (NOT_SMOKING.equals(document))
+				assertEquals(Const.CLASS_UNKNOWN, expected);
+			else
+				assertNotEquals(document, Const.CLASS_UNKNOWN, expected);
+		}
+		nested.destroy();
+		window.destroy();
+	}
+
+	private static String classify(AnalysisEngine engine, String document)
+			throws Exception {
+		JCas jcas = engine.newJCas();
+		jcas.setDocumentText(document);
+		engine.process(jcas);
+		Collection<SmokingDocumentClassification> classifications = JCasUtil
+				.select(jcas, SmokingDocumentClassification.class);
+		assertEquals(document, 1, classifications.size());
+		return classifications.iterator().next().getClassification();
+	}
+
+	/**
+	 * @param sentenceWindow
+	 *            null for the main CAS preprocessing only, else the
+	 *            SentenceWindow setting of the ClassifiableEntries annotator
+	 *            that is added to it
+	 */
+	private static AnalysisEngine createMainEngine(Boolean sentenceWindow)
+			throws Exception {
+		AggregateBuilder builder = new AggregateBuilder();
+		builder.add(AnalysisEngineFactory.createEngineDescriptionFromPath(CORE_DESC
+				+ "SimpleSegmentAnnotator.xml"));
+		builder.add(AnalysisEngineFactory.createEngineDescriptionFromPath(CORE_DESC
+				+ "SentenceDetectorAnnotator.xml"));
+		builder.add(AnalysisEngineFactory.createEngineDescriptionFromPath(CORE_DESC
+				+ "TokenizerAnnotator.xml"));
+		builder.add(AnalysisEngineFactory.createEngineDescriptionFromPath(DESC
+				+ "SentenceAdjuster.xml"));
+		if (sentenceWindow != null) {
+			builder.add(AnalysisEngineFactory.createEngineDescriptionFromPath(
+					DESC + "ClassifiableEntriesAnnotator.xml",
+					ClassifiableEntries.PARAM_SENTENCE_WINDOW, sentenceWindow));
+		}
+		return builder.createAggregate();
+	}
+}
@@ -0,0 +1,162 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.smokingstatus.util;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import libsvm.svm_node;
+
+import org.apache.ctakes.typesystem.type.syntax.WordToken;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+
+/**
+ * Compares the feature loops that PcsClassifierAnnotator_libsvm ran before
+ * {@link PcsFeatureVectorizer} with the vectorizer, using the PCS keyword and
+ * stop word files of ctakes-smoking-status-res. Prints the number of
+ * differing vectors and the time taken by each.
+ * <p>
+ * Usage: PcsFeatureVectorizerBenchmark [sentenceFile] [rounds] where the
+ * sentence file has one sentence per line. Without a file the sentences of
+ * {@link PcsFeatureVectorizerTest} are used.
+ * </p>
+ * This is a command line tool run from {@link #main(String...)}, not a unit
+ * test, and is not run by the build. Equivalence with the original loops is
+ * tested by {@link PcsFeatureVectorizerTest}.
+ */
+public final class PcsFeatureVectorizerBenchmark {
+
+	private static final String PCS_DATA = "org/apache/ctakes/smokingstatus/data/PCS/";
+	private static final int WARMUP_ROUNDS = 3;
+
+	private PcsFeatureVectorizerBenchmark() {
+	}
+
+	public static void main(String... args) throws Exception {
+		List<String> sentences = args.length > 0 ? readLines(new FileReader(
+				args[0]), true) : Arrays
+				.asList(PcsFeatureVectorizerTest.SENTENCES);
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		// read as the annotator does, which skips empty keywords but not empty
+		// stop words
+		List<String> goWords = readLines(PCS_DATA + "keywords_PCS.txt", true);
+		Set<String> stopWords = new HashSet<String>(readLines(PCS_DATA
+				+ "stopwords_PCS.txt", false));
+		// the annotator default, in which the original loops lowercase tokens
+		// after the stop word check
+		boolean caseSensitive = true;
+
+		// tokens are in the cas before the annotator runs, so are not timed
+		List<JCas> jcases = new ArrayList<JCas>(sentences.size());
+		for (String sentence : sentences)
+			jcases.add(PcsFeatureVectorizerTest.createSentence(sentence));
+		PcsFeatureVectorizer vectorizer = new PcsFeatureVectorizer(goWords,
+				stopWords, caseSensitive);
+
+		int differences = 0;
+		for (JCas jcas : jcases) {
+			Iterable<WordToken> tokens = JCasUtil.select(jcas, WordToken.class);
+			double[] expected = PcsFeatureVectorizerTest.originalVector(tokens,
+					jcas.getDocumentText(), goWords, stopWords, caseSensitive);
+			svm_node[] nodes = vectorizer.vectorize(tokens,
+					jcas.getDocumentText());
+			for (int j = 0; j < nodes.length; j++) {
+				if (expected[j] != nodes[j].value) {
+					differences++;
+					break;
+				}
+			}
+		}
+		System.out.println("Differing vectors: " + differences + " of "
+				+ jcases.size());
+
+		for (int i = 0; i < WARMUP_ROUNDS; i++) {
+			timeOriginal(jcases, goWords, stopWords, caseSensitive);
+			timeVectorizer(jcases, vectorizer);
+		}
+		long originalNanos = 0;
+		long vectorizerNanos = 0;
+		for (int i = 0; i < rounds; i++) {
+			originalNanos += timeOriginal(jcases, goWords, stopWords,
+					caseSensitive);
+			vectorizerNanos += timeVectorizer(jcases, vectorizer);
+		}
+		double sentencesTimed = (double) rounds * jcases.size();
+		System.out.println(String.format(
+				"Original loops: %.2f microseconds per sentence",
+				originalNanos / sentencesTimed / 1000));
+		System.out.println(String.format(
+				"Vectorizer:     %.2f microseconds per sentence",
+				vectorizerNanos / sentencesTimed / 1000));
+	}
+
+	private static long timeOriginal(List<JCas> jcases, List<String> goWords,
+			Set<String> stopWords, boolean caseSensitive) {
+		long start = System.nanoTime();
+		for (JCas jcas : jcases)
+			PcsFeatureVectorizerTest.originalVector(
+					JCasUtil.select(jcas, WordToken.class),
+					jcas.getDocumentText(), goWords, stopWords, caseSensitive);
+		return System.nanoTime() - start;
+	}
+
+	private static long timeVectorizer(List<JCas> jcases,
+			PcsFeatureVectorizer vectorizer) {
+		long start = System.nanoTime();
+		for (JCas jcas : jcases)
+			vectorizer.vectorize(JCasUtil.select(jcas, WordToken.class),
+					jcas.getDocumentText());
+		return System.nanoTime() - start;
+	}
+
+	private static List<String> readLines(String resource, boolean skipEmpty)
+			throws IOException {
+		InputStream stream = PcsFeatureVectorizerBenchmark.class
+				.getClassLoader().getResourceAsStream(resource);
+		if (stream == null)
+			throw new IOException("Cannot find " + resource);
+		return readLines(new InputStreamReader(stream, "UTF-8"), skipEmpty);
+	}
+
+	private static List<String> readLines(Reader reader, boolean skipEmpty)
+			throws IOException {
+		List<String> lines = new ArrayList<String>();
+		BufferedReader lineReader = new BufferedReader(reader);
+		try {
+			String line;
+			while ((line = lineReader.readLine()) != null)
+				if (!skipEmpty || line.length() > 0)
+					lines.add(line);
+		} finally {
+			lineReader.close();
+		}
+		return lines;
+	}
+
+}
@@ -0,0 +1,172 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.smokingstatus.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import libsvm.svm_node;
+
+import org.apache.ctakes.typesystem.type.syntax.WordToken;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.junit.Test;
+
+public class PcsFeatureVectorizerTest {
+
+	private static final List<String> GO_WORDS = Arrays.asList("smoker",
+			"tobacco", "Quit", "quit_smoking", "pack_per", "quit", "cigarettes",
+			"smoke_free", "ppd");
+
+	private static final Set<String> STOP_WORDS = new HashSet<String>(
+			Arrays.asList("a", "the", "he", "in", "of"));
+
+	static final String[] SENTENCES = {
+			"Tobacco--quit in 1980.",
+			"He quit smoking 2 years ago, 1 pack per day.",
+			"Smoker since 10/12/2001 (about a PPD).",
+			"No alcohol or tobacco use; smoke free since the 70s.",
+			"Cigarettes: 1-2/day, 3/2004",
+			"Nothing of interest",
+			"" };
+
+	@Test
+	public void testSameVectorsAsOriginalLoops() throws Exception {
+		for (boolean caseSensitive : new boolean[] { true, false }) {
+			PcsFeatureVectorizer vectorizer = new PcsFeatureVectorizer(
+					GO_WORDS, STOP_WORDS, caseSensitive);
+			for (String sentence : SENTENCES) {
+				JCas jcas = createSentence(sentence);
+				Iterable<WordToken> tokens = JCasUtil.select(jcas,
+						WordToken.class);
+				double[] expected = originalVector(tokens, sentence,
+						GO_WORDS, STOP_WORDS, caseSensitive);
+				svm_node[] nodes = vectorizer.vectorize(tokens, sentence);
+				assertEquals(sentence, expected.length, nodes.length);
+				for (int j = 0; j < nodes.length; j++) {
+					assertEquals(sentence, j + 1, nodes[j].index);
+					assertEquals(sentence + " feature " + (j + 1),
+							expected[j], nodes[j].value, 0.0);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testReusedVectorIsCleared() throws Exception {
+		PcsFeatureVectorizer vectorizer = new PcsFeatureVectorizer(GO_WORDS,
+				STOP_WORDS, false);
+		vectorizer.vectorize(JCasUtil.select(createSentence(SENTENCES[0]),
+				WordToken.class), SENTENCES[0]);
+		svm_node[] nodes = vectorizer.vectorize(JCasUtil.select(
+				createSentence(SENTENCES[5]), WordToken.class), SENTENCES[5]);
+		for (svm_node node : nodes)
+			assertEquals(0.0, node.value, 0.0);
+	}
+
+	/**
+	 * @return a JCas with the sentence as document text and a word token for
+	 *         every run of non-space characters
+	 */
+	static JCas createSentence(String sentence) throws Exception {
+		JCas jcas = JCasFactory.createJCas();
+		jcas.setDocumentText(sentence);
+		int begin = -1;
+		for (int i = 0; i <= sentence.length(); i++) {
+			boolean space = i == sentence.length()
+					|| Character.isWhitespace(sentence.charAt(i));
+			if (space && begin >= 0) {
+				new WordToken(jcas, begin, i).addToIndexes();
+				begin = -1;
+			} else if (!space && begin < 0) {
+				begin = i;
+			}
+		}
+		return jcas;
+	}
+
+	/**
+	 * the feature loops that PcsClassifierAnnotator_libsvm ran before
+	 * PcsFeatureVectorizer
+	 */
+	static double[] originalVector(Iterable<WordToken> tokens,
+			String sentence, List<String> goWords, Set<String> stopWords,
+			boolean caseSensitive) {
+		List<Double> feature = new ArrayList<Double>();
+		List<String> unigrams = new ArrayList<String>();
+		List<String> bigrams = new ArrayList<String>();
+
+		for (WordToken token : tokens) {
+			String tok = token.getCoveredText();
+			if (tok == null)
+				continue;
+			if (!caseSensitive)
+				tok = tok.toLowerCase();
+			tok = tok.toLowerCase().replaceAll("-{2,}", " ").trim();
+			String[] toks = tok.split("\\s");
+			for (int i = 0; i < toks.length; i++)
+				if (!stopWords.contains(toks[i]))
+					unigrams.add(toks[i]);
+		}
+		for (int i = 0; i < unigrams.size() - 1; i++)
+			bigrams.add(unigrams.get(i) + "_" + unigrams.get(i + 1));
+
+		for (String k : goWords) {
+			double val = 0.0;
+			List<String> grams = k.indexOf("_") != -1 ? bigrams : unigrams;
+			for (int i = 0; i < grams.size(); i++) {
+				if (k.equalsIgnoreCase(grams.get(i))) {
+					val = 1.0;
+					break;
+				}
+			}
+			feature.add(val);
+		}
+
+		double dateInfo = 0.0;
+		String sen = sentence.replaceAll("[.?!:;()',\"{}<>#+]", " ").trim();
+		String[] strTokens = sen.split("\\s");
+		for (int i = 0; i < strTokens.length; i++) {
+			String s = strTokens[i];
+			if (s.matches("19\\d\\d") || s.matches("19\\d\\ds")
+					|| s.matches("20\\d\\d") || s.matches("20\\d\\ds")
+					|| s.matches("[1-9]0s")
+					|| s.matches("\\d{1,2}[/-]\\d{1,2}")
+					|| s.matches("\\d{1,2}[/-]\\d{4}")
+					|| s.matches("\\d{1,2}[/-]\\d{1,2}[/-]\\d{2}")
+					|| s.matches("\\d{1,2}[/-]\\d{1,2}[/-]\\d{4}")) {
+				dateInfo = 1.0;
+				break;
+			}
+		}
+		feature.add(dateInfo);
+
+		double[] vector = new double[feature.size()];
+		for (int j = 0; j < vector.length; j++)
+			vector[j] = feature.get(j);
+		return vector;
+	}
+
+}
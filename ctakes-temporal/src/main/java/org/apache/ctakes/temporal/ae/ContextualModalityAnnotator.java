@@ -18,6 +18,7 @@
  */
 package org.apache.ctakes.temporal.ae;
 
+import org.apache.ctakes.core.cleartk.SharedClassifier;
 import org.apache.ctakes.core.pipeline.PipeBitInfo;
 import org.apache.ctakes.typesystem.type.syntax.BaseToken;
 import org.apache.ctakes.typesystem.type.textsem.EventMention;
@@ -123,4 +124,10 @@ public class ContextualModalityAnnotator extends CleartkAnnotator<String> {
       }
     }
   }
+
+  @Override
+  public void destroy() {
+    SharedClassifier.releaseIfShared(this.classifier);
+    super.destroy();
+  }
 }
@@ -18,6 +18,7 @@
  */
 package org.apache.ctakes.temporal.ae;
 
+import org.apache.ctakes.core.cleartk.SharedClassifier;
 import org.apache.ctakes.core.pipeline.PipeBitInfo;
 import org.apache.ctakes.core.util.DotLogger;
 import org.apache.ctakes.temporal.ae.feature.*;
@@ -265,4 +266,10 @@ public class DocTimeRelAnnotator extends CleartkAnnotator<String> {
 			}
 		}
 	}
+
+	@Override
+	public void destroy() {
+		SharedClassifier.releaseIfShared(this.classifier);
+		super.destroy();
+	}
 }
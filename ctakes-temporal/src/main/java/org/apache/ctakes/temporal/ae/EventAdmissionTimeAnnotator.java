@@ -27,6 +27,7 @@ import java.util.List;
 import java.util.Map;
 //import java.util.Map;
 
+import org.apache.ctakes.core.cleartk.SharedClassifier;
 import org.apache.ctakes.core.pipeline.PipeBitInfo;
 import org.apache.ctakes.temporal.ae.feature.ClosestVerbExtractor;
 //import org.apache.ctakes.temporal.ae.feature.CoveredTextToValuesExtractor;
@@ -303,4 +304,10 @@ public class EventAdmissionTimeAnnotator extends CleartkAnnotator<String> {
 		//        features.addAll(this.disSemExtractor.extract(jCas, eventMention)); //add distributional semantic features
 		return features;
 	}
+
+	@Override
+	public void destroy() {
+		SharedClassifier.releaseIfShared(this.classifier);
+		super.destroy();
+	}
 }
@@ -7,6 +7,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.ctakes.core.cleartk.SharedClassifier;
 import org.apache.ctakes.core.pipeline.PipeBitInfo;
 import org.apache.ctakes.temporal.ae.TemporalRelationExtractorAnnotator.IdentifiedAnnotationPair;
 import org.apache.ctakes.temporal.nn.data.ArgContextProvider;
@@ -391,4 +392,9 @@ public class EventEventCNNAnnotator extends CleartkAnnotator<String> {
 		return false;
 	}
 
+	@Override
+	public void destroy() {
+		SharedClassifier.releaseIfShared(this.classifier);
+		super.destroy();
+	}
 }
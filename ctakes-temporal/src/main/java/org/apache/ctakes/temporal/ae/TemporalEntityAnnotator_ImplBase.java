@@ -18,6 +18,7 @@
  */
 package org.apache.ctakes.temporal.ae;
 
+import org.apache.ctakes.core.cleartk.SharedClassifier;
 import org.apache.ctakes.temporal.eval.THYMEData;
 import org.apache.ctakes.typesystem.type.textspan.Segment;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
@@ -39,4 +40,9 @@ public abstract class TemporalEntityAnnotator_ImplBase extends CleartkAnnotator<
   
   public abstract void process(JCas jCas, Segment segment) throws AnalysisEngineProcessException;
 
+  @Override
+  public void destroy() {
+    SharedClassifier.releaseIfShared(this.classifier);
+    super.destroy();
+  }
 }
@@ -23,6 +23,7 @@ package org.apache.ctakes.temporal.ae;
 //import java.net.URI;//for normalization
 
 import com.google.common.collect.Lists;
+import org.apache.ctakes.core.cleartk.SharedClassifier;
 import org.apache.ctakes.relationextractor.ae.features.*;
 import org.apache.ctakes.typesystem.type.relation.BinaryTextRelation;
 import org.apache.ctakes.typesystem.type.relation.RelationArgument;
@@ -399,4 +400,10 @@ public abstract class TemporalRelationExtractorAnnotator extends CleartkAnnotato
 			return arg2;
 		}
 	}
+
+	@Override
+	public void destroy() {
+		SharedClassifier.releaseIfShared(this.classifier);
+		super.destroy();
+	}
 }
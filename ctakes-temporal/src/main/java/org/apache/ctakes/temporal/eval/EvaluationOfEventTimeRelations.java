@@ -192,6 +192,7 @@ EvaluationOfTemporalRelations_ImplBase{
 			}
 			//do closure on system, but not on gold, to calculate recall
 			evaluation.skipTrain = options.getSkipTrain();
+			evaluation.setXmiThreads(options.getXmiThreads());
 			if(evaluation.skipTrain && options.getTest()){
 				evaluation.prepareXMIsFor(testing);
 			}else{
@@ -103,6 +103,10 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -200,6 +204,9 @@ org.cleartk.eval.Evaluation_ImplBase<Integer, STATISTICS_TYPE> {
 
 		@Option(longName = "skipWrite")
 		public boolean getSkipDataWriting();
+
+		@Option( longName = "xmi-threads", defaultValue = "1" )
+		public int getXmiThreads();
 	}
 
 	public static List<Integer> getTrainItems( Options options ) {
@@ -246,6 +253,8 @@ org.cleartk.eval.Evaluation_ImplBase<Integer, STATISTICS_TYPE> {
 
 	protected String[] kernelParams;
 
+	protected int xmiThreads = 1;
+
 	public Evaluation_ImplBase(
 			File baseDirectory,
 			File rawTextDirectory,
@@ -284,22 +293,85 @@ org.cleartk.eval.Evaluation_ImplBase<Integer, STATISTICS_TYPE> {
 		i2b2Output = outDir;
 	}
 
+	/**
+	 * @param threads number of workers that write xmis in {@link #prepareXMIsFor(List)}.
+	 *                Each worker runs its own preprocessing aggregate, so memory use grows with the number of workers.
+	 */
+	public void setXmiThreads( int threads ) {
+		this.xmiThreads = Math.max( 1, threads );
+	}
+
 	public void prepareXMIsFor( List<Integer> patientSets ) throws Exception {
-		boolean needsXMIs = false;
+		List<File> neededFiles = new ArrayList<>();
 		for ( File textFile : this.getFilesFor( patientSets ) ) {
 			if ( !getXMIFile( this.xmiDirectory, textFile ).exists() ) {
-				needsXMIs = true;
-				break;
+				neededFiles.add( textFile );
 			}
 		}
-		if ( needsXMIs ) {
-			CollectionReader reader = this.getCollectionReader( patientSets );
-			AnalysisEngine engine = this.getXMIWritingPreprocessorAggregateBuilder().createAggregate();
-			SimplePipeline.runPipeline( reader, engine );
+		if ( !neededFiles.isEmpty() ) {
+			if ( this.xmiThreads > 1 ) {
+				prepareXMIsInParallel( neededFiles );
+			} else {
+				CollectionReader reader = this.getCollectionReader( patientSets );
+				AnalysisEngine engine = this.getXMIWritingPreprocessorAggregateBuilder().createAggregate();
+				SimplePipeline.runPipeline( reader, engine );
+			}
 		}
 		this.xmiExists = true;
 	}
 
+	/**
+	 * Writes xmis for the given files with {@link #xmiThreads} workers.
+	 * All notes of a patient are processed by the same worker, in the same order as a single worker would.
+	 */
+	private void prepareXMIsInParallel( List<File> textFiles ) throws Exception {
+		Map<String, List<File>> patientFiles = new TreeMap<>();
+		for ( File textFile : textFiles ) {
+			patientFiles.computeIfAbsent( textFile.getName().split( "_" )[ 0 ], p -> new ArrayList<>() ).add( textFile );
+		}
+		int workerCount = Math.min( this.xmiThreads, patientFiles.size() );
+		List<List<File>> workerFiles = new ArrayList<>();
+		for ( int i = 0; i < workerCount; i++ ) {
+			workerFiles.add( new ArrayList<>() );
+		}
+		// balance the number of notes, largest patients first
+		List<List<File>> patients = new ArrayList<>( patientFiles.values() );
+		patients.sort( ( p1, p2 ) -> Integer.compare( p2.size(), p1.size() ) );
+		for ( List<File> files : patients ) {
+			workerFiles.stream().min( Comparator.comparingInt( List::size ) ).get().addAll( files );
+		}
+		LOGGER.info( "Writing xmis for " + textFiles.size() + " notes with " + workerCount + " workers" );
+		AnalysisEngineDescription description = this.getXMIWritingPreprocessorAggregateBuilder().createAggregateDescription();
+		ExecutorService executor = Executors.newFixedThreadPool( workerCount );
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for ( List<File> files : workerFiles ) {
+				Collections.sort( files );
+				CollectionReader reader = this.getCollectionReaderForFiles( files );
+				futures.add( executor.submit( () -> {
+					SimplePipeline.runPipeline( reader, AnalysisEngineFactory.createEngine( description ) );
+					return null;
+				} ) );
+			}
+			for ( Future<?> future : futures ) {
+				getResult( future );
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static <T> T getResult( Future<T> future ) throws Exception {
+		try {
+			return future.get();
+		} catch ( ExecutionException e ) {
+			if ( e.getCause() instanceof Exception ) {
+				throw (Exception)e.getCause();
+			}
+			throw e;
+		}
+	}
+
 	private List<File> getFilesFor( List<Integer> patientSets ) throws FileNotFoundException {
 		List<File> files = new ArrayList<>();
 		if ( this.xmlFormat == XMLFormat.Anafora ) {
@@ -422,6 +494,10 @@ org.cleartk.eval.Evaluation_ImplBase<Integer, STATISTICS_TYPE> {
 	protected CollectionReader getCollectionReader( List<Integer> patientSets ) throws Exception {
 		List<File> collectedFiles = this.getFilesFor( patientSets );
 		Collections.sort(collectedFiles);
+		return getCollectionReaderForFiles( collectedFiles );
+	}
+
+	protected CollectionReader getCollectionReaderForFiles( List<File> collectedFiles ) throws Exception {
 
 		CounterMap<String> docCounts = new CounterMap<>();
 		for(File f : collectedFiles){
@@ -52,6 +52,7 @@ public class KerasStringOutcomeClassifierBuilder extends ScriptStringOutcomeClas
     
     // grab the script dir from the manifest:
     this.scriptDir = new File(modelStream.getManifest().getMainAttributes().getValue(SCRIPT_DIR_PARAM));
+    this.scriptReplicas = getScriptReplicas(modelStream.getManifest().getMainAttributes());
     
     extractFileToDir(modelDir, modelStream, "outcome-lookup.txt");
 
@@ -74,7 +75,7 @@ public class KerasStringOutcomeClassifierBuilder extends ScriptStringOutcomeClas
   
   @Override
   protected KerasStringOutcomeClassifier newClassifier() {
-    return new KerasStringOutcomeClassifier(this.featuresEncoder, this.outcomeEncoder, this.modelDir, this.scriptDir);
+    return new KerasStringOutcomeClassifier(this.featuresEncoder, this.outcomeEncoder, this.modelDir, this.scriptDir, this.scriptReplicas);
   }
 
   private static String getArchFilename(int num){
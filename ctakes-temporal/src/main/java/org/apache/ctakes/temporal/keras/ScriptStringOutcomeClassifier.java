@@ -1,16 +1,22 @@
 package org.apache.ctakes.temporal.keras;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.uima.UIMAFramework;
 import org.apache.uima.util.Level;
 import org.apache.uima.util.Logger;
+import org.cleartk.ml.Classifier;
 import org.cleartk.ml.CleartkProcessingException;
 import org.cleartk.ml.Feature;
 import org.cleartk.ml.encoder.features.FeaturesEncoder;
@@ -31,11 +37,18 @@ import com.google.common.annotations.Beta;
  */
 @Beta
 public abstract class ScriptStringOutcomeClassifier extends Classifier_ImplBase<FeatureVector, String, Integer> {
+  /**
+   * Default number of instances written to a classifier process before their predictions are read back.
+   * Keeps the predictions of one window well below the size of the process output pipe.
+   */
+  public static final int DEFAULT_BATCH_WINDOW = 256;
+
   File modelDir = null;
-  Process classifierProcess = null;
-  PrintStream toClassifier = null;
-  BufferedReader reader = null;
-  BufferedReader errReader = null;
+  File classifyScript = null;
+  // idle classifier processes, each running its own copy of the classify script
+  BlockingQueue<ScriptProcess> processPool = null;
+  List<ScriptProcess> allProcesses = new ArrayList<>();
+  int batchWindow = DEFAULT_BATCH_WINDOW;
   Logger logger = UIMAFramework.getLogger(ScriptStringOutcomeClassifier.class);
 
   public ScriptStringOutcomeClassifier(
@@ -43,6 +56,20 @@ public abstract class ScriptStringOutcomeClassifier extends Classifier_ImplBase<
       OutcomeEncoder<String, Integer> outcomeEncoder,
       File modelDir,
       File scriptDir) {
+    this(featuresEncoder, outcomeEncoder, modelDir, scriptDir, 1);
+  }
+
+  /**
+   * @param replicas number of classifier processes to run.  Each call to {@link #classify(List)} or
+   *                 {@link #classifyBatch(List)} uses one idle process, so threads sharing this classifier
+   *                 can classify concurrently.
+   */
+  public ScriptStringOutcomeClassifier(
+      FeaturesEncoder<FeatureVector> featuresEncoder,
+      OutcomeEncoder<String, Integer> outcomeEncoder,
+      File modelDir,
+      File scriptDir,
+      int replicas) {
     super(featuresEncoder, outcomeEncoder);
     this.modelDir = modelDir;
     
@@ -60,28 +87,125 @@ public abstract class ScriptStringOutcomeClassifier extends Classifier_ImplBase<
       throw new RuntimeException("There are no files named classify.*");
     }
     
+    this.classifyScript = classifyScript;
+    int processCount = Math.max(1, replicas);
+    processPool = new ArrayBlockingQueue<>(processCount);
     try {
-      this.classifierProcess = Runtime.getRuntime().exec(new String[]{
-          classifyScript.getAbsolutePath(),
-          modelDir.getAbsolutePath()});
-      // start the classifier process running, give it a chance to read the model, and
-      // set classifierProcess to the running classifier
-      toClassifier = new PrintStream(classifierProcess.getOutputStream());
-      reader = new BufferedReader(new InputStreamReader(classifierProcess.getInputStream()));
-      errReader = new BufferedReader(new InputStreamReader(classifierProcess.getErrorStream()));
-      errReader.readLine(); // read line about which backend it is using.
+      for(int i = 0; i < processCount; i++){
+        ScriptProcess process = new ScriptProcess(classifyScript, modelDir);
+        allProcesses.add(process);
+        processPool.add(process);
+      }
     } catch (IOException e) {
       e.printStackTrace();
       throw new RuntimeException(e);
     }
   }
 
+  /**
+   * @param batchWindow maximum number of instances sent to a classifier process in one write by {@link #classifyBatch(List)}
+   */
+  public void setBatchWindow(int batchWindow){
+    this.batchWindow = Math.max(1, batchWindow);
+  }
+
   public String classify(List<Feature> features)
       throws CleartkProcessingException {
     // Encode the features and pass them to the standard input of the classifier process
     // and then read the standard output prediction, which will be in the string format expected by
     // the annotator.    
+    return classifyBatch(Collections.singletonList(features)).get(0);
+  }
 
+  /**
+   * Classifies several instances with one classifier process.  Instances are written in windows of
+   * {@link #setBatchWindow(int) batchWindow} lines with a single flush, then the predictions of the window
+   * are read back, so each window costs one round trip to the process instead of one per instance.
+   *
+   * If classification fails part way through a batch, the process may have unread input or output,
+   * so it is destroyed and replaced by a new process instead of going back to the pool.
+   *
+   * @param instances features of each instance, for instance all event-time pairs of a document
+   * @return the predicted outcome of each instance, in instance order
+   */
+  public List<String> classifyBatch(List<List<Feature>> instances)
+      throws CleartkProcessingException {
+    List<String> outcomes = new ArrayList<>(instances.size());
+    ScriptProcess process = acquireProcess();
+    boolean completed = false;
+    try {
+      for(int start = 0; start < instances.size(); start += batchWindow){
+        List<List<Feature>> window = instances.subList(start, Math.min(instances.size(), start + batchWindow));
+        outcomes.addAll(process.classify(window));
+      }
+      completed = true;
+    } finally {
+      if(completed){
+        processPool.add(process);
+      }else{
+        replaceProcess(process);
+      }
+    }
+    return outcomes;
+  }
+
+  /**
+   * Destroys a process whose streams are in an unknown state and starts a new one in its place.
+   * If the new process cannot be started the pool has one process less.
+   */
+  private void replaceProcess(ScriptProcess process){
+    process.destroy();
+    synchronized(allProcesses){
+      allProcesses.remove(process);
+    }
+    try {
+      ScriptProcess replacement = new ScriptProcess(classifyScript, modelDir);
+      synchronized(allProcesses){
+        allProcesses.add(replacement);
+      }
+      processPool.add(replacement);
+    } catch (IOException e) {
+      logger.log(Level.SEVERE, "Could not restart classifier process", e);
+    }
+  }
+
+  /**
+   * Classifies all instances, in batches when the classifier runs a script and one at a time otherwise.
+   *
+   * @param classifier any string outcome classifier
+   * @param instances  features of each instance
+   * @return the predicted outcome of each instance, in instance order
+   */
+  public static List<String> classifyAll(Classifier<String> classifier, List<List<Feature>> instances)
+      throws CleartkProcessingException {
+    if(classifier instanceof ScriptStringOutcomeClassifier){
+      return ((ScriptStringOutcomeClassifier)classifier).classifyBatch(instances);
+    }
+    List<String> outcomes = new ArrayList<>(instances.size());
+    for(List<Feature> features : instances){
+      outcomes.add(classifier.classify(features));
+    }
+    return outcomes;
+  }
+
+  private ScriptProcess acquireProcess() throws CleartkProcessingException {
+    try {
+      ScriptProcess process;
+      while((process = processPool.poll(1, TimeUnit.SECONDS)) == null){
+        synchronized(allProcesses){
+          if(allProcesses.isEmpty()){
+            throw new CleartkProcessingException(new IllegalStateException("No classifier process is running"));
+          }
+        }
+      }
+      return process;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CleartkProcessingException(e);
+    }
+  }
+
+  static String toInstanceLine(List<Feature> features){
     StringBuilder buf = new StringBuilder();
     
 //    for (FeatureVector.Entry featureNode : this.featuresEncoder.encodeAll(features)) {
@@ -93,31 +217,82 @@ public abstract class ScriptStringOutcomeClassifier extends Classifier_ImplBase<
     		buf.append(" ");
     	}
     }
-
-    this.toClassifier.println(buf);
-    this.toClassifier.flush();
-    
-    String line = "";
-    String eLine = "";
-    try {
-      line = reader.readLine();
-      if(line == null){
-         while((eLine = errReader.readLine()) != null){
-           logger.log(Level.SEVERE, eLine);
-         }
-      }
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
-    
-    return line;
+    return buf.toString();
   }
 
   @Override
   protected void finalize() throws Throwable {
     super.finalize();
     
-    this.toClassifier.print('\n');
-    classifierProcess.waitFor();
+    synchronized(allProcesses){
+      for(ScriptProcess process : allProcesses){
+        process.close();
+      }
+    }
+  }
+
+  /**
+   * One running copy of the classify script.  Reads one instance per line and writes one prediction per line.
+   */
+  class ScriptProcess {
+    private final Process classifierProcess;
+    private final PrintStream toClassifier;
+    private final BufferedReader reader;
+    private final BufferedReader errReader;
+
+    ScriptProcess(File classifyScript, File modelDir) throws IOException {
+      this.classifierProcess = Runtime.getRuntime().exec(new String[]{
+          classifyScript.getAbsolutePath(),
+          modelDir.getAbsolutePath()});
+      // start the classifier process running, give it a chance to read the model, and
+      // set classifierProcess to the running classifier
+      toClassifier = new PrintStream(new BufferedOutputStream(classifierProcess.getOutputStream()));
+      reader = new BufferedReader(new InputStreamReader(classifierProcess.getInputStream()));
+      errReader = new BufferedReader(new InputStreamReader(classifierProcess.getErrorStream()));
+      errReader.readLine(); // read line about which backend it is using.
+    }
+
+    List<String> classify(List<List<Feature>> window) {
+      for(List<Feature> features : window){
+        this.toClassifier.println(toInstanceLine(features));
+      }
+      this.toClassifier.flush();
+
+      List<String> outcomes = new ArrayList<>(window.size());
+      String line = "";
+      String eLine = "";
+      try {
+        for(int i = 0; i < window.size(); i++){
+          line = reader.readLine();
+          if(line == null){
+             while((eLine = errReader.readLine()) != null){
+               logger.log(Level.SEVERE, eLine);
+             }
+             throw new IOException("Classifier process exited after " + i + " of " + window.size() + " predictions");
+          }
+          outcomes.add(line);
+        }
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      return outcomes;
+    }
+
+    void close() throws InterruptedException {
+      this.toClassifier.print('\n');
+      this.toClassifier.flush();
+      classifierProcess.waitFor();
+    }
+
+    void destroy() {
+      classifierProcess.destroy();
+      toClassifier.close();
+      try {
+        reader.close();
+        errReader.close();
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Could not close classifier process streams", e);
+      }
+    }
   }
 }
@@ -18,16 +18,36 @@ import org.cleartk.ml.util.featurevector.FeatureVector;
 
 public abstract class ScriptStringOutcomeClassifierBuilder<T extends ScriptStringOutcomeClassifier> extends ClassifierBuilder_ImplBase<T, FeatureVector, String, Integer> {
   public static final Attributes.Name SCRIPT_DIR_PARAM = new Attributes.Name("ScriptDirectory");
+  public static final Attributes.Name SCRIPT_REPLICAS_PARAM = new Attributes.Name("ScriptReplicas");
   protected static final Logger logger = UIMAFramework.getLogger(ScriptStringOutcomeClassifierBuilder.class);
   
   protected File modelDir = null;
   protected File scriptDir = null;
+  protected int scriptReplicas = 1;
   
   public void setScriptDirectory(String scriptDir){
     Attributes atts = this.manifest.getMainAttributes();
     atts.put(SCRIPT_DIR_PARAM, scriptDir); 
   }
   
+  /**
+   * @param replicas number of classify script processes the packaged classifier runs,
+   *                 for annotators that share one classifier across threads
+   */
+  public void setScriptReplicas(int replicas){
+    Attributes atts = this.manifest.getMainAttributes();
+    atts.put(SCRIPT_REPLICAS_PARAM, Integer.toString(replicas));
+  }
+
+  /**
+   * @param atts manifest attributes of a packaged classifier
+   * @return number of classify script processes to run, 1 if not set in the manifest
+   */
+  protected static int getScriptReplicas(Attributes atts){
+    String replicas = atts.getValue(SCRIPT_REPLICAS_PARAM);
+    return replicas == null ? 1 : Integer.parseInt(replicas);
+  }
+
   @Override
   public File getTrainingDataFile(File dir) {
     return new File(dir, "training-data.liblinear");
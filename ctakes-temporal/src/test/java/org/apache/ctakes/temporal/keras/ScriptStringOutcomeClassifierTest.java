@@ -0,0 +1,140 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.temporal.keras;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.cleartk.ml.Feature;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ScriptStringOutcomeClassifierTest {
+
+  // stand-in for the python classifier: predicts the first feature of each instance, and dies on "crash"
+  private static final String CLASSIFY_SCRIPT = "#!/bin/sh\n"
+      + "echo \"Using stand-in backend\" >&2\n"
+      + "while read line; do\n"
+      + "  if [ -z \"$line\" ]; then exit 0; fi\n"
+      + "  if [ \"${line%% *}\" = \"crash\" ]; then exit 1; fi\n"
+      + "  echo \"${line%% *}\"\n"
+      + "done\n";
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private File modelDir;
+  private File scriptDir;
+
+  @Before
+  public void setUp() throws IOException {
+    Assume.assumeTrue(new File("/bin/sh").canExecute());
+    modelDir = tempFolder.newFolder("model");
+    scriptDir = tempFolder.newFolder("scripts");
+    File script = new File(scriptDir, "classify.sh");
+    Files.write(script.toPath(), CLASSIFY_SCRIPT.getBytes(StandardCharsets.UTF_8));
+    script.setExecutable(true);
+  }
+
+  private static List<Feature> instance(String... values){
+    List<Feature> features = new ArrayList<>();
+    for(String value : values){
+      features.add(new Feature(value));
+    }
+    return features;
+  }
+
+  private static List<List<Feature>> instances(int count){
+    List<List<Feature>> instances = new ArrayList<>();
+    for(int i = 0; i < count; i++){
+      instances.add(instance("outcome" + i, "<e>", "pain", "</e>"));
+    }
+    return instances;
+  }
+
+  @Test
+  public void testClassify() throws Exception {
+    KerasStringOutcomeClassifier classifier = new KerasStringOutcomeClassifier(null, null, modelDir, scriptDir);
+    assertEquals("before", classifier.classify(instance("before", "<t>", "today", "</t>")));
+    assertEquals("none", classifier.classify(instance("none")));
+  }
+
+  @Test
+  public void testClassifyBatchAcrossWindows() throws Exception {
+    KerasStringOutcomeClassifier classifier = new KerasStringOutcomeClassifier(null, null, modelDir, scriptDir);
+    classifier.setBatchWindow(7);
+    List<List<Feature>> instances = instances(50);
+    List<String> outcomes = classifier.classifyBatch(instances);
+    assertEquals(50, outcomes.size());
+    for(int i = 0; i < outcomes.size(); i++){
+      assertEquals("outcome" + i, outcomes.get(i));
+    }
+    assertEquals(Arrays.asList("outcome0", "outcome1"), ScriptStringOutcomeClassifier.classifyAll(classifier, instances(2)));
+  }
+
+  @Test
+  public void testFailedBatchReplacesProcess() throws Exception {
+    KerasStringOutcomeClassifier classifier = new KerasStringOutcomeClassifier(null, null, modelDir, scriptDir);
+    classifier.setBatchWindow(4);
+    List<List<Feature>> instances = instances(10);
+    instances.set(5, instance("crash"));
+    try {
+      classifier.classifyBatch(instances);
+      fail("expected the batch to fail");
+    } catch (RuntimeException e) {
+      // the process died part way through the second window
+    }
+    // the only process was replaced, and none of the failed batch's input or output is left over
+    List<String> outcomes = classifier.classifyBatch(instances(3));
+    assertEquals(Arrays.asList("outcome0", "outcome1", "outcome2"), outcomes);
+  }
+
+  @Test
+  public void testReplicasShareOneClassifier() throws Exception {
+    final KerasStringOutcomeClassifier classifier = new KerasStringOutcomeClassifier(null, null, modelDir, scriptDir, 3);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<List<String>>> futures = new ArrayList<>();
+      for(int i = 0; i < 8; i++){
+        futures.add(executor.submit(() -> classifier.classifyBatch(instances(20))));
+      }
+      for(Future<List<String>> future : futures){
+        List<String> outcomes = future.get();
+        assertEquals(20, outcomes.size());
+        assertEquals("outcome19", outcomes.get(19));
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
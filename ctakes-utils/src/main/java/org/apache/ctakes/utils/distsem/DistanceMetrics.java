@@ -1,5 +1,6 @@
 package org.apache.ctakes.utils.distsem;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.List;
 import java.util.Scanner;
@@ -9,7 +10,7 @@ public class DistanceMetrics {
   
   public static void main(String[] args) throws IOException{
     System.out.println("Reading embeddings...");
-    WordEmbeddings words = WordVectorReader.getEmbeddings(args[0]);
+    WordEmbeddings words = WordVectorReader.getEmbeddings(new File(args[0]));
     
     String prompt = "Enter a single word to get neighbors, or two comma separated words for similarity score (or <ctrl>+d to exit):";
     Scanner scanner = new Scanner(System.in);
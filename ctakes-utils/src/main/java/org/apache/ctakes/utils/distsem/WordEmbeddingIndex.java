@@ -0,0 +1,578 @@
+package org.apache.ctakes.utils.distsem;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Approximate nearest neighbour index over the words of a {@link WordEmbeddingStore},
+ * a hierarchical navigable small world graph searched by cosine similarity.
+ * Similarities use the vector lengths kept in the store, so vectors are never normalized at search time.
+ * <p>
+ * An index is built offline, with {@link #main(String[])} or {@link #build(WordEmbeddingStore, int, int, long)},
+ * and saved next to its store file with the {@link #FILE_EXTENSION} extension.
+ * {@link WordVectorReader#getEmbeddings(File)} loads the index of a store file if there is one,
+ * and {@link WordEmbeddings#getSimilarWords(String, int)} then searches the index instead of scanning every word.
+ * WordEmbeddingIndexBenchmark, in the test sources, compares the recall and latency of an index to the exact scan.
+ * </p>
+ * Searches are thread safe.
+ */
+public final class WordEmbeddingIndex {
+
+  public static final String FILE_EXTENSION = ".hnsw";
+  public static final int DEFAULT_M = 16;
+  public static final int DEFAULT_EF_CONSTRUCTION = 200;
+  public static final int DEFAULT_EF_SEARCH = 64;
+
+  static final int MAGIC = 0x57534E48;
+  static final int VERSION = 1;
+  private static final int HEADER_BYTES = 32;
+
+  private static final Map<String,WordEmbeddingIndex> SHARED_INDICES = new HashMap<>();
+
+  private final WordEmbeddingStore store;
+  private final int m;
+  private final int layer0Stride;
+  private final int upperStride;
+  private final int[] levels;
+  // per word: neighbour count then up to 2m neighbour ids
+  private final int[] layer0;
+  // per word above layer 0: for each upper level, neighbour count then up to m neighbour ids
+  private final int[][] upperLayers;
+  private int entryPoint = -1;
+  private int topLevel = -1;
+  private volatile int efSearch = DEFAULT_EF_SEARCH;
+  private final ThreadLocal<SearchState> searchStates;
+  // unit length copies of the store vectors, only while building
+  private float[] unitVectors;
+
+  private WordEmbeddingIndex(WordEmbeddingStore store, int m){
+    this.store = store;
+    this.m = m;
+    this.layer0Stride = 2 * m + 1;
+    this.upperStride = m + 1;
+    this.levels = new int[store.size()];
+    this.layer0 = new int[store.size() * layer0Stride];
+    this.upperLayers = new int[store.size()][];
+    this.searchStates = ThreadLocal.withInitial(() -> new SearchState(store.size()));
+  }
+
+  public static void main(String[] args) throws IOException {
+    if(args.length < 1 || args.length > 3){
+      System.err.println("Usage: WordEmbeddingIndex <store file> [M] [efConstruction]");
+      System.exit(1);
+    }
+    File storeFile = new File(args[0]);
+    int m = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_M;
+    int efConstruction = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_EF_CONSTRUCTION;
+    long start = System.currentTimeMillis();
+    WordEmbeddingIndex index = build(WordEmbeddingStore.open(storeFile), m, efConstruction, 42L);
+    File indexFile = getIndexFile(storeFile);
+    index.write(indexFile);
+    System.out.println("Wrote " + indexFile.getPath() + " in " + (System.currentTimeMillis() - start) + " ms");
+  }
+
+  /**
+   * @param storeFile binary store file
+   * @return the file for the index of the store
+   */
+  public static File getIndexFile(File storeFile){
+    return new File(storeFile.getPath() + FILE_EXTENSION);
+  }
+
+  /**
+   * @param store word embeddings to index
+   * @param m number of neighbours kept per word on the upper levels, twice this on the bottom level
+   * @param efConstruction number of candidates examined when linking each word
+   * @param seed seed for the random level of each word
+   * @return a new index over all words in the store
+   */
+  public static WordEmbeddingIndex build(WordEmbeddingStore store, int m, int efConstruction, long seed){
+    WordEmbeddingIndex index = new WordEmbeddingIndex(store, m);
+    index.unitVectors = getUnitVectors(store);
+    Random random = new Random(seed);
+    double levelFactor = 1.0 / Math.log(m);
+    for(int word = 0; word < store.size(); word++){
+      int level = (int)(-Math.log(1.0 - random.nextDouble()) * levelFactor);
+      index.insert(word, level, efConstruction);
+    }
+    index.unitVectors = null;
+    return index;
+  }
+
+  /**
+   * Building compares each word to thousands of others, so the vectors are normalized once into the heap.
+   * @return unit length vectors of all words in one array, or null if the store is too large for an array
+   */
+  private static float[] getUnitVectors(WordEmbeddingStore store){
+    int dims = store.getDimensionality();
+    if((long)store.size() * dims > Integer.MAX_VALUE - 8){
+      return null;
+    }
+    float[] unitVectors = new float[store.size() * dims];
+    float[] vector = new float[dims];
+    for(int word = 0; word < store.size(); word++){
+      store.getVector(word, vector);
+      float norm = store.getNorm(word);
+      for(int i = 0; i < dims; i++){
+        unitVectors[word * dims + i] = norm > 0 ? vector[i] / norm : 0f;
+      }
+    }
+    return unitVectors;
+  }
+
+  /**
+   * @param store word embeddings that the index was built over
+   * @param indexFile index file
+   * @return the index read from the file
+   * @throws IOException if the file cannot be read or is not an index of the store
+   */
+  public static WordEmbeddingIndex read(WordEmbeddingStore store, File indexFile) throws IOException {
+    try(RandomAccessFile raf = new RandomAccessFile(indexFile, "r");
+        FileChannel channel = raf.getChannel()){
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+      if(channel.size() < HEADER_BYTES || buffer.getInt(0) != MAGIC){
+        throw new IOException(indexFile.getPath() + " is not a word embedding index");
+      }
+      if(buffer.getInt(4) != VERSION){
+        throw new IOException("Unsupported word embedding index version " + buffer.getInt(4) + " in " + indexFile.getPath());
+      }
+      if(buffer.getInt(8) != store.size()){
+        throw new IOException(indexFile.getPath() + " indexes " + buffer.getInt(8) + " words, the store has " + store.size());
+      }
+      WordEmbeddingIndex index = new WordEmbeddingIndex(store, buffer.getInt(12));
+      index.entryPoint = buffer.getInt(16);
+      index.topLevel = buffer.getInt(20);
+      buffer.position(HEADER_BYTES);
+      IntBuffer ints = buffer.asIntBuffer();
+      ints.get(index.levels);
+      ints.get(index.layer0);
+      for(int word = 0; word < store.size(); word++){
+        if(index.levels[word] > 0){
+          index.upperLayers[word] = new int[index.levels[word] * index.upperStride];
+          ints.get(index.upperLayers[word]);
+        }
+      }
+      return index;
+    }
+  }
+
+  /**
+   * @param store word embeddings that the index was built over
+   * @param indexFile index file
+   * @return the index for the file shared by all callers in the jvm
+   * @throws IOException if the file cannot be read or is not an index of the store
+   */
+  public static WordEmbeddingIndex getSharedIndex(WordEmbeddingStore store, File indexFile) throws IOException {
+    String key = indexFile.getCanonicalPath();
+    synchronized(SHARED_INDICES){
+      WordEmbeddingIndex index = SHARED_INDICES.get(key);
+      if(index == null){
+        index = read(store, indexFile);
+        SHARED_INDICES.put(key, index);
+      }
+      return index;
+    }
+  }
+
+  /**
+   * @param indexFile file to write
+   * @throws IOException if the file cannot be written
+   */
+  public void write(File indexFile) throws IOException {
+    long upperInts = 0;
+    for(int level : levels){
+      upperInts += (long)level * upperStride;
+    }
+    long size = HEADER_BYTES + 4L * (levels.length + layer0.length + upperInts);
+    try(RandomAccessFile raf = new RandomAccessFile(indexFile, "rw");
+        FileChannel channel = raf.getChannel()){
+      channel.truncate(0);
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+      buffer.putInt(MAGIC);
+      buffer.putInt(VERSION);
+      buffer.putInt(levels.length);
+      buffer.putInt(m);
+      buffer.putInt(entryPoint);
+      buffer.putInt(topLevel);
+      buffer.position(HEADER_BYTES);
+      IntBuffer ints = buffer.asIntBuffer();
+      ints.put(levels);
+      ints.put(layer0);
+      for(int[] upper : upperLayers){
+        if(upper != null){
+          ints.put(upper);
+        }
+      }
+    }
+  }
+
+  /**
+   * @param efSearch number of candidates examined by a search, at least the number of words requested
+   */
+  public void setEfSearch(int efSearch){
+    this.efSearch = efSearch;
+  }
+
+  public WordEmbeddingStore getStore(){
+    return store;
+  }
+
+  /**
+   * @param word id of a word in the store
+   * @param maxWords maximum number of similar words
+   * @return ids of the most similar words other than the word itself, most similar first
+   */
+  public int[] getSimilarWords(int word, int maxWords){
+    if(entryPoint < 0 || maxWords <= 0){
+      return new int[0];
+    }
+    SearchState state = searchStates.get();
+    int nearest = entryPoint;
+    double nearestSim = similarity(word, nearest);
+    for(int level = topLevel; level > 0; level--){
+      boolean changed = true;
+      while(changed){
+        changed = false;
+        int count = neighborCount(nearest, level);
+        for(int i = 0; i < count; i++){
+          int neighbor = neighbor(nearest, level, i);
+          double sim = similarity(word, neighbor);
+          if(sim > nearestSim){
+            nearest = neighbor;
+            nearestSim = sim;
+            changed = true;
+          }
+        }
+      }
+    }
+    Heap results = searchLayer(state, word, nearest, Math.max(efSearch, maxWords + 1), 0);
+    int[] ids = results.drainDescending();
+    int[] similar = new int[Math.min(maxWords, ids.length)];
+    int count = 0;
+    for(int id : ids){
+      if(id != word && count < similar.length){
+        similar[count++] = id;
+      }
+    }
+    return count == similar.length ? similar : Arrays.copyOf(similar, count);
+  }
+
+  private void insert(int word, int level, int efConstruction){
+    levels[word] = level;
+    if(level > 0){
+      upperLayers[word] = new int[level * upperStride];
+    }
+    if(entryPoint < 0){
+      entryPoint = word;
+      topLevel = level;
+      return;
+    }
+    SearchState state = searchStates.get();
+    int nearest = entryPoint;
+    for(int l = topLevel; l > level; l--){
+      nearest = searchLayer(state, word, nearest, 1, l).best();
+    }
+    for(int l = Math.min(topLevel, level); l >= 0; l--){
+      Heap candidates = searchLayer(state, word, nearest, efConstruction, l);
+      nearest = candidates.best();
+      int[] selected = selectNeighbors(word, candidates.drainDescending(), maxNeighbors(l));
+      setNeighbors(word, l, selected, selected.length);
+      for(int neighbor : selected){
+        link(neighbor, word, l);
+      }
+    }
+    if(level > topLevel){
+      entryPoint = word;
+      topLevel = level;
+    }
+  }
+
+  /**
+   * Adds a link from a word to a new neighbour, pruning the word's neighbours if it has too many.
+   */
+  private void link(int word, int newNeighbor, int level){
+    int count = neighborCount(word, level);
+    int max = maxNeighbors(level);
+    if(count < max){
+      int[] neighbors = neighbors(word, level);
+      neighbors[neighborOffset(word, level) + 1 + count] = newNeighbor;
+      neighbors[neighborOffset(word, level)] = count + 1;
+      return;
+    }
+    Heap candidates = new Heap(count + 1, false);
+    for(int i = 0; i < count; i++){
+      int neighbor = neighbor(word, level, i);
+      candidates.push(neighbor, similarity(word, neighbor));
+    }
+    candidates.push(newNeighbor, similarity(word, newNeighbor));
+    int[] selected = selectNeighbors(word, candidates.drainDescending(), max);
+    setNeighbors(word, level, selected, selected.length);
+  }
+
+  /**
+   * Keeps candidates that are more similar to the word than to any neighbour already kept,
+   * which spreads links in different directions, then fills any remaining places with the most similar of the rest.
+   * @param candidates candidate ids, most similar first
+   */
+  private int[] selectNeighbors(int word, int[] candidates, int max){
+    if(candidates.length <= max){
+      return removeWord(candidates, word);
+    }
+    int[] selected = new int[max];
+    boolean[] used = new boolean[candidates.length];
+    int count = 0;
+    for(int i = 0; i < candidates.length && count < max; i++){
+      int candidate = candidates[i];
+      if(candidate == word){
+        used[i] = true;
+        continue;
+      }
+      double sim = similarity(word, candidate);
+      boolean keep = true;
+      for(int j = 0; j < count && keep; j++){
+        keep = similarity(candidate, selected[j]) < sim;
+      }
+      if(keep){
+        selected[count++] = candidate;
+        used[i] = true;
+      }
+    }
+    for(int i = 0; i < candidates.length && count < max; i++){
+      if(!used[i]){
+        selected[count++] = candidates[i];
+      }
+    }
+    return count == max ? selected : Arrays.copyOf(selected, count);
+  }
+
+  private static int[] removeWord(int[] ids, int word){
+    int count = 0;
+    int[] kept = new int[ids.length];
+    for(int id : ids){
+      if(id != word){
+        kept[count++] = id;
+      }
+    }
+    return count == ids.length ? kept : Arrays.copyOf(kept, count);
+  }
+
+  /**
+   * @return up to ef ids most similar to the word found by a best-first walk of the level from the entry word
+   */
+  private Heap searchLayer(SearchState state, int word, int entry, int ef, int level){
+    state.nextVisit();
+    state.candidates.clear();
+    Heap results = new Heap(ef + 1, false);
+    double entrySim = similarity(word, entry);
+    state.visit(entry);
+    state.candidates.push(entry, entrySim);
+    results.push(entry, entrySim);
+    while(state.candidates.size() > 0){
+      double candidateSim = state.candidates.peekKey();
+      int candidate = state.candidates.pop();
+      if(results.size() >= ef && candidateSim < results.peekKey()){
+        break;
+      }
+      int count = neighborCount(candidate, level);
+      for(int i = 0; i < count; i++){
+        int neighbor = neighbor(candidate, level, i);
+        if(!state.visit(neighbor)){
+          continue;
+        }
+        double sim = similarity(word, neighbor);
+        if(results.size() < ef || sim > results.peekKey()){
+          state.candidates.push(neighbor, sim);
+          results.push(neighbor, sim);
+          if(results.size() > ef){
+            results.pop();
+          }
+        }
+      }
+    }
+    return results;
+  }
+
+  private double similarity(int word1, int word2){
+    if(unitVectors != null){
+      int dims = store.getDimensionality();
+      int start1 = word1 * dims;
+      int start2 = word2 * dims;
+      float sum = 0f;
+      for(int i = 0; i < dims; i++){
+        sum += unitVectors[start1 + i] * unitVectors[start2 + i];
+      }
+      return sum;
+    }
+    double sim = store.getSimilarity(word1, word2);
+    // a zero vector has no direction
+    return Double.isNaN(sim) ? -1.0 : sim;
+  }
+
+  private int maxNeighbors(int level){
+    return level == 0 ? 2 * m : m;
+  }
+
+  private int[] neighbors(int word, int level){
+    return level == 0 ? layer0 : upperLayers[word];
+  }
+
+  private int neighborOffset(int word, int level){
+    return level == 0 ? word * layer0Stride : (level - 1) * upperStride;
+  }
+
+  private int neighborCount(int word, int level){
+    return neighbors(word, level)[neighborOffset(word, level)];
+  }
+
+  private int neighbor(int word, int level, int i){
+    return neighbors(word, level)[neighborOffset(word, level) + 1 + i];
+  }
+
+  private void setNeighbors(int word, int level, int[] ids, int count){
+    int[] neighbors = neighbors(word, level);
+    int offset = neighborOffset(word, level);
+    neighbors[offset] = count;
+    System.arraycopy(ids, 0, neighbors, offset + 1, count);
+  }
+
+  /**
+   * Visit marks and the candidate queue of one thread, reused between searches.
+   */
+  private static final class SearchState {
+    private final int[] visits;
+    private int visit;
+    private final Heap candidates = new Heap(64, true);
+
+    private SearchState(int size){
+      visits = new int[size];
+    }
+
+    private void nextVisit(){
+      visit++;
+      if(visit == Integer.MAX_VALUE){
+        Arrays.fill(visits, 0);
+        visit = 1;
+      }
+    }
+
+    /**
+     * @return true if the word had not been visited in this search
+     */
+    private boolean visit(int word){
+      if(visits[word] == visit){
+        return false;
+      }
+      visits[word] = visit;
+      return true;
+    }
+  }
+
+  /**
+   * Binary heap of word ids keyed by similarity, with the most similar on top or the least similar on top.
+   */
+  private static final class Heap {
+    private double[] keys;
+    private int[] ids;
+    private int size;
+    private final boolean mostSimilarFirst;
+
+    private Heap(int capacity, boolean mostSimilarFirst){
+      keys = new double[Math.max(1, capacity)];
+      ids = new int[keys.length];
+      this.mostSimilarFirst = mostSimilarFirst;
+    }
+
+    private int size(){
+      return size;
+    }
+
+    private void clear(){
+      size = 0;
+    }
+
+    private double peekKey(){
+      return keys[0];
+    }
+
+    private void push(int id, double key){
+      if(size == keys.length){
+        keys = Arrays.copyOf(keys, size * 2);
+        ids = Arrays.copyOf(ids, size * 2);
+      }
+      int i = size++;
+      while(i > 0){
+        int parent = (i - 1) >>> 1;
+        if(!above(key, keys[parent])){
+          break;
+        }
+        keys[i] = keys[parent];
+        ids[i] = ids[parent];
+        i = parent;
+      }
+      keys[i] = key;
+      ids[i] = id;
+    }
+
+    private int pop(){
+      int top = ids[0];
+      size--;
+      double key = keys[size];
+      int id = ids[size];
+      int i = 0;
+      int child = 1;
+      while(child < size){
+        if(child + 1 < size && above(keys[child + 1], keys[child])){
+          child++;
+        }
+        if(!above(keys[child], key)){
+          break;
+        }
+        keys[i] = keys[child];
+        ids[i] = ids[child];
+        i = child;
+        child = 2 * i + 1;
+      }
+      keys[i] = key;
+      ids[i] = id;
+      return top;
+    }
+
+    private boolean above(double key, double other){
+      return mostSimilarFirst ? key > other : key < other;
+    }
+
+    /**
+     * @return id of the most similar word, for a heap with the least similar on top
+     */
+    private int best(){
+      int best = 0;
+      for(int i = 1; i < size; i++){
+        if(keys[i] > keys[best]){
+          best = i;
+        }
+      }
+      return ids[best];
+    }
+
+    /**
+     * Empties a heap with the least similar on top.
+     * @return ids, most similar first
+     */
+    private int[] drainDescending(){
+      int[] drained = new int[size];
+      for(int i = drained.length - 1; i >= 0; i--){
+        drained[i] = pop();
+      }
+      return drained;
+    }
+  }
+}
@@ -0,0 +1,283 @@
+package org.apache.ctakes.utils.distsem;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Read-only word embeddings in a binary store file, memory-mapped so that opening a store only reads its header.
+ * <p>
+ * A store is written from the text vector format by {@link WordEmbeddingStoreWriter}.
+ * The file holds, in little-endian order:
+ * <ul>
+ * <li>a header: magic, version, word count, dimensionality, vocabulary table size, vocabulary byte count</li>
+ * <li>an open-addressing vocabulary table of word id + 1 with linear probing, 0 for an empty slot</li>
+ * <li>the word count + 1 offsets of each word in the vocabulary bytes</li>
+ * <li>the UTF-8 bytes of all words</li>
+ * <li>the float32 euclidean length of each vector</li>
+ * <li>the float64 sum of every vector line in the text file, the value of {@link WordEmbeddings#getMeanVector()}</li>
+ * <li>the float32 vectors, one row per word</li>
+ * </ul>
+ * Sections are aligned to 8 bytes.
+ * Instances are immutable and thread safe.
+ * </p>
+ */
+public final class WordEmbeddingStore {
+
+  static final int MAGIC = 0x45575443;
+  static final int VERSION = 2;
+  static final int HEADER_BYTES = 32;
+
+  private static final Map<String,WordEmbeddingStore> SHARED_STORES = new HashMap<>();
+
+  private final int wordCount;
+  private final int dimensionality;
+  private final IntBuffer table;
+  private final int tableMask;
+  private final IntBuffer offsets;
+  private final ByteBuffer words;
+  private final FloatBuffer norms;
+  private final double[] vectorSum;
+  private final FloatBuffer[] rows;
+  private final int rowsPerChunk;
+
+  private WordEmbeddingStore(File file) throws IOException {
+    try(RandomAccessFile raf = new RandomAccessFile(file, "r");
+        FileChannel channel = raf.getChannel()){
+      ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      if(header.getInt(0) != MAGIC){
+        throw new IOException(file.getPath() + " is not a word embedding store");
+      }
+      if(header.getInt(4) != VERSION){
+        throw new IOException("Unsupported word embedding store version " + header.getInt(4) + " in " + file.getPath());
+      }
+      wordCount = header.getInt(8);
+      dimensionality = header.getInt(12);
+      int tableSize = header.getInt(16);
+      int wordBytes = header.getInt(20);
+      tableMask = tableSize - 1;
+
+      long tableStart = HEADER_BYTES;
+      long offsetsStart = align(tableStart + 4L * tableSize);
+      long wordsStart = align(offsetsStart + 4L * (wordCount + 1));
+      long normsStart = align(wordsStart + wordBytes);
+      long sumStart = align(normsStart + 4L * wordCount);
+      long rowsStart = sumStart + 8L * dimensionality;
+      long rowBytes = 4L * dimensionality;
+      if(channel.size() < rowsStart + rowBytes * wordCount){
+        throw new IOException("Truncated word embedding store " + file.getPath());
+      }
+
+      table = map(channel, tableStart, 4L * tableSize).asIntBuffer();
+      offsets = map(channel, offsetsStart, 4L * (wordCount + 1)).asIntBuffer();
+      words = map(channel, wordsStart, wordBytes);
+      norms = map(channel, normsStart, 4L * wordCount).asFloatBuffer();
+      vectorSum = new double[dimensionality];
+      map(channel, sumStart, 8L * dimensionality).asDoubleBuffer().get(vectorSum);
+
+      // a single mapping is limited to 2GB, so larger matrices are mapped in chunks of whole rows
+      rowsPerChunk = (int)Math.max(1, Integer.MAX_VALUE / Math.max(1, rowBytes));
+      int chunkCount = (wordCount + rowsPerChunk - 1) / rowsPerChunk;
+      rows = new FloatBuffer[chunkCount];
+      for(int i = 0; i < chunkCount; i++){
+        long firstRow = (long)i * rowsPerChunk;
+        long chunkRows = Math.min(rowsPerChunk, wordCount - firstRow);
+        rows[i] = map(channel, rowsStart + firstRow * rowBytes, chunkRows * rowBytes).asFloatBuffer();
+      }
+    }
+  }
+
+  /**
+   * @param file binary store file
+   * @return a new store for the file
+   * @throws IOException if the file cannot be read or is not a store
+   */
+  public static WordEmbeddingStore open(File file) throws IOException {
+    return new WordEmbeddingStore(file);
+  }
+
+  /**
+   * Mapped files stay open for the life of the jvm, so every caller of a store file should use this shared instance.
+   * @param file binary store file
+   * @return the store for the file shared by all callers in the jvm
+   * @throws IOException if the file cannot be read or is not a store
+   */
+  public static WordEmbeddingStore getSharedStore(File file) throws IOException {
+    String key = file.getCanonicalPath();
+    synchronized(SHARED_STORES){
+      WordEmbeddingStore store = SHARED_STORES.get(key);
+      if(store == null){
+        store = open(file);
+        SHARED_STORES.put(key, store);
+      }
+      return store;
+    }
+  }
+
+  /**
+   * @param file some file
+   * @return true if the file starts with the store magic number
+   */
+  public static boolean isStoreFile(File file) {
+    if(!file.isFile() || file.length() < HEADER_BYTES){
+      return false;
+    }
+    try(RandomAccessFile raf = new RandomAccessFile(file, "r")){
+      return Integer.reverseBytes(raf.readInt()) == MAGIC;
+    }catch(IOException e){
+      return false;
+    }
+  }
+
+  public int size(){
+    return wordCount;
+  }
+
+  public int getDimensionality(){
+    return dimensionality;
+  }
+
+  public boolean containsKey(String word){
+    return getIndex(word) >= 0;
+  }
+
+  /**
+   * @param word some word
+   * @return the id of the word, or -1 if it is not in the vocabulary
+   */
+  public int getIndex(String word){
+    byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+    int slot = mix(word.hashCode()) & tableMask;
+    int entry = table.get(slot);
+    while(entry != 0){
+      if(wordEquals(entry - 1, bytes)){
+        return entry - 1;
+      }
+      slot = (slot + 1) & tableMask;
+      entry = table.get(slot);
+    }
+    return -1;
+  }
+
+  /**
+   * @param index word id
+   * @return the word with the id
+   */
+  public String getWord(int index){
+    int start = offsets.get(index);
+    byte[] bytes = new byte[offsets.get(index + 1) - start];
+    for(int i = 0; i < bytes.length; i++){
+      bytes[i] = words.get(start + i);
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @param index word id
+   * @return the euclidean length of the word vector
+   */
+  public float getNorm(int index){
+    return norms.get(index);
+  }
+
+  /**
+   * @return a copy of the sum of every vector in the converted text file, repeated words included
+   */
+  public double[] getVectorSum(){
+    return vectorSum.clone();
+  }
+
+  /**
+   * @param index word id
+   * @param dimension vector dimension
+   * @return the value of the word vector in the dimension
+   */
+  public float getValue(int index, int dimension){
+    return rows[index / rowsPerChunk].get((index % rowsPerChunk) * dimensionality + dimension);
+  }
+
+  /**
+   * @param index word id
+   * @param vector array of at least the dimensionality to fill with the word vector
+   * @return the filled vector
+   */
+  public float[] getVector(int index, float[] vector){
+    FloatBuffer chunk = rows[index / rowsPerChunk];
+    int start = (index % rowsPerChunk) * dimensionality;
+    for(int i = 0; i < dimensionality; i++){
+      vector[i] = chunk.get(start + i);
+    }
+    return vector;
+  }
+
+  /**
+   * @param word some word
+   * @return a copy of the word vector, or null if the word is not in the vocabulary
+   */
+  public float[] getVector(String word){
+    int index = getIndex(word);
+    if(index < 0){
+      return null;
+    }
+    return getVector(index, new float[dimensionality]);
+  }
+
+  /**
+   * @return the dot product of two word vectors
+   */
+  public double dot(int index1, int index2){
+    FloatBuffer chunk1 = rows[index1 / rowsPerChunk];
+    FloatBuffer chunk2 = rows[index2 / rowsPerChunk];
+    int start1 = (index1 % rowsPerChunk) * dimensionality;
+    int start2 = (index2 % rowsPerChunk) * dimensionality;
+    double sum = 0.0;
+    for(int i = 0; i < dimensionality; i++){
+      sum += (double)chunk1.get(start1 + i) * chunk2.get(start2 + i);
+    }
+    return sum;
+  }
+
+  /**
+   * @return the cosine similarity of two word vectors
+   */
+  public double getSimilarity(int index1, int index2){
+    return dot(index1, index2) / ((double)norms.get(index1) * norms.get(index2));
+  }
+
+  private boolean wordEquals(int index, byte[] bytes){
+    int start = offsets.get(index);
+    if(offsets.get(index + 1) - start != bytes.length){
+      return false;
+    }
+    for(int i = 0; i < bytes.length; i++){
+      if(words.get(start + i) != bytes[i]){
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+    return channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  static long align(long position){
+    return (position + 7) & ~7L;
+  }
+
+  /**
+   * Spreads the bits of String hash codes, which cluster for similar words.
+   */
+  static int mix(int hash){
+    int h = hash * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
@@ -0,0 +1,195 @@
+package org.apache.ctakes.utils.distsem;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+
+/**
+ * Converts word vectors in the text format read by {@link WordVectorReader} to a {@link WordEmbeddingStore} file.
+ * The text format has a first line with the word count and dimensionality,
+ * then one line per word with the word and its values separated by spaces.
+ * As with {@link WordEmbeddings#add(String)}, a word that is repeated keeps its last vector,
+ * but every line is added to the vector sum that {@link WordEmbeddings#getMeanVector()} returns.
+ */
+public final class WordEmbeddingStoreWriter {
+
+  private WordEmbeddingStoreWriter(){
+  }
+
+  public static void main(String[] args) throws IOException {
+    if(args.length != 2){
+      System.err.println("Usage: WordEmbeddingStoreWriter <text vector file> <store file>");
+      System.exit(1);
+    }
+    long start = System.currentTimeMillis();
+    try(InputStream in = new FileInputStream(args[0])){
+      convert(in, new File(args[1]));
+    }
+    System.out.println("Wrote " + args[1] + " in " + (System.currentTimeMillis() - start) + " ms");
+  }
+
+  /**
+   * @param in text format word vectors, closed when done
+   * @param storeFile store file to write
+   * @throws IOException if the vectors cannot be read or the store cannot be written
+   */
+  public static void convert(InputStream in, File storeFile) throws IOException {
+    File rowFile = File.createTempFile(storeFile.getName(), ".rows", storeFile.getAbsoluteFile().getParentFile());
+    try{
+      List<String> words = new ArrayList<>();
+      float[] norms;
+      double[] vectorSum;
+      int dimensionality;
+      try(BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+          RandomAccessFile rowRaf = new RandomAccessFile(rowFile, "rw");
+          FileChannel rowChannel = rowRaf.getChannel()){
+        String line = reader.readLine();
+        if(line == null){
+          throw new IOException("No header line in word vectors");
+        }
+        Scanner scanner = new Scanner(line);
+        int expectedWords = scanner.nextInt();
+        dimensionality = scanner.nextInt();
+        scanner.close();
+
+        Map<String,Integer> indices = new HashMap<>(expectedWords * 2);
+        norms = new float[Math.max(16, expectedWords)];
+        vectorSum = new double[dimensionality];
+        ByteBuffer row = ByteBuffer.allocate(4 * dimensionality).order(ByteOrder.LITTLE_ENDIAN);
+        while((line = reader.readLine()) != null){
+          line = line.trim();
+          if(line.isEmpty()){
+            continue;
+          }
+          int wordBreak = line.indexOf(' ');
+          String word = line.substring(0, wordBreak);
+          String[] dims = line.substring(wordBreak + 1).split(" ");
+          if(dims.length != dimensionality){
+            throw new IOException("Expected " + dimensionality + " values for " + word + " but found " + dims.length);
+          }
+          row.clear();
+          double length = 0.0;
+          for(int i = 0; i < dims.length; i++){
+            float value = Float.parseFloat(dims[i]);
+            row.putFloat(value);
+            length += (double)value * value;
+            vectorSum[i] += Double.parseDouble(dims[i]);
+          }
+          row.flip();
+          Integer index = indices.get(word);
+          if(index == null){
+            index = words.size();
+            indices.put(word, index);
+            words.add(word);
+          }
+          if(index >= norms.length){
+            norms = Arrays.copyOf(norms, norms.length * 2);
+          }
+          norms[index] = (float)Math.sqrt(length);
+          long position = (long)index * row.capacity();
+          while(row.hasRemaining()){
+            position += rowChannel.write(row, position);
+          }
+        }
+      }
+      write(words, norms, vectorSum, dimensionality, rowFile, storeFile);
+    }finally{
+      rowFile.delete();
+    }
+  }
+
+  private static void write(List<String> words, float[] norms, double[] vectorSum, int dimensionality, File rowFile,
+      File storeFile) throws IOException {
+    int wordCount = words.size();
+    // keep the vocabulary table load factor at or below one half
+    int tableSize = 2;
+    while(tableSize < wordCount * 2){
+      tableSize <<= 1;
+    }
+    int mask = tableSize - 1;
+    int[] table = new int[tableSize];
+    int[] offsets = new int[wordCount + 1];
+    byte[][] wordBytes = new byte[wordCount][];
+    long byteCount = 0;
+    for(int i = 0; i < wordCount; i++){
+      String word = words.get(i);
+      int slot = WordEmbeddingStore.mix(word.hashCode()) & mask;
+      while(table[slot] != 0){
+        slot = (slot + 1) & mask;
+      }
+      table[slot] = i + 1;
+      wordBytes[i] = word.getBytes(StandardCharsets.UTF_8);
+      offsets[i] = (int)byteCount;
+      byteCount += wordBytes[i].length;
+      if(byteCount > Integer.MAX_VALUE){
+        throw new IOException("Vocabulary is too large for a word embedding store");
+      }
+    }
+    offsets[wordCount] = (int)byteCount;
+
+    long rowsStart = WordEmbeddingStore.align(WordEmbeddingStore.align(WordEmbeddingStore.align(WordEmbeddingStore.align(
+        WordEmbeddingStore.HEADER_BYTES + 4L * tableSize) + 4L * (wordCount + 1)) + byteCount) + 4L * wordCount)
+        + 8L * dimensionality;
+    ByteBuffer index = ByteBuffer.allocate((int)rowsStart).order(ByteOrder.LITTLE_ENDIAN);
+    index.putInt(WordEmbeddingStore.MAGIC);
+    index.putInt(WordEmbeddingStore.VERSION);
+    index.putInt(wordCount);
+    index.putInt(dimensionality);
+    index.putInt(tableSize);
+    index.putInt((int)byteCount);
+    index.position(WordEmbeddingStore.HEADER_BYTES);
+    for(int slot : table){
+      index.putInt(slot);
+    }
+    alignPosition(index);
+    for(int offset : offsets){
+      index.putInt(offset);
+    }
+    alignPosition(index);
+    for(byte[] bytes : wordBytes){
+      index.put(bytes);
+    }
+    alignPosition(index);
+    for(int i = 0; i < wordCount; i++){
+      index.putFloat(norms[i]);
+    }
+    alignPosition(index);
+    for(double value : vectorSum){
+      index.putDouble(value);
+    }
+    index.position(0);
+
+    try(RandomAccessFile storeRaf = new RandomAccessFile(storeFile, "rw");
+        FileChannel storeChannel = storeRaf.getChannel();
+        RandomAccessFile rowRaf = new RandomAccessFile(rowFile, "r");
+        FileChannel rowChannel = rowRaf.getChannel()){
+      storeChannel.truncate(0);
+      while(index.hasRemaining()){
+        storeChannel.write(index);
+      }
+      long rowBytes = 4L * dimensionality * wordCount;
+      long copied = 0;
+      while(copied < rowBytes){
+        copied += rowChannel.transferTo(copied, rowBytes - copied, storeChannel);
+      }
+    }
+  }
+
+  private static void alignPosition(ByteBuffer buffer){
+    buffer.position((int)WordEmbeddingStore.align(buffer.position()));
+  }
+}
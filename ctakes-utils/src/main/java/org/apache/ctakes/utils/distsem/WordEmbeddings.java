@@ -11,20 +11,40 @@ public class WordEmbeddings {
   private Map<String,WordVector> vectors = null;
   private int dimensionality = 0;
   private WordVector meanVector = null;
-  private WordVector rawMeanVector = null;
+  private WordEmbeddingStore store = null;
+  private WordEmbeddingIndex index = null;
   
   public WordEmbeddings(int dim){
     this.vectors = new HashMap<>();
     this.dimensionality = dim;
     this.meanVector = new WordVector("_mean_", new double[this.dimensionality]);
-    this.rawMeanVector = new WordVector("_mean_raw", new double[this.dimensionality]);
   }
   
   public WordEmbeddings(Map<String,WordVector> vectors){
     this.vectors = vectors;
   }
 
+  /**
+   * @param store read-only embeddings in a memory-mapped store file
+   */
+  public WordEmbeddings(WordEmbeddingStore store){
+    this.store = store;
+    this.dimensionality = store.getDimensionality();
+  }
+
+  /**
+   * @param store read-only embeddings in a memory-mapped store file
+   * @param index approximate nearest neighbour index of the store, used by {@link #getSimilarWords(String, int)}
+   */
+  public WordEmbeddings(WordEmbeddingStore store, WordEmbeddingIndex index){
+    this(store);
+    this.index = index;
+  }
+
   public double getSimilarity(String word1, String word2){
+    if(store != null){
+      return store.getSimilarity(store.getIndex(word1), store.getIndex(word2));
+    }
     WordVector vec1 = getVector(word1);
     WordVector vec2 = getVector(word2);
     
@@ -39,13 +59,15 @@ public class WordEmbeddings {
   }
 
   public void add(String line){
+    if(store != null){
+      throw new UnsupportedOperationException("Cannot add to embeddings in a store file");
+    }
     int wordBreak = line.indexOf(' ');
     String word = line.substring(0, wordBreak);
     String[] dims = line.substring(wordBreak+1).split(" ");
     
     if(this.meanVector == null){
       this.meanVector = new WordVector("_mean_", new double[dims.length]);
-      this.rawMeanVector = new WordVector("_mean_raw", new double[dims.length]);
     }
     
     double[] vector = new double[dims.length];
@@ -57,10 +79,16 @@ public class WordEmbeddings {
   }
   
   public boolean containsKey(String word){
+    if(store != null){
+      return store.containsKey(word);
+    }
     return vectors.containsKey(word);
   }
   
   public WordVector getVector(String word){
+    if(store != null){
+      return toWordVector(word, store.getVector(word));
+    }
     if(vectors != null){
       return vectors.get(word);
     }
@@ -72,6 +100,17 @@ public class WordEmbeddings {
   }
   
   public List<String> getSimilarWords(String word, int maxWords) {
+    if(index != null){
+      int[] ids = index.getSimilarWords(store.getIndex(word), maxWords);
+      List<String> words = new ArrayList<>(ids.length);
+      for(int id : ids){
+        words.add(store.getWord(id));
+      }
+      return words;
+    }
+    if(store != null){
+      return getSimilarStoreWords(word, maxWords);
+    }
     double[] sims = new double[maxWords];
     List<String> words = new ArrayList<>(20);
     Arrays.fill(sims, -1);
@@ -113,10 +152,66 @@ public class WordEmbeddings {
     return words;
   }
   
+  /**
+   * Same ranking as {@link #getSimilarWords(String, int)}, over the word ids of the store.
+   */
+  private List<String> getSimilarStoreWords(String word, int maxWords) {
+    int index = store.getIndex(word);
+    double[] sims = new double[maxWords];
+    int[] ids = new int[maxWords];
+    int count = 0;
+    Arrays.fill(sims, -1);
+    for(int comp = 0; comp < store.size(); comp++){
+      if(comp == index){
+        continue;
+      }
+      double sim = store.getSimilarity(index, comp);
+      if(count == 0){
+        ids[0] = comp;
+        sims[0] = sim;
+        count = 1;
+        continue;
+      }else if(sim < sims[maxWords-1]){
+        continue;
+      }
+      int i = Math.min(maxWords-1, count);
+      while(i > 0 && sim > sims[i-1]){
+        sims[i] = sims[i-1];
+        ids[i] = ids[i-1];
+        i--;
+      }
+      sims[i] = sim;
+      ids[i] = comp;
+      count = Math.min(maxWords, count + 1);
+    }
+    List<String> words = new ArrayList<>(count);
+    for(int i = 0; i < count; i++){
+      words.add(store.getWord(ids[i]));
+    }
+    return words;
+  }
+  
+  /**
+   * Despite its name this is the sum, not the average, of every vector line added, repeated words included.
+   * Models trained with mean vector features for unknown words have seen this sum, so it is kept as is,
+   * and a store returns the same sum, recorded by {@link WordEmbeddingStoreWriter}.
+   * @return the sum of the added vectors
+   */
   public WordVector getMeanVector(){
-    for(int i = 0; i < this.rawMeanVector.getLength(); i++){
-      this.meanVector.vector[i] = this.rawMeanVector.vector[i] / vectors.size();
+    if(store != null && this.meanVector == null){
+      this.meanVector = new WordVector("_mean_", store.getVectorSum());
     }
     return this.meanVector;
   }
+
+  private static WordVector toWordVector(String word, float[] values){
+    if(values == null){
+      return null;
+    }
+    double[] vector = new double[values.length];
+    for(int i = 0; i < values.length; i++){
+      vector[i] = values[i];
+    }
+    return new WordVector(word, vector);
+  }
 }
@@ -1,13 +1,18 @@
 package org.apache.ctakes.utils.distsem;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Scanner;
 
 public class WordVectorReader {
+  private static final Map<String,WordEmbeddings> SHARED_EMBEDDINGS = new HashMap<>();
+
   private WordEmbeddings embeddings = null;
   private int dimensionality = 0;
   private int numWords = 0;
@@ -40,4 +45,38 @@ public class WordVectorReader {
     WordVectorReader reader = new WordVectorReader(in);
     return reader.getEmbeddings();
   }
+
+  /**
+   * @param file text format word vectors, or a binary {@link WordEmbeddingStore} file
+   * @return embeddings read from a text file, or backed by the memory-mapped store file and its
+   * {@link WordEmbeddingIndex} if one has been built
+   */
+  public static WordEmbeddings getEmbeddings(File file) throws IOException {
+    if(WordEmbeddingStore.isStoreFile(file)){
+      WordEmbeddingStore store = WordEmbeddingStore.getSharedStore(file);
+      File indexFile = WordEmbeddingIndex.getIndexFile(file);
+      if(indexFile.exists()){
+        return new WordEmbeddings(store, WordEmbeddingIndex.getSharedIndex(store, indexFile));
+      }
+      return new WordEmbeddings(store);
+    }
+    return getEmbeddings(new FileInputStream(file));
+  }
+
+  /**
+   * Embeddings returned by this method are shared, so callers must not add to them.
+   * @param file text format word vectors, or a binary {@link WordEmbeddingStore} file
+   * @return embeddings for the file, loaded once and shared by all callers in the jvm
+   */
+  public static WordEmbeddings getSharedEmbeddings(File file) throws IOException {
+    String key = file.getCanonicalPath();
+    synchronized(SHARED_EMBEDDINGS){
+      WordEmbeddings embeddings = SHARED_EMBEDDINGS.get(key);
+      if(embeddings == null){
+        embeddings = getEmbeddings(file);
+        SHARED_EMBEDDINGS.put(key, embeddings);
+      }
+      return embeddings;
+    }
+  }
 }
@@ -0,0 +1,78 @@
+package org.apache.ctakes.utils.distsem;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Measures the recall and latency of a {@link WordEmbeddingIndex} against the exact scan of
+ * {@link WordEmbeddings#getSimilarWords(String, int)} for random query words.
+ * The index of the store is read if it exists, otherwise it is built with default settings.
+ * This is a command line tool, not a unit test, and is not run by the build.
+ */
+public final class WordEmbeddingIndexBenchmark {
+
+  private WordEmbeddingIndexBenchmark(){
+  }
+
+  public static void main(String[] args) throws IOException {
+    if(args.length < 1 || args.length > 3){
+      System.err.println("Usage: WordEmbeddingIndexBenchmark <store file> [queries] [maxWords]");
+      System.exit(1);
+    }
+    File storeFile = new File(args[0]);
+    int queries = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+    int maxWords = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+    WordEmbeddingStore store = WordEmbeddingStore.open(storeFile);
+    File indexFile = WordEmbeddingIndex.getIndexFile(storeFile);
+    WordEmbeddingIndex index;
+    long start = System.currentTimeMillis();
+    if(indexFile.exists()){
+      index = WordEmbeddingIndex.read(store, indexFile);
+      System.out.println("Read index in " + (System.currentTimeMillis() - start) + " ms");
+    }else{
+      index = WordEmbeddingIndex.build(store, WordEmbeddingIndex.DEFAULT_M, WordEmbeddingIndex.DEFAULT_EF_CONSTRUCTION, 42L);
+      System.out.println("Built index in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    WordEmbeddings exact = new WordEmbeddings(store);
+    Random random = new Random(7L);
+    String[] words = new String[queries];
+    int[] ids = new int[queries];
+    for(int i = 0; i < queries; i++){
+      ids[i] = random.nextInt(store.size());
+      words[i] = store.getWord(ids[i]);
+    }
+
+    @SuppressWarnings("unchecked")
+    Set<String>[] truth = new Set[queries];
+    start = System.nanoTime();
+    for(int i = 0; i < queries; i++){
+      truth[i] = new HashSet<>(exact.getSimilarWords(words[i], maxWords));
+    }
+    double exactMillis = (System.nanoTime() - start) / 1e6 / queries;
+    System.out.println(String.format("exact scan: %.3f ms per query", exactMillis));
+
+    WordEmbeddings approximate = new WordEmbeddings(store, index);
+    for(int ef : new int[]{ 16, 32, 64, 128, 256 }){
+      index.setEfSearch(ef);
+      int found = 0;
+      int expected = 0;
+      start = System.nanoTime();
+      for(int i = 0; i < queries; i++){
+        for(String word : approximate.getSimilarWords(words[i], maxWords)){
+          if(truth[i].contains(word)){
+            found++;
+          }
+        }
+        expected += truth[i].size();
+      }
+      double indexMillis = (System.nanoTime() - start) / 1e6 / queries;
+      System.out.println(String.format("efSearch %d: recall@%d %.4f, %.3f ms per query, %.1fx faster",
+          ef, maxWords, (double)found / Math.max(1, expected), indexMillis, exactMillis / indexMillis));
+    }
+  }
+}
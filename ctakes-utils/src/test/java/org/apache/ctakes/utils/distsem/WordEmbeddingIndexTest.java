@@ -0,0 +1,141 @@
+package org.apache.ctakes.utils.distsem;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WordEmbeddingIndexTest {
+
+  private static final int WORDS = 1000;
+  private static final int DIMENSIONALITY = 16;
+  private static final int CLUSTERS = 25;
+  private static final int MAX_WORDS = 10;
+  private static final double MIN_RECALL = 0.95;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File storeFile;
+  private WordEmbeddingStore store;
+  private WordEmbeddingIndex index;
+
+  /**
+   * Writes vectors scattered around a few random directions, so that words have clear nearest neighbours,
+   * converts them to a store and builds an index over the store.
+   */
+  @Before
+  public void setUp() throws IOException {
+    Random random = new Random(42);
+    double[][] centers = new double[CLUSTERS][DIMENSIONALITY];
+    for(double[] center : centers){
+      for(int i = 0; i < DIMENSIONALITY; i++){
+        center[i] = random.nextGaussian();
+      }
+    }
+    File textFile = folder.newFile("vectors.txt");
+    try(Writer writer = new OutputStreamWriter(new FileOutputStream(textFile), StandardCharsets.UTF_8)){
+      writer.write(WORDS + " " + DIMENSIONALITY + "\n");
+      for(int word = 0; word < WORDS; word++){
+        double[] center = centers[random.nextInt(CLUSTERS)];
+        StringBuilder line = new StringBuilder("word" + word);
+        for(int i = 0; i < DIMENSIONALITY; i++){
+          line.append(' ').append(String.format(Locale.ROOT, "%.5f", center[i] + 0.5 * random.nextGaussian()));
+        }
+        writer.write(line + "\n");
+      }
+    }
+    storeFile = folder.newFile("vectors.store");
+    try(InputStream in = new FileInputStream(textFile)){
+      WordEmbeddingStoreWriter.convert(in, storeFile);
+    }
+    store = WordEmbeddingStore.open(storeFile);
+    index = WordEmbeddingIndex.build(store, 8, 100, 42L);
+  }
+
+  @Test
+  public void testRecall(){
+    WordEmbeddings exact = new WordEmbeddings(store);
+    WordEmbeddings approximate = new WordEmbeddings(store, index);
+    int found = 0;
+    int expected = 0;
+    for(int word = 0; word < store.size(); word++){
+      String text = store.getWord(word);
+      Set<String> truth = new HashSet<>(exact.getSimilarWords(text, MAX_WORDS));
+      List<String> similar = approximate.getSimilarWords(text, MAX_WORDS);
+      assertEquals(text, MAX_WORDS, similar.size());
+      assertEquals(text, MAX_WORDS, new HashSet<>(similar).size());
+      for(String other : similar){
+        assertFalse(text, other.equals(text));
+        if(truth.contains(other)){
+          found++;
+        }
+      }
+      expected += truth.size();
+    }
+    double recall = (double)found / expected;
+    assertTrue("recall@" + MAX_WORDS + " " + recall, recall >= MIN_RECALL);
+  }
+
+  @Test
+  public void testMostSimilarFirst(){
+    for(int word = 0; word < store.size(); word += 10){
+      int[] similar = index.getSimilarWords(word, MAX_WORDS);
+      for(int i = 1; i < similar.length; i++){
+        assertTrue(store.getWord(word), store.getSimilarity(word, similar[i - 1]) >= store.getSimilarity(word, similar[i]));
+      }
+    }
+  }
+
+  @Test
+  public void testWriteAndRead() throws IOException {
+    File indexFile = WordEmbeddingIndex.getIndexFile(storeFile);
+    index.write(indexFile);
+    WordEmbeddingIndex read = WordEmbeddingIndex.read(store, indexFile);
+    for(int word = 0; word < store.size(); word++){
+      assertArrayEquals(store.getWord(word), index.getSimilarWords(word, MAX_WORDS), read.getSimilarWords(word, MAX_WORDS));
+    }
+    // the reader finds the index next to the store file
+    WordEmbeddings embeddings = WordVectorReader.getEmbeddings(storeFile);
+    WordEmbeddings indexed = new WordEmbeddings(store, read);
+    for(int word = 0; word < store.size(); word += 10){
+      String text = store.getWord(word);
+      assertEquals(text, indexed.getSimilarWords(text, MAX_WORDS), embeddings.getSimilarWords(text, MAX_WORDS));
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testReadOtherStore() throws IOException {
+    File indexFile = WordEmbeddingIndex.getIndexFile(storeFile);
+    index.write(indexFile);
+    File otherFile = folder.newFile("other.store");
+    WordEmbeddingStoreWriter.convert(
+        new ByteArrayInputStream("2 2\na 1.0 0.0\nb 0.0 1.0\n".getBytes(StandardCharsets.UTF_8)), otherFile);
+    WordEmbeddingIndex.read(WordEmbeddingStore.open(otherFile), indexFile);
+  }
+
+  @Test(expected = IOException.class)
+  public void testReadNotAnIndex() throws IOException {
+    WordEmbeddingIndex.read(store, storeFile);
+  }
+}
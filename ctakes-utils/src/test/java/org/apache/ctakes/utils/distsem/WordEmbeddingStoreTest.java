@@ -0,0 +1,140 @@
+package org.apache.ctakes.utils.distsem;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WordEmbeddingStoreTest {
+
+  private static final int WORDS = 60;
+  private static final int DIMENSIONALITY = 8;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private List<String> words;
+  private WordEmbeddings textEmbeddings;
+  private WordEmbeddings storeEmbeddings;
+
+  /**
+   * Writes random vectors in the text format, with one word repeated, and loads them both as text and through a
+   * converted store file.
+   */
+  @Before
+  public void setUp() throws IOException {
+    Random random = new Random(42);
+    words = new ArrayList<>();
+    List<String> lines = new ArrayList<>();
+    for(int i = 0; i < WORDS; i++){
+      String word = "word" + i;
+      words.add(word);
+      lines.add(randomLine(word, random));
+    }
+    // a repeated word keeps its last vector, but both lines count in the mean vector
+    lines.add(randomLine(words.get(3), random));
+
+    File textFile = folder.newFile("vectors.txt");
+    try(Writer writer = new OutputStreamWriter(new FileOutputStream(textFile), StandardCharsets.UTF_8)){
+      writer.write(lines.size() + " " + DIMENSIONALITY + "\n");
+      for(String line : lines){
+        writer.write(line + "\n");
+      }
+    }
+    try(InputStream in = new FileInputStream(textFile)){
+      textEmbeddings = WordVectorReader.getEmbeddings(in);
+    }
+    File storeFile = folder.newFile("vectors.store");
+    try(InputStream in = new FileInputStream(textFile)){
+      WordEmbeddingStoreWriter.convert(in, storeFile);
+    }
+    assertTrue(WordEmbeddingStore.isStoreFile(storeFile));
+    assertFalse(WordEmbeddingStore.isStoreFile(textFile));
+    storeEmbeddings = WordVectorReader.getEmbeddings(storeFile);
+  }
+
+  private static String randomLine(String word, Random random){
+    StringBuilder line = new StringBuilder(word);
+    for(int i = 0; i < DIMENSIONALITY; i++){
+      line.append(' ').append(String.format(Locale.ROOT, "%.4f", random.nextDouble() * 2 - 1));
+    }
+    return line.toString();
+  }
+
+  @Test
+  public void testVectors(){
+    assertEquals(textEmbeddings.getDimensionality(), storeEmbeddings.getDimensionality());
+    for(String word : words){
+      assertTrue(storeEmbeddings.containsKey(word));
+      WordVector expected = textEmbeddings.getVector(word);
+      WordVector actual = storeEmbeddings.getVector(word);
+      assertEquals(expected.size(), actual.size());
+      for(int i = 0; i < expected.size(); i++){
+        assertEquals(word, expected.getValue(i), actual.getValue(i), 1e-6);
+      }
+    }
+    assertFalse(storeEmbeddings.containsKey("missing"));
+    assertNull(storeEmbeddings.getVector("missing"));
+  }
+
+  @Test
+  public void testSimilarity(){
+    for(String word1 : words){
+      for(String word2 : words){
+        assertEquals(word1 + " " + word2, textEmbeddings.getSimilarity(word1, word2),
+            storeEmbeddings.getSimilarity(word1, word2), 1e-5);
+      }
+    }
+  }
+
+  @Test
+  public void testSimilarWords(){
+    for(String word : words){
+      assertEquals(word, textEmbeddings.getSimilarWords(word, 5), storeEmbeddings.getSimilarWords(word, 5));
+    }
+  }
+
+  @Test
+  public void testMeanVector(){
+    WordVector expected = textEmbeddings.getMeanVector();
+    WordVector actual = storeEmbeddings.getMeanVector();
+    assertEquals(expected.size(), actual.size());
+    for(int i = 0; i < expected.size(); i++){
+      assertEquals(expected.getValue(i), actual.getValue(i), 0.0);
+    }
+  }
+
+  @Test
+  public void testMeanVectorIsSumOfLines() throws IOException {
+    String text = "3 2\na 1.0 2.0\nb 3.0 -1.0\na 0.5 0.5\n";
+    WordEmbeddings embeddings = WordVectorReader.getEmbeddings(
+        new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+    File storeFile = folder.newFile("small.store");
+    WordEmbeddingStoreWriter.convert(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), storeFile);
+    WordEmbeddingStore store = WordEmbeddingStore.open(storeFile);
+    assertEquals(2, store.size());
+    assertArrayEquals(new float[]{0.5f, 0.5f}, store.getVector("a"), 0f);
+    assertArrayEquals(new double[]{4.5, 1.5}, embeddings.getMeanVector().vector, 0.0);
+    assertArrayEquals(new double[]{4.5, 1.5}, new WordEmbeddings(store).getMeanVector().vector, 0.0);
+  }
+}
@@ -29,16 +29,27 @@ import java.util.Set;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ctakes.core.pipeline.PipeBitInfo;
+import org.apache.ctakes.typesystem.type.refsem.OntologyConcept;
+import org.apache.ctakes.typesystem.type.textsem.IdentifiedAnnotation;
+import org.apache.ctakes.typesystem.type.textspan.Segment;
+import org.apache.ctakes.ytex.index.CuiIndexWriter;
 import org.apache.ctakes.ytex.uima.ApplicationContextHolder;
 import org.apache.ctakes.ytex.uima.mapper.DocumentMapperService;
 import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_component.JCasAnnotator_ImplBase;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.cas.FSIterator;
 import org.apache.uima.cas.impl.XmiCasSerializer;
+import org.apache.uima.cas.text.AnnotationIndex;
 import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.cas.FSArray;
+import org.apache.uima.jcas.tcas.Annotation;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.util.XMLSerializer;
 import org.xml.sax.SAXException;
 
+import com.google.common.base.Strings;
+
 /**
  * Store the document text, cas, and annotations in the database. Delegates to
  * DocumentMapperService. This is an annotator and not a consumer because
@@ -58,6 +69,9 @@ import org.xml.sax.SAXException;
  * <li>insertAnnotationContainmentLinks - boolean - should we store containment
  * links? defaults to true
  * </ul>
+ * If ytex.cuiIndexDir is set in ytex.properties, the concepts of saved
+ * documents are also added to the concept index in that directory (see
+ * {@link CuiIndexWriter}), which is used by the ytex web document search.
  * 
  * @author vijay
  * 
@@ -70,6 +84,11 @@ import org.xml.sax.SAXException;
 )
 public class DBConsumer extends JCasAnnotator_ImplBase {
 	private static final Log log = LogFactory.getLog(DBConsumer.class);
+	/**
+	 * write a concept index segment after this many documents
+	 */
+	private static final int CUI_INDEX_FLUSH_DOCUMENTS = 1000;
+	private CuiIndexWriter cuiIndexWriter;
 	private DocumentMapperService documentMapperService;
 	private String xmiOutputDirectory;
 	private String analysisBatch;
@@ -106,6 +125,68 @@ public class DBConsumer extends JCasAnnotator_ImplBase {
 				: boolInsertAnnotationContainmentLinks.booleanValue();
 		documentMapperService = (DocumentMapperService) ApplicationContextHolder
 				.getApplicationContext().getBean("documentMapperService");
+		String cuiIndexDir = ApplicationContextHolder.getYtexProperties()
+				.getProperty("ytex.cuiIndexDir");
+		if (!Strings.isNullOrEmpty(cuiIndexDir))
+			cuiIndexWriter = new CuiIndexWriter(new File(cuiIndexDir));
+	}
+
+	/**
+	 * write the concepts added since the last flush to a new index segment.
+	 * make sure the documents are in the database first.
+	 */
+	private void flushCuiIndex() {
+		documentMapperService.flush();
+		try {
+			cuiIndexWriter.flush();
+		} catch (IOException e) {
+			log.error("error writing concept index segment", e);
+		}
+	}
+
+	/**
+	 * add the concepts of the document to the concept index, with the id of
+	 * the segment they are in
+	 */
+	private void indexConcepts(JCas jcas, int documentID) {
+		AnnotationIndex<Annotation> conceptIdx = jcas
+				.getAnnotationIndex(IdentifiedAnnotation.type);
+		Set<Annotation> setSegmentAnnos = new HashSet<Annotation>();
+		FSIterator<Annotation> segmentIter = jcas.getAnnotationIndex(
+				Segment.type).iterator();
+		while (segmentIter.hasNext()) {
+			Segment segment = (Segment) segmentIter.next();
+			FSIterator<Annotation> annoIter = conceptIdx.subiterator(segment);
+			while (annoIter.hasNext()) {
+				Annotation anno = annoIter.next();
+				if (setSegmentAnnos.add(anno))
+					indexConcepts((IdentifiedAnnotation) anno, documentID,
+							segment.getId());
+			}
+		}
+		FSIterator<Annotation> annoIter = conceptIdx.iterator();
+		while (annoIter.hasNext()) {
+			Annotation anno = annoIter.next();
+			if (!setSegmentAnnos.contains(anno))
+				indexConcepts((IdentifiedAnnotation) anno, documentID, null);
+		}
+		cuiIndexWriter.endDocument();
+	}
+
+	private void indexConcepts(IdentifiedAnnotation anno, int documentID,
+			String section) {
+		FSArray concepts = anno.getOntologyConceptArr();
+		if (concepts == null
+				|| setTypesToIgnore.contains(anno.getClass().getName()))
+			return;
+		for (int i = 0; i < concepts.size(); i++) {
+			OntologyConcept concept = (OntologyConcept) concepts.get(i);
+			// the code is what the document search matches on
+			// (anno_ontology_concept.code)
+			if (concept.getCode() != null)
+				cuiIndexWriter.add(concept.getCode(), documentID,
+						anno.getPolarity(), section);
+		}
 	}
 
 	/**
@@ -117,6 +198,11 @@ public class DBConsumer extends JCasAnnotator_ImplBase {
 	public void process(JCas jcas) {
 		Integer documentID = documentMapperService.saveDocument(jcas,
 				analysisBatch, bStoreDocText, bStoreCAS, bInsertAnnotationContainmentLinks, setTypesToIgnore);
+		if (documentID != null && cuiIndexWriter != null) {
+			indexConcepts(jcas, documentID);
+			if (cuiIndexWriter.getDocumentCount() >= CUI_INDEX_FLUSH_DOCUMENTS)
+				flushCuiIndex();
+		}
 		if (documentID != null && xmiOutputDirectory != null
 				&& xmiOutputDirectory.length() > 0) {
 			File dirOut = new File(xmiOutputDirectory);
@@ -148,4 +234,16 @@ public class DBConsumer extends JCasAnnotator_ImplBase {
 		}
 	}
 
+	/**
+	 * wait for documents that are saved asynchronously to be written, and
+	 * write the remaining concepts to the concept index
+	 */
+	@Override
+	public void collectionProcessComplete()
+			throws AnalysisEngineProcessException {
+		documentMapperService.flush();
+		if (cuiIndexWriter != null)
+			flushCuiIndex();
+		super.collectionProcessComplete();
+	}
 }
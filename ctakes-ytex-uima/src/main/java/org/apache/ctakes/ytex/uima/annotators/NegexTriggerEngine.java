@@ -0,0 +1,298 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.uima.annotators;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ctakes.ytex.uima.annotators.NegexAnnotator.NegexRule;
+import org.apache.ctakes.ytex.uima.annotators.NegexAnnotator.NegexToken;
+
+/**
+ * Finds negex triggers with a character trie of all trigger phrases instead of
+ * running every rule's regular expression over the sentence for every named
+ * entity. A sentence is scanned once; the triggers for each named entity in
+ * the sentence are then resolved from the candidates found by the scan.
+ * <p/>
+ * The tokens are the same as those found by the regular expressions of
+ * {@link NegexAnnotator}: a trigger must be preceded by whitespace or
+ * punctuation other than square brackets and followed by whitespace or
+ * punctuation other than an underscore, words of the trigger are separated by
+ * any whitespace, and letters are compared ignoring ascii case. Rules are
+ * applied in the same order, a match that overlaps a match of an earlier rule
+ * is dropped, and the named entity is treated as blacked out.
+ * <p/>
+ * Triggers must be literal text. {@link #create(List)} returns null if a
+ * trigger contains a regular expression metacharacter or an underscore.
+ * 
+ * @author vijay
+ * 
+ */
+public class NegexTriggerEngine {
+	private static final Log log = LogFactory.getLog(NegexTriggerEngine.class);
+	private static final String META_CHARS = "\\.[]{}()*+?^$|_";
+
+	private final NegexRule[] rules;
+	private final Node root = new Node();
+
+	/**
+	 * trie node. children are kept in parallel arrays, most nodes have only a
+	 * few children.
+	 */
+	private static class Node {
+		private char[] keys = new char[0];
+		private Node[] children = new Node[0];
+		private int[] ruleIndices;
+
+		private Node getChild(char c) {
+			for (int i = 0; i < keys.length; i++) {
+				if (keys[i] == c)
+					return children[i];
+			}
+			return null;
+		}
+
+		private Node addChild(char c) {
+			Node child = getChild(c);
+			if (child == null) {
+				child = new Node();
+				keys = Arrays.copyOf(keys, keys.length + 1);
+				keys[keys.length - 1] = c;
+				children = Arrays.copyOf(children, children.length + 1);
+				children[children.length - 1] = child;
+			}
+			return child;
+		}
+
+		private void addRule(int ruleIndex) {
+			if (ruleIndices == null) {
+				ruleIndices = new int[] { ruleIndex };
+			} else {
+				ruleIndices = Arrays.copyOf(ruleIndices, ruleIndices.length + 1);
+				ruleIndices[ruleIndices.length - 1] = ruleIndex;
+			}
+		}
+	}
+
+	/**
+	 * trigger candidates found in a sentence, before the named entity and the
+	 * order of the rules are taken into account.
+	 */
+	public static class SentenceTriggers {
+		private final int length;
+		// true where the character may precede a trigger
+		private final boolean[] leading;
+		// rule index, start and end of each candidate, sorted by rule and start
+		private final int[] candidateRules;
+		private final int[] candidateStarts;
+		private final int[] candidateEnds;
+
+		private SentenceTriggers(int length, boolean[] leading,
+				List<int[]> candidates) {
+			this.length = length;
+			this.leading = leading;
+			int[][] sorted = candidates.toArray(new int[candidates.size()][]);
+			Arrays.sort(sorted, (c1, c2) -> c1[0] != c2[0] ? Integer.compare(
+					c1[0], c2[0]) : Integer.compare(c1[1], c2[1]));
+			candidateRules = new int[sorted.length];
+			candidateStarts = new int[sorted.length];
+			candidateEnds = new int[sorted.length];
+			for (int i = 0; i < sorted.length; i++) {
+				candidateRules[i] = sorted[i][0];
+				candidateStarts[i] = sorted[i][1];
+				candidateEnds[i] = sorted[i][2];
+			}
+		}
+
+		public int getCandidateCount() {
+			return candidateRules.length;
+		}
+	}
+
+	/**
+	 * @param rules
+	 *            negex rules in the order they are applied
+	 * @return engine for the rules, or null if a rule is not literal text
+	 */
+	public static NegexTriggerEngine create(List<NegexRule> rules) {
+		List<String[]> triggers = new ArrayList<String[]>(rules.size());
+		for (NegexRule rule : rules) {
+			// the words of a rule are joined by \s+
+			String[] words = rule.getRule().split("\\\\s\\+");
+			for (String word : words) {
+				for (int i = 0; i < word.length(); i++) {
+					if (META_CHARS.indexOf(word.charAt(i)) >= 0) {
+						log.warn("not a literal trigger, cannot use trie: "
+								+ rule);
+						return null;
+					}
+				}
+			}
+			triggers.add(words);
+		}
+		return new NegexTriggerEngine(rules, triggers);
+	}
+
+	private NegexTriggerEngine(List<NegexRule> rules, List<String[]> triggers) {
+		this.rules = rules.toArray(new NegexRule[rules.size()]);
+		for (int r = 0; r < triggers.size(); r++) {
+			Node node = root;
+			String[] words = triggers.get(r);
+			for (int w = 0; w < words.length; w++) {
+				if (w > 0)
+					node = node.addChild(' ');
+				for (int i = 0; i < words[w].length(); i++)
+					node = node.addChild(toLower(words[w].charAt(i)));
+			}
+			if (node != root)
+				node.addRule(r);
+		}
+	}
+
+	/**
+	 * find all trigger candidates in the sentence
+	 * 
+	 * @param sentence
+	 *            sentence text with a '.' added on either side, as in
+	 *            {@link NegexAnnotator}
+	 * @return candidates to be resolved for each named entity in the sentence
+	 */
+	public SentenceTriggers scan(CharSequence sentence) {
+		int length = sentence.length();
+		boolean[] leading = new boolean[length];
+		for (int i = 0; i < length; i++)
+			leading[i] = isLeading(sentence.charAt(i));
+		List<int[]> candidates = new ArrayList<int[]>();
+		for (int start = 1; start < length; start++) {
+			Node node = root;
+			int i = start;
+			while (i < length && node != null) {
+				char c = sentence.charAt(i);
+				if (isSpace(c)) {
+					// words are separated by \s+
+					if (i == start)
+						break;
+					node = node.getChild(' ');
+					while (i < length && isSpace(sentence.charAt(i)))
+						i++;
+				} else {
+					node = node.getChild(toLower(c));
+					i++;
+					if (node != null && node.ruleIndices != null && i < length
+							&& isTrailing(sentence.charAt(i))) {
+						// the match includes the characters before and after
+						for (int ruleIndex : node.ruleIndices)
+							candidates.add(new int[] { ruleIndex, start - 1,
+									i + 1 });
+					}
+				}
+			}
+		}
+		return new SentenceTriggers(length, leading, candidates);
+	}
+
+	/**
+	 * resolve the triggers for a named entity
+	 * 
+	 * @param triggers
+	 *            candidates of the sentence
+	 * @param neRelStart
+	 *            start of the named entity relative to the sentence with the
+	 *            added '.'
+	 * @param neRelEnd
+	 *            end of the named entity relative to the sentence with the
+	 *            added '.'
+	 * @return array that maps each character of the sentence to a token
+	 */
+	public NegexToken[] getTokens(SentenceTriggers triggers, int neRelStart,
+			int neRelEnd) {
+		NegexToken[] tokens = new NegexToken[triggers.length];
+		// characters blacked out by the named entity or by earlier matches
+		boolean[] blacked = new boolean[triggers.length];
+		for (int i = Math.max(0, neRelStart); i < neRelEnd
+				&& i < triggers.length; i++)
+			blacked[i] = true;
+		int rule = -1;
+		// a rule's next match cannot start before the end of its last match
+		int from = 0;
+		for (int c = 0; c < triggers.candidateRules.length; c++) {
+			if (triggers.candidateRules[c] != rule) {
+				rule = triggers.candidateRules[c];
+				from = 0;
+			}
+			int start = triggers.candidateStarts[c];
+			int end = triggers.candidateEnds[c];
+			if (start < from)
+				continue;
+			// a blacked out character is an '_', which may precede a trigger
+			// but may not be part of it or follow it
+			boolean found = triggers.leading[start] || blacked[start];
+			for (int i = start + 1; i < end && found; i++)
+				found = !blacked[i];
+			if (!found)
+				continue;
+			from = end;
+			boolean bUnoccupied = true;
+			for (int i = start; i < end && bUnoccupied; i++)
+				bUnoccupied = tokens[i] == null;
+			if (bUnoccupied) {
+				NegexToken t = new NegexToken(start, end, rules[rule]);
+				for (int i = start; i < end; i++) {
+					blacked[i] = true;
+					tokens[i] = t;
+				}
+			}
+		}
+		return tokens;
+	}
+
+	private static boolean isSpace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B'
+				|| c == '\f' || c == '\r';
+	}
+
+	private static boolean isPunct(char c) {
+		return (c >= '!' && c <= '/') || (c >= ':' && c <= '@')
+				|| (c >= '[' && c <= '`') || (c >= '{' && c <= '~');
+	}
+
+	/**
+	 * [[\p{Punct}&&[^\]\[]]|\s+]
+	 */
+	private static boolean isLeading(char c) {
+		return isSpace(c) || (isPunct(c) && c != '[' && c != ']');
+	}
+
+	/**
+	 * [[\p{Punct}&&[^_]]|\s+]
+	 */
+	private static boolean isTrailing(char c) {
+		return isSpace(c) || (isPunct(c) && c != '_');
+	}
+
+	/**
+	 * case insensitive matching without unicode case only folds ascii letters
+	 */
+	private static char toLower(char c) {
+		return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+	}
+}
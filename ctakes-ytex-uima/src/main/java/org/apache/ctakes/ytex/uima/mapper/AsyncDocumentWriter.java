@@ -0,0 +1,300 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.uima.mapper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Background writer for the asynchronous mode of
+ * {@link DocumentMapperServiceImpl}. Documents are queued by the threads that
+ * process the CAS; a single writer thread drains up to batchDocuments
+ * documents at a time and writes them in one transaction. If a batch fails,
+ * its documents are retried one at a time. Documents that still cannot be
+ * written are serialized to the journal directory, and the journal is
+ * replayed the next time the writer is started.
+ */
+class AsyncDocumentWriter implements Runnable {
+	private static final Log log = LogFactory.getLog(AsyncDocumentWriter.class);
+	private static final String JOURNAL_SUFFIX = ".rows";
+	private static final long RETRY_DELAY_MILLIS = 1000;
+
+	private int batchDocuments;
+	private boolean closed = false;
+	private File journalDir;
+	private Object lock = new Object();
+	private DocumentMapperServiceImpl mapper;
+	/**
+	 * documents submitted but not yet written or journaled
+	 */
+	private int pending = 0;
+	private BlockingQueue<DocumentRows> queue;
+	private int retries;
+	private Thread thread;
+
+	AsyncDocumentWriter(DocumentMapperServiceImpl mapper, int queueSize,
+			int batchDocuments, int retries, File journalDir) {
+		this.mapper = mapper;
+		this.queue = new ArrayBlockingQueue<DocumentRows>(Math.max(1,
+				queueSize));
+		this.batchDocuments = Math.max(1, batchDocuments);
+		this.retries = retries;
+		this.journalDir = journalDir;
+	}
+
+	/**
+	 * stop accepting documents, wait for queued documents to be written, and
+	 * stop the writer thread.
+	 */
+	void close() {
+		synchronized (lock) {
+			closed = true;
+		}
+		flush();
+		if (thread != null) {
+			thread.interrupt();
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * wait until all submitted documents have been written or journaled
+	 */
+	void flush() {
+		synchronized (lock) {
+			while (pending > 0 && thread != null && thread.isAlive()) {
+				try {
+					lock.wait(RETRY_DELAY_MILLIS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * serialize the document to the journal directory
+	 */
+	private void journal(DocumentRows rows, Exception cause) {
+		Integer documentId = rows.getDocument().getDocumentID();
+		if (rows.getJournalFile() != null) {
+			log.error("document_id: " + documentId
+					+ ", could not replay " + rows.getJournalFile(), cause);
+		} else if (journalDir == null) {
+			log.error("document_id: " + documentId
+					+ ", could not save document, no journal directory",
+					cause);
+		} else {
+			File journalFile = new File(journalDir, "document-" + documentId
+					+ JOURNAL_SUFFIX);
+			File tmpFile = new File(journalDir, journalFile.getName() + ".tmp");
+			ObjectOutputStream os = null;
+			try {
+				os = new ObjectOutputStream(new BufferedOutputStream(
+						new FileOutputStream(tmpFile)));
+				os.writeObject(rows);
+				os.close();
+				os = null;
+				if (!tmpFile.renameTo(journalFile))
+					throw new IOException("could not rename " + tmpFile);
+				log.error("document_id: " + documentId
+						+ ", could not save document, journaled to "
+						+ journalFile, cause);
+			} catch (IOException e) {
+				log.error("document_id: " + documentId
+						+ ", could not save document", cause);
+				log.error("could not write " + journalFile, e);
+			} finally {
+				if (os != null) {
+					try {
+						os.close();
+					} catch (IOException e) {
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * queue the documents from the journal directory
+	 */
+	private void replayJournal() {
+		if (journalDir == null)
+			return;
+		if (!journalDir.isDirectory() && !journalDir.mkdirs()) {
+			log.error("could not create journal directory " + journalDir);
+			return;
+		}
+		File[] journalFiles = journalDir.listFiles();
+		if (journalFiles == null)
+			return;
+		Arrays.sort(journalFiles);
+		for (File journalFile : journalFiles) {
+			if (!journalFile.getName().endsWith(JOURNAL_SUFFIX))
+				continue;
+			ObjectInputStream is = null;
+			try {
+				is = new ObjectInputStream(new BufferedInputStream(
+						new FileInputStream(journalFile)));
+				DocumentRows rows = (DocumentRows) is.readObject();
+				rows.setJournalFile(journalFile);
+				log.info("replaying " + journalFile);
+				submit(rows);
+			} catch (IOException e) {
+				log.error("could not read " + journalFile, e);
+			} catch (ClassNotFoundException e) {
+				log.error("could not read " + journalFile, e);
+			} finally {
+				if (is != null) {
+					try {
+						is.close();
+					} catch (IOException e) {
+					}
+				}
+			}
+		}
+	}
+
+	@Override
+	public void run() {
+		List<DocumentRows> batch = new ArrayList<DocumentRows>(batchDocuments);
+		while (true) {
+			try {
+				batch.add(queue.take());
+			} catch (InterruptedException e) {
+				return;
+			}
+			queue.drainTo(batch, batchDocuments - 1);
+			try {
+				write(batch);
+			} finally {
+				synchronized (lock) {
+					pending -= batch.size();
+					lock.notifyAll();
+				}
+				batch.clear();
+			}
+		}
+	}
+
+	/**
+	 * start the writer thread, then queue any journaled documents
+	 */
+	void start() {
+		thread = new Thread(this, "ytex-document-writer");
+		thread.setDaemon(true);
+		thread.start();
+		replayJournal();
+	}
+
+	/**
+	 * queue the document for writing. blocks if the queue is full.
+	 * 
+	 * @param rows
+	 */
+	void submit(DocumentRows rows) {
+		synchronized (lock) {
+			if (closed)
+				throw new IllegalStateException("document writer closed");
+			pending++;
+		}
+		try {
+			queue.put(rows);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			synchronized (lock) {
+				pending--;
+				lock.notifyAll();
+			}
+			journal(rows, e);
+		}
+	}
+
+	/**
+	 * write the batch in one transaction; if that fails write the documents
+	 * one at a time
+	 */
+	private void write(List<DocumentRows> batch) {
+		if (batch.size() > 1) {
+			try {
+				mapper.writeDocumentRows(batch);
+				written(batch);
+				return;
+			} catch (RuntimeException e) {
+				log.warn("could not save batch of " + batch.size()
+						+ " documents, saving documents individually", e);
+			}
+		}
+		for (DocumentRows rows : batch) {
+			List<DocumentRows> single = Collections.singletonList(rows);
+			RuntimeException lastException = null;
+			for (int attempt = 0; attempt <= retries; attempt++) {
+				if (attempt > 0) {
+					try {
+						Thread.sleep(RETRY_DELAY_MILLIS * attempt);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						break;
+					}
+				}
+				try {
+					mapper.writeDocumentRows(single);
+					written(single);
+					lastException = null;
+					break;
+				} catch (RuntimeException e) {
+					lastException = e;
+				}
+			}
+			if (lastException != null)
+				journal(rows, lastException);
+		}
+	}
+
+	/**
+	 * remove the journal files of documents that have been written
+	 */
+	private void written(List<DocumentRows> batch) {
+		for (DocumentRows rows : batch) {
+			if (rows.getJournalFile() != null
+					&& !rows.getJournalFile().delete())
+				log.warn("could not delete " + rows.getJournalFile());
+		}
+	}
+}
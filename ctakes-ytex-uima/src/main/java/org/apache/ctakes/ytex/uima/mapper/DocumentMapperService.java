@@ -36,4 +36,10 @@ public interface DocumentMapperService {
 			boolean bStoreDocText, boolean bStoreCAS,
 			boolean bInsertAnnotationContainmentLinks, Set<String> typesToIgnore);
 
+	/**
+	 * Wait until documents that are saved asynchronously have been written to
+	 * the database. Returns immediately if documents are saved synchronously.
+	 */
+	public abstract void flush();
+
 }
\ No newline at end of file
@@ -19,6 +19,7 @@
 package org.apache.ctakes.ytex.uima.mapper;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
@@ -35,6 +36,7 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -70,11 +72,16 @@ import org.apache.uima.util.XMLSerializer;
 import org.hibernate.Query;
 import org.hibernate.SessionFactory;
 import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
 import org.hibernate.jdbc.Work;
 import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.TransactionStatus;
@@ -94,12 +101,18 @@ import com.google.common.collect.SetMultimap;
 
 /**
  * Map document annotations to the database.
+ * <p>
+ * If asyncWrite is set, {@link #saveDocument} only reads the CAS: ids are
+ * allocated up front from the hibernate identifier generators, the rows are
+ * recorded in memory, and a background writer saves the rows of many
+ * documents per transaction with large jdbc batches. See
+ * {@link AsyncDocumentWriter}.
  * 
  * @author vijay
  * 
  */
 public class DocumentMapperServiceImpl implements DocumentMapperService,
-		InitializingBean {
+		InitializingBean, DisposableBean {
 	/**
 	 * holder for FeatureStruct attributes
 	 * 
@@ -208,6 +221,12 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 				Types.FLOAT, Types.DOUBLE, Types.INTEGER));
 	}
 	private Set<AnnoMappingInfo> annoMappingInfos;
+	private int asyncBatchDocuments = 20;
+	private String asyncJournalDir;
+	private int asyncQueueSize = 100;
+	private int asyncRetries = 2;
+	private boolean asyncWrite = false;
+	private AsyncDocumentWriter asyncWriter;
 	private int batchSize = 100;
 	private DataSource dataSource;
 	private String dbSchema;
@@ -233,6 +252,12 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 
 	};
 
+	/**
+	 * rows of the document being saved asynchronously. when set, inserts and
+	 * updates are recorded here instead of being executed.
+	 */
+	private ThreadLocal<DocumentRows> tl_documentRows = new ThreadLocal<DocumentRows>();
+
 	/**
 	 * map of annotation to fields that need to be mapped
 	 */
@@ -373,6 +398,17 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 		});
 	}
 
+	/**
+	 * wait for the asynchronous writer to save all queued documents, then
+	 * stop it.
+	 */
+	public synchronized void destroy() {
+		if (asyncWriter != null) {
+			asyncWriter.close();
+			asyncWriter = null;
+		}
+	}
+
 	private Document createDocument(JCas jcas, String analysisBatch,
 			boolean bStoreDocText, boolean bStoreCAS) {
 		Document doc = new Document();
@@ -461,6 +497,22 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 		return annoMappingInfos;
 	}
 
+	public int getAsyncBatchDocuments() {
+		return asyncBatchDocuments;
+	}
+
+	public String getAsyncJournalDir() {
+		return asyncJournalDir;
+	}
+
+	public int getAsyncQueueSize() {
+		return asyncQueueSize;
+	}
+
+	public int getAsyncRetries() {
+		return asyncRetries;
+	}
+
 	public int getBatchSize() {
 		return batchSize;
 	}
@@ -516,6 +568,10 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 		return tablePrefix;
 	}
 
+	public boolean isAsyncWrite() {
+		return asyncWrite;
+	}
+
 	public PlatformTransactionManager getTransactionManager() {
 		return transactionManager;
 	}
@@ -893,6 +949,40 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 		return mapAnnoToId;
 	}
 
+	/**
+	 * asynchronous counterpart to saveAnnoBaseHib: allocate anno_base ids
+	 * from the hibernate generator and record the anno_base rows.
+	 */
+	private BiMap<Annotation, Integer> recordAnnoBase(JCas jcas,
+			Set<String> setTypesToIgnore, Document doc,
+			DocumentRows documentRows) {
+		IdentifierGenerator idGenerator = ((SessionFactoryImplementor) sessionFactory)
+				.getIdentifierGenerator(DocumentAnnotation.class.getName());
+		SessionImplementor session = (SessionImplementor) sessionFactory
+				.getCurrentSession();
+		RowBuffer rowBuffer = documentRows
+				.getRowBuffer("insert into "
+						+ getTablePrefix()
+						+ "anno_base (anno_base_id, document_id, span_begin, span_end, uima_type_id) values (?, ?, ?, ?, ?)");
+		BiMap<Annotation, Integer> mapAnnoToId = HashBiMap.create();
+		FSIterator<Annotation> annoIterator = jcas.getAnnotationIndex(
+				Annotation.typeIndexID).iterator();
+		while (annoIterator.hasNext()) {
+			Annotation anno = (Annotation) annoIterator.next();
+			String annoClass = anno.getClass().getName();
+			if (!setTypesToIgnore.contains(annoClass)
+					&& this.uimaTypeMap.containsKey(annoClass)) {
+				int annoId = ((Number) idGenerator.generate(session, null))
+						.intValue();
+				rowBuffer.addRow(annoId, doc.getDocumentID(), anno.getBegin(),
+						anno.getEnd(), uimaTypeMap.get(annoClass)
+								.getUimaTypeID());
+				mapAnnoToId.put(anno, annoId);
+			}
+		}
+		return mapAnnoToId;
+	}
+
 	/**
 	 * bind the variables to the prepared statement
 	 * 
@@ -1069,7 +1159,7 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 	 * for the list l, perform l.size()/batchSize batch updates. Avoid mysql
 	 * packet too large exceptions with large batch updates. Call spring
 	 * jdbcTemplate.batchUpdate internally with sublists of l with size
-	 * batchSize.
+	 * batchSize. When saving asynchronously, record the rows instead.
 	 * 
 	 * @param sql
 	 * @param l
@@ -1077,6 +1167,18 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 	 */
 	private <T> void chunkedBatchUpdate(String sql, List<T> l,
 			final ChunkPreparedStatementSetter<T> cpss) {
+		DocumentRows documentRows = tl_documentRows.get();
+		if (documentRows != null) {
+			RowBuffer rowBuffer = documentRows.getRowBuffer(sql);
+			try {
+				for (int i = 0; i < l.size(); i++) {
+					cpss.setValues(rowBuffer.newRow(), i, l.get(i));
+				}
+			} catch (SQLException e) {
+				throw new RuntimeException(e);
+			}
+			return;
+		}
 		int chunks = (int) Math.ceil((double) l.size()
 				/ (double) this.batchSize);
 		for (int i = 0; i < chunks; i++) {
@@ -1286,10 +1388,19 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 			Set<String> setTypesToIgnore, Document doc) {
 		if (log.isTraceEnabled())
 			log.trace("begin saveAnnotationsHib");
-		BiMap<Annotation, Integer> mapAnnoToId = saveAnnoBaseHib(jcas,
-				setTypesToIgnore, doc);
-		if (bInsertAnnotationContainmentLinks)
-			insertAnnotationContainmentLinks(doc.getDocumentID());
+		DocumentRows documentRows = tl_documentRows.get();
+		BiMap<Annotation, Integer> mapAnnoToId;
+		if (documentRows != null) {
+			mapAnnoToId = recordAnnoBase(jcas, setTypesToIgnore, doc,
+					documentRows);
+			// anno_base rows don't exist yet - the writer inserts the links
+			documentRows
+					.setInsertAnnotationContainmentLinks(bInsertAnnotationContainmentLinks);
+		} else {
+			mapAnnoToId = saveAnnoBaseHib(jcas, setTypesToIgnore, doc);
+			if (bInsertAnnotationContainmentLinks)
+				insertAnnotationContainmentLinks(doc.getDocumentID());
+		}
 		// split the annotations up by type
 		// create a map of class name to anno id
 		SetMultimap<String, Integer> mapTypeToAnnoId = HashMultimap.create();
@@ -1381,7 +1492,11 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 			if (log.isDebugEnabled()) {
 				log.debug(sql);
 			}
-			jdbcTemplate.update(sql, args.toArray());
+			DocumentRows documentRows = tl_documentRows.get();
+			if (documentRows != null)
+				documentRows.setDocKeyUpdate(sql, args.toArray());
+			else
+				jdbcTemplate.update(sql, args.toArray());
 		}
 	}
 
@@ -1396,15 +1511,14 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 			final boolean bStoreDocText, final boolean bStoreCAS,
 			final boolean bInsertAnnotationContainmentLinks,
 			final Set<String> setTypesToIgnore) {
+		if (asyncWrite)
+			return saveDocumentAsync(jcas, analysisBatch, bStoreDocText,
+					bStoreCAS, bInsertAnnotationContainmentLinks,
+					setTypesToIgnore);
 		if (log.isTraceEnabled())
 			log.trace("begin saveDocument");
 		// communicate options to mappers using thread local variable
-		final DefaultTransactionDefinition txDef = new DefaultTransactionDefinition(
-				TransactionDefinition.PROPAGATION_REQUIRES_NEW);
-		txDef.setIsolationLevel("orcl".equals(this.dbType) ? TransactionDefinition.ISOLATION_READ_COMMITTED
-				: TransactionDefinition.ISOLATION_READ_UNCOMMITTED);
-		final TransactionTemplate txTemplate = new TransactionTemplate(
-				this.getTransactionManager(), txDef);
+		final TransactionTemplate txTemplate = newDocumentTxTemplate();
 		final int documentId = txTemplate
 				.execute(new TransactionCallback<Integer>() {
 
@@ -1427,6 +1541,216 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 		return documentId;
 	}
 
+	/**
+	 * read the document from the cas and queue it for the asynchronous
+	 * writer. the document and annotation ids are allocated here so that the
+	 * document id can be returned immediately.
+	 */
+	private Integer saveDocumentAsync(final JCas jcas,
+			final String analysisBatch, final boolean bStoreDocText,
+			final boolean bStoreCAS,
+			final boolean bInsertAnnotationContainmentLinks,
+			final Set<String> setTypesToIgnore) {
+		if (log.isTraceEnabled())
+			log.trace("begin saveDocumentAsync");
+		DocumentRows documentRows = newDocumentTxTemplate().execute(
+				new TransactionCallback<DocumentRows>() {
+
+					@Override
+					public DocumentRows doInTransaction(TransactionStatus arg0) {
+						Document doc = createDocument(jcas, analysisBatch,
+								bStoreDocText, bStoreCAS);
+						SessionImplementor session = (SessionImplementor) sessionFactory
+								.getCurrentSession();
+						doc.setDocumentID(((Number) ((SessionFactoryImplementor) sessionFactory)
+								.getIdentifierGenerator(Document.class.getName())
+								.generate(session, doc)).intValue());
+						DocumentRows documentRows = new DocumentRows(doc);
+						tl_documentRows.set(documentRows);
+						try {
+							saveAnnotationsHib(jcas,
+									bInsertAnnotationContainmentLinks,
+									setTypesToIgnore, doc);
+							extractAndSaveDocKey(jcas, doc);
+						} finally {
+							tl_documentRows.remove();
+						}
+						return documentRows;
+					}
+				});
+		getAsyncWriter().submit(documentRows);
+		if (log.isTraceEnabled())
+			log.trace("end saveDocumentAsync");
+		return documentRows.getDocument().getDocumentID();
+	}
+
+	private synchronized AsyncDocumentWriter getAsyncWriter() {
+		if (asyncWriter == null) {
+			asyncWriter = new AsyncDocumentWriter(this, asyncQueueSize,
+					asyncBatchDocuments, asyncRetries,
+					Strings.isNullOrEmpty(asyncJournalDir) ? null : new File(
+							asyncJournalDir));
+			asyncWriter.start();
+		}
+		return asyncWriter;
+	}
+
+	/**
+	 * wait until documents queued for the asynchronous writer have been
+	 * saved.
+	 */
+	public void flush() {
+		AsyncDocumentWriter writer;
+		synchronized (this) {
+			writer = asyncWriter;
+		}
+		if (writer != null)
+			writer.flush();
+	}
+
+	/**
+	 * save the recorded rows of the documents in a single transaction. called
+	 * by the asynchronous writer. the rows of a statement are merged across
+	 * documents and sent in batches of batchSize.
+	 * 
+	 * @param listDocumentRows
+	 */
+	void writeDocumentRows(final List<DocumentRows> listDocumentRows) {
+		newDocumentTxTemplate().execute(new TransactionCallback<Object>() {
+
+			@Override
+			public Object doInTransaction(TransactionStatus arg0) {
+				insertDocuments(listDocumentRows);
+				// anno_base is recorded first, so it is inserted before the
+				// tables that reference it
+				Map<String, List<RowBuffer>> mapSqlToRows = new LinkedHashMap<String, List<RowBuffer>>();
+				Map<String, List<Object[]>> mapDocKeyUpdates = new LinkedHashMap<String, List<Object[]>>();
+				for (DocumentRows documentRows : listDocumentRows) {
+					for (RowBuffer rowBuffer : documentRows.getRowBuffers()) {
+						List<RowBuffer> rowBuffers = mapSqlToRows.get(rowBuffer
+								.getSql());
+						if (rowBuffers == null) {
+							rowBuffers = new ArrayList<RowBuffer>();
+							mapSqlToRows.put(rowBuffer.getSql(), rowBuffers);
+						}
+						rowBuffers.add(rowBuffer);
+					}
+					if (documentRows.getDocKeySql() != null) {
+						List<Object[]> docKeyArgs = mapDocKeyUpdates
+								.get(documentRows.getDocKeySql());
+						if (docKeyArgs == null) {
+							docKeyArgs = new ArrayList<Object[]>();
+							mapDocKeyUpdates.put(documentRows.getDocKeySql(),
+									docKeyArgs);
+						}
+						docKeyArgs.add(documentRows.getDocKeyArgs());
+					}
+				}
+				for (Map.Entry<String, List<RowBuffer>> e : mapSqlToRows
+						.entrySet()) {
+					executeRows(e.getKey(), e.getValue());
+				}
+				for (DocumentRows documentRows : listDocumentRows) {
+					if (documentRows.isInsertAnnotationContainmentLinks())
+						insertAnnotationContainmentLinks(documentRows
+								.getDocument().getDocumentID());
+				}
+				for (Map.Entry<String, List<Object[]>> e : mapDocKeyUpdates
+						.entrySet()) {
+					jdbcTemplate.batchUpdate(e.getKey(), e.getValue());
+				}
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * insert the documents with their preallocated ids. bind the values with
+	 * the hibernate types of the document properties, as session.save() would.
+	 */
+	private void insertDocuments(final List<DocumentRows> listDocumentRows) {
+		final AbstractEntityPersister persister = (AbstractEntityPersister) sessionFactory
+				.getClassMetadata(Document.class);
+		final SessionImplementor session = (SessionImplementor) sessionFactory
+				.getCurrentSession();
+		final List<Integer> props = new ArrayList<Integer>();
+		StringBuilder cols = new StringBuilder(
+				persister.getIdentifierColumnNames()[0]);
+		StringBuilder params = new StringBuilder("?");
+		for (int i = 0; i < persister.getPropertyNames().length; i++) {
+			if (persister.getPropertyTypes()[i].isCollectionType()
+					|| !persister.getPropertyInsertability()[i])
+				continue;
+			props.add(i);
+			for (String col : persister.getPropertyColumnNames(i)) {
+				cols.append(", ").append(col);
+				params.append(", ?");
+			}
+		}
+		final String sql = "insert into " + persister.getTableName() + " ("
+				+ cols + ") values (" + params + ")";
+		jdbcTemplate.execute(sql, new PreparedStatementCallback<Object>() {
+
+			@Override
+			public Object doInPreparedStatement(PreparedStatement ps)
+					throws SQLException {
+				for (DocumentRows documentRows : listDocumentRows) {
+					Document doc = documentRows.getDocument();
+					persister.getIdentifierType().nullSafeSet(ps,
+							doc.getDocumentID(), 1, session);
+					int argIdx = 2;
+					for (int i : props) {
+						persister.getPropertyTypes()[i].nullSafeSet(ps,
+								persister.getPropertyValue(doc, i), argIdx,
+								session);
+						argIdx += persister.getPropertyColumnNames(i).length;
+					}
+					ps.addBatch();
+				}
+				ps.executeBatch();
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * execute the statement for all rows of the buffers, in batches of
+	 * batchSize
+	 */
+	private void executeRows(String sql, final List<RowBuffer> rowBuffers) {
+		jdbcTemplate.execute(sql, new PreparedStatementCallback<Object>() {
+
+			@Override
+			public Object doInPreparedStatement(PreparedStatement ps)
+					throws SQLException {
+				int count = 0;
+				for (RowBuffer rowBuffer : rowBuffers) {
+					for (int row = 0; row < rowBuffer.getRowCount(); row++) {
+						rowBuffer.bind(ps, row);
+						ps.addBatch();
+						if (++count % batchSize == 0)
+							ps.executeBatch();
+					}
+				}
+				if (count % batchSize != 0)
+					ps.executeBatch();
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * transaction for saving a document: new transaction, read uncommitted
+	 * except on oracle.
+	 */
+	private TransactionTemplate newDocumentTxTemplate() {
+		final DefaultTransactionDefinition txDef = new DefaultTransactionDefinition(
+				TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		txDef.setIsolationLevel("orcl".equals(this.dbType) ? TransactionDefinition.ISOLATION_READ_COMMITTED
+				: TransactionDefinition.ISOLATION_READ_UNCOMMITTED);
+		return new TransactionTemplate(this.getTransactionManager(), txDef);
+	}
+
 	/**
 	 * initialize mapAnnoMappingInfo from the set
 	 * 
@@ -1439,6 +1763,33 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 		}
 	}
 
+	public void setAsyncBatchDocuments(int asyncBatchDocuments) {
+		this.asyncBatchDocuments = asyncBatchDocuments;
+	}
+
+	public void setAsyncJournalDir(String asyncJournalDir) {
+		this.asyncJournalDir = asyncJournalDir;
+	}
+
+	public void setAsyncQueueSize(int asyncQueueSize) {
+		this.asyncQueueSize = asyncQueueSize;
+	}
+
+	public void setAsyncRetries(int asyncRetries) {
+		this.asyncRetries = asyncRetries;
+	}
+
+	/**
+	 * save documents asynchronously. saveDocument then returns as soon as the
+	 * document has been read from the cas; call flush() to wait for queued
+	 * documents to be saved.
+	 * 
+	 * @param asyncWrite
+	 */
+	public void setAsyncWrite(boolean asyncWrite) {
+		this.asyncWrite = asyncWrite;
+	}
+
 	public void setBatchSize(int batchSize) {
 		this.batchSize = batchSize;
 	}
@@ -0,0 +1,102 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.uima.mapper;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.ctakes.ytex.uima.model.Document;
+
+/**
+ * Everything the asynchronous mode of {@link DocumentMapperServiceImpl} needs
+ * to write a document: the document with its preallocated id, the recorded
+ * rows of the annotation tables keyed by statement in the order they were
+ * recorded, and the deferred document key update. Serializable so that
+ * documents that could not be written can be journaled and retried.
+ */
+class DocumentRows implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private Object[] docKeyArgs;
+	private String docKeySql;
+	private Document document;
+	private boolean insertAnnotationContainmentLinks;
+	private transient File journalFile;
+	private Map<String, RowBuffer> rowBuffers = new LinkedHashMap<String, RowBuffer>();
+
+	DocumentRows(Document document) {
+		this.document = document;
+	}
+
+	Object[] getDocKeyArgs() {
+		return docKeyArgs;
+	}
+
+	String getDocKeySql() {
+		return docKeySql;
+	}
+
+	Document getDocument() {
+		return document;
+	}
+
+	File getJournalFile() {
+		return journalFile;
+	}
+
+	/**
+	 * get the buffer for the statement, create it if necessary
+	 * 
+	 * @param sql
+	 * @return buffer
+	 */
+	RowBuffer getRowBuffer(String sql) {
+		RowBuffer buffer = rowBuffers.get(sql);
+		if (buffer == null) {
+			buffer = new RowBuffer(sql);
+			rowBuffers.put(sql, buffer);
+		}
+		return buffer;
+	}
+
+	Collection<RowBuffer> getRowBuffers() {
+		return rowBuffers.values();
+	}
+
+	boolean isInsertAnnotationContainmentLinks() {
+		return insertAnnotationContainmentLinks;
+	}
+
+	void setDocKeyUpdate(String docKeySql, Object[] docKeyArgs) {
+		this.docKeySql = docKeySql;
+		this.docKeyArgs = docKeyArgs;
+	}
+
+	void setInsertAnnotationContainmentLinks(
+			boolean insertAnnotationContainmentLinks) {
+		this.insertAnnotationContainmentLinks = insertAnnotationContainmentLinks;
+	}
+
+	void setJournalFile(File journalFile) {
+		this.journalFile = journalFile;
+	}
+}
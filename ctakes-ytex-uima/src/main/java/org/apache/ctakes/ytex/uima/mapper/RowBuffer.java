@@ -0,0 +1,158 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.uima.mapper;
+
+import java.io.Serializable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Rows of a single insert/update statement, stored column by column. Rows are
+ * recorded on the thread that reads the CAS and bound to a real statement
+ * later by the background writer of {@link DocumentMapperServiceImpl}.
+ */
+class RowBuffer implements Serializable {
+	/**
+	 * placeholder for a null column value
+	 */
+	private static class SqlNull implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private int sqlType;
+
+		SqlNull(int sqlType) {
+			this.sqlType = sqlType;
+		}
+	}
+
+	/**
+	 * record the parameters set on a prepared statement into the current row
+	 */
+	private class RowRecorder implements InvocationHandler {
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			String name = method.getName();
+			if (name.equals("setNull") && args.length >= 2) {
+				set((Integer) args[0], new SqlNull((Integer) args[1]));
+			} else if (name.startsWith("set") && args != null
+					&& args.length >= 2 && args[0] instanceof Integer) {
+				set((Integer) args[0], args[1]);
+			} else if (name.equals("toString")) {
+				return "RowBuffer[" + sql + "]";
+			} else if (name.equals("hashCode")) {
+				return System.identityHashCode(proxy);
+			} else if (name.equals("equals")) {
+				return proxy == args[0];
+			} else {
+				throw new UnsupportedOperationException(name);
+			}
+			return null;
+		}
+	}
+
+	private static final long serialVersionUID = 1L;
+
+	private Object[][] columns = new Object[0][];
+	private transient PreparedStatement recorder;
+	private int rowCount;
+	private String sql;
+
+	RowBuffer(String sql) {
+		this.sql = sql;
+	}
+
+	/**
+	 * add a row with the specified column values
+	 * 
+	 * @param values
+	 */
+	void addRow(Object... values) {
+		rowCount++;
+		for (int i = 0; i < values.length; i++) {
+			set(i + 1, values[i]);
+		}
+	}
+
+	/**
+	 * bind the values of a row to the prepared statement
+	 * 
+	 * @param ps
+	 * @param row
+	 * @throws SQLException
+	 */
+	void bind(PreparedStatement ps, int row) throws SQLException {
+		for (int i = 0; i < columns.length; i++) {
+			Object value = columns[i][row];
+			if (value instanceof SqlNull) {
+				ps.setNull(i + 1, ((SqlNull) value).sqlType);
+			} else {
+				ps.setObject(i + 1, value);
+			}
+		}
+	}
+
+	int getRowCount() {
+		return rowCount;
+	}
+
+	String getSql() {
+		return sql;
+	}
+
+	/**
+	 * start a new row.
+	 * 
+	 * @return statement that records the parameters set on it in the new row.
+	 *         only the setXXX methods are supported.
+	 */
+	PreparedStatement newRow() {
+		if (recorder == null) {
+			recorder = (PreparedStatement) Proxy.newProxyInstance(
+					PreparedStatement.class.getClassLoader(),
+					new Class<?>[] { PreparedStatement.class },
+					new RowRecorder());
+		}
+		rowCount++;
+		return recorder;
+	}
+
+	private void set(int parameterIndex, Object value) {
+		int row = rowCount - 1;
+		if (parameterIndex > columns.length) {
+			int oldColumns = columns.length;
+			columns = Arrays.copyOf(columns, parameterIndex);
+			for (int i = oldColumns; i < columns.length; i++) {
+				columns[i] = new Object[Math.max(16, rowCount)];
+			}
+		}
+		Object[] column = columns[parameterIndex - 1];
+		if (row >= column.length) {
+			// grow all columns together
+			for (int i = 0; i < columns.length; i++) {
+				columns[i] = Arrays.copyOf(columns[i],
+						Math.max(columns[i].length * 2, rowCount));
+			}
+			column = columns[parameterIndex - 1];
+		}
+		column[row] = value;
+	}
+}
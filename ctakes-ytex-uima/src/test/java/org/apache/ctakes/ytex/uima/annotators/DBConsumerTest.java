@@ -25,6 +25,8 @@ import javax.sql.DataSource;
 
 import org.apache.ctakes.ytex.uima.ApplicationContextHolder;
 import org.apache.ctakes.ytex.uima.TestUtils;
+import org.apache.ctakes.ytex.uima.mapper.DocumentMapperService;
+import org.apache.ctakes.ytex.uima.mapper.DocumentMapperServiceImpl;
 import org.apache.ctakes.ytex.uima.types.DocKey;
 import org.apache.ctakes.ytex.uima.types.KeyValuePair;
 import org.apache.uima.UIMAException;
@@ -35,6 +37,7 @@ import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.springframework.aop.framework.Advised;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -108,6 +111,30 @@ public class DBConsumerTest {
 	 */
 	@Test
 	public void testProcessAndSaveDoc() throws UIMAException, IOException {
+		processAndSaveDoc();
+	}
+
+	/**
+	 * Verify that the document is saved the same way by the asynchronous
+	 * writer
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testProcessAndSaveDocAsync() throws Exception {
+		Object bean = ctx.getBean("documentMapperService");
+		if (bean instanceof Advised)
+			bean = ((Advised) bean).getTargetSource().getTarget();
+		DocumentMapperServiceImpl mapper = (DocumentMapperServiceImpl) bean;
+		mapper.setAsyncWrite(true);
+		try {
+			processAndSaveDoc();
+		} finally {
+			mapper.setAsyncWrite(false);
+		}
+	}
+
+	private void processAndSaveDoc() throws UIMAException, IOException {
 		// JCas jCas =
 		// JCasFactory.createJCasFromPath("src/main/resources/org/apache/ctakes/ytex/types/TypeSystem.xml");
 		String text = "Title: US Abdomen\n\nDr. Doolitle asked patient\nto take a deep breath\nand exhale slowly.  Patient coughed.  Prescribed acetominophen";
@@ -126,6 +153,8 @@ public class DBConsumerTest {
 		docKey.addToIndexes();
 		// run the analysis engine
 		engine.process(jCas);
+		// wait for the document to be written if saved asynchronously
+		((DocumentMapperService) ctx.getBean("documentMapperService")).flush();
 		DataSource ds = ctx.getBean(DataSource.class);
 		Properties ytexProperties = (Properties) ctx.getBean("ytexProperties");
 		String schema = ytexProperties.getProperty("db.schema");
@@ -0,0 +1,109 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.uima.annotators;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.ctakes.ytex.uima.annotators.NegexAnnotator.NegexRule;
+import org.apache.ctakes.ytex.uima.annotators.NegexAnnotator.NegexToken;
+import org.apache.uima.fit.factory.UimaContextFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verify that the trigger trie finds the same tokens as the negex regular
+ * expressions
+ * 
+ * @author vijay
+ * 
+ */
+public class NegexTriggerEngineTest {
+	private NegexAnnotator negex;
+	private List<NegexRule> rules;
+	private NegexTriggerEngine engine;
+
+	@Before
+	public void setUp() throws Exception {
+		negex = new NegexAnnotator();
+		negex.initialize(UimaContextFactory.createUimaContext());
+		rules = negex.initializeRules();
+		engine = NegexTriggerEngine.create(rules);
+		Assert.assertNotNull(engine);
+	}
+
+	@Test
+	public void testSentences() {
+		assertSameTokens("Patient denies chest pain or shortness of breath.",
+				"chest pain");
+		assertSameTokens("No evidence of pneumonia.", "pneumonia");
+		assertSameTokens("Fever was ruled out.", "Fever");
+		assertSameTokens("r/o   MI, but no change in pain", "MI");
+		assertSameTokens("Cough is absent; rash present", "rash");
+		assertSameTokens("no cough_no fever [no] edema", "cough");
+	}
+
+	@Test
+	public void testRandomSentences() {
+		List<String> words = new ArrayList<String>();
+		for (NegexRule rule : rules) {
+			for (String word : rule.getRule().split("\\\\s\\+"))
+				words.add(word);
+		}
+		String[] others = { "pain", "Fever", "the", "_", "-", ",", ".", "(",
+				")", "[", "]", "/", "\t", "\n", "NO", "a_b" };
+		String[] separators = { "", " ", "  ", "," };
+		Random random = new Random(42);
+		for (int n = 0; n < 2000; n++) {
+			StringBuilder sb = new StringBuilder();
+			int length = 1 + random.nextInt(20);
+			for (int i = 0; i < length; i++) {
+				String word = random.nextBoolean() ? words.get(random
+						.nextInt(words.size())) : others[random
+						.nextInt(others.length)];
+				sb.append(random.nextInt(3) == 0 ? word.toUpperCase() : word);
+				sb.append(separators[random.nextInt(separators.length)]);
+			}
+			String sentence = "." + sb + ".";
+			NegexTriggerEngine.SentenceTriggers triggers = engine
+					.scan(sentence);
+			for (int e = 0; e < 4; e++) {
+				int neRelStart = 1 + random.nextInt(sentence.length() - 1);
+				int neRelEnd = Math.min(sentence.length() - 1, neRelStart
+						+ random.nextInt(12));
+				Assert.assertArrayEquals(sentence,
+						negex.findTokens(sentence, neRelStart, neRelEnd),
+						engine.getTokens(triggers, neRelStart, neRelEnd));
+			}
+		}
+	}
+
+	private void assertSameTokens(String text, String phrase) {
+		String sentence = "." + text + ".";
+		int neRelStart = sentence.indexOf(phrase);
+		int neRelEnd = neRelStart + phrase.length();
+		NegexToken[] expected = negex.findTokens(sentence, neRelStart,
+				neRelEnd);
+		NegexToken[] actual = engine.getTokens(engine.scan(sentence),
+				neRelStart, neRelEnd);
+		Assert.assertArrayEquals(text, expected, actual);
+	}
+}
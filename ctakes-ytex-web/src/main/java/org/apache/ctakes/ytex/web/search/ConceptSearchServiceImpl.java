@@ -25,17 +25,33 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.sql.DataSource;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ctakes.ytex.index.ConceptPrefixIndex;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
 
+/**
+ * Concept lookup for autocomplete. If prefixIndex is enabled and the
+ * retrieveConceptFwords query is defined, the first words are loaded into a
+ * {@link ConceptPrefixIndex} in the background and reloaded every
+ * prefixIndexRefreshMinutes; getConceptByFirstWord queries the database only
+ * until the first load completes.
+ */
 public class ConceptSearchServiceImpl implements ConceptSearchService,
-		InitializingBean {
+		InitializingBean, DisposableBean {
 	public static class ConceptFirstWordRowMapper implements
 			RowMapper<ConceptFirstWord> {
 
@@ -50,13 +66,27 @@ public class ConceptSearchServiceImpl implements ConceptSearchService,
 
 	}
 
+	private static final Log log = LogFactory
+			.getLog(ConceptSearchServiceImpl.class);
+
+	/**
+	 * number of completions returned by the retrieveConceptByFword query
+	 */
+	private static final int MAX_CONCEPTS = 30;
+
 	private String conceptIdToTermQuery;
 	private Pattern conceptPattern;
+	private volatile ConceptPrefixIndex conceptPrefixIndex;
 	private DataSource dataSource;
 	private String fwordToConceptIdQuery;
 
 	private JdbcTemplate jdbcTemplate;
 
+	private boolean prefixIndex = false;
+	private ScheduledExecutorService prefixIndexExecutor;
+	private String prefixIndexQuery;
+	private int prefixIndexRefreshMinutes = 60;
+
 	private Properties searchProperties;
 	private Properties ytexProperties;
 
@@ -67,6 +97,40 @@ public class ConceptSearchServiceImpl implements ConceptSearchService,
 				.getProperty("retrieveTermByConceptId"));
 		this.conceptPattern = Pattern.compile(searchProperties.getProperty(
 				"conceptIdPattern", "\\AC\\d{7}\\Z"));
+		if (prefixIndex) {
+			String query = this.getSearchProperties().getProperty(
+					"retrieveConceptFwords");
+			if (query == null) {
+				log.warn("retrieveConceptFwords not defined, not using concept prefix index");
+			} else {
+				this.prefixIndexQuery = prepareQuery(query);
+				this.prefixIndexExecutor = Executors
+						.newSingleThreadScheduledExecutor(new ThreadFactory() {
+							public Thread newThread(Runnable r) {
+								Thread t = new Thread(r,
+										"ytex-concept-prefix-index");
+								t.setDaemon(true);
+								return t;
+							}
+						});
+				Runnable load = new Runnable() {
+					public void run() {
+						loadPrefixIndex();
+					}
+				};
+				if (prefixIndexRefreshMinutes > 0) {
+					prefixIndexExecutor.scheduleWithFixedDelay(load, 0,
+							prefixIndexRefreshMinutes, TimeUnit.MINUTES);
+				} else {
+					prefixIndexExecutor.execute(load);
+				}
+			}
+		}
+	}
+
+	public void destroy() throws Exception {
+		if (prefixIndexExecutor != null)
+			prefixIndexExecutor.shutdownNow();
 	}
 
 	/*
@@ -89,6 +153,19 @@ public class ConceptSearchServiceImpl implements ConceptSearchService,
 		// return this.jdbcTemplate.query(query, new
 		// UMLSFirstWordRowMapper(),
 		// new Object[] { fword.length(), fword, nTextLength, text });
+		ConceptPrefixIndex index = this.conceptPrefixIndex;
+		if (index != null) {
+			List<ConceptFirstWord> concepts = new ArrayList<ConceptFirstWord>();
+			for (ConceptPrefixIndex.Completion completion : index.complete(
+					fword, text, MAX_CONCEPTS)) {
+				ConceptFirstWord cfw = new ConceptFirstWord();
+				cfw.setConceptId(completion.getConceptId());
+				cfw.setFword(completion.getFword());
+				cfw.setText(completion.getText());
+				concepts.add(cfw);
+			}
+			return concepts;
+		}
 		Map<String, Object> args = new HashMap<String, Object>();
 		args.put("fword", fword);
 		args.put("fwordlen", fword.length());
@@ -117,6 +194,10 @@ public class ConceptSearchServiceImpl implements ConceptSearchService,
 		return this.dataSource;
 	}
 
+	public int getPrefixIndexRefreshMinutes() {
+		return prefixIndexRefreshMinutes;
+	}
+
 	public Properties getSearchProperties() {
 		return searchProperties;
 	}
@@ -141,6 +222,35 @@ public class ConceptSearchServiceImpl implements ConceptSearchService,
 		return ytexProperties;
 	}
 
+	public boolean isPrefixIndex() {
+		return prefixIndex;
+	}
+
+	/**
+	 * load the first words and swap in the new index. the previous index
+	 * stays in use if the load fails.
+	 */
+	private void loadPrefixIndex() {
+		try {
+			long start = System.currentTimeMillis();
+			final ConceptPrefixIndex.Builder builder = new ConceptPrefixIndex.Builder();
+			this.jdbcTemplate.query(prefixIndexQuery, new RowCallbackHandler() {
+				public void processRow(ResultSet rs) throws SQLException {
+					builder.add(rs.getString("fword"),
+							rs.getString("conceptId"), rs.getString("text"));
+				}
+			});
+			ConceptPrefixIndex index = builder.build();
+			this.conceptPrefixIndex = index;
+			if (log.isInfoEnabled())
+				log.info("loaded concept prefix index, " + index.size()
+						+ " terms in "
+						+ (System.currentTimeMillis() - start) + " ms");
+		} catch (RuntimeException e) {
+			log.error("could not load concept prefix index", e);
+		}
+	}
+
 	private String prepareQuery(String queryTemplate) {
 		String dbName = this.getYtexProperties().getProperty("db.name");
 		String dbSchema = this.getYtexProperties().getProperty("db.schema");
@@ -160,6 +270,14 @@ public class ConceptSearchServiceImpl implements ConceptSearchService,
 		this.jdbcTemplate = new JdbcTemplate(dataSource);
 	}
 
+	public void setPrefixIndex(boolean prefixIndex) {
+		this.prefixIndex = prefixIndex;
+	}
+
+	public void setPrefixIndexRefreshMinutes(int prefixIndexRefreshMinutes) {
+		this.prefixIndexRefreshMinutes = prefixIndexRefreshMinutes;
+	}
+
 	public void setSearchProperties(Properties searchProperties) {
 		this.searchProperties = searchProperties;
 	}
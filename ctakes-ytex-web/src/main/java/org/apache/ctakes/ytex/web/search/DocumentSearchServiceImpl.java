@@ -18,24 +18,43 @@
  */
 package org.apache.ctakes.ytex.web.search;
 
+import java.io.File;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import javax.sql.DataSource;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.ctakes.ytex.index.CuiDocumentIndex;
+import org.apache.ctakes.ytex.kernel.metric.ConceptSimilarityService;
+import org.apache.ctakes.ytex.kernel.model.ConcRel;
+import org.apache.ctakes.ytex.kernel.model.ConceptGraph;
 import org.hibernate.SessionFactory;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 
-
+/**
+ * Search documents with the queries in search.properties. If cuiIndexDir is
+ * set, concept searches use the {@link CuiDocumentIndex} in that directory to
+ * find the documents that contain the concept or, if a concept graph is
+ * available, any of its descendants; only the details of the matching
+ * documents are then retrieved with the retrieveDocumentByCUIAndDocumentID
+ * query.
+ */
 public class DocumentSearchServiceImpl implements DocumentSearchService,
 		InitializingBean {
 	public static class DocumentSearchResultMapper implements
@@ -55,9 +74,25 @@ public class DocumentSearchServiceImpl implements DocumentSearchService,
 	}
 	private static final Log log = LogFactory
 			.getLog(DocumentSearchServiceImpl.class);
+	/**
+	 * number of document ids per retrieveDocumentByCUIAndDocumentID query
+	 */
+	private static final int DOCUMENT_ID_CHUNK = 100;
+	/**
+	 * limit on search results, same as the search queries
+	 */
+	private static final int MAX_RESULTS = 100;
+	private ConceptSimilarityService conceptSimilarityService;
+	private CuiDocumentIndex cuiDocumentIndex;
+	private String cuiIndexDir;
+	private long cuiIndexRefreshMillis = 60000;
+	private long cuiIndexRefreshTime;
 	private DataSource dataSource;	
 	private JdbcTemplate jdbcTemplate;
+	private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
 	private String query;
+	private String queryByDocumentIds;
+	private boolean searchDescendants = true;
 
 	private Properties searchProperties;
 
@@ -68,6 +103,21 @@ public class DocumentSearchServiceImpl implements DocumentSearchService,
 		this.query = searchProperties.getProperty("retrieveDocumentByCUI")
 				.replaceAll("@db\\.schema@",
 						this.getYtexProperties().getProperty("db.schema"));
+		if (cuiIndexDir != null && cuiIndexDir.length() > 0) {
+			String queryByIds = searchProperties
+					.getProperty("retrieveDocumentByCUIAndDocumentID");
+			if (queryByIds == null) {
+				log.warn("retrieveDocumentByCUIAndDocumentID not defined, not using concept index "
+						+ cuiIndexDir);
+			} else {
+				this.queryByDocumentIds = queryByIds.replaceAll(
+						"@db\\.schema@",
+						this.getYtexProperties().getProperty("db.schema"));
+				this.cuiDocumentIndex = new CuiDocumentIndex(new File(
+						cuiIndexDir));
+				this.cuiIndexRefreshTime = System.currentTimeMillis();
+			}
+		}
 	}
 
 	/**
@@ -106,6 +156,8 @@ public class DocumentSearchServiceImpl implements DocumentSearchService,
 		if (negationStatus != null) {
 			mapArgs.put("certainty", negationStatus ? 0 : -1);
 		}
+		if (cuiDocumentIndex != null)
+			return searchIndex(code, mapArgs);
 		if (log.isDebugEnabled()) {
 			log.debug("executing query, query=" + query
 					+ ", args=" + mapArgs);
@@ -128,6 +180,31 @@ public class DocumentSearchServiceImpl implements DocumentSearchService,
 				searchTerm);
 	}
 
+	public ConceptSimilarityService getConceptSimilarityService() {
+		return conceptSimilarityService;
+	}
+
+	/**
+	 * @return the concept index, with segments written since the last refresh
+	 *         if cuiIndexRefreshMillis have elapsed
+	 */
+	private synchronized CuiDocumentIndex getCuiDocumentIndex() {
+		long now = System.currentTimeMillis();
+		if (now - cuiIndexRefreshTime >= cuiIndexRefreshMillis) {
+			cuiDocumentIndex.refresh();
+			cuiIndexRefreshTime = now;
+		}
+		return cuiDocumentIndex;
+	}
+
+	public String getCuiIndexDir() {
+		return cuiIndexDir;
+	}
+
+	public long getCuiIndexRefreshMillis() {
+		return cuiIndexRefreshMillis;
+	}
+
 	public DataSource getDataSource() {
 		return this.dataSource;
 	}
@@ -152,10 +229,38 @@ public class DocumentSearchServiceImpl implements DocumentSearchService,
 		return sessionFactory;
 	}
 
+	/**
+	 * @return the code and, if searchDescendants is set and the code is in
+	 *         the concept graph, the codes of all its descendants
+	 */
+	private Set<String> getSearchCodes(String code) {
+		Set<String> codes = new LinkedHashSet<String>();
+		codes.add(code);
+		ConceptGraph cg = conceptSimilarityService != null ? conceptSimilarityService
+				.getConceptGraph() : null;
+		ConcRel cr = searchDescendants && cg != null ? cg.getConceptMap().get(
+				code) : null;
+		if (cr != null) {
+			LinkedList<ConcRel> queue = new LinkedList<ConcRel>();
+			queue.add(cr);
+			while (!queue.isEmpty()) {
+				for (ConcRel child : queue.removeFirst().getChildren()) {
+					if (codes.add(child.getConceptID()))
+						queue.add(child);
+				}
+			}
+		}
+		return codes;
+	}
+
 	public Properties getYtexProperties() {
 		return ytexProperties;
 	}
 
+	public boolean isSearchDescendants() {
+		return searchDescendants;
+	}
+
 	private Map<String, Object> initMapArgs(String code) {
 		Map<String, Object> mapArgs = new HashMap<String, Object>(1);
 		mapArgs.put("code", code);
@@ -174,6 +279,8 @@ public class DocumentSearchServiceImpl implements DocumentSearchService,
 	 */
 	public List<DocumentSearchResult> searchByCui(String code) {
 		Map<String, Object> mapArgs = this.initMapArgs(code);
+		if (cuiDocumentIndex != null)
+			return searchIndex(code, mapArgs);
 		return this.jdbcTemplate.query(query, new DocumentSearchResultMapper(),
 				mapArgs);
 		// String query =
@@ -185,15 +292,71 @@ public class DocumentSearchServiceImpl implements DocumentSearchService,
 		// return q.list();
 	}
 
+	/**
+	 * look up the documents that contain the concept or its descendants in
+	 * the concept index, then retrieve the details of the most recent
+	 * documents.
+	 */
+	private List<DocumentSearchResult> searchIndex(String code,
+			Map<String, Object> mapArgs) {
+		Map<Integer, String> mapDocumentToCode = getCuiDocumentIndex().search(
+				getSearchCodes(code), (Integer) mapArgs.get("certainty"), null);
+		if (log.isDebugEnabled()) {
+			log.debug("code=" + code + ", documents in concept index="
+					+ mapDocumentToCode.size());
+		}
+		List<DocumentSearchResult> results = new ArrayList<DocumentSearchResult>();
+		Iterator<Map.Entry<Integer, String>> iter = mapDocumentToCode
+				.entrySet().iterator();
+		while (iter.hasNext() && results.size() < MAX_RESULTS) {
+			List<Integer> documentIds = new ArrayList<Integer>(
+					DOCUMENT_ID_CHUNK);
+			Set<String> codes = new HashSet<String>();
+			while (iter.hasNext() && documentIds.size() < DOCUMENT_ID_CHUNK) {
+				Map.Entry<Integer, String> entry = iter.next();
+				documentIds.add(entry.getKey());
+				codes.add(entry.getValue());
+			}
+			Map<String, Object> args = new HashMap<String, Object>(mapArgs);
+			args.put("document_ids", documentIds);
+			args.put("codes", codes);
+			results.addAll(namedParameterJdbcTemplate.query(
+					queryByDocumentIds, args, new DocumentSearchResultMapper()));
+		}
+		if (results.size() > MAX_RESULTS)
+			results = new ArrayList<DocumentSearchResult>(results.subList(0,
+					MAX_RESULTS));
+		return results;
+	}
+
+	public void setConceptSimilarityService(
+			ConceptSimilarityService conceptSimilarityService) {
+		this.conceptSimilarityService = conceptSimilarityService;
+	}
+
+	public void setCuiIndexDir(String cuiIndexDir) {
+		this.cuiIndexDir = cuiIndexDir;
+	}
+
+	public void setCuiIndexRefreshMillis(long cuiIndexRefreshMillis) {
+		this.cuiIndexRefreshMillis = cuiIndexRefreshMillis;
+	}
+
 	public void setDataSource(DataSource dataSource) {
 		this.dataSource = dataSource;		
 		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(
+				dataSource);
 	}
 
 	public void setSearchProperties(Properties searchProperties) {
 		this.searchProperties = searchProperties;
 	}
 
+	public void setSearchDescendants(boolean searchDescendants) {
+		this.searchDescendants = searchDescendants;
+	}
+
 	public void setSessionFactory(SessionFactory sessionFactory) {
 		this.sessionFactory = sessionFactory;
 	}
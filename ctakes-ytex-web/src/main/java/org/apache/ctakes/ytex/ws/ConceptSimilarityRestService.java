@@ -20,10 +20,14 @@ package org.apache.ctakes.ytex.ws;
 
 import java.util.List;
 
+import javax.ws.rs.Consumes;
+import javax.ws.rs.FormParam;
 import javax.ws.rs.GET;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.apache.ctakes.ytex.kernel.metric.ConceptPairSimilarity;
 
@@ -48,4 +52,38 @@ public interface ConceptSimilarityRestService {
 			@QueryParam("concept2") String concept2,
 			@QueryParam("metrics") String metrics,
 			@QueryParam("lcs") String lcs);
+
+	/**
+	 * similarity of every concept in concepts1 to every concept in concepts2,
+	 * streamed as json by {@link SimilarityMatrixOutput}.
+	 * 
+	 * @param concepts1
+	 *            comma-separated concepts
+	 * @param concepts2
+	 *            comma-separated concepts, defaults to concepts1
+	 * @param metrics
+	 *            comma-separated metrics
+	 */
+	@GET
+	@Path("/similarityMatrix")
+	@Produces("application/json")
+	public StreamingOutput similarityMatrix(
+			@QueryParam("conceptGraph") String conceptGraph,
+			@QueryParam("concepts1") String concepts1,
+			@QueryParam("concepts2") String concepts2,
+			@QueryParam("metrics") String metrics);
+
+	/**
+	 * same as {@link #similarityMatrix(String, String, String, String)}, for
+	 * concept lists that are too long for a url
+	 */
+	@POST
+	@Path("/similarityMatrix")
+	@Consumes("application/x-www-form-urlencoded")
+	@Produces("application/json")
+	public StreamingOutput postSimilarityMatrix(
+			@FormParam("conceptGraph") String conceptGraph,
+			@FormParam("concepts1") String concepts1,
+			@FormParam("concepts2") String concepts2,
+			@FormParam("metrics") String metrics);
 }
@@ -26,6 +26,8 @@ import java.util.Map;
 
 import javax.jws.WebService;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.apache.ctakes.ytex.kernel.metric.ConceptPair;
 import org.apache.ctakes.ytex.kernel.metric.ConceptPairSimilarity;
@@ -62,6 +64,35 @@ public class ConceptSimilarityWebServiceImpl implements
 				"true".equalsIgnoreCase(lcs));
 	}
 
+	public StreamingOutput similarityMatrix(String conceptGraph,
+			String concepts1, String concepts2, String metrics) {
+		ConceptSimilarityService s = getConceptSimilarityService(conceptGraph);
+		if (s == null || concepts1 == null || metrics == null)
+			throw new WebApplicationException(Response.Status.BAD_REQUEST);
+		List<String> conceptList1 = conceptArrayToList(concepts1.split(","));
+		List<String> conceptList2 = concepts2 == null
+				|| concepts2.length() == 0 ? conceptList1
+				: conceptArrayToList(concepts2.split(","));
+		List<SimilarityMetricEnum> metricList = this
+				.metricArrayToList(metrics.split(","));
+		return new SimilarityMatrixOutput(s.getConceptGraphName(), s,
+				conceptList1, conceptList2, metricList);
+	}
+
+	public StreamingOutput postSimilarityMatrix(String conceptGraph,
+			String concepts1, String concepts2, String metrics) {
+		return similarityMatrix(conceptGraph, concepts1, concepts2, metrics);
+	}
+
+	private List<String> conceptArrayToList(String[] concepts) {
+		List<String> conceptList = new ArrayList<String>(concepts.length);
+		for (String concept : concepts) {
+			if (concept.trim().length() > 0)
+				conceptList.add(concept.trim());
+		}
+		return conceptList;
+	}
+
 	private ConceptSimilarityService getConceptSimilarityService(
 			String conceptGraph) {
 		String conceptGraphName = conceptGraph;
@@ -0,0 +1,163 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.ws;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.apache.ctakes.ytex.kernel.metric.ConceptSimilarityService;
+import org.apache.ctakes.ytex.kernel.metric.ConceptSimilarityService.SimilarityMetricEnum;
+import org.apache.ctakes.ytex.kernel.metric.SimilarityMatrix;
+
+/**
+ * write a similarity matrix as json. The matrix is computed and written in
+ * blocks of rows, so the response is streamed and only one block is held in
+ * memory:
+ * 
+ * <pre>
+ * {"conceptGraph":"sct-rxnorm","metrics":["PATH","LCH"],
+ *  "concepts1":["C1","C2"],"concepts2":["C3"],
+ *  "similarities":[[[0.25,1.2]],[[0.2,1.1]]]}
+ * </pre>
+ * 
+ * similarities[i][j][k] is the similarity of concepts1[i] and concepts2[j]
+ * for metrics[k]. Similarities that are not finite are written as null.
+ */
+public class SimilarityMatrixOutput implements StreamingOutput {
+	/**
+	 * rows per block
+	 */
+	private static final int BLOCK_ROWS = 256;
+
+	private final String conceptGraph;
+	private final ConceptSimilarityService simSvc;
+	private final List<String> concepts1;
+	private final List<String> concepts2;
+	private final List<SimilarityMetricEnum> metrics;
+
+	public SimilarityMatrixOutput(String conceptGraph,
+			ConceptSimilarityService simSvc, List<String> concepts1,
+			List<String> concepts2, List<SimilarityMetricEnum> metrics) {
+		this.conceptGraph = conceptGraph;
+		this.simSvc = simSvc;
+		this.concepts1 = concepts1;
+		this.concepts2 = concepts2;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public void write(OutputStream output) throws IOException,
+			WebApplicationException {
+		Writer w = new BufferedWriter(new OutputStreamWriter(output, "UTF-8"));
+		w.write("{\"conceptGraph\":");
+		writeString(w, conceptGraph);
+		w.write(",\"metrics\":[");
+		for (int k = 0; k < metrics.size(); k++) {
+			if (k > 0)
+				w.write(',');
+			writeString(w, metrics.get(k).name());
+		}
+		w.write("],\"concepts1\":");
+		writeStrings(w, concepts1);
+		w.write(",\"concepts2\":");
+		writeStrings(w, concepts2);
+		w.write(",\"similarities\":[");
+		for (int start = 0; start < concepts1.size(); start += BLOCK_ROWS) {
+			List<String> rows = concepts1.subList(start,
+					Math.min(concepts1.size(), start + BLOCK_ROWS));
+			SimilarityMatrix block = simSvc.similarityMatrix(rows, concepts2,
+					metrics, null);
+			for (int i = 0; i < rows.size(); i++) {
+				if (start + i > 0)
+					w.write(',');
+				w.write('[');
+				for (int j = 0; j < concepts2.size(); j++) {
+					if (j > 0)
+						w.write(',');
+					w.write('[');
+					for (int k = 0; k < metrics.size(); k++) {
+						if (k > 0)
+							w.write(',');
+						double sim = block.getSimilarity(i, j, k);
+						w.write(Double.isNaN(sim) || Double.isInfinite(sim) ? "null"
+								: Double.toString(sim));
+					}
+					w.write(']');
+				}
+				w.write(']');
+			}
+			// hand the block to the client
+			w.flush();
+		}
+		w.write("]}");
+		w.flush();
+	}
+
+	private static void writeStrings(Writer w, List<String> strings)
+			throws IOException {
+		w.write('[');
+		for (int i = 0; i < strings.size(); i++) {
+			if (i > 0)
+				w.write(',');
+			writeString(w, strings.get(i));
+		}
+		w.write(']');
+	}
+
+	private static void writeString(Writer w, String s) throws IOException {
+		if (s == null) {
+			w.write("null");
+			return;
+		}
+		w.write('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '"':
+				w.write("\\\"");
+				break;
+			case '\\':
+				w.write("\\\\");
+				break;
+			case '\n':
+				w.write("\\n");
+				break;
+			case '\r':
+				w.write("\\r");
+				break;
+			case '\t':
+				w.write("\\t");
+				break;
+			default:
+				if (c < 0x20)
+					w.write(String.format("\\u%04x", (int) c));
+				else
+					w.write(c);
+			}
+		}
+		w.write('"');
+	}
+}
@@ -34,6 +34,7 @@ import org.apache.commons.cli.ParseException;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ctakes.ytex.kernel.FileUtil;
+import org.apache.ctakes.ytex.kernel.GramMatrixFile;
 import org.apache.ctakes.ytex.kernel.InstanceData;
 import org.apache.ctakes.ytex.kernel.KernelContextHolder;
 import org.apache.ctakes.ytex.kernel.KernelUtil;
@@ -107,10 +108,21 @@ public class RGramMatrixExporterImpl implements RGramMatrixExporter {
 				run, fold);
 		String filePrefix = FileUtil.getDataFilePrefix(outdir, label, run,
 				fold, null);
+		GramMatrixFile gramMatrixFile = kernelUtil.openGramMatrix(name,
+				splitName, experiment, label, run, fold, param1, param2);
+		if (gramMatrixFile != null) {
+			// stream rows from the file
+			try {
+				outputGramMatrix(null, gramMatrixFile, instanceIds, filePrefix);
+			} finally {
+				gramMatrixFile.close();
+			}
+			return;
+		}
 		double[][] gramMatrix = kernelUtil.loadGramMatrix(instanceIds, name,
 				splitName, experiment, label, run, fold, param1, param2);
 		if (gramMatrix != null)
-			outputGramMatrix(gramMatrix, instanceIds, filePrefix);
+			outputGramMatrix(gramMatrix, null, instanceIds, filePrefix);
 	}
 
 	// private KernelEvaluation getKernelEval(String name, String splitName,
@@ -215,9 +227,18 @@ public class RGramMatrixExporterImpl implements RGramMatrixExporter {
 		return kernelUtil;
 	}
 
+	/**
+	 * write the gram matrix and the instance ids of its rows
+	 * 
+	 * @param gramMatrix
+	 *            gram matrix loaded from the database
+	 * @param gramMatrixFile
+	 *            gram matrix file to read rows from instead of gramMatrix,
+	 *            may be null
+	 */
 	private void outputGramMatrix(double[][] gramMatrix,
-			SortedSet<Long> instanceIds, String dataFilePrefix)
-			throws IOException {
+			GramMatrixFile gramMatrixFile, SortedSet<Long> instanceIds,
+			String dataFilePrefix) throws IOException {
 		BufferedWriter w = null;
 		BufferedWriter wId = null;
 		try {
@@ -230,10 +251,20 @@ public class RGramMatrixExporterImpl implements RGramMatrixExporter {
 				wId.write(Long.toString(instanceIdArray[h]));
 				wId.write("\n");
 			}
+			int[] fileIndices = null;
+			double[] row = null;
+			if (gramMatrixFile != null) {
+				fileIndices = gramMatrixFile.getIndices(instanceIds);
+				row = new double[fileIndices.length];
+			}
 			for (int i = 0; i < instanceIdArray.length; i++) {
+				if (gramMatrixFile != null)
+					gramMatrixFile.getRow(fileIndices[i], fileIndices, row);
+				else
+					row = gramMatrix[i];
 				// write line from gram matrix
 				for (int j = 0; j < instanceIdArray.length; j++) {
-					w.write(Double.toString(gramMatrix[i][j]));
+					w.write(Double.toString(row[j]));
 					if (j < instanceIdArray.length - 1)
 						w.write(" ");
 				}
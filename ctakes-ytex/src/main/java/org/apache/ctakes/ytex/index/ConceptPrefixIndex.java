@@ -0,0 +1,213 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory first word lookup, used for concept autocomplete in place of the
+ * retrieveConceptByFword query. Entries are kept in parallel arrays sorted by
+ * first word and then term, so the entries for a first word that start with a
+ * term prefix are a contiguous range found by binary search.
+ * <p>
+ * Completions match those of the query: the term prefix is matched ignoring
+ * case, completions are distinct on concept and the first
+ * {@link #TEXT_LENGTH} characters of the term, and they come back in term
+ * order. There is no ranking beyond term order, as the query has none.
+ * Instances are immutable once built; use a {@link Builder} to create them.
+ */
+public class ConceptPrefixIndex {
+	public static class Builder {
+		private String conceptIds[] = new String[1024];
+		private Map<String, String> conceptIdPool = new HashMap<String, String>();
+		private String fwords[] = new String[1024];
+		private Map<String, String> fwordPool = new HashMap<String, String>();
+		private int size = 0;
+		private String terms[] = new String[1024];
+
+		/**
+		 * add a term. first words are lowercased, terms are kept as they
+		 * are.
+		 */
+		public void add(String fword, String conceptId, String term) {
+			if (fword == null || conceptId == null || term == null)
+				return;
+			if (size == terms.length) {
+				int capacity = size * 2;
+				fwords = Arrays.copyOf(fwords, capacity);
+				terms = Arrays.copyOf(terms, capacity);
+				conceptIds = Arrays.copyOf(conceptIds, capacity);
+			}
+			fwords[size] = pool(fwordPool, fword.toLowerCase());
+			conceptIds[size] = pool(conceptIdPool, conceptId);
+			terms[size] = term;
+			size++;
+		}
+
+		public ConceptPrefixIndex build() {
+			Integer order[] = new Integer[size];
+			for (int i = 0; i < size; i++)
+				order[i] = i;
+			Arrays.sort(order, new Comparator<Integer>() {
+				public int compare(Integer o1, Integer o2) {
+					int c = ConceptPrefixIndex.compare(fwords[o1], terms[o1],
+							fwords[o2], terms[o2]);
+					return c != 0 ? c : terms[o1].compareTo(terms[o2]);
+				}
+			});
+			String sortedFwords[] = new String[size];
+			String sortedTerms[] = new String[size];
+			String sortedConceptIds[] = new String[size];
+			for (int i = 0; i < size; i++) {
+				sortedFwords[i] = fwords[order[i]];
+				sortedTerms[i] = terms[order[i]];
+				sortedConceptIds[i] = conceptIds[order[i]];
+			}
+			return new ConceptPrefixIndex(sortedFwords, sortedTerms,
+					sortedConceptIds);
+		}
+
+		private String pool(Map<String, String> stringPool, String str) {
+			String pooled = stringPool.get(str);
+			if (pooled == null) {
+				stringPool.put(str, str);
+				pooled = str;
+			}
+			return pooled;
+		}
+	}
+
+	/**
+	 * a completion, as returned by the retrieveConceptByFword query
+	 */
+	public static class Completion {
+		private final String conceptId;
+		private final String fword;
+		private final String text;
+
+		Completion(String fword, String conceptId, String text) {
+			this.fword = fword;
+			this.conceptId = conceptId;
+			this.text = text;
+		}
+
+		public String getConceptId() {
+			return conceptId;
+		}
+
+		public String getFword() {
+			return fword;
+		}
+
+		/**
+		 * @return the first {@link ConceptPrefixIndex#TEXT_LENGTH} characters
+		 *         of the term
+		 */
+		public String getText() {
+			return text;
+		}
+
+		@Override
+		public String toString() {
+			return "Completion [conceptId=" + conceptId + ", text=" + text
+					+ "]";
+		}
+	}
+
+	/**
+	 * length of the text shown for a completion, as in the
+	 * retrieveConceptByFword query
+	 */
+	public static final int TEXT_LENGTH = 30;
+
+	/**
+	 * order by first word, then by term ignoring case. Terms that start with
+	 * a prefix, ignoring case, are contiguous in this order.
+	 */
+	private static int compare(String fword1, String term1, String fword2,
+			String term2) {
+		int c = fword1.compareTo(fword2);
+		return c != 0 ? c : String.CASE_INSENSITIVE_ORDER.compare(term1,
+				term2);
+	}
+
+	private final String conceptIds[];
+	private final String fwords[];
+	private final String terms[];
+
+	private ConceptPrefixIndex(String fwords[], String terms[],
+			String conceptIds[]) {
+		this.fwords = fwords;
+		this.terms = terms;
+		this.conceptIds = conceptIds;
+	}
+
+	/**
+	 *
+	 * @param fword
+	 *            lowercase first word
+	 * @param term
+	 *            term prefix, matched ignoring case
+	 * @param maxResults
+	 *            number of completions to return
+	 * @return distinct completions whose first word is fword and whose term
+	 *         starts with term, in term order
+	 */
+	public List<Completion> complete(String fword, String term, int maxResults) {
+		List<Completion> completions = new ArrayList<Completion>();
+		Set<String> keys = new HashSet<String>();
+		for (int i = lowerBound(fword, term); i < terms.length
+				&& completions.size() < maxResults && fwords[i].equals(fword)
+				&& terms[i].regionMatches(true, 0, term, 0, term.length()); i++) {
+			String text = terms[i].length() > TEXT_LENGTH ? terms[i]
+					.substring(0, TEXT_LENGTH) : terms[i];
+			if (keys.add(conceptIds[i] + '\t' + text)) {
+				completions.add(new Completion(fwords[i], conceptIds[i], text));
+			}
+		}
+		return completions;
+	}
+
+	/**
+	 * @return index of the first entry that is not less than (fword, term)
+	 */
+	private int lowerBound(String fword, String term) {
+		int low = 0;
+		int high = terms.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (compare(fwords[mid], terms[mid], fword, term) < 0)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	public int size() {
+		return terms.length;
+	}
+}
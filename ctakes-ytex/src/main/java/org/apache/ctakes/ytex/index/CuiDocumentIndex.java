@@ -0,0 +1,248 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.index;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * In-memory inverted index from concept codes to the documents that contain
+ * them. The index is read from the segment files written to the index
+ * directory by {@link CuiIndexWriter}; {@link #refresh()} picks up segments
+ * written since the index was last read. Postings for the same concept from
+ * different segments are merged into a single {@link CuiPostingList}.
+ * <p>
+ * Searches and refreshes may run concurrently.
+ */
+public class CuiDocumentIndex {
+	private static final Log log = LogFactory.getLog(CuiDocumentIndex.class);
+	static final int MAGIC = 0x59435849;
+	public static final String SEGMENT_SUFFIX = ".seg";
+	static final int VERSION = 1;
+
+	private int documentCount = 0;
+	private File indexDir;
+	private ReadWriteLock lock = new ReentrantReadWriteLock();
+	private Map<String, CuiPostingList> postings = new HashMap<String, CuiPostingList>();
+	private Map<String, Integer> sectionIds = new HashMap<String, Integer>();
+	private List<String> sections = new ArrayList<String>();
+	private Set<String> segments = new HashSet<String>();
+
+	/**
+	 * open the index and read all segments
+	 * 
+	 * @param indexDir
+	 */
+	public CuiDocumentIndex(File indexDir) {
+		this.indexDir = indexDir;
+		refresh();
+	}
+
+	/**
+	 * @return number of documents in the index
+	 */
+	public int getDocumentCount() {
+		lock.readLock().lock();
+		try {
+			return documentCount;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return number of concepts in the index
+	 */
+	public int getConceptCount() {
+		lock.readLock().lock();
+		try {
+			return postings.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * read a segment and merge its postings. the segment is read completely
+	 * before anything is merged, so a damaged segment leaves the index
+	 * unchanged. called with the write lock held.
+	 */
+	private void readSegment(File segmentFile) throws IOException {
+		int segmentDocuments;
+		String[] segmentSections;
+		String[] codes;
+		CuiPostingList[] segmentPostings;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(segmentFile)));
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+				throw new IOException("not a concept index segment: "
+						+ segmentFile);
+			segmentDocuments = in.readInt();
+			segmentSections = new String[in.readInt()];
+			for (int i = 0; i < segmentSections.length; i++) {
+				segmentSections[i] = in.readUTF();
+			}
+			codes = new String[in.readInt()];
+			segmentPostings = new CuiPostingList[codes.length];
+			for (int i = 0; i < codes.length; i++) {
+				codes[i] = in.readUTF();
+				segmentPostings[i] = CuiPostingList.read(in);
+			}
+		} finally {
+			in.close();
+		}
+		// map the section ids of the segment to ids of the index
+		int[] sectionMap = new int[segmentSections.length + 1];
+		for (int i = 0; i < segmentSections.length; i++) {
+			Integer sectionId = sectionIds.get(segmentSections[i]);
+			if (sectionId == null) {
+				sections.add(segmentSections[i]);
+				sectionId = sections.size();
+				sectionIds.put(segmentSections[i], sectionId);
+			}
+			sectionMap[i + 1] = sectionId;
+		}
+		for (int i = 0; i < codes.length; i++) {
+			CuiPostingList codePostings = postings.get(codes[i]);
+			if (codePostings == null) {
+				codePostings = new CuiPostingList(
+						segmentPostings[i].getByteLength());
+				postings.put(codes[i], codePostings);
+			}
+			codePostings.merge(segmentPostings[i], sectionMap);
+		}
+		documentCount += segmentDocuments;
+	}
+
+	/**
+	 * read segments that have been added to the index directory since the
+	 * last refresh
+	 * 
+	 * @return number of segments read
+	 */
+	public int refresh() {
+		File[] segmentFiles = indexDir.listFiles();
+		if (segmentFiles == null)
+			return 0;
+		Arrays.sort(segmentFiles);
+		int count = 0;
+		lock.writeLock().lock();
+		try {
+			for (File segmentFile : segmentFiles) {
+				String name = segmentFile.getName();
+				if (name.endsWith(SEGMENT_SUFFIX) && !segments.contains(name)) {
+					try {
+						readSegment(segmentFile);
+						count++;
+					} catch (IOException e) {
+						log.error("skipping segment " + segmentFile, e);
+					}
+					segments.add(name);
+				}
+			}
+			if (count > 0) {
+				for (CuiPostingList codePostings : postings.values()) {
+					codePostings.trim();
+				}
+				if (log.isInfoEnabled())
+					log.info("read " + count + " segments from " + indexDir
+							+ ", documents=" + documentCount + ", concepts="
+							+ postings.size());
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+		return count;
+	}
+
+	/**
+	 * find the documents that contain any of the concepts.
+	 * 
+	 * @param codes
+	 *            concept codes, e.g. a concept and its descendants
+	 * @param polarity
+	 *            null for any polarity, else only occurrences with this
+	 *            polarity
+	 * @param section
+	 *            null for any section, else only occurrences in this section
+	 * @return map of document id to the first matching code of the document,
+	 *         ordered by descending document id
+	 */
+	public Map<Integer, String> search(Collection<String> codes,
+			Integer polarity, String section) {
+		Map<Integer, String> mapDocumentToCode = new HashMap<Integer, String>();
+		lock.readLock().lock();
+		try {
+			int sectionId = -1;
+			if (section != null) {
+				Integer id = sectionIds.get(section);
+				if (id == null)
+					return new LinkedHashMap<Integer, String>();
+				sectionId = id;
+			}
+			for (String code : codes) {
+				CuiPostingList codePostings = postings.get(code);
+				if (codePostings == null)
+					continue;
+				CuiPostingList.Cursor cursor = codePostings.cursor();
+				while (cursor.next()) {
+					if ((polarity == null || cursor.getPolarity() == Integer
+							.signum(polarity))
+							&& (sectionId < 0 || cursor.getSection() == sectionId)
+							&& !mapDocumentToCode.containsKey(cursor
+									.getDocumentId())) {
+						mapDocumentToCode.put(cursor.getDocumentId(), code);
+					}
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		int[] documentIds = new int[mapDocumentToCode.size()];
+		int i = 0;
+		for (Integer documentId : mapDocumentToCode.keySet()) {
+			documentIds[i++] = documentId;
+		}
+		Arrays.sort(documentIds);
+		Map<Integer, String> results = new LinkedHashMap<Integer, String>(
+				documentIds.length * 2);
+		for (i = documentIds.length - 1; i >= 0; i--) {
+			results.put(documentIds[i], mapDocumentToCode.get(documentIds[i]));
+		}
+		return results;
+	}
+}
@@ -0,0 +1,156 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.index;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Accumulate the concepts of documents and write them as a segment of a
+ * {@link CuiDocumentIndex}. Each call to {@link #flush()} writes a new segment
+ * file to the index directory; segments are never modified afterwards, so
+ * several writers (e.g. pipeline threads or processes) can share the
+ * directory with any number of readers. Not thread safe.
+ */
+public class CuiIndexWriter {
+	private int documentCount = 0;
+	private File indexDir;
+	/**
+	 * concept code to posting keys: document id in the high int, flags in the
+	 * low int. sorted and without duplicates.
+	 */
+	private Map<String, TreeSet<Long>> postings = new TreeMap<String, TreeSet<Long>>();
+	private Map<String, Integer> sectionIds = new HashMap<String, Integer>();
+	private List<String> sections = new ArrayList<String>();
+
+	public CuiIndexWriter(File indexDir) {
+		this.indexDir = indexDir;
+	}
+
+	/**
+	 * add an occurrence of a concept
+	 * 
+	 * @param code
+	 *            concept id or code
+	 * @param documentId
+	 * @param polarity
+	 *            only the sign is kept
+	 * @param section
+	 *            section (segment) id, null if the concept is not in a section
+	 */
+	public void add(String code, int documentId, int polarity, String section) {
+		TreeSet<Long> codePostings = postings.get(code);
+		if (codePostings == null) {
+			codePostings = new TreeSet<Long>();
+			postings.put(code, codePostings);
+		}
+		int flags = (getSectionId(section) << 2)
+				| (Integer.signum(polarity) + 1);
+		codePostings.add(((long) documentId << 32) | flags);
+	}
+
+	/**
+	 * call after the concepts of a document have been added
+	 */
+	public void endDocument() {
+		documentCount++;
+	}
+
+	/**
+	 * write the documents added since the last flush as a new segment.
+	 * 
+	 * @return segment file, null if there was nothing to write
+	 * @throws IOException
+	 */
+	public File flush() throws IOException {
+		if (postings.isEmpty()) {
+			documentCount = 0;
+			return null;
+		}
+		if (!indexDir.isDirectory() && !indexDir.mkdirs())
+			throw new IOException("could not create " + indexDir);
+		String name = String.format("%013d-%s", System.currentTimeMillis(),
+				UUID.randomUUID());
+		File tmpFile = new File(indexDir, name + ".tmp");
+		File segmentFile = new File(indexDir, name
+				+ CuiDocumentIndex.SEGMENT_SUFFIX);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(tmpFile)));
+		try {
+			out.writeInt(CuiDocumentIndex.MAGIC);
+			out.writeInt(CuiDocumentIndex.VERSION);
+			out.writeInt(documentCount);
+			out.writeInt(sections.size());
+			for (String section : sections) {
+				out.writeUTF(section);
+			}
+			out.writeInt(postings.size());
+			for (Map.Entry<String, TreeSet<Long>> e : postings.entrySet()) {
+				CuiPostingList list = new CuiPostingList(e.getValue().size() * 3);
+				for (long key : e.getValue()) {
+					int flags = (int) key;
+					list.add((int) (key >>> 32), (flags & 3) - 1, flags >>> 2);
+				}
+				out.writeUTF(e.getKey());
+				list.write(out);
+			}
+		} finally {
+			out.close();
+		}
+		if (!tmpFile.renameTo(segmentFile))
+			throw new IOException("could not rename " + tmpFile);
+		postings.clear();
+		sections.clear();
+		sectionIds.clear();
+		documentCount = 0;
+		return segmentFile;
+	}
+
+	/**
+	 * @return number of documents added since the last flush
+	 */
+	public int getDocumentCount() {
+		return documentCount;
+	}
+
+	/**
+	 * @return 0 for no section, else the 1-based position in the section table
+	 */
+	private int getSectionId(String section) {
+		if (section == null)
+			return 0;
+		Integer sectionId = sectionIds.get(section);
+		if (sectionId == null) {
+			sections.add(section);
+			sectionId = sections.size();
+			sectionIds.put(section, sectionId);
+		}
+		return sectionId;
+	}
+}
@@ -0,0 +1,254 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.index;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Postings of a concept: the documents in which the concept occurs, with the
+ * polarity and section of each occurrence. Postings are sorted by document id
+ * and stored as variable length byte deltas, typically 2-3 bytes per posting.
+ * Not thread safe.
+ */
+public class CuiPostingList {
+	/**
+	 * iterate over the postings
+	 */
+	public class Cursor {
+		private int documentId = 0;
+		private int flags;
+		private int position = 0;
+
+		public int getDocumentId() {
+			return documentId;
+		}
+
+		/**
+		 * @return -1, 0, or 1
+		 */
+		public int getPolarity() {
+			return (flags & 3) - 1;
+		}
+
+		/**
+		 * @return section id, 0 if the concept is not in a section
+		 */
+		public int getSection() {
+			return flags >>> 2;
+		}
+
+		/**
+		 * @return false if there are no more postings
+		 */
+		public boolean next() {
+			if (position >= length)
+				return false;
+			documentId += readVarInt();
+			flags = readVarInt();
+			return true;
+		}
+
+		private int readVarInt() {
+			int value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = bytes[position++];
+				value |= (b & 0x7f) << shift;
+				shift += 7;
+			} while (b < 0);
+			return value;
+		}
+	}
+
+	private byte[] bytes;
+	private int lastDocumentId = 0;
+	private int length = 0;
+	private int size = 0;
+
+	public CuiPostingList() {
+		this(16);
+	}
+
+	public CuiPostingList(int capacity) {
+		bytes = new byte[Math.max(capacity, 16)];
+	}
+
+	/**
+	 * add a posting. postings are usually added in document id order; adding
+	 * a posting for an earlier document rebuilds the list.
+	 * 
+	 * @param documentId
+	 *            document id, must not be negative
+	 * @param polarity
+	 *            polarity of the concept; only the sign is kept
+	 * @param section
+	 *            section id, 0 for none
+	 */
+	public void add(int documentId, int polarity, int section) {
+		int flags = (section << 2) | (Integer.signum(polarity) + 1);
+		if (documentId >= lastDocumentId) {
+			append(documentId, flags);
+		} else {
+			insert(documentId, flags);
+		}
+	}
+
+	private void append(int documentId, int flags) {
+		if (length + 10 > bytes.length)
+			bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2,
+					length + 10));
+		writeVarInt(documentId - lastDocumentId);
+		writeVarInt(flags);
+		lastDocumentId = documentId;
+		size++;
+	}
+
+	public Cursor cursor() {
+		return new Cursor();
+	}
+
+	/**
+	 * @return bytes of the encoded postings
+	 */
+	public int getByteLength() {
+		return length;
+	}
+
+	/**
+	 * @return document id of the last posting
+	 */
+	public int getLastDocumentId() {
+		return lastDocumentId;
+	}
+
+	private void insert(int documentId, int flags) {
+		int[] documentIds = new int[size + 1];
+		int[] allFlags = new int[size + 1];
+		int n = 0;
+		boolean inserted = false;
+		Cursor cursor = cursor();
+		while (cursor.next()) {
+			if (!inserted && cursor.documentId > documentId) {
+				documentIds[n] = documentId;
+				allFlags[n++] = flags;
+				inserted = true;
+			}
+			documentIds[n] = cursor.documentId;
+			allFlags[n++] = cursor.flags;
+		}
+		length = 0;
+		size = 0;
+		lastDocumentId = 0;
+		for (int i = 0; i < n; i++) {
+			append(documentIds[i], allFlags[i]);
+		}
+	}
+
+	/**
+	 * merge the postings of another list into this one in a single pass.
+	 * Postings of this list come first for the same document, as with
+	 * {@link #add(int, int, int)}.
+	 * 
+	 * @param other
+	 *            postings to merge
+	 * @param sectionMap
+	 *            section id in this list of each section id in other
+	 */
+	void merge(CuiPostingList other, int[] sectionMap) {
+		Cursor otherCursor = other.cursor();
+		boolean hasOther = otherCursor.next();
+		if (!hasOther)
+			return;
+		Cursor cursor = null;
+		boolean hasThis = false;
+		if (otherCursor.documentId < lastDocumentId) {
+			// earlier documents: re-encode both lists into a new buffer
+			CuiPostingList current = new CuiPostingList(0);
+			current.bytes = bytes;
+			current.length = length;
+			cursor = current.cursor();
+			hasThis = cursor.next();
+			bytes = new byte[Math.max(16, length + other.length)];
+			length = 0;
+			size = 0;
+			lastDocumentId = 0;
+		}
+		while (hasThis || hasOther) {
+			if (hasThis
+					&& (!hasOther || cursor.documentId <= otherCursor.documentId)) {
+				append(cursor.documentId, cursor.flags);
+				hasThis = cursor.next();
+			} else {
+				append(otherCursor.documentId,
+						(sectionMap[otherCursor.flags >>> 2] << 2)
+								| (otherCursor.flags & 3));
+				hasOther = otherCursor.next();
+			}
+		}
+	}
+
+	/**
+	 * read postings written by {@link #write(DataOutput)}
+	 */
+	static CuiPostingList read(DataInput in) throws IOException {
+		int size = in.readInt();
+		int lastDocumentId = in.readInt();
+		int length = in.readInt();
+		CuiPostingList postings = new CuiPostingList(length);
+		in.readFully(postings.bytes, 0, length);
+		postings.size = size;
+		postings.lastDocumentId = lastDocumentId;
+		postings.length = length;
+		return postings;
+	}
+
+	/**
+	 * @return number of postings
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * release unused capacity
+	 */
+	public void trim() {
+		if (bytes.length > length)
+			bytes = Arrays.copyOf(bytes, length);
+	}
+
+	void write(DataOutput out) throws IOException {
+		out.writeInt(size);
+		out.writeInt(lastDocumentId);
+		out.writeInt(length);
+		out.write(bytes, 0, length);
+	}
+
+	private void writeVarInt(int value) {
+		while ((value & ~0x7f) != 0) {
+			bytes[length++] = (byte) ((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		bytes[length++] = (byte) value;
+	}
+}
@@ -0,0 +1,119 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.kernel;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable set of concept numbers stored as sorted, disjoint runs
+ * [start, end). A set over numbers that are assigned so that related concepts
+ * are adjacent - e.g. leaves numbered in depth-first order - needs few runs
+ * no matter how many numbers it contains.
+ * 
+ * @see IntrinsicInfoContentEvaluatorImpl
+ */
+class ConceptRunSet {
+	static final ConceptRunSet EMPTY = new ConceptRunSet(new int[0], 0);
+
+	/**
+	 * @return the set containing only number
+	 */
+	static ConceptRunSet of(int number) {
+		return new ConceptRunSet(new int[] { number, number + 1 }, 1);
+	}
+
+	/**
+	 * @return the union of the sets, and number if it is not negative
+	 */
+	static ConceptRunSet union(List<ConceptRunSet> sets, int number) {
+		int runCount = number >= 0 ? 1 : 0;
+		ConceptRunSet single = null;
+		for (ConceptRunSet set : sets) {
+			if (set.runs.length > 0) {
+				runCount += set.runs.length / 2;
+				single = set;
+			}
+		}
+		if (runCount == 0)
+			return EMPTY;
+		if (number < 0 && runCount == single.runs.length / 2)
+			return single;
+		// sort the runs by start, the start is in the high bits
+		long[] packed = new long[runCount];
+		int p = 0;
+		if (number >= 0)
+			packed[p++] = ((long) number << 32) | (number + 1);
+		for (ConceptRunSet set : sets) {
+			for (int r = 0; r < set.runs.length; r += 2)
+				packed[p++] = ((long) set.runs[r] << 32) | set.runs[r + 1];
+		}
+		Arrays.sort(packed);
+		// merge overlapping and adjacent runs
+		int[] merged = new int[2 * runCount];
+		int m = 0;
+		int size = 0;
+		int start = (int) (packed[0] >>> 32);
+		int end = (int) packed[0];
+		for (int i = 1; i < runCount; i++) {
+			int nextStart = (int) (packed[i] >>> 32);
+			int nextEnd = (int) packed[i];
+			if (nextStart <= end) {
+				if (nextEnd > end)
+					end = nextEnd;
+			} else {
+				merged[m++] = start;
+				merged[m++] = end;
+				size += end - start;
+				start = nextStart;
+				end = nextEnd;
+			}
+		}
+		merged[m++] = start;
+		merged[m++] = end;
+		size += end - start;
+		return new ConceptRunSet(m == merged.length ? merged : Arrays.copyOf(
+				merged, m), size);
+	}
+
+	private final int[] runs;
+	private final int size;
+
+	private ConceptRunSet(int[] runs, int size) {
+		this.runs = runs;
+		this.size = size;
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return the numbers in the set, in ascending order
+	 */
+	int[] toArray() {
+		int[] numbers = new int[size];
+		int n = 0;
+		for (int r = 0; r < runs.length; r += 2) {
+			for (int number = runs[r]; number < runs[r + 1]; number++)
+				numbers[n++] = number;
+		}
+		return numbers;
+	}
+}
@@ -0,0 +1,542 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.kernel;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A symmetric gram matrix stored in a memory-mapped file instead of the
+ * kernel_eval_instance table.
+ * <p/>
+ * Only the upper triangle is stored, cut into square tiles of tileSize x
+ * tileSize values. Tile (ti, tj) with ti &lt;= tj is stored contiguously, and
+ * the tiles follow each other row by row, so evaluating or reading a block of
+ * instances touches a few contiguous pages. Values are stored as floats or
+ * doubles. The file is mapped in segments, so it can be larger than 2 GB.
+ * <p/>
+ * Each tile has a done flag. {@link #markTileDone(int)} records a tile as
+ * evaluated, and {@link #checkpoint()} forces the values to disk before the
+ * flags. An interrupted evaluation reopens the file with
+ * {@link #create(File, long[], int, int, boolean)} and continues with the
+ * tiles that are not done.
+ * <p/>
+ * Only the first evalRows instances are evaluated against all others, like
+ * the training instances of the corpus kernel evaluator. Tiles that lie
+ * entirely below that row are never evaluated and read as 0.
+ * 
+ * @see org.apache.ctakes.ytex.kernel.evaluator.CorpusKernelEvaluatorImpl
+ */
+public class GramMatrixFile implements Closeable {
+	public static final int DEFAULT_TILE_SIZE = 256;
+	public static final String FILE_EXTENSION = ".gram";
+	static final int MAGIC = 0x4d475459;
+	static final int VERSION = 1;
+	static final int HEADER_BYTES = 64;
+	/**
+	 * values are mapped in segments of at most this size
+	 */
+	static final long SEGMENT_BYTES = 1L << 30;
+	/**
+	 * the values start on a page boundary
+	 */
+	static final long DATA_ALIGNMENT = 4096;
+
+	/**
+	 * the gram matrix file of a kernel evaluation
+	 * 
+	 * @param dir
+	 *            directory with gram matrix files
+	 * @param kernelEvaluationId
+	 *            id of the kernel_eval row
+	 */
+	public static File getFile(String dir, int kernelEvaluationId) {
+		return new File(dir, "kernelEval" + kernelEvaluationId
+				+ FILE_EXTENSION);
+	}
+
+	/**
+	 * create a gram matrix file, or reopen it for writing if it already exists
+	 * with the same instances and layout.
+	 * 
+	 * @param file
+	 *            gram matrix file
+	 * @param instanceIds
+	 *            instance ids, in row order
+	 * @param evalRows
+	 *            the first evalRows instances are evaluated against all
+	 *            others
+	 * @param tileSize
+	 *            number of rows and columns in a tile
+	 * @param singlePrecision
+	 *            store floats instead of doubles
+	 * @throws IOException
+	 *             if the file exists with different instances or layout
+	 * @throws IllegalArgumentException
+	 *             if a tile does not fit in a mapped segment
+	 */
+	public static GramMatrixFile create(File file, long[] instanceIds,
+			int evalRows, int tileSize, boolean singlePrecision)
+			throws IOException {
+		int elementBytes = singlePrecision ? 4 : 8;
+		if (tileSize <= 0 || evalRows < 0 || evalRows > instanceIds.length)
+			throw new IllegalArgumentException("tileSize=" + tileSize
+					+ ", evalRows=" + evalRows);
+		if (!isTileSizeValid(tileSize, elementBytes))
+			throw new IllegalArgumentException("tileSize=" + tileSize
+					+ " exceeds " + Integer.MAX_VALUE + " bytes per tile");
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		boolean opened = false;
+		try {
+			FileChannel channel = raf.getChannel();
+			// slices in other processes may create the same file
+			FileLock lock = channel.lock();
+			try {
+				if (channel.size() == 0) {
+					Layout layout = new Layout(instanceIds.length, tileSize,
+							elementBytes);
+					ByteBuffer index = ByteBuffer.allocate(
+							(int) layout.flagStart).order(
+							ByteOrder.LITTLE_ENDIAN);
+					index.putInt(MAGIC);
+					index.putInt(VERSION);
+					index.putInt(instanceIds.length);
+					index.putInt(tileSize);
+					index.putInt(elementBytes);
+					index.putInt(evalRows);
+					index.position(HEADER_BYTES);
+					for (long instanceId : instanceIds)
+						index.putLong(instanceId);
+					index.flip();
+					long position = 0;
+					while (index.hasRemaining())
+						position += channel.write(index, position);
+					// unwritten values and flags read as 0
+					raf.setLength(layout.dataStart + layout.tileCount
+							* layout.tileBytes);
+					channel.force(true);
+				}
+			} finally {
+				lock.release();
+			}
+			GramMatrixFile gramMatrix = new GramMatrixFile(file, raf, true);
+			if (gramMatrix.tileSize != tileSize
+					|| gramMatrix.elementBytes != elementBytes
+					|| gramMatrix.evalRows != evalRows
+					|| !Arrays.equals(gramMatrix.instanceIds, instanceIds))
+				throw new IOException(file.getPath()
+						+ " exists with different instances or layout");
+			opened = true;
+			return gramMatrix;
+		} finally {
+			if (!opened)
+				raf.close();
+		}
+	}
+
+	/**
+	 * open an existing gram matrix file
+	 * 
+	 * @param file
+	 *            gram matrix file
+	 * @param writable
+	 *            open for evaluation, otherwise read only
+	 */
+	public static GramMatrixFile open(File file, boolean writable)
+			throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, writable ? "rw"
+				: "r");
+		boolean opened = false;
+		try {
+			GramMatrixFile gramMatrix = new GramMatrixFile(file, raf, writable);
+			opened = true;
+			return gramMatrix;
+		} finally {
+			if (!opened)
+				raf.close();
+		}
+	}
+
+	/**
+	 * open a gram matrix file for export, read only
+	 * 
+	 * @param file
+	 *            gram matrix file
+	 * @throws IOException
+	 *             if a tile that should be evaluated is not done: the
+	 *             evaluation was interrupted or is still running, and the
+	 *             missing values would be exported as 0
+	 */
+	public static GramMatrixFile openEvaluated(File file) throws IOException {
+		GramMatrixFile gramMatrix = open(file, false);
+		int pending = 0;
+		for (int tile = 0; tile < gramMatrix.getTileCount(); tile++) {
+			if (gramMatrix.isTileEvaluated(tile) && !gramMatrix.isTileDone(tile))
+				pending++;
+		}
+		if (pending > 0) {
+			gramMatrix.close();
+			throw new IOException(file.getPath() + " is incomplete, " + pending
+					+ " tiles have not been evaluated");
+		}
+		return gramMatrix;
+	}
+
+	/**
+	 * a tile is mapped as a whole and addressed with int offsets
+	 */
+	static boolean isTileSizeValid(int tileSize, int elementBytes) {
+		return tileSize > 0
+				&& (long) tileSize * tileSize * elementBytes <= Integer.MAX_VALUE;
+	}
+
+	/**
+	 * sizes and offsets of the sections of a gram matrix file
+	 */
+	private static class Layout {
+		final int tileRows;
+		final long tileCount;
+		final long tileBytes;
+		final long flagStart;
+		final long dataStart;
+		final long tilesPerSegment;
+
+		Layout(int size, int tileSize, int elementBytes) {
+			tileRows = (size + tileSize - 1) / tileSize;
+			tileCount = (long) tileRows * (tileRows + 1) / 2;
+			tileBytes = (long) tileSize * tileSize * elementBytes;
+			flagStart = HEADER_BYTES + 8L * size;
+			dataStart = (flagStart + tileCount + DATA_ALIGNMENT - 1)
+					/ DATA_ALIGNMENT * DATA_ALIGNMENT;
+			tilesPerSegment = Math.max(1, SEGMENT_BYTES / tileBytes);
+		}
+	}
+
+	private final File file;
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+	private final boolean writable;
+	private final int size;
+	private final int tileSize;
+	private final int elementBytes;
+	private final int evalRows;
+	private final long[] instanceIds;
+	private final Map<Long, Integer> instanceIdToIndexMap;
+	private final Layout layout;
+	private final MappedByteBuffer[] segments;
+	/**
+	 * first tile of each tile row
+	 */
+	private final long[] tileRowStart;
+	private final boolean[] tileDone;
+	/**
+	 * tiles marked done since the last checkpoint
+	 */
+	private final List<Integer> pendingTiles = new ArrayList<Integer>();
+
+	private GramMatrixFile(File file, RandomAccessFile raf, boolean writable)
+			throws IOException {
+		this.file = file;
+		this.raf = raf;
+		this.channel = raf.getChannel();
+		this.writable = writable;
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(
+				ByteOrder.LITTLE_ENDIAN);
+		readFully(header, 0);
+		if (header.getInt(0) != MAGIC)
+			throw new IOException(file.getPath()
+					+ " is not a gram matrix file");
+		if (header.getInt(4) != VERSION)
+			throw new IOException("unsupported gram matrix version "
+					+ header.getInt(4) + " in " + file.getPath());
+		size = header.getInt(8);
+		tileSize = header.getInt(12);
+		elementBytes = header.getInt(16);
+		evalRows = header.getInt(20);
+		if ((elementBytes != 4 && elementBytes != 8)
+				|| !isTileSizeValid(tileSize, elementBytes))
+			throw new IOException("invalid tileSize " + tileSize
+					+ " or element size " + elementBytes + " in "
+					+ file.getPath());
+		layout = new Layout(size, tileSize, elementBytes);
+		if (layout.tileCount > Integer.MAX_VALUE
+				|| channel.size() < layout.dataStart + layout.tileCount
+						* layout.tileBytes)
+			throw new IOException(file.getPath() + " is truncated");
+		ByteBuffer index = ByteBuffer.allocate(
+				(int) (layout.dataStart - HEADER_BYTES)).order(
+				ByteOrder.LITTLE_ENDIAN);
+		readFully(index, HEADER_BYTES);
+		instanceIds = new long[size];
+		instanceIdToIndexMap = new HashMap<Long, Integer>(size * 2);
+		for (int i = 0; i < size; i++) {
+			instanceIds[i] = index.getLong(8 * i);
+			instanceIdToIndexMap.put(instanceIds[i], i);
+		}
+		tileDone = new boolean[(int) layout.tileCount];
+		for (int t = 0; t < tileDone.length; t++)
+			tileDone[t] = index.get((int) (layout.flagStart - HEADER_BYTES)
+					+ t) != 0;
+		tileRowStart = new long[layout.tileRows + 1];
+		for (int ti = 0; ti < layout.tileRows; ti++)
+			tileRowStart[ti + 1] = tileRowStart[ti] + layout.tileRows - ti;
+		long segmentCount = (layout.tileCount + layout.tilesPerSegment - 1)
+				/ layout.tilesPerSegment;
+		segments = new MappedByteBuffer[(int) segmentCount];
+		for (int s = 0; s < segments.length; s++) {
+			long firstTile = s * layout.tilesPerSegment;
+			long tiles = Math.min(layout.tilesPerSegment, layout.tileCount
+					- firstTile);
+			segments[s] = channel.map(writable ? FileChannel.MapMode.READ_WRITE
+					: FileChannel.MapMode.READ_ONLY, layout.dataStart
+					+ firstTile * layout.tileBytes, tiles * layout.tileBytes);
+			segments[s].order(ByteOrder.LITTLE_ENDIAN);
+		}
+	}
+
+	private void readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position);
+			if (read < 0)
+				throw new IOException(file.getPath() + " is truncated");
+			position += read;
+		}
+		buffer.flip();
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return number of instances
+	 */
+	public int size() {
+		return size;
+	}
+
+	public int getTileSize() {
+		return tileSize;
+	}
+
+	/**
+	 * @return number of instances evaluated against all others
+	 */
+	public int getEvalRows() {
+		return evalRows;
+	}
+
+	public long getInstanceId(int index) {
+		return instanceIds[index];
+	}
+
+	/**
+	 * @return index of the instance, -1 if it is not in the gram matrix
+	 */
+	public int getIndex(long instanceId) {
+		Integer index = instanceIdToIndexMap.get(instanceId);
+		return index != null ? index : -1;
+	}
+
+	/**
+	 * @return index of each instance, -1 for instances that are not in the
+	 *         gram matrix
+	 */
+	public int[] getIndices(Collection<Long> instanceIds) {
+		int[] indices = new int[instanceIds.size()];
+		int i = 0;
+		for (Long instanceId : instanceIds)
+			indices[i++] = getIndex(instanceId);
+		return indices;
+	}
+
+	/**
+	 * @return number of tiles in the upper triangle
+	 */
+	public int getTileCount() {
+		return tileDone.length;
+	}
+
+	/**
+	 * @return true if the tile contains a pair that is evaluated
+	 */
+	public boolean isTileEvaluated(int tile) {
+		return getTileRow(tile) * tileSize < evalRows;
+	}
+
+	/**
+	 * @return tile row of the tile, the first row of the tile is tileRow *
+	 *         tileSize
+	 */
+	public int getTileRow(int tile) {
+		int ti = Arrays.binarySearch(tileRowStart, tile);
+		return ti >= 0 ? ti : -ti - 2;
+	}
+
+	/**
+	 * @return tile column of the tile, the first column of the tile is
+	 *         tileColumn * tileSize
+	 */
+	public int getTileColumn(int tile) {
+		int ti = getTileRow(tile);
+		return ti + (int) (tile - tileRowStart[ti]);
+	}
+
+	public synchronized boolean isTileDone(int tile) {
+		return tileDone[tile];
+	}
+
+	/**
+	 * record that all values of the tile are set. The flag is persisted by
+	 * the next {@link #checkpoint()}.
+	 */
+	public synchronized void markTileDone(int tile) {
+		if (!tileDone[tile]) {
+			tileDone[tile] = true;
+			pendingTiles.add(tile);
+		}
+	}
+
+	/**
+	 * @return number of tiles marked done since the last checkpoint
+	 */
+	public synchronized int getPendingTileCount() {
+		return pendingTiles.size();
+	}
+
+	/**
+	 * force the values to disk, then the done flags of the tiles marked
+	 * since the last checkpoint. Only the flags of those tiles are written,
+	 * so processes that evaluate different tiles of the same file do not
+	 * overwrite each other's flags.
+	 */
+	public synchronized void checkpoint() throws IOException {
+		if (pendingTiles.isEmpty())
+			return;
+		for (MappedByteBuffer segment : segments)
+			segment.force();
+		ByteBuffer done = ByteBuffer.allocate(1);
+		for (int tile : pendingTiles) {
+			done.clear();
+			done.put(0, (byte) 1);
+			channel.write(done, layout.flagStart + tile);
+		}
+		channel.force(false);
+		pendingTiles.clear();
+	}
+
+	private int offset(int i, int j) {
+		int ti = i / tileSize;
+		int tj = j / tileSize;
+		long tile = tileRowStart[ti] + tj - ti;
+		long inSegment = tile % layout.tilesPerSegment;
+		return (int) (inSegment * layout.tileBytes + ((long) (i - ti
+				* tileSize)
+				* tileSize + j - tj * tileSize)
+				* elementBytes);
+	}
+
+	private MappedByteBuffer segment(int i, int j) {
+		int ti = i / tileSize;
+		long tile = tileRowStart[ti] + j / tileSize - ti;
+		return segments[(int) (tile / layout.tilesPerSegment)];
+	}
+
+	/**
+	 * kernel value of the pair. As in
+	 * {@link KernelUtil#fillGramMatrix(org.apache.ctakes.ytex.kernel.model.KernelEvaluation, java.util.SortedSet, double[][])}
+	 * , a diagonal entry that was not evaluated is 1.
+	 */
+	public double get(int i, int j) {
+		if (i > j) {
+			int k = i;
+			i = j;
+			j = k;
+		}
+		MappedByteBuffer segment = segment(i, j);
+		int offset = offset(i, j);
+		double value = elementBytes == 4 ? segment.getFloat(offset) : segment
+				.getDouble(offset);
+		if (i == j && value == 0)
+			value = 1;
+		return value;
+	}
+
+	/**
+	 * set the kernel value of the pair, and its transpose
+	 */
+	public void set(int i, int j, double value) {
+		if (i > j) {
+			int k = i;
+			i = j;
+			j = k;
+		}
+		MappedByteBuffer segment = segment(i, j);
+		int offset = offset(i, j);
+		if (elementBytes == 4)
+			segment.putFloat(offset, (float) value);
+		else
+			segment.putDouble(offset, value);
+	}
+
+	/**
+	 * fill row with the kernel values of the row instance against the column
+	 * instances. Pairs with an instance that is not in the gram matrix are 0.
+	 * 
+	 * @param rowIndex
+	 *            index of the row instance, may be -1
+	 * @param columnIndices
+	 *            indices of the column instances from
+	 *            {@link #getIndices(Collection)}, may contain -1
+	 * @param row
+	 *            values, at least as long as columnIndices
+	 */
+	public void getRow(int rowIndex, int[] columnIndices, double[] row) {
+		for (int c = 0; c < columnIndices.length; c++) {
+			int columnIndex = columnIndices[c];
+			if (rowIndex >= 0 && columnIndex >= 0)
+				row[c] = get(rowIndex, columnIndex);
+			else
+				row[c] = 0;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			if (writable)
+				checkpoint();
+		} finally {
+			raf.close();
+		}
+	}
+}
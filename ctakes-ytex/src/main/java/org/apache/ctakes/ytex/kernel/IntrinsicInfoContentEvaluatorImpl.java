@@ -21,17 +21,14 @@ package org.apache.ctakes.ytex.kernel;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.lang.ref.SoftReference;
-import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.WeakHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -126,177 +123,192 @@ public class IntrinsicInfoContentEvaluatorImpl implements
 	}
 
 	/**
-	 * recursively compute the number of leaves. fill in the icInfoMap as we go
-	 * along
+	 * sort the concepts so that each concept comes after all its parents
 	 * 
-	 * @param concept
-	 *            concept for which we should get the leaves
-	 * @param leafCache
-	 *            cache of concept's leaves
-	 * @param icInfoMap
-	 *            to be updated with leaf counts
-	 * @param cg
-	 * @param w
-	 * @param visitedNodes
-	 *            list of nodes that have already been visited - we don't need
-	 *            to revisit them when getting the leaves
-	 * @return
-	 * @throws IOException
+	 * @return node indices in topological order
+	 * @throws IllegalArgumentException
+	 *             if the concept graph has a cycle
 	 */
-	private HashSet<Integer> getLeaves(ConcRel concept,
-			SoftReference<HashSet<Integer>>[] leafCache,
-			Map<String, IntrinsicICInfo> icInfoMap, ConceptGraph cg,
-			BufferedWriter w, HashSet<Integer> visitedNodes) throws IOException {
-		// look in cache
-		SoftReference<HashSet<Integer>> refLeaves = leafCache[concept.getNodeIndex()];
-		if (refLeaves != null && refLeaves.get() != null) {
-			return refLeaves.get();
+	private int[] getTopologicalOrder(String conceptGraphName,
+			List<ConcRel> conceptList) {
+		int[] order = new int[conceptList.size()];
+		int[] pendingParents = new int[conceptList.size()];
+		int tail = 0;
+		for (ConcRel concept : conceptList) {
+			pendingParents[concept.getNodeIndex()] = concept.getParents()
+					.size();
+			if (concept.getParents().isEmpty())
+				order[tail++] = concept.getNodeIndex();
 		}
-		// not in cache - compute recursively
-		HashSet<Integer> leaves = new HashSet<Integer>();
-		leafCache[concept.getNodeIndex()] = new SoftReference<HashSet<Integer>>(leaves);
-		if (concept.isLeaf()) {
-			// for leaves, just add the concept id
-			leaves.add(concept.getNodeIndex());
-		} else {
-			IntrinsicICInfo icInfo = icInfoMap.get(concept.getConceptID());
-			// have we already computed the leaf count for this node?
-			// if yes, then we can ignore previously visited nodes
-			// if no, then compute it now and revisit previously visited nodes
-			// if we have to
-			boolean needLeaves = (icInfo != null && icInfo.getLeafCount() == 0);
-			HashSet<Integer> visitedNodesLocal = visitedNodes;
-			if (needLeaves || visitedNodesLocal == null) {
-				// allocate a set to keep track of nodes we've already visited
-				// so that we don't revisit them. if we have already computed
-				// this node's leaf count then we reuse whatever the caller gave
-				// us if non null, else allocate a new one.
-				// if we haven't already computed this node's leaf count,
-				// allocate a new set to avoid duplications in the traversal for
-				// this node
-				visitedNodesLocal = new HashSet<Integer>();
+		// order doubles as the queue of concepts whose parents are all sorted
+		for (int head = 0; head < tail; head++) {
+			for (ConcRel child : conceptList.get(order[head]).getChildren()) {
+				if (--pendingParents[child.getNodeIndex()] == 0)
+					order[tail++] = child.getNodeIndex();
+			}
+		}
+		if (tail < order.length)
+			throw new IllegalArgumentException("concept graph "
+					+ conceptGraphName + " has a cycle, "
+					+ (order.length - tail) + " concepts could not be sorted");
+		return order;
+	}
+
+	/**
+	 * number the leaves below the root in depth-first order, so that the
+	 * leaves of a concept are mostly adjacent and its leaf set has few runs.
+	 * 
+	 * @param leafNumbers
+	 *            filled with the number of each leaf below the root
+	 * @return node index of each leaf number; concepts below the root are
+	 *         marked in descendants
+	 */
+	private int[] numberLeaves(ConcRel root, List<ConcRel> conceptList,
+			boolean[] descendants, int[] leafNumbers) {
+		int[] stack = new int[conceptList.size()];
+		int[] leafConcepts = new int[conceptList.size()];
+		int leafCount = 0;
+		int top = 0;
+		stack[top++] = root.getNodeIndex();
+		descendants[root.getNodeIndex()] = true;
+		while (top > 0) {
+			ConcRel concept = conceptList.get(stack[--top]);
+			if (concept.isLeaf()) {
+				leafNumbers[concept.getNodeIndex()] = leafCount;
+				leafConcepts[leafCount++] = concept.getNodeIndex();
 			}
-			// for inner nodes, recurse
 			for (ConcRel child : concept.getChildren()) {
-				// if we've already visited a node, then don't bother adding
-				// that node's leaves - we already have them
-				if (!visitedNodesLocal.contains(child.getNodeIndex())) {
-					leaves.addAll(getLeaves(child, leafCache, icInfoMap, cg, w,
-							visitedNodesLocal));
+				if (!descendants[child.getNodeIndex()]) {
+					descendants[child.getNodeIndex()] = true;
+					stack[top++] = child.getNodeIndex();
 				}
 			}
-			// add this node to the set of visited nodes so we know not to
-			// revisit. This is only of importance if the caller gave us
-			// a non-empty set.
-			if (visitedNodes != null && visitedNodes != visitedNodesLocal) {
-				visitedNodes.add(concept.getNodeIndex());
-				visitedNodes.addAll(visitedNodesLocal);
+		}
+		return Arrays.copyOf(leafConcepts, leafCount);
+	}
+
+	/**
+	 * compute the depth and subsumer count of each concept, parents before
+	 * children. The subsumers of a concept are the concept itself and the
+	 * union of its parents' subsumers; a concept's subsumer set is dropped
+	 * once all its children have used it. Subsumers are numbered by their
+	 * position in topological order.
+	 * 
+	 * @param order
+	 *            concepts in topological order
+	 * @param descendants
+	 *            concepts below the root, these get an icInfoMap entry
+	 */
+	private void computeSubsumerCounts(List<ConcRel> conceptList, int[] order,
+			boolean[] descendants, Map<String, IntrinsicICInfo> icInfoMap,
+			short[] depthArray, BufferedWriter w) throws IOException {
+		ConceptRunSet[] subsumerSets = new ConceptRunSet[conceptList.size()];
+		int[] pendingChildren = new int[conceptList.size()];
+		List<ConceptRunSet> parentSets = new ArrayList<ConceptRunSet>();
+		for (int rank = 0; rank < order.length; rank++) {
+			ConcRel concept = conceptList.get(order[rank]);
+			int nodeIndex = concept.getNodeIndex();
+			parentSets.clear();
+			short parentMaxDepth = 0;
+			for (ConcRel parent : concept.getParents()) {
+				parentSets.add(subsumerSets[parent.getNodeIndex()]);
+				if (depthArray[parent.getNodeIndex()] > parentMaxDepth)
+					parentMaxDepth = depthArray[parent.getNodeIndex()];
+			}
+			ConceptRunSet subsumers = ConceptRunSet.union(parentSets, rank);
+			depthArray[nodeIndex] = (short) (parentMaxDepth + 1);
+			pendingChildren[nodeIndex] = concept.getChildren().size();
+			if (pendingChildren[nodeIndex] > 0)
+				subsumerSets[nodeIndex] = subsumers;
+			for (ConcRel parent : concept.getParents()) {
+				if (--pendingChildren[parent.getNodeIndex()] == 0)
+					subsumerSets[parent.getNodeIndex()] = null;
 			}
-			// update the leaf count if we haven't done so already
-			if (needLeaves) {
-				icInfo.setLeafCount(leaves.size());
-				// output leaves if desired
+			if (descendants[nodeIndex]) {
+				IntrinsicICInfo icInfo = new IntrinsicICInfo(concept);
+				icInfo.setSubsumerCount(subsumers.size());
+				icInfoMap.put(concept.getConceptID(), icInfo);
 				if (w != null) {
 					w.write(concept.getConceptID());
 					w.write("\t");
-					w.write(Integer.toString(leaves.size()));
-					w.write("\t");
-					Iterator<Integer> iter = leaves.iterator();
-					while (iter.hasNext()) {
-						w.write(cg.getConceptList().get(iter.next())
+					w.write(Integer.toString(subsumers.size()));
+					w.write("\t[");
+					int[] subsumerRanks = subsumers.toArray();
+					for (int i = 0; i < subsumerRanks.length; i++) {
+						if (i > 0)
+							w.write(", ");
+						w.write(conceptList.get(order[subsumerRanks[i]])
 								.getConceptID());
-						w.write(" ");
 					}
+					w.write("]");
 					w.newLine();
 				}
 			}
 		}
-		return leaves;
 	}
 
-	// /**
-	// * add/update icInfoMap entry for concept with the concept's leaf count
-	// *
-	// * @param concept
-	// * @param icInfoMap
-	// * @param w
-	// * @param subsumerMap
-	// * @throws IOException
-	// */
-	// private void computeLeafCount(ConcRel concept,
-	// Map<String, IntrinsicICInfo> icInfoMap,
-	// SoftReference<TIntSet>[] leafCache, ConceptGraph cg,
-	// BufferedWriter w) throws IOException {
-	// // see if we already computed this
-	// IntrinsicICInfo icInfo = icInfoMap.get(concept.getConceptID());
-	// if (icInfo != null && icInfo.getLeafCount() > 0) {
-	// return;
-	// }
-	// // if not, figure it out
-	// if (icInfo == null) {
-	// icInfo = new IntrinsicICInfo(concept);
-	// icInfoMap.put(concept.getConceptID(), icInfo);
-	// }
-	// // for leaves the default (0) is correct
-	// if (!concept.isLeaf()) {
-	// TIntSet leaves = this.getLeaves(concept, leafCache);
-	// icInfo.setLeafCount(leaves.size());
-	// if (w != null) {
-	// w.write(concept.getConceptID());
-	// w.write("\t");
-	// w.write(Integer.toString(leaves.size()));
-	// w.write("\t");
-	// TIntIterator iter = leaves.iterator();
-	// while (iter.hasNext()) {
-	// w.write(cg.getConceptList().get(iter.next()).getConceptID());
-	// w.write(" ");
-	// }
-	// w.newLine();
-	// }
-	// }
-	// // recurse to parents
-	// for (ConcRel parent : concept.getParents()) {
-	// computeLeafCount(parent, icInfoMap, leafCache, cg, w);
-	// }
-	// }
-
 	/**
-	 * add/update icInfoMap entry for concept with the concept's subsumer count
+	 * compute the leaf count of each concept below the root, children before
+	 * parents. The leaves of an inner concept are the union of its children's
+	 * leaves; a concept's leaf set is dropped once all its parents have used
+	 * it. Leaves themselves keep a leaf count of 0.
 	 * 
-	 * @param concept
-	 * @param icInfoMap
-	 * @param subsumerMap
-	 * @param w
-	 * @throws IOException
+	 * @param order
+	 *            concepts in topological order
+	 * @param descendants
+	 *            concepts below the root
+	 * @param leafNumbers
+	 *            number of each leaf from
+	 *            {@link #numberLeaves(ConcRel, List, boolean[], int[])}
+	 * @param leafConcepts
+	 *            node index of each leaf number
 	 */
-	private void computeSubsumerCount(ConcRel concept,
-			Map<String, IntrinsicICInfo> icInfoMap,
-			Map<String, Set<String>> subsumerMap, short[] depthArray,
-			BufferedWriter w) throws IOException {
-		// see if we already computed this
-		IntrinsicICInfo icInfo = icInfoMap.get(concept.getConceptID());
-		if (icInfo != null && icInfo.getSubsumerCount() > 0) {
-			return;
-		}
-		// if not, figure it out
-		if (icInfo == null) {
-			icInfo = new IntrinsicICInfo(concept);
-			icInfoMap.put(concept.getConceptID(), icInfo);
-		}
-		Set<String> subsumers = this.getSubsumers(concept, subsumerMap,
-				depthArray);
-		if (w != null) {
-			w.write(concept.getConceptID());
-			w.write("\t");
-			w.write(Integer.toString(subsumers.size()));
-			w.write("\t");
-			w.write(subsumers.toString());
-			w.newLine();
-		}
-		icInfo.setSubsumerCount(subsumers.size());
-		// recursively compute the children's subsumer counts
-		for (ConcRel child : concept.getChildren()) {
-			computeSubsumerCount(child, icInfoMap, subsumerMap, depthArray, w);
+	private void computeLeafCounts(List<ConcRel> conceptList, int[] order,
+			boolean[] descendants, int[] leafNumbers, int[] leafConcepts,
+			Map<String, IntrinsicICInfo> icInfoMap, BufferedWriter w)
+			throws IOException {
+		ConceptRunSet[] leafSets = new ConceptRunSet[conceptList.size()];
+		int[] pendingParents = new int[conceptList.size()];
+		List<ConceptRunSet> childSets = new ArrayList<ConceptRunSet>();
+		for (int rank = order.length - 1; rank >= 0; rank--) {
+			int nodeIndex = order[rank];
+			if (!descendants[nodeIndex])
+				continue;
+			ConcRel concept = conceptList.get(nodeIndex);
+			ConceptRunSet leaves;
+			if (concept.isLeaf()) {
+				leaves = ConceptRunSet.of(leafNumbers[nodeIndex]);
+			} else {
+				childSets.clear();
+				for (ConcRel child : concept.getChildren())
+					childSets.add(leafSets[child.getNodeIndex()]);
+				leaves = ConceptRunSet.union(childSets, -1);
+				icInfoMap.get(concept.getConceptID()).setLeafCount(
+						leaves.size());
+				if (w != null) {
+					w.write(concept.getConceptID());
+					w.write("\t");
+					w.write(Integer.toString(leaves.size()));
+					w.write("\t");
+					for (int leafNumber : leaves.toArray()) {
+						w.write(conceptList.get(leafConcepts[leafNumber])
+								.getConceptID());
+						w.write(" ");
+					}
+					w.newLine();
+				}
+				for (ConcRel child : concept.getChildren()) {
+					if (--pendingParents[child.getNodeIndex()] == 0)
+						leafSets[child.getNodeIndex()] = null;
+				}
+			}
+			// only parents below the root will use this concept's leaves
+			for (ConcRel parent : concept.getParents()) {
+				if (descendants[parent.getNodeIndex()])
+					pendingParents[nodeIndex]++;
+			}
+			if (pendingParents[nodeIndex] > 0)
+				leafSets[nodeIndex] = leaves;
 		}
 	}
 
@@ -320,17 +332,24 @@ public class IntrinsicInfoContentEvaluatorImpl implements
 	@Override
 	public void evaluateIntrinsicInfoContent(String conceptGraphName,
 			String conceptGraphDir, ConceptGraph cg) throws IOException {
+		List<ConcRel> conceptList = cg.getConceptList();
+		ConcRel root = cg.getConceptMap().get(cg.getRoot());
+		log.info("sorting concepts");
+		int[] order = getTopologicalOrder(conceptGraphName, conceptList);
+		boolean[] descendants = new boolean[conceptList.size()];
+		int[] leafNumbers = new int[conceptList.size()];
+		int[] leafConcepts = numberLeaves(root, conceptList, descendants,
+				leafNumbers);
 		log.info("computing subsumer counts");
 		// compute the subsumer count
 		Map<String, IntrinsicICInfo> icInfoMap = new HashMap<String, IntrinsicICInfo>();
-		Map<String, Set<String>> subsumerMap = new WeakHashMap<String, Set<String>>();
-		short[] depthArray = new short[cg.getConceptList().size()];
+		short[] depthArray = new short[conceptList.size()];
 		BufferedWriter w = null;
 		try {
 			w = this.getOutputFile(conceptGraphName, conceptGraphDir,
 					"subsumer");
-			computeSubsumerCount(cg.getConceptMap().get(cg.getRoot()),
-					icInfoMap, subsumerMap, depthArray, w);
+			computeSubsumerCounts(conceptList, order, descendants, icInfoMap,
+					depthArray, w);
 		} finally {
 			if (w != null) {
 				try {
@@ -339,7 +358,6 @@ public class IntrinsicInfoContentEvaluatorImpl implements
 				}
 			}
 		}
-		subsumerMap = null;
 		log.info("computing max leaves");
 		// get the leaves in this concept graph
 		Set<String> leafSet = null;
@@ -355,19 +373,11 @@ public class IntrinsicInfoContentEvaluatorImpl implements
 			}
 		}
 		log.info("computing leaf counts");
-		@SuppressWarnings("unchecked")
-		SoftReference<HashSet<Integer>>[] leafCache = (SoftReference<HashSet<Integer>>[]) Array
-				.newInstance((new SoftReference<HashSet<Integer>>(new HashSet<Integer>()))
-						.getClass(), cg.getConceptList().size());
 		// compute leaf count of all concepts in this graph
 		try {
 			w = this.getOutputFile(conceptGraphName, conceptGraphDir, "leaf");
-			// for (String leaf : leafSet) {
-			// computeLeafCount(cg.getConceptMap().get(leaf), icInfoMap,
-			// leafCache, cg, w);
-			// }
-			this.getLeaves(cg.getConceptMap().get(cg.getRoot()), leafCache,
-					icInfoMap, cg, w, null);
+			computeLeafCounts(conceptList, order, descendants, leafNumbers,
+					leafConcepts, icInfoMap, w);
 		} finally {
 			if (w != null) {
 				try {
@@ -376,7 +386,6 @@ public class IntrinsicInfoContentEvaluatorImpl implements
 				}
 			}
 		}
-		leafCache = null;
 		log.info("storing intrinsic ic");
 		storeIntrinsicIC(conceptGraphName, leafSet.size(), icInfoMap,
 				depthArray, cg);
@@ -418,66 +427,6 @@ public class IntrinsicInfoContentEvaluatorImpl implements
 		return conceptDao;
 	}
 
-	// private TIntSet getLeaves(ConcRel concept,
-	// SoftReference<TIntSet>[] leafCache) {
-	// // look in cache
-	// SoftReference<TIntSet> refLeaves = leafCache[concept.getNodeIndex()];
-	// if (refLeaves != null && refLeaves.get() != null) {
-	// return refLeaves.get();
-	// }
-	// // not in cache - compute recursively
-	// TIntSet leaves = new TIntHashSet();
-	// leafCache[concept.getNodeIndex()] = new SoftReference<TIntSet>(leaves);
-	// if (concept.isLeaf()) {
-	// // for leaves, just add the concept id
-	// leaves.add(concept.getNodeIndex());
-	// } else {
-	// // for inner nodes, recurse
-	// for (ConcRel child : concept.getChildren()) {
-	// leaves.addAll(getLeaves(child, leafCache));
-	// }
-	// }
-	// return leaves;
-	// }
-
-	/**
-	 * recursively compute the subsumers of a concept
-	 * 
-	 * @param concept
-	 * @param subsumerMap
-	 * @return
-	 */
-	private Set<String> getSubsumers(ConcRel concept,
-			Map<String, Set<String>> subsumerMap, short depthArray[]) {
-		// look in cache
-		if (subsumerMap.containsKey(concept.getConceptID()))
-			return subsumerMap.get(concept.getConceptID());
-		// not in cache - compute recursively
-		Set<String> subsumers = new HashSet<String>();
-		boolean calcDepth = depthArray[concept.getNodeIndex()] == 0;
-		short parentMaxDepth = 0;
-		if (concept.getParents() != null && !concept.getParents().isEmpty()) {
-			// parents - recurse
-			for (ConcRel parent : concept.getParents()) {
-				subsumers.addAll(getSubsumers(parent, subsumerMap, depthArray));
-				// get the deepest parent
-				if (calcDepth) {
-					short parentDepth = depthArray[parent.getNodeIndex()];
-					if (parentDepth > parentMaxDepth)
-						parentMaxDepth = parentDepth;
-				}
-			}
-		}
-		if (calcDepth)
-			depthArray[concept.getNodeIndex()] = (short) (parentMaxDepth + 1);
-		// add the concept itself to the set of subsumers
-		subsumers.add(concept.getConceptID());
-		// add this to the cache - copy the key so that this can be gc'ed as
-		// needed
-		subsumerMap.put(new String(concept.getConceptID()), subsumers);
-		return subsumers;
-	}
-
 	public void setClassifierEvaluationDao(
 			ClassifierEvaluationDao classifierEvaluationDao) {
 		this.classifierEvaluationDao = classifierEvaluationDao;
@@ -70,6 +70,21 @@ public interface KernelUtil {
 			String name, String splitName, String experiment, String label,
 			int run, int fold, double param1, String param2);
 
+	/**
+	 * open the gram matrix file of the kernel evaluation for reading.
+	 * 
+	 * @return null if no gram matrix directory is configured or the kernel
+	 *         evaluation has no gram matrix file, in which case the gram
+	 *         matrix is loaded with
+	 *         {@link #loadGramMatrix(SortedSet, String, String, String, String, int, int, double, String)}
+	 * @throws IOException
+	 *             if the kernel evaluation into the gram matrix file has not
+	 *             finished
+	 */
+	public abstract GramMatrixFile openGramMatrix(String name,
+			String splitName, String experiment, String label, int run,
+			int fold, double param1, String param2) throws IOException;
+
 	/**
 	 * generate folds from the label to instance map. use properties specified
 	 * in props to generate folds.
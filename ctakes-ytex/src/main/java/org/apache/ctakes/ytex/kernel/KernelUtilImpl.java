@@ -19,6 +19,7 @@
 package org.apache.ctakes.ytex.kernel;
 
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -71,6 +72,7 @@ public class KernelUtilImpl implements KernelUtil {
 	private KernelEvaluationDao kernelEvaluationDao = null;
 	private PlatformTransactionManager transactionManager;
 	private FoldGenerator foldGenerator = null;
+	private String gramMatrixDir = null;
 
 	public FoldGenerator getFoldGenerator() {
 		return foldGenerator;
@@ -80,6 +82,18 @@ public class KernelUtilImpl implements KernelUtil {
 		this.foldGenerator = foldGenerator;
 	}
 
+	public String getGramMatrixDir() {
+		return gramMatrixDir;
+	}
+
+	/**
+	 * directory with gram matrix files written by the corpus kernel
+	 * evaluator. If not set, gram matrices are loaded from the database.
+	 */
+	public void setGramMatrixDir(String gramMatrixDir) {
+		this.gramMatrixDir = gramMatrixDir;
+	}
+
 	private Map<Long, Integer> createInstanceIdToIndexMap(
 			SortedSet<Long> instanceIDs) {
 		Map<Long, Integer> instanceIdToIndexMap = new HashMap<Long, Integer>(
@@ -162,12 +176,10 @@ public class KernelUtilImpl implements KernelUtil {
 		return transactionManager;
 	}
 
-	@Override
-	public double[][] loadGramMatrix(SortedSet<Long> instanceIds, String name,
-			String splitName, String experiment, String label, int run,
-			int fold, double param1, String param2) {
+	private KernelEvaluation getKernelEval(String name, String splitName,
+			String experiment, String label, int run, int fold, double param1,
+			String param2) {
 		int foldId = 0;
-		double[][] gramMatrix = null;
 		if (run != 0 && fold != 0) {
 			CrossValidationFold f = this.classifierEvaluationDao
 					.getCrossValidationFold(name, splitName, label, run, fold);
@@ -180,13 +192,43 @@ public class KernelUtilImpl implements KernelUtil {
 			log.warn("could not find kernelEvaluation.  name=" + name
 					+ ", experiment=" + experiment + ", label=" + label
 					+ ", fold=" + fold + ", run=" + run);
-		} else {
+		}
+		return kernelEval;
+	}
+
+	@Override
+	public double[][] loadGramMatrix(SortedSet<Long> instanceIds, String name,
+			String splitName, String experiment, String label, int run,
+			int fold, double param1, String param2) {
+		double[][] gramMatrix = null;
+		KernelEvaluation kernelEval = getKernelEval(name, splitName,
+				experiment, label, run, fold, param1, param2);
+		if (kernelEval != null) {
 			gramMatrix = new double[instanceIds.size()][instanceIds.size()];
 			fillGramMatrix(kernelEval, instanceIds, gramMatrix);
 		}
 		return gramMatrix;
 	}
 
+	@Override
+	public GramMatrixFile openGramMatrix(String name, String splitName,
+			String experiment, String label, int run, int fold, double param1,
+			String param2) throws IOException {
+		if (gramMatrixDir == null || gramMatrixDir.length() == 0)
+			return null;
+		KernelEvaluation kernelEval = getKernelEval(name, splitName,
+				experiment, label, run, fold, param1, param2);
+		if (kernelEval == null)
+			return null;
+		File file = GramMatrixFile.getFile(gramMatrixDir,
+				kernelEval.getKernelEvaluationId());
+		if (!file.exists())
+			return null;
+		if (log.isInfoEnabled())
+			log.info("reading gram matrix from " + file);
+		return GramMatrixFile.openEvaluated(file);
+	}
+
 	/**
 	 * this can be very large - avoid loading the entire jdbc ResultSet into
 	 * memory
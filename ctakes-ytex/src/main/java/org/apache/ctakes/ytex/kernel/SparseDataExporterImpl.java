@@ -18,6 +18,7 @@
  */
 package org.apache.ctakes.ytex.kernel;
 
+import java.io.File;
 import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -154,6 +155,15 @@ public class SparseDataExporterImpl implements SparseDataExporter {
 			SparseDataFormatter formatter, Properties properties,
 			BagOfWordsDecorator bDecorator) throws IOException {
 		String scope = properties.getProperty("scope", null);
+		if (scope == null
+				&& bDecorator == null
+				&& formatter instanceof StreamingSparseDataFormatter
+				&& "true".equalsIgnoreCase(properties
+						.getProperty(StreamingSparseDataFormatter.STREAM))) {
+			this.exportDataStreaming(instanceLabel,
+					(StreamingSparseDataFormatter) formatter, properties);
+			return;
+		}
 		SparseData sparseData = null;
 		if (scope == null) {
 			sparseData = this.loadData(instanceLabel,
@@ -210,6 +220,40 @@ public class SparseDataExporterImpl implements SparseDataExporter {
 		}
 	}
 
+	/**
+	 * export all folds in a single pass without materializing a SparseData.
+	 * the numericWordQuery and nominalWordQuery must be ordered by instance
+	 * id. optional properties:
+	 * <ul>
+	 * <li>fetchSize - jdbc fetch size for the attribute queries. for mysql use
+	 * -2147483648 (Integer.MIN_VALUE) to stream the results.
+	 * <li>spoolDir - directory for temporary files, defaults to java.io.tmpdir
+	 * </ul>
+	 */
+	protected void exportDataStreaming(InstanceData instanceLabel,
+			StreamingSparseDataFormatter formatter, Properties properties)
+			throws IOException {
+		String spoolDir = properties.getProperty("spoolDir");
+		StreamingSparseData sparseData = new StreamingSparseData(
+				spoolDir != null && spoolDir.length() > 0 ? new File(spoolDir)
+						: null);
+		try {
+			this.loadStreamingData(sparseData,
+					properties.getProperty("numericWordQuery"),
+					properties.getProperty("nominalWordQuery"),
+					properties.getProperty("prepareScript"),
+					properties.getProperty("prepareScriptDelimiter", ";"),
+					properties.getProperty("fetchSize"));
+			if (log.isInfoEnabled())
+				log.info("loaded " + sparseData.getAttributeCount()
+						+ " attributes, exporting");
+			formatter.initializeExport(instanceLabel, properties, null);
+			formatter.exportStream(instanceLabel, sparseData);
+		} finally {
+			sparseData.close();
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -436,6 +480,73 @@ public class SparseDataExporterImpl implements SparseDataExporter {
 		return sparseData;
 	}
 
+	/**
+	 * run the numeric and then the nominal attribute queries, adding the rows
+	 * to sparseData as they are read.
+	 */
+	protected void loadStreamingData(final StreamingSparseData sparseData,
+			String instanceNumericWordQuery, String instanceNominalWordQuery,
+			final String prepareScript, final String prepareScriptDelimiter,
+			String fetchSize) {
+		JdbcTemplate streamJdbcTemplate = new JdbcTemplate(
+				this.jdbcTemplate.getDataSource());
+		if (fetchSize != null && fetchSize.length() > 0)
+			streamJdbcTemplate.setFetchSize(Integer.parseInt(fetchSize));
+		final NamedParameterJdbcTemplate streamNamedJdbcTemplate = new NamedParameterJdbcTemplate(
+				streamJdbcTemplate);
+		final Map<String, Object> params = new HashMap<String, Object>();
+		if (instanceNumericWordQuery != null
+				&& instanceNumericWordQuery.trim().length() > 0) {
+			final String sql = instanceNumericWordQuery;
+			txTemplateNew.execute(new TransactionCallback<Object>() {
+				@Override
+				public Object doInTransaction(TransactionStatus txStatus) {
+					prepare(prepareScript, prepareScriptDelimiter, params);
+					streamNamedJdbcTemplate.query(sql, params,
+							new RowCallbackHandler() {
+								@Override
+								public void processRow(ResultSet rs)
+										throws SQLException {
+									try {
+										sparseData.addNumericWord(
+												rs.getLong(1), rs.getString(2),
+												rs.getDouble(3));
+									} catch (IOException e) {
+										throw new RuntimeException(e);
+									}
+								}
+							});
+					return null;
+				}
+			});
+		}
+		if (instanceNominalWordQuery != null
+				&& instanceNominalWordQuery.trim().length() > 0) {
+			final String sql = instanceNominalWordQuery;
+			txTemplateNew.execute(new TransactionCallback<Object>() {
+				@Override
+				public Object doInTransaction(TransactionStatus txStatus) {
+					prepare(prepareScript, prepareScriptDelimiter, params);
+					streamNamedJdbcTemplate.query(sql, params,
+							new RowCallbackHandler() {
+								@Override
+								public void processRow(ResultSet rs)
+										throws SQLException {
+									try {
+										sparseData.addNominalWord(
+												rs.getLong(1), rs.getString(2),
+												rs.getString(3));
+									} catch (IOException e) {
+										throw new RuntimeException(e);
+									}
+								}
+							});
+					return null;
+				}
+			});
+		}
+	}
+
 	public void setDataSource(DataSource ds) {
 		this.jdbcTemplate = new JdbcTemplate(ds);		
 		this.namedJdbcTemplate = new NamedParameterJdbcTemplate(ds);
@@ -0,0 +1,364 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.kernel;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Alternative to {@link SparseData} for exporting large data sets. The
+ * instance attribute queries must return rows ordered by instance id. As rows
+ * arrive, attribute names are interned to 1-based int ids and each
+ * instance's attributes are spooled as a sparse vector to a temporary file,
+ * so only the attribute names and one instance are held in memory. Numeric
+ * attributes must all be added before the nominal attributes. Every nominal
+ * attribute - value pair gets its own id, as in
+ * {@link BaseSparseDataFormatter#exportAttributeNames(BufferedWriter, SparseData)}.
+ * <p>
+ * If an instance has the same attribute more than once, the last value wins,
+ * as with the maps in SparseData.
+ */
+public class StreamingSparseData implements Closeable {
+	/**
+	 * reads the spooled instances back in instance id order
+	 */
+	public class Cursor implements Closeable {
+		private SpoolReader readers[];
+		private Row row = new Row();
+
+		private Cursor() throws IOException {
+			readers = new SpoolReader[] { new SpoolReader(numericSpool.file),
+					new SpoolReader(nominalSpool.file) };
+		}
+
+		public void close() throws IOException {
+			for (SpoolReader reader : readers)
+				reader.close();
+		}
+
+		/**
+		 * 
+		 * @param instanceId
+		 *            must be greater than the instance id of the previous call
+		 * @return attributes of the instance, sorted by attribute id. empty if
+		 *         the instance has no attributes. the row is reused by the
+		 *         next call.
+		 */
+		public Row getRow(long instanceId) throws IOException {
+			row.size = 0;
+			// numeric ids are all assigned before nominal ids, so appending
+			// the nominal attributes keeps the row sorted
+			for (SpoolReader reader : readers)
+				reader.read(instanceId, row);
+			return row;
+		}
+	}
+
+	/**
+	 * sparse vector of attribute ids and values
+	 */
+	public static class Row {
+		private int ids[] = new int[16];
+		private int size = 0;
+		private double values[] = new double[16];
+
+		private void add(int id, double value) {
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, size * 2);
+				values = Arrays.copyOf(values, size * 2);
+			}
+			ids[size] = id;
+			values[size] = value;
+			size++;
+		}
+
+		public int getId(int i) {
+			return ids[i];
+		}
+
+		public double getValue(int i) {
+			return values[i];
+		}
+
+		public int size() {
+			return size;
+		}
+	}
+
+	/**
+	 * buffers the attributes of the current instance and writes them to the
+	 * spool file when the next instance starts. A record is the instance id,
+	 * the attribute count, and the attribute id - value pairs.
+	 */
+	private static class Spool {
+		private File file;
+		private int ids[] = new int[16];
+		private long instanceId = -1;
+		private int keys[] = new int[16];
+		private DataOutputStream out;
+		private int size = 0;
+		private double values[] = new double[16];
+
+		private Spool(File spoolDir) throws IOException {
+			file = File.createTempFile("ytex-sparse", ".spool", spoolDir);
+			out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(file)));
+		}
+
+		/**
+		 * @param key
+		 *            attribute - only the last id with the same key is kept
+		 */
+		private void add(long instanceId, int key, int id, double value)
+				throws IOException {
+			if (instanceId != this.instanceId) {
+				if (instanceId < this.instanceId)
+					throw new IllegalStateException(
+							"instance attribute query must be ordered by instance id, found "
+									+ instanceId + " after " + this.instanceId);
+				writeRow();
+				this.instanceId = instanceId;
+			}
+			if (size == ids.length) {
+				keys = Arrays.copyOf(keys, size * 2);
+				ids = Arrays.copyOf(ids, size * 2);
+				values = Arrays.copyOf(values, size * 2);
+			}
+			keys[size] = key;
+			ids[size] = id;
+			values[size] = value;
+			size++;
+		}
+
+		private void close() throws IOException {
+			if (out != null) {
+				writeRow();
+				out.close();
+				out = null;
+			}
+		}
+
+		private void writeRow() throws IOException {
+			if (size == 0)
+				return;
+			// sort by key then position, and keep the last position per key
+			long order[] = new long[size];
+			for (int i = 0; i < size; i++)
+				order[i] = ((long) keys[i] << 32) | i;
+			Arrays.sort(order);
+			int count = 0;
+			for (int i = 0; i < size; i++) {
+				if (i + 1 == size
+						|| (order[i] >>> 32) != (order[i + 1] >>> 32)) {
+					int pos = (int) order[i];
+					order[count++] = ((long) ids[pos] << 32) | pos;
+				}
+			}
+			// then sort the survivors by id
+			Arrays.sort(order, 0, count);
+			out.writeLong(instanceId);
+			out.writeInt(count);
+			for (int i = 0; i < count; i++) {
+				int pos = (int) order[i];
+				out.writeInt(ids[pos]);
+				out.writeDouble(values[pos]);
+			}
+			size = 0;
+		}
+	}
+
+	private static class SpoolReader {
+		private int count;
+		private DataInputStream in;
+		private long instanceId;
+
+		private SpoolReader(File file) throws IOException {
+			in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(file)));
+			next();
+		}
+
+		private void close() throws IOException {
+			in.close();
+		}
+
+		private void next() throws IOException {
+			try {
+				instanceId = in.readLong();
+				count = in.readInt();
+			} catch (EOFException e) {
+				instanceId = Long.MAX_VALUE;
+				count = 0;
+			}
+		}
+
+		/**
+		 * skip instances before instanceId, and add the attributes of
+		 * instanceId to the row
+		 */
+		private void read(long instanceId, Row row) throws IOException {
+			while (this.instanceId < instanceId) {
+				for (int i = 0; i < count; i++) {
+					in.readInt();
+					in.readDouble();
+				}
+				next();
+			}
+			if (this.instanceId == instanceId) {
+				for (int i = 0; i < count; i++)
+					row.add(in.readInt(), in.readDouble());
+				next();
+			}
+		}
+	}
+
+	/**
+	 * attribute id - 1 to attribute name
+	 */
+	private List<String> attributeNames = new ArrayList<String>();
+	/**
+	 * attribute id - 1 to nominal value, null for numeric attributes
+	 */
+	private List<String> attributeValues = new ArrayList<String>();
+	private Spool nominalSpool;
+	/**
+	 * nominal attribute - value to attribute id
+	 */
+	private Map<String, Map<String, Integer>> nominalValueIds = new HashMap<String, Map<String, Integer>>();
+	/**
+	 * nominal attribute to key for de-duplicating values of an instance
+	 */
+	private Map<String, Integer> nominalWordKeys = new HashMap<String, Integer>();
+	/**
+	 * numeric attribute to attribute id
+	 */
+	private Map<String, Integer> numericIds = new HashMap<String, Integer>();
+
+	private Spool numericSpool;
+
+	/**
+	 * 
+	 * @param spoolDir
+	 *            directory for the temporary spool files, null for the
+	 *            default temporary directory
+	 */
+	public StreamingSparseData(File spoolDir) throws IOException {
+		numericSpool = new Spool(spoolDir);
+		try {
+			nominalSpool = new Spool(spoolDir);
+		} catch (IOException e) {
+			numericSpool.close();
+			numericSpool.file.delete();
+			throw e;
+		}
+	}
+
+	public void addNominalWord(long instanceId, String word, String wordValue)
+			throws IOException {
+		numericSpool.close();
+		Map<String, Integer> valueIds = nominalValueIds.get(word);
+		if (valueIds == null) {
+			valueIds = new HashMap<String, Integer>();
+			nominalValueIds.put(word, valueIds);
+			nominalWordKeys.put(word, nominalWordKeys.size());
+		}
+		Integer id = valueIds.get(wordValue);
+		if (id == null) {
+			id = addAttribute(word, wordValue);
+			valueIds.put(wordValue, id);
+		}
+		nominalSpool.add(instanceId, nominalWordKeys.get(word), id, 1d);
+	}
+
+	public void addNumericWord(long instanceId, String word, double wordValue)
+			throws IOException {
+		if (numericSpool.out == null)
+			throw new IllegalStateException(
+					"numeric attributes must be added before nominal attributes");
+		Integer id = numericIds.get(word);
+		if (id == null) {
+			id = addAttribute(word, null);
+			numericIds.put(word, id);
+		}
+		numericSpool.add(instanceId, id, id, wordValue);
+	}
+
+	private int addAttribute(String word, String wordValue) {
+		attributeNames.add(word);
+		attributeValues.add(wordValue);
+		return attributeNames.size();
+	}
+
+	/**
+	 * close and delete the spool files
+	 */
+	public void close() throws IOException {
+		try {
+			numericSpool.close();
+			nominalSpool.close();
+		} finally {
+			numericSpool.file.delete();
+			nominalSpool.file.delete();
+		}
+	}
+
+	public int getAttributeCount() {
+		return attributeNames.size();
+	}
+
+	/**
+	 * finish loading and open a cursor over the instances
+	 */
+	public Cursor openCursor() throws IOException {
+		numericSpool.close();
+		nominalSpool.close();
+		return new Cursor();
+	}
+
+	/**
+	 * write the attribute names in id order, one per line. nominal attributes
+	 * with more than one value are written as name tab value.
+	 */
+	public void writeAttributeNames(BufferedWriter w) throws IOException {
+		for (int i = 0; i < attributeNames.size(); i++) {
+			String word = attributeNames.get(i);
+			String wordValue = attributeValues.get(i);
+			w.write(word);
+			if (wordValue != null && nominalValueIds.get(word).size() > 1) {
+				w.write("\t");
+				w.write(wordValue);
+			}
+			w.write("\n");
+		}
+	}
+}
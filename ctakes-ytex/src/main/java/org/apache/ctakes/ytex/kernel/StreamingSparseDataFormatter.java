@@ -0,0 +1,45 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.kernel;
+
+import java.io.IOException;
+
+/**
+ * formatter that can export all labels, runs, and folds in a single pass over
+ * a {@link StreamingSparseData}. Used by the SparseDataExporter instead of the
+ * per fold calls when the <tt>stream</tt> property is true.
+ */
+public interface StreamingSparseDataFormatter extends SparseDataFormatter {
+	/**
+	 * property key; if true, export in a single pass
+	 */
+	public static final String STREAM = "stream";
+
+	/**
+	 * export all train/test sets. called after
+	 * {@link #initializeExport(InstanceData, java.util.Properties, SparseData)}
+	 * , which gets a null SparseData.
+	 * 
+	 * @param instanceLabel
+	 * @param sparseData
+	 * @throws IOException
+	 */
+	void exportStream(InstanceData instanceLabel, StreamingSparseData sparseData)
+			throws IOException;
+}
@@ -52,6 +52,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.ctakes.ytex.kernel.FileUtil;
 import org.apache.ctakes.ytex.kernel.IntrinsicInfoContentEvaluator;
 import org.apache.ctakes.ytex.kernel.KernelContextHolder;
+import org.apache.ctakes.ytex.kernel.model.CompactConceptGraph;
 import org.apache.ctakes.ytex.kernel.model.ConcRel;
 import org.apache.ctakes.ytex.kernel.model.ConceptGraph;
 import org.hibernate.SessionFactory;
@@ -281,7 +282,9 @@ public class ConceptDaoImpl implements ConceptDao {
 	public void createConceptGraph(String dir, String name, String query,
 			final boolean checkCycle, final Set<String> forbiddenConcepts)
 			throws IOException {
-		ConceptGraph conceptGraph = this.readConceptGraph(name);
+		ConceptGraph conceptGraph = this.readCompactConceptGraph(name);
+		if (conceptGraph == null)
+			conceptGraph = this.readConceptGraph(name);
 		if (conceptGraph != null) {
 			if (log.isWarnEnabled())
 				log.warn("createConceptGraph(): concept graph already exists, will not create a new one.  Delete existing concept graph if you want to recreate it.");
@@ -352,9 +355,15 @@ public class ConceptDaoImpl implements ConceptDao {
 	 * .Set)
 	 */
 	public ConceptGraph getConceptGraph(String name) {
-		ConceptGraph cg = this.readConceptGraph(name);
+		// prefer the compact graph - it is memory-mapped and needs no
+		// initialization
+		ConceptGraph cg = this.readCompactConceptGraph(name);
+		if (cg == null) {
+			cg = this.readConceptGraph(name);
+			if (cg != null)
+				this.initializeConceptGraph(cg);
+		}
 		if (cg != null) {
-			this.initializeConceptGraph(cg);
 			if (log.isInfoEnabled()) {
 				log.info(String.format("concept graph %s, vertices: %s", name,
 						cg.getConceptList().size()));
@@ -478,6 +487,35 @@ public class ConceptDaoImpl implements ConceptDao {
 		return cg;
 	}
 
+	/**
+	 * load the compact concept graph [name].csr from the classpath or the
+	 * default concept graph directory.
+	 * 
+	 * @param name
+	 * @return null if there is no compact concept graph
+	 */
+	private ConceptGraph readCompactConceptGraph(String name) {
+		String resource = CONCEPT_GRAPH_PATH + name
+				+ CompactConceptGraph.FILE_EXTENSION;
+		// the file has to be mapped, so only a classpath directory will do
+		File f = urlToFile(this.getClass().getClassLoader()
+				.getResource(resource));
+		if (f == null) {
+			String cdir = this.getDefaultConceptGraphDir();
+			if (cdir != null)
+				f = new File(cdir + "/" + name
+						+ CompactConceptGraph.FILE_EXTENSION);
+		}
+		if (f == null || !f.exists())
+			return null;
+		log.info("loading compact concept graph from " + f.getAbsolutePath());
+		try {
+			return CompactConceptGraph.read(f).toConceptGraph();
+		} catch (IOException ioe) {
+			throw new RuntimeException(ioe);
+		}
+	}
+
 	private ConceptGraph readConceptGraph(String name) {
 		ObjectInputStream is = null;
 		try {
@@ -608,6 +646,14 @@ public class ConceptDaoImpl implements ConceptDao {
 					e.printStackTrace();
 				}
 		}
+		File csrFile = new File(outputDir + "/" + name
+				+ CompactConceptGraph.FILE_EXTENSION);
+		log.info("writing compact concept graph: " + csrFile.getAbsolutePath());
+		try {
+			CompactConceptGraph.write(cg, csrFile);
+		} catch (IOException ioe) {
+			throw new RuntimeException(ioe);
+		}
 	}
 
 }
@@ -18,6 +18,8 @@
  */
 package org.apache.ctakes.ytex.kernel.evaluator;
 
+import java.io.File;
+import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -26,8 +28,10 @@ import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import javax.sql.DataSource;
@@ -43,6 +47,7 @@ import org.apache.commons.cli.ParseException;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ctakes.ytex.dao.DBUtil;
+import org.apache.ctakes.ytex.kernel.GramMatrixFile;
 import org.apache.ctakes.ytex.kernel.dao.KernelEvaluationDao;
 import org.apache.ctakes.ytex.kernel.model.KernelEvaluation;
 import org.apache.ctakes.ytex.kernel.model.KernelEvaluationInstance;
@@ -97,9 +102,60 @@ public class CorpusKernelEvaluatorImpl implements CorpusKernelEvaluator {
 		}
 	}
 
+	/**
+	 * evaluate the kernel on one tile of a gram matrix file
+	 */
+	public class TileEvaluator implements Callable<Object> {
+		GramMatrixFile gramMatrix;
+		Node[] nodes;
+		int tile;
+
+		public TileEvaluator(GramMatrixFile gramMatrix, Node[] nodes, int tile) {
+			this.gramMatrix = gramMatrix;
+			this.nodes = nodes;
+			this.tile = tile;
+		}
+
+		@Override
+		public Object call() throws Exception {
+			int tileSize = gramMatrix.getTileSize();
+			int rowStart = gramMatrix.getTileRow(tile) * tileSize;
+			int rowEnd = Math.min(rowStart + tileSize,
+					gramMatrix.getEvalRows());
+			int columnStart = gramMatrix.getTileColumn(tile) * tileSize;
+			int columnEnd = Math.min(columnStart + tileSize, nodes.length);
+			for (int i = rowStart; i < rowEnd; i++) {
+				Node root1 = nodes[i];
+				if (root1 == null)
+					continue;
+				// diagonal tiles hold the upper triangle only
+				for (int j = Math.max(i, columnStart); j < columnEnd; j++) {
+					Node root2 = nodes[j];
+					if (root2 != null)
+						gramMatrix.set(i, j,
+								instanceKernel.evaluate(root1, root2));
+				}
+			}
+			gramMatrix.markTileDone(tile);
+			if (gramMatrix.getPendingTileCount() >= CHECKPOINT_TILES) {
+				gramMatrix.checkpoint();
+				if (log.isInfoEnabled())
+					log.info("checkpoint " + gramMatrix.getFile()
+							+ " after tile " + tile);
+			}
+			return null;
+		}
+	}
+
 	private static final Log log = LogFactory
 			.getLog(CorpusKernelEvaluator.class);
 
+	/**
+	 * number of evaluated tiles that may be lost if the evaluation of a gram
+	 * matrix file is interrupted
+	 */
+	private static final int CHECKPOINT_TILES = 16;
+
 	@SuppressWarnings("static-access")
 	private static Options initOptions() {
 		Options options = new Options();
@@ -243,6 +299,9 @@ public class CorpusKernelEvaluatorImpl implements CorpusKernelEvaluator {
 	private double param1 = 0;
 
 	private String param2 = DBUtil.getEmptyString();	
+	private String gramMatrixDir = null;
+	private int gramMatrixTileSize = GramMatrixFile.DEFAULT_TILE_SIZE;
+	private boolean gramMatrixSinglePrecision = false;
 	private PlatformTransactionManager transactionManager;
 	private TreeMappingInfo treeMappingInfo;
 	private TransactionTemplate txTemplate;
@@ -276,6 +335,11 @@ public class CorpusKernelEvaluatorImpl implements CorpusKernelEvaluator {
 	@Override
 	public void evaluateKernelOnCorpus(Map<Long, Node> instanceIDMap, int nMod,
 			boolean evalTest) throws InterruptedException {
+		if (isGramMatrixFile()) {
+			// one file, nMod threads working on its tiles
+			evaluateGramMatrix(instanceIDMap, 0, 0, evalTest, nMod);
+			return;
+		}
 		ExecutorService svc = Executors.newFixedThreadPool(nMod);
 		List<Callable<Object>> taskList = new ArrayList<Callable<Object>>(nMod);
 		for (int nSlice = 1; nSlice <= nMod; nSlice++) {
@@ -289,15 +353,16 @@ public class CorpusKernelEvaluatorImpl implements CorpusKernelEvaluator {
 
 	public void evaluateKernelOnCorpus(final Map<Long, Node> instanceIDMap,
 			int nMod, int nSlice, boolean evalTest) {
-		KernelEvaluation kernelEvaluationTmp = new KernelEvaluation();
-		kernelEvaluationTmp.setExperiment(this.getExperiment());
-		kernelEvaluationTmp.setFoldId(this.getFoldId());
-		kernelEvaluationTmp.setLabel(this.getLabel());
-		kernelEvaluationTmp.setCorpusName(this.getName());
-		kernelEvaluationTmp.setParam1(getParam1());
-		kernelEvaluationTmp.setParam2(getParam2());
-		final KernelEvaluation kernelEvaluation = this.kernelEvaluationDao
-				.storeKernelEval(kernelEvaluationTmp);
+		if (isGramMatrixFile()) {
+			try {
+				evaluateGramMatrix(instanceIDMap, nMod, nSlice, evalTest, 1);
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(ie);
+			}
+			return;
+		}
+		final KernelEvaluation kernelEvaluation = storeKernelEval();
 		final List<Long> documentIds = new ArrayList<Long>();
 		final List<Long> testDocumentIds = new ArrayList<Long>();
 		loadDocumentIds(documentIds, testDocumentIds, instanceIDQuery);
@@ -358,6 +423,95 @@ public class CorpusKernelEvaluatorImpl implements CorpusKernelEvaluator {
 		}
 	}
 
+	private KernelEvaluation storeKernelEval() {
+		KernelEvaluation kernelEvaluationTmp = new KernelEvaluation();
+		kernelEvaluationTmp.setExperiment(this.getExperiment());
+		kernelEvaluationTmp.setFoldId(this.getFoldId());
+		kernelEvaluationTmp.setLabel(this.getLabel());
+		kernelEvaluationTmp.setCorpusName(this.getName());
+		kernelEvaluationTmp.setParam1(getParam1());
+		kernelEvaluationTmp.setParam2(getParam2());
+		return this.kernelEvaluationDao.storeKernelEval(kernelEvaluationTmp);
+	}
+
+	private boolean isGramMatrixFile() {
+		return gramMatrixDir != null && gramMatrixDir.length() > 0;
+	}
+
+	/**
+	 * evaluate the kernel into a gram matrix file in gramMatrixDir instead of
+	 * the kernel_eval_instance table. The training instances are evaluated
+	 * against all instances, the test instances only against the training
+	 * instances.
+	 * <p/>
+	 * The matrix is evaluated tile by tile; with nMod &gt; 0, the slice
+	 * evaluates every nMod-th tile, so slices in separate processes can share
+	 * the file. Tiles that are already done are skipped, so an interrupted
+	 * evaluation continues where it stopped.
+	 * 
+	 * @param nThreads
+	 *            number of threads evaluating tiles
+	 */
+	private void evaluateGramMatrix(Map<Long, Node> instanceIDMap, int nMod,
+			int nSlice, boolean evalTest, int nThreads)
+			throws InterruptedException {
+		KernelEvaluation kernelEvaluation = storeKernelEval();
+		List<Long> documentIds = new ArrayList<Long>();
+		List<Long> testDocumentIds = new ArrayList<Long>();
+		loadDocumentIds(documentIds, testDocumentIds, instanceIDQuery);
+		if (!evalTest) {
+			testDocumentIds.clear();
+		}
+		// training instances first, they are the rows that get evaluated
+		long[] instanceIds = new long[documentIds.size()
+				+ testDocumentIds.size()];
+		int index = 0;
+		for (long instanceId : documentIds)
+			instanceIds[index++] = instanceId;
+		for (long instanceId : testDocumentIds)
+			instanceIds[index++] = instanceId;
+		Node[] nodes = new Node[instanceIds.length];
+		for (int i = 0; i < instanceIds.length; i++)
+			nodes[i] = instanceIDMap.get(instanceIds[i]);
+		File file = GramMatrixFile.getFile(gramMatrixDir,
+				kernelEvaluation.getKernelEvaluationId());
+		GramMatrixFile gramMatrix = null;
+		ExecutorService svc = null;
+		try {
+			gramMatrix = GramMatrixFile.create(file, instanceIds,
+					documentIds.size(), gramMatrixTileSize,
+					gramMatrixSinglePrecision);
+			List<Callable<Object>> taskList = new ArrayList<Callable<Object>>();
+			for (int tile = 0; tile < gramMatrix.getTileCount(); tile++) {
+				if ((nMod == 0 || tile % nMod == nSlice - 1)
+						&& gramMatrix.isTileEvaluated(tile)
+						&& !gramMatrix.isTileDone(tile))
+					taskList.add(new TileEvaluator(gramMatrix, nodes, tile));
+			}
+			if (log.isInfoEnabled())
+				log.info("evaluating " + taskList.size() + " of "
+						+ gramMatrix.getTileCount() + " tiles of " + file);
+			svc = Executors.newFixedThreadPool(Math.max(1, nThreads));
+			for (Future<Object> future : svc.invokeAll(taskList)) {
+				future.get();
+			}
+		} catch (IOException ioe) {
+			throw new RuntimeException(ioe);
+		} catch (ExecutionException ee) {
+			throw new RuntimeException(ee.getCause());
+		} finally {
+			if (svc != null)
+				svc.shutdown();
+			if (gramMatrix != null) {
+				try {
+					gramMatrix.close();
+				} catch (IOException ioe) {
+					log.error("error closing " + file, ioe);
+				}
+			}
+		}
+	}
+
 	public DataSource getDataSource() {
 		return dataSource;
 	}
@@ -402,6 +556,18 @@ public class CorpusKernelEvaluatorImpl implements CorpusKernelEvaluator {
 		return param2;
 	}
 
+	public String getGramMatrixDir() {
+		return gramMatrixDir;
+	}
+
+	public int getGramMatrixTileSize() {
+		return gramMatrixTileSize;
+	}
+
+	public boolean isGramMatrixSinglePrecision() {
+		return gramMatrixSinglePrecision;
+	}
+
 	public PlatformTransactionManager getTransactionManager() {
 		return transactionManager;
 	}
@@ -499,6 +665,25 @@ public class CorpusKernelEvaluatorImpl implements CorpusKernelEvaluator {
 		this.param2 = param2;
 	}
 
+	/**
+	 * directory for gram matrix files. If set, the kernel is evaluated into a
+	 * {@link GramMatrixFile} instead of the kernel_eval_instance table.
+	 */
+	public void setGramMatrixDir(String gramMatrixDir) {
+		this.gramMatrixDir = gramMatrixDir;
+	}
+
+	public void setGramMatrixTileSize(int gramMatrixTileSize) {
+		this.gramMatrixTileSize = gramMatrixTileSize;
+	}
+
+	/**
+	 * store floats instead of doubles in the gram matrix file
+	 */
+	public void setGramMatrixSinglePrecision(boolean gramMatrixSinglePrecision) {
+		this.gramMatrixSinglePrecision = gramMatrixSinglePrecision;
+	}
+
 	public void setTransactionManager(
 			PlatformTransactionManager transactionManager) {
 		this.transactionManager = transactionManager;
@@ -0,0 +1,195 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.kernel.metric;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.ctakes.ytex.kernel.model.ConcRel;
+import org.apache.ctakes.ytex.kernel.model.ConceptGraph;
+
+/**
+ * Compute least common subsumers from the ancestor closures of concepts.
+ * <p/>
+ * The closure of a concept is the sorted array of the indices of the concept
+ * and all its ancestors, together with the shortest distance to each. It is
+ * computed by a breadth-first search on first use and then kept for the life
+ * of the engine, so repeated similarity computations don't revisit the graph.
+ * The lcses of two concepts are the common ancestors that minimize the sum of
+ * the distances to the concepts, found by merging the two closures.
+ * <p/>
+ * Unlike {@link ConcRel#getLeastCommonConcept(ConcRel, ConcRel, Set, java.util.Map)}
+ * this does not prune the search once a candidate is found, so it always
+ * returns the minimal path; the results only differ when the pruned search
+ * misses a shorter path through the parent of a candidate. Paths are not
+ * computed; use ConcRel for those.
+ * <p/>
+ * Instances are thread safe.
+ */
+public class AncestorClosureLCS {
+	/**
+	 * ancestors of a concept sorted by index, and the distance to each
+	 */
+	private static class Closure {
+		final int[] ancestors;
+		final short[] distances;
+
+		Closure(int[] ancestors, short[] distances) {
+			this.ancestors = ancestors;
+			this.distances = distances;
+		}
+	}
+
+	/**
+	 * scratch space for the breadth-first search
+	 */
+	private static class Search {
+		int[] visited;
+		int stamp = 0;
+		int[] queue = new int[64];
+		short[] queueDistances = new short[64];
+
+		Search(int nodeCount) {
+			visited = new int[nodeCount];
+		}
+	}
+
+	private final List<ConcRel> conceptList;
+	private final AtomicReferenceArray<Closure> closures;
+	private final ThreadLocal<Search> searches;
+
+	public AncestorClosureLCS(ConceptGraph cg) {
+		this.conceptList = cg.getConceptList();
+		final int nodeCount = conceptList.size();
+		this.closures = new AtomicReferenceArray<Closure>(nodeCount);
+		this.searches = new ThreadLocal<Search>() {
+			@Override
+			protected Search initialValue() {
+				return new Search(nodeCount);
+			}
+		};
+	}
+
+	/**
+	 * get the least common subsumers of 2 concepts and the length of the path
+	 * between them.
+	 * 
+	 * @param c1
+	 *            concept1
+	 * @param c2
+	 *            concept2
+	 * @param lcses
+	 *            filled with the least common subsumers
+	 * @return path length, i.e. number of concepts on the path between c1 and
+	 *         c2 via the lcs inclusive; -1 if no lcs
+	 */
+	public int getLeastCommonConcept(ConcRel c1, ConcRel c2,
+			Set<ConcRel> lcses) {
+		Closure cl1 = getClosure(c1.getNodeIndex());
+		Closure cl2 = getClosure(c2.getNodeIndex());
+		int minDist = Integer.MAX_VALUE;
+		int i = 0;
+		int j = 0;
+		// merge the sorted closures; keep all common ancestors with the
+		// shortest path
+		while (i < cl1.ancestors.length && j < cl2.ancestors.length) {
+			int a1 = cl1.ancestors[i];
+			int a2 = cl2.ancestors[j];
+			if (a1 < a2) {
+				i++;
+			} else if (a1 > a2) {
+				j++;
+			} else {
+				int dist = cl1.distances[i] + cl2.distances[j];
+				if (dist <= minDist) {
+					if (dist < minDist) {
+						lcses.clear();
+						minDist = dist;
+					}
+					lcses.add(conceptList.get(a1));
+				}
+				i++;
+				j++;
+			}
+		}
+		return lcses.isEmpty() ? -1 : minDist + 1;
+	}
+
+	private Closure getClosure(int index) {
+		Closure closure = closures.get(index);
+		if (closure == null) {
+			// computing the same closure twice in different threads is harmless
+			closure = computeClosure(index);
+			closures.set(index, closure);
+		}
+		return closure;
+	}
+
+	/**
+	 * breadth-first search of the ancestors of a concept
+	 */
+	private Closure computeClosure(int index) {
+		Search search = searches.get();
+		int stamp = ++search.stamp;
+		if (stamp == 0) {
+			// stamp wrapped around - forget all previous searches
+			Arrays.fill(search.visited, 0);
+			stamp = search.stamp = 1;
+		}
+		int[] queue = search.queue;
+		short[] queueDistances = search.queueDistances;
+		int head = 0;
+		int tail = 0;
+		queue[tail] = index;
+		queueDistances[tail++] = 0;
+		search.visited[index] = stamp;
+		while (head < tail) {
+			int current = queue[head];
+			short dist = queueDistances[head++];
+			for (ConcRel parent : conceptList.get(current).getParents()) {
+				int parentIndex = parent.getNodeIndex();
+				if (search.visited[parentIndex] != stamp) {
+					search.visited[parentIndex] = stamp;
+					if (tail == queue.length) {
+						queue = search.queue = Arrays.copyOf(queue,
+								queue.length * 2);
+						queueDistances = search.queueDistances = Arrays
+								.copyOf(queueDistances, queue.length);
+					}
+					queue[tail] = parentIndex;
+					queueDistances[tail++] = (short) (dist + 1);
+				}
+			}
+		}
+		// sort by index, carrying the distance along in the low bits
+		long[] packed = new long[tail];
+		for (int k = 0; k < tail; k++)
+			packed[k] = ((long) queue[k] << 16) | queueDistances[k];
+		Arrays.sort(packed);
+		int[] ancestors = new int[tail];
+		short[] distances = new short[tail];
+		for (int k = 0; k < tail; k++) {
+			ancestors[k] = (int) (packed[k] >>> 16);
+			distances[k] = (short) (packed[k] & 0xFFFF);
+		}
+		return new Closure(ancestors, distances);
+	}
+}
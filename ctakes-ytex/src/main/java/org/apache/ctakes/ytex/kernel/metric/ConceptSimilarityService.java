@@ -200,5 +200,26 @@ public interface ConceptSimilarityService {
 			List<ConceptPair> conceptPairs, List<SimilarityMetricEnum> metrics,
 			Map<String, Double> conceptFilter, boolean lcs);
 
+	/**
+	 * compute the similarity of every concept in concepts1 to every concept
+	 * in concepts2. Each cell has the similarities that
+	 * {@link #similarity(List, String, String, Map, boolean)} returns for the
+	 * pair; the matrix is evaluated in parallel, and duplicate concepts and
+	 * pairs are evaluated once.
+	 * 
+	 * @param concepts1
+	 *            required, matrix rows
+	 * @param concepts2
+	 *            required, matrix columns
+	 * @param metrics
+	 *            required, similarity metrics to compute
+	 * @param conceptFilter
+	 *            optional - only lcs's in this set will be used.
+	 * @return similarity matrix; all 0 if there is no concept graph
+	 */
+	public SimilarityMatrix similarityMatrix(List<String> concepts1,
+			List<String> concepts2, List<SimilarityMetricEnum> metrics,
+			Map<String, Double> conceptFilter);
+
 	public abstract int getDepth(String concept);
 }
\ No newline at end of file
@@ -38,6 +38,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
 
 import net.sf.ehcache.Cache;
 import net.sf.ehcache.CacheManager;
@@ -261,6 +262,14 @@ public class ConceptSimilarityServiceImpl implements ConceptSimilarityService {
 		}
 	}
 
+	/**
+	 * compute lcses from ancestor closures instead of the breadth-first
+	 * search in ConcRel
+	 */
+	private boolean ancestorClosure = false;
+
+	private AncestorClosureLCS ancestorClosureLCS;
+
 	private CacheManager cacheManager;
 
 	private ConceptGraph cg = null;
@@ -648,6 +657,16 @@ public class ConceptSimilarityServiceImpl implements ConceptSimilarityService {
 
 	@SuppressWarnings("unchecked")
 	private int getLCSFromCache(ConcRel cr1, ConcRel cr2, Set<String> lcses) {
+		if (this.ancestorClosureLCS != null) {
+			// the closures are the cache
+			Set<ConcRel> lcsCRSet = new HashSet<ConcRel>(2);
+			int dist = this.ancestorClosureLCS.getLeastCommonConcept(cr1, cr2,
+					lcsCRSet);
+			for (ConcRel cr : lcsCRSet) {
+				lcses.add(cr.getConceptID());
+			}
+			return dist;
+		}
 		StringBuilder cacheKeyBuilder = new StringBuilder(this.conceptGraphName);
 		cacheKeyBuilder
 				.append(cr1.getConceptID().compareTo(cr2.getConceptID()) < 0 ? cr1
@@ -714,6 +733,8 @@ public class ConceptSimilarityServiceImpl implements ConceptSimilarityService {
 		if (cg == null) {
 			log.warn("concept graph null, name: " + conceptGraphName);
 		} else {
+			if (ancestorClosure)
+				ancestorClosureLCS = new AncestorClosureLCS(cg);
 			initSimilarityMetricMap();
 			if (isPreload()) {
 				try {
@@ -889,6 +910,10 @@ public class ConceptSimilarityServiceImpl implements ConceptSimilarityService {
 		}
 	}
 
+	public boolean isAncestorClosure() {
+		return ancestorClosure;
+	}
+
 	public boolean isPreload() {
 		return preload;
 	}
@@ -971,6 +996,10 @@ public class ConceptSimilarityServiceImpl implements ConceptSimilarityService {
 	// return filteredLin(concept1, concept2, null);
 	// }
 
+	public void setAncestorClosure(boolean ancestorClosure) {
+		this.ancestorClosure = ancestorClosure;
+	}
+
 	public void setCacheManager(CacheManager cacheManager) {
 		this.cacheManager = cacheManager;
 	}
@@ -1101,6 +1130,19 @@ public class ConceptSimilarityServiceImpl implements ConceptSimilarityService {
 		return csim;
 	}
 
+	@Override
+	public SimilarityMatrix similarityMatrix(List<String> concepts1,
+			List<String> concepts2, List<SimilarityMetricEnum> metrics,
+			Map<String, Double> conceptFilter) {
+		SimilarityMatrix matrix = new SimilarityMatrix(concepts1, concepts2,
+				metrics);
+		if (cg != null) {
+			new SimilarityMatrixEvaluator(this, this.similarityMetricMap,
+					ForkJoinPool.commonPool()).evaluate(matrix, conceptFilter);
+		}
+		return matrix;
+	}
+
 	/**
 	 * convert the list of tuis into a bitset
 	 * 
@@ -0,0 +1,93 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.kernel.metric;
+
+import java.io.Serializable;
+import java.util.List;
+
+import org.apache.ctakes.ytex.kernel.metric.ConceptSimilarityService.SimilarityMetricEnum;
+
+/**
+ * dense matrix of the similarities between 2 lists of concepts. The value for
+ * concepts1[i], concepts2[j] and metrics[k] is stored at
+ * ((i * concepts2.size()) + j) * metrics.size() + k.
+ * 
+ * @see ConceptSimilarityService#similarityMatrix(List, List, List, java.util.Map)
+ */
+public class SimilarityMatrix implements Serializable {
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private List<String> concepts1;
+	private List<String> concepts2;
+	private List<SimilarityMetricEnum> metrics;
+	private double[] similarities;
+
+	public SimilarityMatrix(List<String> concepts1, List<String> concepts2,
+			List<SimilarityMetricEnum> metrics) {
+		super();
+		this.concepts1 = concepts1;
+		this.concepts2 = concepts2;
+		this.metrics = metrics;
+		this.similarities = new double[concepts1.size() * concepts2.size()
+				* metrics.size()];
+	}
+
+	public List<String> getConcepts1() {
+		return concepts1;
+	}
+
+	public List<String> getConcepts2() {
+		return concepts2;
+	}
+
+	public List<SimilarityMetricEnum> getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @return the backing array
+	 */
+	public double[] getSimilarities() {
+		return similarities;
+	}
+
+	/**
+	 * @param i
+	 *            index in concepts1
+	 * @param j
+	 *            index in concepts2
+	 * @param k
+	 *            index in metrics
+	 * @return similarity
+	 */
+	public double getSimilarity(int i, int j, int k) {
+		return similarities[index(i, j, k)];
+	}
+
+	void setSimilarity(int i, int j, int k, double similarity) {
+		similarities[index(i, j, k)] = similarity;
+	}
+
+	private int index(int i, int j, int k) {
+		return (i * concepts2.size() + j) * metrics.size() + k;
+	}
+}
@@ -0,0 +1,232 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.kernel.metric;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.ctakes.ytex.kernel.metric.ConceptSimilarityService.SimilarityMetricEnum;
+
+/**
+ * fill a {@link SimilarityMatrix}. Duplicate concepts are evaluated once, and
+ * the lcs of a pair of concepts that appears in both orders is computed once.
+ * The distinct concept pairs are split into tiles that are evaluated in
+ * parallel on a fork/join pool.
+ * <p/>
+ * Each cell gets exactly the similarities that
+ * {@link ConceptSimilarityService#similarity(List, String, String, Map, boolean)}
+ * would return: the lcses are looked up with
+ * {@link ConceptSimilarityService#getLCS(String, String, Set, List)} and
+ * handed to the metrics in the {@link SimilarityInfo}.
+ */
+class SimilarityMatrixEvaluator {
+	/**
+	 * tiles have at most TILE_SIZE x TILE_SIZE cells
+	 */
+	private static final int TILE_SIZE = 32;
+
+	/**
+	 * evaluate a single cell of the distinct concept grid
+	 */
+	private interface CellEvaluator {
+		void evaluate(int row, int col);
+	}
+
+	/**
+	 * split the grid into tiles, evaluate each tile in a task
+	 */
+	private static class TileTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final CellEvaluator evaluator;
+		private final int rowStart;
+		private final int rowEnd;
+		private final int colStart;
+		private final int colEnd;
+
+		TileTask(CellEvaluator evaluator, int rowStart, int rowEnd,
+				int colStart, int colEnd) {
+			this.evaluator = evaluator;
+			this.rowStart = rowStart;
+			this.rowEnd = rowEnd;
+			this.colStart = colStart;
+			this.colEnd = colEnd;
+		}
+
+		@Override
+		protected void compute() {
+			int rows = rowEnd - rowStart;
+			int cols = colEnd - colStart;
+			if (rows <= TILE_SIZE && cols <= TILE_SIZE) {
+				for (int row = rowStart; row < rowEnd; row++) {
+					for (int col = colStart; col < colEnd; col++) {
+						evaluator.evaluate(row, col);
+					}
+				}
+			} else if (rows >= cols) {
+				int mid = rowStart + rows / 2;
+				invokeAll(new TileTask(evaluator, rowStart, mid, colStart,
+						colEnd), new TileTask(evaluator, mid, rowEnd, colStart,
+						colEnd));
+			} else {
+				int mid = colStart + cols / 2;
+				invokeAll(new TileTask(evaluator, rowStart, rowEnd, colStart,
+						mid), new TileTask(evaluator, rowStart, rowEnd, mid,
+						colEnd));
+			}
+		}
+	}
+
+	private final ConceptSimilarityService simSvc;
+	private final Map<SimilarityMetricEnum, SimilarityMetric> similarityMetricMap;
+	private final ForkJoinPool pool;
+
+	SimilarityMatrixEvaluator(ConceptSimilarityService simSvc,
+			Map<SimilarityMetricEnum, SimilarityMetric> similarityMetricMap,
+			ForkJoinPool pool) {
+		this.simSvc = simSvc;
+		this.similarityMetricMap = similarityMetricMap;
+		this.pool = pool;
+	}
+
+	void evaluate(final SimilarityMatrix matrix,
+			final Map<String, Double> conceptFilter) {
+		final List<SimilarityMetricEnum> metrics = matrix.getMetrics();
+		final int nMetrics = metrics.size();
+		if (nMetrics == 0 || matrix.getConcepts1().isEmpty()
+				|| matrix.getConcepts2().isEmpty())
+			return;
+		// number the distinct concepts
+		final Map<String, Integer> conceptIds = new HashMap<String, Integer>();
+		final int[] concept1Ids = toIds(matrix.getConcepts1(), conceptIds);
+		final int[] concept2Ids = toIds(matrix.getConcepts2(), conceptIds);
+		final String[] concepts = new String[conceptIds.size()];
+		for (Map.Entry<String, Integer> entry : conceptIds.entrySet())
+			concepts[entry.getValue()] = entry.getKey();
+		// the grid of distinct concepts, and the position of each concept
+		// on it (-1 if absent)
+		final int[] rowPos = new int[concepts.length];
+		final int[] rows = toPositions(concept1Ids, rowPos);
+		final int[] colPos = new int[concepts.length];
+		final int[] cols = toPositions(concept2Ids, colPos);
+		final int nCols = cols.length;
+		// only pagerank does without the lcs
+		boolean lcsNeeded = false;
+		for (SimilarityMetricEnum metric : metrics) {
+			if (metric != SimilarityMetricEnum.PAGERANK)
+				lcsNeeded = true;
+		}
+		final int[] lcsDists = lcsNeeded ? new int[rows.length * nCols]
+				: null;
+		@SuppressWarnings("unchecked")
+		final Set<String>[] lcses = lcsNeeded ? new Set[rows.length * nCols]
+				: null;
+		if (lcsNeeded) {
+			pool.invoke(new TileTask(new CellEvaluator() {
+				@Override
+				public void evaluate(int row, int col) {
+					int u = rows[row];
+					int v = cols[col];
+					// the lcs is symmetric - (v,u) is computed by its own
+					// cell if it is on the grid
+					if (u > v && rowPos[v] >= 0 && colPos[u] >= 0)
+						return;
+					Set<String> cellLcses = new HashSet<String>(1);
+					lcsDists[row * nCols + col] = simSvc.getLCS(concepts[u],
+							concepts[v], cellLcses, null);
+					lcses[row * nCols + col] = cellLcses;
+				}
+			}, 0, rows.length, 0, nCols));
+		}
+		final double[] cells = new double[rows.length * nCols * nMetrics];
+		pool.invoke(new TileTask(new CellEvaluator() {
+			@Override
+			public void evaluate(int row, int col) {
+				int u = rows[row];
+				int v = cols[col];
+				SimilarityInfo simInfo = new SimilarityInfo();
+				if (lcses != null) {
+					int cell = row * nCols + col;
+					if (lcses[cell] == null)
+						cell = rowPos[v] * nCols + colPos[u];
+					simInfo.setLcsDist(lcsDists[cell]);
+					simInfo.getLcses().addAll(lcses[cell]);
+				}
+				int offset = (row * nCols + col) * nMetrics;
+				for (int k = 0; k < nMetrics; k++) {
+					cells[offset + k] = similarityMetricMap.get(metrics.get(k))
+							.similarity(concepts[u], concepts[v],
+									conceptFilter, simInfo);
+				}
+			}
+		}, 0, rows.length, 0, nCols));
+		// copy the distinct cells to the matrix
+		double[] similarities = matrix.getSimilarities();
+		int index = 0;
+		for (int i = 0; i < concept1Ids.length; i++) {
+			int rowOffset = rowPos[concept1Ids[i]] * nCols;
+			for (int j = 0; j < concept2Ids.length; j++) {
+				System.arraycopy(cells, (rowOffset + colPos[concept2Ids[j]])
+						* nMetrics, similarities, index, nMetrics);
+				index += nMetrics;
+			}
+		}
+	}
+
+	private static int[] toIds(List<String> concepts,
+			Map<String, Integer> conceptIds) {
+		int[] ids = new int[concepts.size()];
+		int i = 0;
+		for (String concept : concepts) {
+			Integer id = conceptIds.get(concept);
+			if (id == null) {
+				id = conceptIds.size();
+				conceptIds.put(concept, id);
+			}
+			ids[i++] = id;
+		}
+		return ids;
+	}
+
+	/**
+	 * @param ids
+	 *            concept ids, possibly repeated
+	 * @param positions
+	 *            filled with the position of each concept id in the result, -1
+	 *            if absent
+	 * @return distinct concept ids in order of first appearance
+	 */
+	private static int[] toPositions(int[] ids, int[] positions) {
+		Arrays.fill(positions, -1);
+		int[] distinct = new int[ids.length];
+		int n = 0;
+		for (int id : ids) {
+			if (positions[id] < 0) {
+				positions[id] = n;
+				distinct[n++] = id;
+			}
+		}
+		return Arrays.copyOf(distinct, n);
+	}
+}
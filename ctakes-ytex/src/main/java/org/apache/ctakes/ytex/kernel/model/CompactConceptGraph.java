@@ -0,0 +1,634 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.kernel.model;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A concept graph in compressed sparse row form, read from a versioned binary
+ * file by memory-mapping it.
+ * <p/>
+ * Concepts are numbered by their index in the concept list. The parents of
+ * concept i are parentIds[parentOffsets[i] .. parentOffsets[i+1]), and
+ * likewise for the children. Concept ids are kept in a string table with an
+ * open-addressing hash index, so nothing is deserialized when the graph is
+ * opened.
+ * <p/>
+ * {@link #toConceptGraph()} wraps the arrays in a {@link ConceptGraph} whose
+ * {@link ConcRel}s are created on first access as views over the arrays.
+ * <p/>
+ * Convert an existing serialized concept graph with
+ * {@link #main(String[])}. {@link #write(ConceptGraph, File)} writes a graph
+ * that is in memory.
+ * 
+ * @see org.apache.ctakes.ytex.kernel.dao.ConceptDaoImpl
+ */
+public class CompactConceptGraph {
+	/**
+	 * extension of compact concept graph files, which sit next to the
+	 * serialized [name].gz concept graphs
+	 */
+	public static final String FILE_EXTENSION = ".csr";
+
+	static final int MAGIC = 0x47435943;
+	static final int VERSION = 1;
+	private static final int HEADER_BYTES = 64;
+
+	/**
+	 * convert a serialized concept graph.
+	 * 
+	 * @param args
+	 *            [name].gz file, and optionally the output file. The default
+	 *            output file is [name].csr in the same directory.
+	 */
+	public static void main(String args[]) throws IOException,
+			ClassNotFoundException {
+		if (args.length < 1 || args.length > 2) {
+			System.out.println("usage: CompactConceptGraph <concept graph .gz> [output file]");
+			return;
+		}
+		File gzFile = new File(args[0]);
+		File csrFile;
+		if (args.length > 1) {
+			csrFile = new File(args[1]);
+		} else {
+			String gzPath = gzFile.getPath();
+			csrFile = new File((gzPath.endsWith(".gz") ? gzPath.substring(0,
+					gzPath.length() - 3) : gzPath) + FILE_EXTENSION);
+		}
+		ObjectInputStream is = new ObjectInputStream(new BufferedInputStream(
+				new GZIPInputStream(new FileInputStream(gzFile))));
+		try {
+			ConceptGraph cg = (ConceptGraph) is.readObject();
+			write(cg, csrFile);
+			System.out.println("wrote " + csrFile.getPath() + ", vertices: "
+					+ cg.getConceptList().size());
+		} finally {
+			is.close();
+		}
+	}
+
+	/**
+	 * write a concept graph in compact form. The relations of each concept are
+	 * taken from its parent/children arrays if they are set (as they are for a
+	 * deserialized concept graph), else from its parent/children sets.
+	 * 
+	 * @param cg
+	 *            concept graph
+	 * @param file
+	 *            file to write
+	 */
+	public static void write(ConceptGraph cg, File file) throws IOException {
+		List<ConcRel> concepts = cg.getConceptList();
+		int nodeCount = concepts.size();
+		int[][] parents = new int[nodeCount][];
+		int[][] children = new int[nodeCount][];
+		byte[][] cuis = new byte[nodeCount][];
+		long parentCount = 0;
+		long childCount = 0;
+		long cuiByteCount = 0;
+		int rootIndex = -1;
+		for (ConcRel cr : concepts) {
+			int i = cr.getNodeIndex();
+			parents[i] = cr.getParentsArray() != null ? cr.getParentsArray()
+					: toIndexArray(cr.getParents());
+			children[i] = cr.getChildrenArray() != null ? cr
+					.getChildrenArray() : toIndexArray(cr.getChildren());
+			cuis[i] = cr.getConceptID().getBytes(StandardCharsets.UTF_8);
+			parentCount += parents[i].length;
+			childCount += children[i].length;
+			cuiByteCount += cuis[i].length;
+			if (cr.getConceptID().equals(cg.getRoot()))
+				rootIndex = i;
+		}
+		int tableSize = 2;
+		while (tableSize < nodeCount * 2)
+			tableSize <<= 1;
+		int[] table = new int[tableSize];
+		for (int i = 0; i < nodeCount; i++) {
+			int slot = mix(concepts.get(i).getConceptID().hashCode())
+					& (tableSize - 1);
+			while (table[slot] != 0)
+				slot = (slot + 1) & (tableSize - 1);
+			table[slot] = i + 1;
+		}
+		Layout layout = new Layout(nodeCount, parentCount, childCount,
+				cuiByteCount, tableSize);
+		if (layout.size > Integer.MAX_VALUE)
+			throw new IOException("concept graph too large for a single file mapping: "
+					+ layout.size + " bytes");
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			FileChannel channel = raf.getChannel();
+			channel.truncate(0);
+			ByteBuffer buf = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+					layout.size).order(ByteOrder.LITTLE_ENDIAN);
+			buf.putInt(0, MAGIC);
+			buf.putInt(4, VERSION);
+			buf.putInt(8, nodeCount);
+			buf.putInt(12, (int) parentCount);
+			buf.putInt(16, (int) childCount);
+			buf.putInt(20, (int) cuiByteCount);
+			buf.putInt(24, tableSize);
+			buf.putInt(28, cg.getDepthMax());
+			buf.putDouble(32, cg.getIntrinsicICMax());
+			buf.putInt(40, rootIndex);
+			writeRelations(buf, layout.parentOffsets, layout.parentIds, parents);
+			writeRelations(buf, layout.childOffsets, layout.childIds, children);
+			buf.position((int) layout.depths);
+			ShortBuffer depths = buf.asShortBuffer();
+			buf.position((int) layout.ics);
+			DoubleBuffer ics = buf.asDoubleBuffer();
+			for (ConcRel cr : concepts) {
+				depths.put(cr.getNodeIndex(), cr.getDepth());
+				ics.put(cr.getNodeIndex(), cr.getIntrinsicInfoContent());
+			}
+			buf.position((int) layout.cuiOffsets);
+			IntBuffer cuiOffsets = buf.asIntBuffer();
+			buf.position((int) layout.cuiBytes);
+			int offset = 0;
+			for (int i = 0; i < nodeCount; i++) {
+				cuiOffsets.put(i, offset);
+				buf.put(cuis[i]);
+				offset += cuis[i].length;
+			}
+			cuiOffsets.put(nodeCount, offset);
+			buf.position((int) layout.cuiTable);
+			buf.asIntBuffer().put(table);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * memory-map a compact concept graph file
+	 * 
+	 * @param file
+	 *            compact concept graph file
+	 * @return the concept graph
+	 */
+	public static CompactConceptGraph read(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			if (channel.size() < HEADER_BYTES
+					|| channel.size() > Integer.MAX_VALUE)
+				throw new IOException(file.getPath()
+						+ " is not a compact concept graph");
+			ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+			if (buf.getInt(0) != MAGIC)
+				throw new IOException(file.getPath()
+						+ " is not a compact concept graph");
+			if (buf.getInt(4) != VERSION)
+				throw new IOException("unsupported compact concept graph version "
+						+ buf.getInt(4) + " in " + file.getPath());
+			return new CompactConceptGraph(buf, file.getPath());
+		} finally {
+			raf.close();
+		}
+	}
+
+	private static void writeRelations(ByteBuffer buf, long offsetsStart,
+			long idsStart, int[][] relations) {
+		buf.position((int) offsetsStart);
+		IntBuffer offsets = buf.asIntBuffer();
+		buf.position((int) idsStart);
+		IntBuffer ids = buf.asIntBuffer();
+		int offset = 0;
+		for (int i = 0; i < relations.length; i++) {
+			offsets.put(i, offset);
+			ids.position(offset);
+			ids.put(relations[i]);
+			offset += relations[i].length;
+		}
+		offsets.put(relations.length, offset);
+	}
+
+	private static int[] toIndexArray(Set<ConcRel> relations) {
+		int[] indices = new int[relations.size()];
+		int i = 0;
+		for (ConcRel cr : relations)
+			indices[i++] = cr.getNodeIndex();
+		return indices;
+	}
+
+	/**
+	 * spread the bits of String hash codes, which cluster for similar cuis
+	 */
+	private static int mix(int hash) {
+		int h = hash * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * byte offsets of the sections of a compact concept graph file, each
+	 * aligned to 8 bytes
+	 */
+	private static class Layout {
+		final long parentOffsets;
+		final long parentIds;
+		final long childOffsets;
+		final long childIds;
+		final long depths;
+		final long ics;
+		final long cuiOffsets;
+		final long cuiBytes;
+		final long cuiTable;
+		final long size;
+
+		Layout(int nodeCount, long parentCount, long childCount,
+				long cuiByteCount, int tableSize) {
+			parentOffsets = HEADER_BYTES;
+			parentIds = align(parentOffsets + 4L * (nodeCount + 1));
+			childOffsets = align(parentIds + 4L * parentCount);
+			childIds = align(childOffsets + 4L * (nodeCount + 1));
+			depths = align(childIds + 4L * childCount);
+			ics = align(depths + 2L * nodeCount);
+			cuiOffsets = align(ics + 8L * nodeCount);
+			cuiBytes = align(cuiOffsets + 4L * (nodeCount + 1));
+			cuiTable = align(cuiBytes + cuiByteCount);
+			size = cuiTable + 4L * tableSize;
+		}
+
+		private static long align(long position) {
+			return (position + 7) & ~7L;
+		}
+	}
+
+	private final String source;
+	private final int nodeCount;
+	private final short depthMax;
+	private final double intrinsicICMax;
+	private final int rootIndex;
+	private final IntBuffer parentOffsets;
+	private final IntBuffer parentIds;
+	private final IntBuffer childOffsets;
+	private final IntBuffer childIds;
+	private final ShortBuffer depths;
+	private final DoubleBuffer ics;
+	private final IntBuffer cuiOffsets;
+	private final ByteBuffer cuiBytes;
+	private final IntBuffer cuiTable;
+	private final int cuiTableMask;
+	/**
+	 * ConcRel views, created on first access
+	 */
+	private final AtomicReferenceArray<ConcRel> concepts;
+
+	private CompactConceptGraph(ByteBuffer buf, String source) {
+		this.source = source;
+		this.nodeCount = buf.getInt(8);
+		int parentCount = buf.getInt(12);
+		int childCount = buf.getInt(16);
+		int cuiByteCount = buf.getInt(20);
+		int tableSize = buf.getInt(24);
+		this.depthMax = (short) buf.getInt(28);
+		this.intrinsicICMax = buf.getDouble(32);
+		this.rootIndex = buf.getInt(40);
+		Layout layout = new Layout(nodeCount, parentCount, childCount,
+				cuiByteCount, tableSize);
+		this.parentOffsets = slice(buf, layout.parentOffsets, 4L * (nodeCount + 1)).asIntBuffer();
+		this.parentIds = slice(buf, layout.parentIds, 4L * parentCount).asIntBuffer();
+		this.childOffsets = slice(buf, layout.childOffsets, 4L * (nodeCount + 1)).asIntBuffer();
+		this.childIds = slice(buf, layout.childIds, 4L * childCount).asIntBuffer();
+		this.depths = slice(buf, layout.depths, 2L * nodeCount).asShortBuffer();
+		this.ics = slice(buf, layout.ics, 8L * nodeCount).asDoubleBuffer();
+		this.cuiOffsets = slice(buf, layout.cuiOffsets, 4L * (nodeCount + 1)).asIntBuffer();
+		this.cuiBytes = slice(buf, layout.cuiBytes, cuiByteCount);
+		this.cuiTable = slice(buf, layout.cuiTable, 4L * tableSize).asIntBuffer();
+		this.cuiTableMask = tableSize - 1;
+		this.concepts = new AtomicReferenceArray<ConcRel>(nodeCount);
+	}
+
+	private static ByteBuffer slice(ByteBuffer buf, long start, long length) {
+		ByteBuffer dup = buf.duplicate();
+		dup.position((int) start);
+		dup.limit((int) (start + length));
+		return dup.slice().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	public int size() {
+		return nodeCount;
+	}
+
+	public short getDepthMax() {
+		return depthMax;
+	}
+
+	public double getIntrinsicICMax() {
+		return intrinsicICMax;
+	}
+
+	/**
+	 * @return id of the root concept, null if the graph has no root
+	 */
+	public String getRoot() {
+		return rootIndex >= 0 ? getConceptId(rootIndex) : null;
+	}
+
+	/**
+	 * @param cui
+	 *            concept id
+	 * @return index of the concept, -1 if it is not in the graph
+	 */
+	public int getIndex(String cui) {
+		byte[] bytes = cui.getBytes(StandardCharsets.UTF_8);
+		int slot = mix(cui.hashCode()) & cuiTableMask;
+		int entry = cuiTable.get(slot);
+		while (entry != 0) {
+			if (cuiEquals(entry - 1, bytes))
+				return entry - 1;
+			slot = (slot + 1) & cuiTableMask;
+			entry = cuiTable.get(slot);
+		}
+		return -1;
+	}
+
+	public String getConceptId(int index) {
+		int start = cuiOffsets.get(index);
+		byte[] bytes = new byte[cuiOffsets.get(index + 1) - start];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = cuiBytes.get(start + i);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	public short getDepth(int index) {
+		return depths.get(index);
+	}
+
+	public double getIntrinsicInfoContent(int index) {
+		return ics.get(index);
+	}
+
+	public int getParentCount(int index) {
+		return parentOffsets.get(index + 1) - parentOffsets.get(index);
+	}
+
+	public int getParent(int index, int i) {
+		return parentIds.get(parentOffsets.get(index) + i);
+	}
+
+	public int getChildCount(int index) {
+		return childOffsets.get(index + 1) - childOffsets.get(index);
+	}
+
+	public int getChild(int index, int i) {
+		return childIds.get(childOffsets.get(index) + i);
+	}
+
+	/**
+	 * @return copy of the indices of the parents of the concept
+	 */
+	public int[] getParents(int index) {
+		return copy(parentIds, parentOffsets.get(index),
+				getParentCount(index));
+	}
+
+	/**
+	 * @return copy of the indices of the children of the concept
+	 */
+	public int[] getChildren(int index) {
+		return copy(childIds, childOffsets.get(index), getChildCount(index));
+	}
+
+	private static int[] copy(IntBuffer ids, int start, int length) {
+		int[] copy = new int[length];
+		for (int i = 0; i < length; i++)
+			copy[i] = ids.get(start + i);
+		return copy;
+	}
+
+	private boolean cuiEquals(int index, byte[] bytes) {
+		int start = cuiOffsets.get(index);
+		if (cuiOffsets.get(index + 1) - start != bytes.length)
+			return false;
+		for (int i = 0; i < bytes.length; i++) {
+			if (cuiBytes.get(start + i) != bytes[i])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the ConcRel view of the concept, created on first access
+	 */
+	public ConcRel getConcRel(int index) {
+		ConcRel cr = concepts.get(index);
+		if (cr == null) {
+			concepts.compareAndSet(index, null, new ConcRel(this, index));
+			cr = concepts.get(index);
+		}
+		return cr;
+	}
+
+	/**
+	 * wrap this graph in a ConceptGraph. The concept list and map are
+	 * read-only views. As for a deserialized concept graph, concepts expose
+	 * their relations as ConcRel sets if the graph has a maximum depth, else
+	 * (if the graph has cycles) only as parent/children index arrays.
+	 */
+	public ConceptGraph toConceptGraph() {
+		ConceptGraph cg = new ConceptGraph();
+		cg.setConceptList(new ConcRelList());
+		cg.setConceptMap(new ConcRelMap());
+		cg.setDepthMax(depthMax);
+		cg.setIntrinsicICMax(intrinsicICMax);
+		cg.setRoot(getRoot());
+		return cg;
+	}
+
+	/**
+	 * @return set view of the parents of the concept
+	 */
+	Set<ConcRel> getParentSet(int index) {
+		return new ConcRelSet(parentIds, parentOffsets.get(index),
+				getParentCount(index));
+	}
+
+	/**
+	 * @return set view of the children of the concept
+	 */
+	Set<ConcRel> getChildSet(int index) {
+		return new ConcRelSet(childIds, childOffsets.get(index),
+				getChildCount(index));
+	}
+
+	@Override
+	public String toString() {
+		return "CompactConceptGraph [source=" + source + ", vertices="
+				+ nodeCount + "]";
+	}
+
+	/**
+	 * read-only set of the concepts in a range of a relation array
+	 */
+	private class ConcRelSet extends AbstractSet<ConcRel> {
+		private final IntBuffer ids;
+		private final int start;
+		private final int length;
+
+		ConcRelSet(IntBuffer ids, int start, int length) {
+			this.ids = ids;
+			this.start = start;
+			this.length = length;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			if (!(o instanceof ConcRel))
+				return false;
+			int index = ((ConcRel) o).getNodeIndex();
+			for (int i = 0; i < length; i++) {
+				if (ids.get(start + i) == index)
+					return true;
+			}
+			return false;
+		}
+
+		@Override
+		public Iterator<ConcRel> iterator() {
+			return new Iterator<ConcRel>() {
+				private int i = 0;
+
+				@Override
+				public boolean hasNext() {
+					return i < length;
+				}
+
+				@Override
+				public ConcRel next() {
+					if (i >= length)
+						throw new NoSuchElementException();
+					return getConcRel(ids.get(start + i++));
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return length;
+		}
+	}
+
+	/**
+	 * read-only list of all concepts by index
+	 */
+	private class ConcRelList extends AbstractList<ConcRel> implements
+			RandomAccess {
+		@Override
+		public ConcRel get(int index) {
+			if (index < 0 || index >= nodeCount)
+				throw new IndexOutOfBoundsException("index: " + index);
+			return getConcRel(index);
+		}
+
+		@Override
+		public int size() {
+			return nodeCount;
+		}
+	}
+
+	/**
+	 * read-only map of concept id to concept
+	 */
+	private class ConcRelMap extends AbstractMap<String, ConcRel> {
+		@Override
+		public boolean containsKey(Object key) {
+			return key instanceof String && getIndex((String) key) >= 0;
+		}
+
+		@Override
+		public ConcRel get(Object key) {
+			if (!(key instanceof String))
+				return null;
+			int index = getIndex((String) key);
+			return index >= 0 ? getConcRel(index) : null;
+		}
+
+		@Override
+		public int size() {
+			return nodeCount;
+		}
+
+		@Override
+		public Set<Map.Entry<String, ConcRel>> entrySet() {
+			return new AbstractSet<Map.Entry<String, ConcRel>>() {
+				@Override
+				public Iterator<Map.Entry<String, ConcRel>> iterator() {
+					return new Iterator<Map.Entry<String, ConcRel>>() {
+						private int index = 0;
+
+						@Override
+						public boolean hasNext() {
+							return index < nodeCount;
+						}
+
+						@Override
+						public Map.Entry<String, ConcRel> next() {
+							if (index >= nodeCount)
+								throw new NoSuchElementException();
+							ConcRel cr = getConcRel(index++);
+							return new AbstractMap.SimpleImmutableEntry<String, ConcRel>(
+									cr.getConceptID(), cr);
+						}
+
+						@Override
+						public void remove() {
+							throw new UnsupportedOperationException();
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return nodeCount;
+				}
+			};
+		}
+	}
+}
@@ -19,6 +19,7 @@
 package org.apache.ctakes.ytex.kernel.model;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -364,6 +365,32 @@ public class ConcRel implements java.io.Serializable {
 		this.nodeIndex = nodeIndex;
 	}
 
+	/**
+	 * view of a concept in a compact concept graph. Like a deserialized
+	 * concept, the relationships are available as ConcRel sets if the graph
+	 * has a maximum depth, else only as parent/children index arrays.
+	 *
+	 * @param graph
+	 *            compact concept graph
+	 * @param nodeIndex
+	 *            index of the concept in the graph
+	 */
+	ConcRel(CompactConceptGraph graph, int nodeIndex) {
+		this.nodeCUI = graph.getConceptId(nodeIndex);
+		this.nodeIndex = nodeIndex;
+		this.depth = graph.getDepth(nodeIndex);
+		this.intrinsicInfoContent = graph.getIntrinsicInfoContent(nodeIndex);
+		if (graph.getDepthMax() > 0) {
+			parents = graph.getParentSet(nodeIndex);
+			children = graph.getChildSet(nodeIndex);
+		} else {
+			parents = Collections.emptySet();
+			children = Collections.emptySet();
+			parentsArray = graph.getParents(nodeIndex);
+			childrenArray = graph.getChildren(nodeIndex);
+		}
+	}
+
 	/**
 	 * reconstruct the relationships to other ConcRel objects
 	 * 
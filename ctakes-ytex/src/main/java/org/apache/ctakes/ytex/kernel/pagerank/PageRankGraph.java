@@ -0,0 +1,94 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.kernel.pagerank;
+
+import java.util.List;
+import java.util.Set;
+
+import org.apache.ctakes.ytex.kernel.model.ConcRel;
+import org.apache.ctakes.ytex.kernel.model.ConceptGraph;
+
+/**
+ * adjacency of a concept graph in compressed sparse row form, for pagerank.
+ * The in-links of node i (its parents) are inIds[inOffsets[i] ..
+ * inOffsets[i+1]), the out-links (its children) are outIds[outOffsets[i] ..
+ * outOffsets[i+1]). invOutDegree[i] is 1/number of out-links, 0 for nodes
+ * without out-links.
+ * <p/>
+ * The relations are taken from the parent/children arrays of a concept if they
+ * are set (graphs with cycles), else from the parent/children sets.
+ */
+class PageRankGraph {
+	final int[] inOffsets;
+	final int[] inIds;
+	final int[] outOffsets;
+	final int[] outIds;
+	final double[] invOutDegree;
+
+	PageRankGraph(ConceptGraph cg) {
+		List<ConcRel> concepts = cg.getConceptList();
+		int n = concepts.size();
+		inOffsets = new int[n + 1];
+		outOffsets = new int[n + 1];
+		for (int i = 0; i < n; i++) {
+			ConcRel cr = concepts.get(i);
+			inOffsets[i + 1] = inOffsets[i] + parentCount(cr);
+			outOffsets[i + 1] = outOffsets[i] + childCount(cr);
+		}
+		inIds = new int[inOffsets[n]];
+		outIds = new int[outOffsets[n]];
+		invOutDegree = new double[n];
+		for (int i = 0; i < n; i++) {
+			ConcRel cr = concepts.get(i);
+			if (cr.getParentsArray() != null)
+				System.arraycopy(cr.getParentsArray(), 0, inIds, inOffsets[i],
+						cr.getParentsArray().length);
+			else
+				copyIndices(cr.getParents(), inIds, inOffsets[i]);
+			if (cr.getChildrenArray() != null)
+				System.arraycopy(cr.getChildrenArray(), 0, outIds,
+						outOffsets[i], cr.getChildrenArray().length);
+			else
+				copyIndices(cr.getChildren(), outIds, outOffsets[i]);
+			int outDegree = outOffsets[i + 1] - outOffsets[i];
+			if (outDegree > 0)
+				invOutDegree[i] = 1d / (double) outDegree;
+		}
+	}
+
+	int size() {
+		return invOutDegree.length;
+	}
+
+	private static int parentCount(ConcRel cr) {
+		return cr.getParentsArray() != null ? cr.getParentsArray().length : cr
+				.getParents().size();
+	}
+
+	private static int childCount(ConcRel cr) {
+		return cr.getChildrenArray() != null ? cr.getChildrenArray().length
+				: cr.getChildren().size();
+	}
+
+	private static void copyIndices(Set<ConcRel> relations, int[] ids,
+			int offset) {
+		for (ConcRel cr : relations)
+			ids[offset++] = cr.getNodeIndex();
+	}
+}
@@ -18,6 +18,7 @@
  */
 package org.apache.ctakes.ytex.kernel.pagerank;
 
+import java.util.List;
 import java.util.Map;
 
 import org.apache.ctakes.ytex.kernel.model.ConceptGraph;
@@ -61,4 +62,19 @@ public interface PageRankService {
 	public abstract double[] rank2(Map<Integer, Double> dampingVector, ConceptGraph cg, int iter,
 			double threshold, double dampingFactor);
 
+	/**
+	 * personalized pagerank for several damping vectors at once
+	 * 
+	 * @param dampingVectors
+	 *            damping vectors as for
+	 *            {@link #rank2(Map, ConceptGraph, int, double, double)}
+	 * @return pagerank vector for each damping vector
+	 * @throws IllegalArgumentException
+	 *             if the number of damping vectors times the number of
+	 *             concepts does not fit in an array
+	 */
+	public abstract double[][] rankBatch(
+			List<Map<Integer, Double>> dampingVectors, ConceptGraph cg,
+			int iter, double threshold, double dampingFactor);
+
 }
\ No newline at end of file
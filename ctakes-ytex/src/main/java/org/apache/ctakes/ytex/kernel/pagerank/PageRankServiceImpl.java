@@ -21,9 +21,13 @@ package org.apache.ctakes.ytex.kernel.pagerank;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -44,6 +48,22 @@ import org.apache.ctakes.ytex.kernel.model.ConceptGraph;
 public class PageRankServiceImpl implements PageRankService {
 	private static final Log log = LogFactory.getLog(PageRankServiceImpl.class);
 
+	/**
+	 * rank2 switches from pushing pagerank along the out-links of the nodes
+	 * with a pagerank to pulling it over all in-links when more than
+	 * 1/DENSE_FRACTION of the nodes have a pagerank
+	 */
+	private static final int DENSE_FRACTION = 16;
+
+	/**
+	 * nodes per task for parallel iterations
+	 */
+	private static final int PARALLEL_CHUNK = 8192;
+
+	private final Map<ConceptGraph, PageRankGraph> pageRankGraphs = new WeakHashMap<ConceptGraph, PageRankGraph>();
+
+	private boolean parallel = false;
+
 	private double[] rankInternal(Map<Integer, Double> dampingVector,
 			ConceptGraph cg, int iter, double threshold, double dampingFactor) {
 		Map<Integer, Double> scoreMapCurrent = dampingVector;
@@ -210,58 +230,355 @@ public class PageRankServiceImpl implements PageRankService {
 		return newScores;
 	}
 
+	/**
+	 * personalized pagerank on the compressed sparse row adjacency of the
+	 * concept graph. While few nodes have a pagerank, the pagerank is pushed
+	 * from those nodes to their out-links; once more than 1/DENSE_FRACTION of
+	 * the nodes have a pagerank, every node pulls the pagerank from its
+	 * in-links. The score arrays are allocated once and reused for all
+	 * iterations. Convergence is tested as in
+	 * {@link #pagerankIter(double[], Map, ConceptGraph, double, double)}: stop
+	 * when the euclidean distance between iterations is at most threshold.
+	 */
 	@Override
 	public double[] rank2(Map<Integer, Double> dampingVector, ConceptGraph cg,
 			int iter, double threshold, double dampingFactor) {
-		double N = (double) cg.getConceptMap().size();
-		double scoresCurrent[] = new double[cg.getConceptMap().size()];
-		Map<Integer, Double> dampingVectorAdj = null;
-		// Set<Integer> activeNodes = null;
+		PageRankGraph g = getPageRankGraph(cg);
+		int n = g.size();
+		double N = (double) n;
+		double[] current = new double[n];
+		double[] next = new double[n];
+		double[] jump = null;
+		double uniformJump = 0d;
+		int[] active = null;
+		boolean[] isActive = null;
+		int activeCount = 0;
 		if (dampingVector != null) {
-			// for personalized page rank, put together a map of possibilities
-			// of randomly jumping to a specific node
-			dampingVectorAdj = new HashMap<Integer, Double>(
-					dampingVector.size());
-			// // initialize set of active nodes
-			// activeNodes = new HashSet<Integer>(dampingVector.keySet());
-			Arrays.fill(scoresCurrent, 0d);
+			// for personalized page rank, the possibilities of randomly
+			// jumping to a specific node. the nodes with a pagerank are active
+			jump = new double[n];
+			active = new int[Math.max(16, dampingVector.size())];
+			isActive = new boolean[n];
 			for (Map.Entry<Integer, Double> dvEntry : dampingVector.entrySet()) {
-				// set the random jump for the node
-				dampingVectorAdj.put(dvEntry.getKey(), dvEntry.getValue()
-						* (1 - dampingFactor));
-				// set the initial weight for the node
-				scoresCurrent[dvEntry.getKey()] = dvEntry.getValue();
+				int index = dvEntry.getKey();
+				jump[index] = dvEntry.getValue() * (1 - dampingFactor);
+				current[index] = dvEntry.getValue();
+				if (!isActive[index]) {
+					isActive[index] = true;
+					active[activeCount++] = index;
+				}
 			}
 		} else {
 			// for static page rank, all nodes have same weight initially
-			Arrays.fill(scoresCurrent, 1d / N);
+			Arrays.fill(current, 1d / N);
+			uniformJump = (1 - dampingFactor) / N;
 		}
+		boolean dense = dampingVector == null
+				|| activeCount * DENSE_FRACTION > n;
 		double diff = 1d;
 		for (int i = 0; i < iter; i++) {
-			double scoresOld[] = scoresCurrent;
 			long timeBegin = 0;
 			if (log.isDebugEnabled()) {
 				timeBegin = System.currentTimeMillis();
 			}
-			// if (activeNodes == null) {
-			scoresCurrent = pagerankIter(scoresCurrent, dampingVectorAdj, cg,
-					dampingFactor, N);
-			// } else {
-			// scoresCurrent = pagerankIter(scoresCurrent, dampingVectorAdj,
-			// cg, dampingFactor, N, activeNodes);
-			// }
+			if (dense) {
+				diff = Math.sqrt(denseIter(g, current, next, jump,
+						uniformJump, dampingFactor));
+			} else {
+				// propagate from the active nodes to their out-links, which
+				// become active
+				int sources = activeCount;
+				for (int a = 0; a < sources; a++)
+					next[active[a]] = 0d;
+				for (int a = 0; a < sources; a++) {
+					int index = active[a];
+					double share = current[index] * g.invOutDegree[index];
+					for (int e = g.outOffsets[index]; e < g.outOffsets[index + 1]; e++) {
+						int target = g.outIds[e];
+						if (!isActive[target]) {
+							isActive[target] = true;
+							if (activeCount == active.length)
+								active = Arrays.copyOf(active,
+										Math.min(n, active.length * 2));
+							active[activeCount++] = target;
+						}
+						next[target] += share;
+					}
+				}
+				// convert to (d)*sum(score) + (1-d)*v_i
+				double sum = 0d;
+				for (int a = 0; a < activeCount; a++) {
+					int index = active[a];
+					double adjusted = next[index] * dampingFactor + jump[index];
+					next[index] = adjusted;
+					double d = adjusted - current[index];
+					sum += d * d;
+				}
+				diff = Math.sqrt(sum);
+				dense = activeCount * DENSE_FRACTION > n;
+			}
+			double[] swap = current;
+			current = next;
+			next = swap;
 			if (log.isDebugEnabled()) {
 				log.debug("iter " + i + " time(ms) "
 						+ Long.toString(System.currentTimeMillis() - timeBegin));
 			}
-			if ((diff = difference(scoresCurrent, scoresOld)) <= threshold)
+			if (diff <= threshold)
 				break;
 		}
 		if (log.isDebugEnabled() && diff > threshold) {
 			log.debug("did not converge, diff = " + diff + ", dampingVector = "
 					+ dampingVector);
 		}
-		return scoresCurrent;
+		return current;
+	}
+
+	/**
+	 * one pagerank iteration over all nodes, in parallel chunks if
+	 * {@link #isParallel()}.
+	 * 
+	 * @return squared euclidean distance between current and next
+	 */
+	private double denseIter(final PageRankGraph g, final double[] current,
+			final double[] next, final double[] jump, final double uniformJump,
+			final double dampingFactor) {
+		return sweep(g.size(), new RangeSweep() {
+			@Override
+			public double sweep(int from, int to) {
+				double sum = 0d;
+				for (int i = from; i < to; i++) {
+					double score = 0d;
+					// pagerank of the nodes pointing at node i, divided by the
+					// number of nodes they point at
+					for (int e = g.inOffsets[i]; e < g.inOffsets[i + 1]; e++) {
+						int parent = g.inIds[e];
+						score += current[parent] * g.invOutDegree[parent];
+					}
+					double adjusted = score * dampingFactor
+							+ (jump != null ? jump[i] : uniformJump);
+					next[i] = adjusted;
+					double d = adjusted - current[i];
+					sum += d * d;
+				}
+				return sum;
+			}
+		});
+	}
+
+	/**
+	 * personalized pagerank for several damping vectors in one sweep over the
+	 * graph. The scores of all vectors for a node are stored next to each
+	 * other, so each link is read once per iteration for all vectors. As in
+	 * {@link #rank2(Map, ConceptGraph, int, double, double)}, pagerank is
+	 * pushed from the nodes that have a pagerank in any vector until these
+	 * are more than 1/DENSE_FRACTION of all nodes. Each vector stops changing
+	 * once it converges, so the result for each vector is the result of rank2.
+	 * <p/>
+	 * Needs 2 x vectors x concepts doubles; split large batches.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if vectors x concepts does not fit in an array
+	 */
+	@Override
+	public double[][] rankBatch(List<Map<Integer, Double>> dampingVectors,
+			ConceptGraph cg, int iter, double threshold,
+			final double dampingFactor) {
+		final PageRankGraph g = getPageRankGraph(cg);
+		final int n = g.size();
+		final int B = dampingVectors.size();
+		if ((long) n * B > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("batch of " + B
+					+ " damping vectors is too large for " + n
+					+ " concepts, split the batch");
+		double[] current = new double[n * B];
+		double[] next = new double[n * B];
+		final boolean[] converged = new boolean[B];
+		int[] active = new int[16];
+		boolean[] isActive = new boolean[n];
+		int activeCount = 0;
+		for (int b = 0; b < B; b++) {
+			for (Map.Entry<Integer, Double> dvEntry : dampingVectors.get(b)
+					.entrySet()) {
+				int index = dvEntry.getKey();
+				current[index * B + b] = dvEntry.getValue();
+				if (!isActive[index]) {
+					isActive[index] = true;
+					if (activeCount == active.length)
+						active = Arrays.copyOf(active, active.length * 2);
+					active[activeCount++] = index;
+				}
+			}
+		}
+		boolean dense = activeCount * DENSE_FRACTION > n;
+		double[] sums = new double[B];
+		double[] shares = new double[B];
+		int convergedCount = 0;
+		for (int i = 0; i < iter && convergedCount < B; i++) {
+			final double[] cur = current;
+			final double[] nxt = next;
+			if (dense) {
+				sweep(n, new RangeSweep() {
+					@Override
+					public double sweep(int from, int to) {
+						double[] scores = new double[B];
+						for (int node = from; node < to; node++) {
+							Arrays.fill(scores, 0d);
+							for (int e = g.inOffsets[node]; e < g.inOffsets[node + 1]; e++) {
+								int parent = g.inIds[e];
+								double w = g.invOutDegree[parent];
+								int base = parent * B;
+								for (int b = 0; b < B; b++)
+									scores[b] += cur[base + b] * w;
+							}
+							int base = node * B;
+							for (int b = 0; b < B; b++)
+								nxt[base + b] = converged[b] ? cur[base + b]
+										: scores[b] * dampingFactor;
+						}
+						return 0d;
+					}
+				});
+			} else {
+				int sources = activeCount;
+				for (int a = 0; a < sources; a++)
+					Arrays.fill(next, active[a] * B, active[a] * B + B, 0d);
+				for (int a = 0; a < sources; a++) {
+					int index = active[a];
+					int base = index * B;
+					for (int b = 0; b < B; b++)
+						shares[b] = current[base + b] * g.invOutDegree[index];
+					for (int e = g.outOffsets[index]; e < g.outOffsets[index + 1]; e++) {
+						int target = g.outIds[e];
+						if (!isActive[target]) {
+							isActive[target] = true;
+							if (activeCount == active.length)
+								active = Arrays.copyOf(active,
+										Math.min(n, active.length * 2));
+							active[activeCount++] = target;
+						}
+						int targetBase = target * B;
+						for (int b = 0; b < B; b++)
+							next[targetBase + b] += shares[b];
+					}
+				}
+				for (int a = 0; a < activeCount; a++) {
+					int base = active[a] * B;
+					for (int b = 0; b < B; b++)
+						next[base + b] = converged[b] ? current[base + b]
+								: next[base + b] * dampingFactor;
+				}
+			}
+			// add the random jumps, measure the change of each vector
+			for (int b = 0; b < B; b++) {
+				if (converged[b])
+					continue;
+				for (Map.Entry<Integer, Double> dvEntry : dampingVectors.get(b)
+						.entrySet()) {
+					next[dvEntry.getKey() * B + b] += dvEntry.getValue()
+							* (1 - dampingFactor);
+				}
+			}
+			Arrays.fill(sums, 0d);
+			int nodes = dense ? n : activeCount;
+			for (int a = 0; a < nodes; a++) {
+				int base = (dense ? a : active[a]) * B;
+				for (int b = 0; b < B; b++) {
+					double d = next[base + b] - current[base + b];
+					sums[b] += d * d;
+				}
+			}
+			for (int b = 0; b < B; b++) {
+				if (!converged[b] && Math.sqrt(sums[b]) <= threshold) {
+					converged[b] = true;
+					convergedCount++;
+				}
+			}
+			dense = dense || activeCount * DENSE_FRACTION > n;
+			double[] swap = current;
+			current = next;
+			next = swap;
+		}
+		double[][] ranks = new double[B][n];
+		for (int node = 0; node < n; node++) {
+			int base = node * B;
+			for (int b = 0; b < B; b++)
+				ranks[b][node] = current[base + b];
+		}
+		return ranks;
+	}
+
+	/**
+	 * evaluate a range of nodes
+	 */
+	private interface RangeSweep {
+		/**
+		 * @return sum of a value over the range
+		 */
+		double sweep(int from, int to);
+	}
+
+	/**
+	 * split a sweep over all nodes into chunks
+	 */
+	private static class SweepTask extends RecursiveTask<Double> {
+		private static final long serialVersionUID = 1L;
+		private final RangeSweep rangeSweep;
+		private final int from;
+		private final int to;
+
+		SweepTask(RangeSweep rangeSweep, int from, int to) {
+			this.rangeSweep = rangeSweep;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Double compute() {
+			if (to - from <= PARALLEL_CHUNK)
+				return rangeSweep.sweep(from, to);
+			int mid = (from + to) >>> 1;
+			SweepTask right = new SweepTask(rangeSweep, mid, to);
+			right.fork();
+			double left = new SweepTask(rangeSweep, from, mid).compute();
+			return left + right.join();
+		}
+	}
+
+	private double sweep(int n, RangeSweep rangeSweep) {
+		if (parallel && n > PARALLEL_CHUNK)
+			return ForkJoinPool.commonPool().invoke(
+					new SweepTask(rangeSweep, 0, n));
+		else
+			return rangeSweep.sweep(0, n);
+	}
+
+	/**
+	 * the adjacency of a concept graph is built on first use and kept as long
+	 * as the concept graph
+	 */
+	private PageRankGraph getPageRankGraph(ConceptGraph cg) {
+		synchronized (pageRankGraphs) {
+			PageRankGraph g = pageRankGraphs.get(cg);
+			if (g == null) {
+				g = new PageRankGraph(cg);
+				pageRankGraphs.put(cg, g);
+			}
+			return g;
+		}
+	}
+
+	public boolean isParallel() {
+		return parallel;
+	}
+
+	/**
+	 * @param parallel
+	 *            split iterations over all nodes into chunks evaluated on the
+	 *            common fork/join pool
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
 	}
 
 	/**
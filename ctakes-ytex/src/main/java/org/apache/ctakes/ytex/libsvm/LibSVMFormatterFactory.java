@@ -26,6 +26,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
 import org.apache.ctakes.ytex.kernel.BaseSparseDataFormatter;
 import org.apache.ctakes.ytex.kernel.FileUtil;
@@ -34,6 +36,8 @@ import org.apache.ctakes.ytex.kernel.KernelUtil;
 import org.apache.ctakes.ytex.kernel.SparseData;
 import org.apache.ctakes.ytex.kernel.SparseDataFormatter;
 import org.apache.ctakes.ytex.kernel.SparseDataFormatterFactory;
+import org.apache.ctakes.ytex.kernel.StreamingSparseData;
+import org.apache.ctakes.ytex.kernel.StreamingSparseDataFormatter;
 
 import com.google.common.collect.BiMap;
 
@@ -56,7 +60,7 @@ public class LibSVMFormatterFactory implements SparseDataFormatterFactory {
 	 */
 	@Override
 	public SparseDataFormatter getFormatter() {
-		return new LibSVMFormatter(getKernelUtil());
+		return new LibSVMStreamingFormatter(getKernelUtil());
 	}
 
 	public static class LibSVMFormatter extends BaseSparseDataFormatter {
@@ -208,4 +212,119 @@ public class LibSVMFormatterFactory implements SparseDataFormatterFactory {
 		}
 	}
 
+	/**
+	 * libsvm formatter that can also write all train/test sets in a single
+	 * pass over the instances. Not a base class of the other formatters, which
+	 * override the per fold export.
+	 */
+	public static class LibSVMStreamingFormatter extends LibSVMFormatter
+			implements StreamingSparseDataFormatter {
+		/**
+		 * open data and id files for a train/test set
+		 */
+		private static class FoldWriter {
+			private Map<Long, String> instanceClassMap;
+			private Map<String, Integer> classToIndexMap;
+			private BufferedWriter wData;
+			private BufferedWriter wId;
+		}
+
+		public LibSVMStreamingFormatter(KernelUtil kernelUtil) {
+			super(kernelUtil);
+		}
+
+		/**
+		 * write the class ids and attribute names as the per fold export
+		 * does, then write each instance's line to every train/test set that
+		 * contains it.
+		 */
+		@Override
+		public void exportStream(InstanceData instanceLabel,
+				StreamingSparseData sparseData) throws IOException {
+			List<FoldWriter> foldWriters = new ArrayList<FoldWriter>();
+			SortedSet<Long> instanceIds = new TreeSet<Long>();
+			StreamingSparseData.Cursor cursor = null;
+			try {
+				for (Map.Entry<String, SortedMap<Integer, SortedMap<Integer, SortedMap<Boolean, SortedMap<Long, String>>>>> labelInstances : instanceLabel
+						.getLabelToInstanceMap().entrySet()) {
+					String label = labelInstances.getKey();
+					initializeLabel(label, labelInstances.getValue(),
+							exportProperties, null);
+					for (Map.Entry<Integer, SortedMap<Integer, SortedMap<Boolean, SortedMap<Long, String>>>> runInstances : labelInstances
+							.getValue().entrySet()) {
+						int run = runInstances.getKey();
+						for (Map.Entry<Integer, SortedMap<Boolean, SortedMap<Long, String>>> foldInstances : runInstances
+								.getValue().entrySet()) {
+							int fold = foldInstances.getKey();
+							exportAttributeNames(sparseData, label, run, fold);
+							for (Map.Entry<Boolean, SortedMap<Long, String>> trainInstances : foldInstances
+									.getValue().entrySet()) {
+								String prefix = FileUtil.getDataFilePrefix(
+										outdir, label, 0 == run ? null : run,
+										0 == fold ? null : fold,
+										trainInstances.getKey());
+								FoldWriter fw = new FoldWriter();
+								foldWriters.add(fw);
+								fw.instanceClassMap = trainInstances.getValue();
+								fw.classToIndexMap = this.labelToClassIndexMap
+										.get(label);
+								fw.wData = new BufferedWriter(new FileWriter(
+										prefix + "_data.txt"));
+								fw.wId = new BufferedWriter(new FileWriter(
+										prefix + "_id.txt"));
+								instanceIds.addAll(fw.instanceClassMap.keySet());
+							}
+						}
+					}
+				}
+				cursor = sparseData.openCursor();
+				StringBuilder line = new StringBuilder();
+				for (long instanceId : instanceIds) {
+					// format the attributes once for all train/test sets
+					StreamingSparseData.Row row = cursor.getRow(instanceId);
+					line.setLength(0);
+					for (int i = 0; i < row.size(); i++) {
+						line.append("\t").append(row.getId(i)).append(":")
+								.append(Double.toString(row.getValue(i)));
+					}
+					String attributes = line.toString();
+					for (FoldWriter fw : foldWriters) {
+						String className = fw.instanceClassMap.get(instanceId);
+						if (className != null) {
+							fw.wId.write(Long.toString(instanceId));
+							fw.wId.newLine();
+							fw.wData.write(Integer.toString(fw.classToIndexMap
+									.get(className)));
+							fw.wData.write(attributes);
+							fw.wData.newLine();
+						}
+					}
+				}
+			} finally {
+				if (cursor != null)
+					cursor.close();
+				for (FoldWriter fw : foldWriters) {
+					if (fw.wData != null)
+						fw.wData.close();
+					if (fw.wId != null)
+						fw.wId.close();
+				}
+			}
+		}
+
+		protected void exportAttributeNames(StreamingSparseData sparseData,
+				String label, Integer run, Integer fold) throws IOException {
+			String filename = FileUtil.getScopedFileName(outdir, label, run,
+					fold, "attributes.txt");
+			BufferedWriter w = null;
+			try {
+				w = new BufferedWriter(new FileWriter(filename));
+				sparseData.writeAttributeNames(w);
+			} finally {
+				if (w != null)
+					w.close();
+			}
+		}
+	}
+
 }
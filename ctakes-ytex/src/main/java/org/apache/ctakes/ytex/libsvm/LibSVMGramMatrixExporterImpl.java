@@ -41,6 +41,7 @@ import org.apache.commons.cli.OptionBuilder;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.apache.ctakes.ytex.kernel.FileUtil;
+import org.apache.ctakes.ytex.kernel.GramMatrixFile;
 import org.apache.ctakes.ytex.kernel.InstanceData;
 import org.apache.ctakes.ytex.kernel.KernelContextHolder;
 import org.apache.ctakes.ytex.kernel.KernelUtil;
@@ -110,6 +111,9 @@ public class LibSVMGramMatrixExporterImpl implements LibSVMGramMatrixExporter {
 	 * 
 	 * @param gramMatrix
 	 *            square symmetric matrix with all available instance data
+	 * @param gramMatrixFile
+	 *            gram matrix file to read rows from instead of gramMatrix,
+	 *            may be null
 	 * @param instanceIdToClassMap
 	 *            folds
 	 * @param train
@@ -122,6 +126,7 @@ public class LibSVMGramMatrixExporterImpl implements LibSVMGramMatrixExporter {
 	 * @throws IOException
 	 */
 	private void exportFold(double[][] gramMatrix,
+			GramMatrixFile gramMatrixFile,
 			Map<Boolean, SortedMap<Long, String>> instanceIdToClassMap,
 			boolean train, Map<Long, Integer> mapInstanceIdToIndex,
 			String filePrefix, Map<String, Integer> mapClassToIndex)
@@ -142,6 +147,13 @@ public class LibSVMGramMatrixExporterImpl implements LibSVMGramMatrixExporter {
 		// the rows - train or test instance ids and their class labels
 		SortedMap<Long, String> rowInstanceToClassMap = instanceIdToClassMap
 				.get(train);
+		// when streaming from the gram matrix file, read a row at a time
+		int[] colFileIndices = null;
+		double[] fileRow = null;
+		if (gramMatrixFile != null) {
+			colFileIndices = gramMatrixFile.getIndices(colInstanceIds);
+			fileRow = new double[colFileIndices.length];
+		}
 		try {
 			w = new BufferedWriter(new FileWriter(fileName));
 			wId = new BufferedWriter(new FileWriter(idFileName));
@@ -157,7 +169,14 @@ public class LibSVMGramMatrixExporterImpl implements LibSVMGramMatrixExporter {
 				// the instance id of this row
 				long rowInstanceId = instanceClass.getKey();
 				// the index to gramMatrix corresponding to this instance
-				int rowInstanceIndex = mapInstanceIdToIndex.get(rowInstanceId);
+				int rowInstanceIndex = 0;
+				if (gramMatrixFile != null) {
+					gramMatrixFile.getRow(
+							gramMatrixFile.getIndex(rowInstanceId),
+							colFileIndices, fileRow);
+				} else {
+					rowInstanceIndex = mapInstanceIdToIndex.get(rowInstanceId);
+				}
 				// write class Id
 				w.write(mapClassToIndex.get(classId).toString());
 				w.write("\t");
@@ -166,19 +185,23 @@ public class LibSVMGramMatrixExporterImpl implements LibSVMGramMatrixExporter {
 				w.write(Integer.toString(rowIndex + 1));
 				// write column entries
 				for (int columnIndex = 0; columnIndex < colInstanceIds.size(); columnIndex++) {
-					// column instance id
-					long colInstanceId = colInstanceIds.get(columnIndex);
-					// index into gram matrix for this instance id
-					int colInstanceIndex = mapInstanceIdToIndex
-							.get(colInstanceId);
 					w.write("\t");
 					// write column number
 					w.write(Integer.toString(columnIndex + 1));
 					w.write(":");
-					// write value - gramMatrix is symmetric, so this will work
-					// both ways
-					w.write(Double
-							.toString(gramMatrix[rowInstanceIndex][colInstanceIndex]));
+					if (gramMatrixFile != null) {
+						w.write(Double.toString(fileRow[columnIndex]));
+					} else {
+						// column instance id
+						long colInstanceId = colInstanceIds.get(columnIndex);
+						// index into gram matrix for this instance id
+						int colInstanceIndex = mapInstanceIdToIndex
+								.get(colInstanceId);
+						// write value - gramMatrix is symmetric, so this will
+						// work both ways
+						w.write(Double
+								.toString(gramMatrix[rowInstanceIndex][colInstanceIndex]));
+					}
 				}
 				// don't want carriage return, even on windows
 				w.write("\n");
@@ -210,63 +233,102 @@ public class LibSVMGramMatrixExporterImpl implements LibSVMGramMatrixExporter {
 			throws IOException {
 		// the full, symmetric gram matrix
 		double[][] gramMatrix = null;
+		// the gram matrix file, if the kernel was evaluated into one
+		GramMatrixFile gramMatrixFile = null;
 		// the set of all instance ids
 		SortedSet<Long> instanceIds = new TreeSet<Long>();
 		// map of instance id to index in gramMatrix
 		Map<Long, Integer> mapInstanceIdToIndex = new HashMap<Long, Integer>();
-		if (scope == null || scope.length() == 0) {
-			// empty scope - load gram matrix
-			gramMatrix = loadGramMatrix(name, experiment, param1, param2,
-					splitName, null, 0, 0, instanceData, instanceIds,
-					mapInstanceIdToIndex);
-			if (gramMatrix == null)
-				return;
-		}
-		for (String label : instanceData.getLabelToInstanceMap().keySet()) {
-			if ("label".equals(scope)) {
-				// label scope - load gram matrix
-				gramMatrix = loadGramMatrix(name, experiment, param1, param2,
-						splitName, label, 0, 0, instanceData, instanceIds,
-						mapInstanceIdToIndex);
-				if (gramMatrix == null)
-					return;
+		try {
+			if (scope == null || scope.length() == 0) {
+				// empty scope - load gram matrix
+				gramMatrixFile = openGramMatrix(gramMatrixFile, name,
+						experiment, param1, param2, splitName, null, 0, 0);
+				if (gramMatrixFile == null) {
+					gramMatrix = loadGramMatrix(name, experiment, param1,
+							param2, splitName, null, 0, 0, instanceData,
+							instanceIds, mapInstanceIdToIndex);
+					if (gramMatrix == null)
+						return;
+				}
 			}
-			// write the properties file with the class id to class name map
-			kernelUtil.exportClassIds(outdir, labelToClassIndexMap.get(label),
-					label);
-			for (int run : instanceData.getLabelToInstanceMap().get(label)
-					.keySet()) {
-				for (int fold : instanceData.getLabelToInstanceMap().get(label)
-						.get(run).keySet()) {
-					if ("fold".equals(scope)) {
-						// fold scope - load gram matrix
+			for (String label : instanceData.getLabelToInstanceMap().keySet()) {
+				if ("label".equals(scope)) {
+					// label scope - load gram matrix
+					gramMatrixFile = openGramMatrix(gramMatrixFile, name,
+							experiment, param1, param2, splitName, label, 0, 0);
+					if (gramMatrixFile == null) {
 						gramMatrix = loadGramMatrix(name, experiment, param1,
-								param2, splitName, label, run, fold,
-								instanceData, instanceIds, mapInstanceIdToIndex);
+								param2, splitName, label, 0, 0, instanceData,
+								instanceIds, mapInstanceIdToIndex);
+						if (gramMatrix == null)
+							return;
 					}
-					if (gramMatrix != null) {
-						// get folds
-						Map<Boolean, SortedMap<Long, String>> foldMap = instanceData
-								.getLabelToInstanceMap().get(label).get(run)
-								.get(fold);
-						// export training fold
-						exportFold(gramMatrix, foldMap, true,
-								mapInstanceIdToIndex,
-								FileUtil.getDataFilePrefix(outdir, label, run,
-										fold, true),
-								labelToClassIndexMap.get(label));
-						// export test fold
-						exportFold(gramMatrix, foldMap, false,
-								mapInstanceIdToIndex,
-								FileUtil.getDataFilePrefix(outdir, label, run,
-										fold, false),
-								labelToClassIndexMap.get(label));
+				}
+				// write the properties file with the class id to class name
+				// map
+				kernelUtil.exportClassIds(outdir,
+						labelToClassIndexMap.get(label), label);
+				for (int run : instanceData.getLabelToInstanceMap().get(label)
+						.keySet()) {
+					for (int fold : instanceData.getLabelToInstanceMap()
+							.get(label).get(run).keySet()) {
+						if ("fold".equals(scope)) {
+							// fold scope - load gram matrix
+							gramMatrixFile = openGramMatrix(gramMatrixFile,
+									name, experiment, param1, param2,
+									splitName, label, run, fold);
+							gramMatrix = null;
+							if (gramMatrixFile == null) {
+								gramMatrix = loadGramMatrix(name, experiment,
+										param1, param2, splitName, label, run,
+										fold, instanceData, instanceIds,
+										mapInstanceIdToIndex);
+							}
+						}
+						if (gramMatrixFile != null || gramMatrix != null) {
+							// get folds
+							Map<Boolean, SortedMap<Long, String>> foldMap = instanceData
+									.getLabelToInstanceMap().get(label)
+									.get(run).get(fold);
+							// export training fold
+							exportFold(gramMatrix, gramMatrixFile, foldMap,
+									true, mapInstanceIdToIndex,
+									FileUtil.getDataFilePrefix(outdir, label,
+											run, fold, true),
+									labelToClassIndexMap.get(label));
+							// export test fold
+							exportFold(gramMatrix, gramMatrixFile, foldMap,
+									false, mapInstanceIdToIndex,
+									FileUtil.getDataFilePrefix(outdir, label,
+											run, fold, false),
+									labelToClassIndexMap.get(label));
+						}
 					}
 				}
 			}
+		} finally {
+			if (gramMatrixFile != null)
+				gramMatrixFile.close();
 		}
 	}
 
+	/**
+	 * close the gram matrix file of the previous scope, and open the one for
+	 * this scope
+	 * 
+	 * @return null if the kernel was not evaluated into a gram matrix file
+	 */
+	private GramMatrixFile openGramMatrix(GramMatrixFile previous,
+			String name, String experiment, double param1, String param2,
+			String splitName, String label, int run, int fold)
+			throws IOException {
+		if (previous != null)
+			previous.close();
+		return this.kernelUtil.openGramMatrix(name, splitName, experiment,
+				label, run, fold, param1, param2);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
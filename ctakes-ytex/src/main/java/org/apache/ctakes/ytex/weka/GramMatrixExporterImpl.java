@@ -19,12 +19,14 @@
 package org.apache.ctakes.ytex.weka;
 
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -39,6 +41,7 @@ import javax.sql.DataSource;
 
 import org.apache.ctakes.ytex.kernel.BagOfWordsDecorator;
 import org.apache.ctakes.ytex.kernel.BagOfWordsExporter;
+import org.apache.ctakes.ytex.kernel.GramMatrixFile;
 import org.apache.ctakes.ytex.kernel.dao.KernelEvaluationDao;
 import org.apache.ctakes.ytex.kernel.model.KernelEvaluation;
 import org.apache.ctakes.ytex.kernel.model.KernelEvaluationInstance;
@@ -162,9 +165,16 @@ public class GramMatrixExporterImpl extends WekaBagOfWordsExporterImpl implement
 					instanceIDClassLabel, instanceIdToIndexMap);
 			this.bagOfWordsExporter.exportBagOfWords(propertyFile,
 					new GramMatrixArffDecorator(instanceIdToIndexMap));
-			exportGramMatrix(matrixWriter, kernelEvaluation,
-					GramMatrixType.WEKA, instanceIDClassLabel,
-					instanceIdToIndexMap);
+			String gramMatrixFile = props.getProperty("gramMatrixFile");
+			if (gramMatrixFile != null && gramMatrixFile.length() > 0) {
+				// stream from the file written by the corpus kernel evaluator
+				exportWekaGramMatrix(new File(gramMatrixFile),
+						instanceIDClassLabel.keySet(), matrixWriter);
+			} else {
+				exportGramMatrix(matrixWriter, kernelEvaluation,
+						GramMatrixType.WEKA, instanceIDClassLabel,
+						instanceIdToIndexMap);
+			}
 		} finally {
 			try {
 				if (in != null)
@@ -261,6 +271,35 @@ public class GramMatrixExporterImpl extends WekaBagOfWordsExporterImpl implement
 		}
 	}
 
+	/**
+	 * write the gram matrix a row at a time from a gram matrix file. rows and
+	 * columns are in the order of instanceIds, as in the arff file.
+	 */
+	private void exportWekaGramMatrix(File file, Collection<Long> instanceIds,
+			BufferedWriter writer) throws IOException {
+		GramMatrixFile gramMatrixFile = GramMatrixFile.openEvaluated(file);
+		try {
+			int[] indices = gramMatrixFile.getIndices(instanceIds);
+			double[] row = new double[indices.length];
+			// header contains rows columns
+			writer.write(Integer.toString(indices.length));
+			writer.write("\t");
+			writer.write(Integer.toString(indices.length));
+			writer.write("\t");
+			writer.newLine();
+			for (int nRow = 0; nRow < indices.length; nRow++) {
+				gramMatrixFile.getRow(indices[nRow], indices, row);
+				for (int nCol = 0; nCol < row.length; nCol++) {
+					writer.write(Double.toString(row[nCol]));
+					writer.write("\t");
+				}
+				writer.newLine();
+			}
+		} finally {
+			gramMatrixFile.close();
+		}
+	}
+
 	private void exportWekaGramMatrix(double[][] gramMatrix,
 			BufferedWriter writer) throws IOException {
 		// header contains rows columns
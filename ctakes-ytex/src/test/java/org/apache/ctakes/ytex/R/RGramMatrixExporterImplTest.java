@@ -0,0 +1,185 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.R;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.ctakes.ytex.kernel.FileUtil;
+import org.apache.ctakes.ytex.kernel.GramMatrixFile;
+import org.apache.ctakes.ytex.kernel.InstanceData;
+import org.apache.ctakes.ytex.kernel.KernelUtilImpl;
+import org.apache.ctakes.ytex.kernel.dao.KernelEvaluationDao;
+import org.apache.ctakes.ytex.kernel.model.KernelEvaluation;
+import org.apache.ctakes.ytex.sparsematrix.InstanceDataExporter;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * export of a gram matrix that the corpus kernel evaluator wrote to a file
+ */
+public class RGramMatrixExporterImplTest {
+	private static final int INSTANCES = 40;
+	private static final int TILE_SIZE = 8;
+	private static final int KERNEL_EVALUATION_ID = 7;
+
+	private File dir;
+	private long[] instanceIds;
+	private RGramMatrixExporterImpl exporter;
+	private Properties props;
+
+	@Before
+	public void setup() throws IOException {
+		dir = File.createTempFile("gramMatrix", "");
+		dir.delete();
+		dir.mkdirs();
+		instanceIds = new long[INSTANCES];
+		final InstanceData instanceData = new InstanceData();
+		SortedMap<Long, String> instanceClasses = new TreeMap<Long, String>();
+		for (int i = 0; i < INSTANCES; i++) {
+			instanceIds[i] = 100 + i;
+			instanceClasses.put(instanceIds[i], i % 2 == 0 ? "yes" : "no");
+		}
+		SortedMap<Boolean, SortedMap<Long, String>> trainTest = new TreeMap<Boolean, SortedMap<Long, String>>();
+		trainTest.put(true, instanceClasses);
+		SortedMap<Integer, SortedMap<Boolean, SortedMap<Long, String>>> folds = new TreeMap<Integer, SortedMap<Boolean, SortedMap<Long, String>>>();
+		folds.put(0, trainTest);
+		SortedMap<Integer, SortedMap<Integer, SortedMap<Boolean, SortedMap<Long, String>>>> runs = new TreeMap<Integer, SortedMap<Integer, SortedMap<Boolean, SortedMap<Long, String>>>>();
+		runs.put(0, folds);
+		instanceData.getLabelToInstanceMap().put("label", runs);
+		KernelUtilImpl kernelUtil = new KernelUtilImpl() {
+			@Override
+			public InstanceData loadInstances(String strQuery) {
+				return instanceData;
+			}
+		};
+		kernelUtil.setGramMatrixDir(dir.getPath());
+		kernelUtil.setKernelEvaluationDao(proxy(KernelEvaluationDao.class,
+				new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method,
+							Object[] args) {
+						if (!"getKernelEval".equals(method.getName()))
+							throw new UnsupportedOperationException(method
+									.getName());
+						KernelEvaluation kernelEval = new KernelEvaluation();
+						kernelEval.setKernelEvaluationId(KERNEL_EVALUATION_ID);
+						return kernelEval;
+					}
+				}));
+		exporter = new RGramMatrixExporterImpl();
+		exporter.setKernelUtil(kernelUtil);
+		exporter.setInstanceDataExporter(proxy(InstanceDataExporter.class,
+				new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method,
+							Object[] args) {
+						return null;
+					}
+				}));
+		props = new Properties();
+		props.setProperty("org.apache.ctakes.ytex.corpusName", "test");
+		props.setProperty("org.apache.ctakes.ytex.experiment", "test");
+		props.setProperty("outdir", dir.getPath());
+	}
+
+	@After
+	public void cleanup() {
+		for (File file : dir.listFiles())
+			file.delete();
+		dir.delete();
+	}
+
+	/**
+	 * a file with tiles that are not done must not be exported as if the
+	 * missing values were 0
+	 */
+	@Test
+	public void testPartialGramMatrix() throws IOException {
+		File dataFile = new File(FileUtil.getDataFilePrefix(dir.getPath(),
+				null, 0, 0, null) + "data.txt");
+		evaluate(true);
+		try {
+			exporter.exportGramMatrix(props);
+			Assert.fail("exported an incomplete gram matrix");
+		} catch (IOException e) {
+			Assert.assertFalse(dataFile.exists());
+		}
+		evaluate(false);
+		exporter.exportGramMatrix(props);
+		BufferedReader reader = new BufferedReader(new FileReader(dataFile));
+		try {
+			for (int i = 0; i < INSTANCES; i++) {
+				String[] row = reader.readLine().split(" ");
+				Assert.assertEquals(INSTANCES, row.length);
+				for (int j = 0; j < INSTANCES; j++)
+					Assert.assertEquals(kernel(i, j),
+							Double.parseDouble(row[j]), 0d);
+			}
+			Assert.assertNull(reader.readLine());
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * evaluate the even or odd tiles of the gram matrix file, as one of two
+	 * slices would
+	 */
+	private void evaluate(boolean even) throws IOException {
+		GramMatrixFile gramMatrix = GramMatrixFile.create(
+				GramMatrixFile.getFile(dir.getPath(), KERNEL_EVALUATION_ID),
+				instanceIds, INSTANCES, TILE_SIZE, false);
+		try {
+			for (int tile = 0; tile < gramMatrix.getTileCount(); tile++) {
+				if ((tile % 2 == 0) != even)
+					continue;
+				int rowStart = gramMatrix.getTileRow(tile) * TILE_SIZE;
+				int columnStart = gramMatrix.getTileColumn(tile) * TILE_SIZE;
+				for (int i = rowStart; i < rowStart + TILE_SIZE; i++)
+					for (int j = Math.max(i, columnStart); j < columnStart
+							+ TILE_SIZE; j++)
+						gramMatrix.set(i, j, kernel(i, j));
+				gramMatrix.markTileDone(tile);
+			}
+		} finally {
+			gramMatrix.close();
+		}
+	}
+
+	private static double kernel(int i, int j) {
+		return 1d / (1 + Math.abs(i - j));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(Class<T> iface, InvocationHandler handler) {
+		return (T) Proxy.newProxyInstance(iface.getClassLoader(),
+				new Class<?>[] { iface }, handler);
+	}
+}
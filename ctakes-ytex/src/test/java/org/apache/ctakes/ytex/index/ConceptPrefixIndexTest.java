@@ -0,0 +1,263 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * compares {@link ConceptPrefixIndex} with the retrieveConceptByFword query
+ * it replaces
+ */
+public class ConceptPrefixIndexTest {
+	private static final int MAX_CONCEPTS = 30;
+	private static final String[] WORDS = { "diabetes", "diabetic", "heart",
+			"failure", "acute", "chronic", "renal", "disease", "type",
+			"mellitus", "congestive", "insufficiency", "pain", "chest" };
+
+	/**
+	 * the retrieveConceptByFword query: rows whose first word is fword and
+	 * whose term starts with term, ignoring case, distinct on concept and
+	 * the 30 character text, ordered by text and limited to maxResults.
+	 * 
+	 * @return conceptId + tab + text of each row
+	 */
+	private static List<String> query(List<String[]> rows, String fword,
+			String term, int maxResults) {
+		Set<String> distinct = new LinkedHashSet<String>();
+		for (String[] row : rows) {
+			if (row[0].equals(fword)
+					&& row[2].length() >= term.length()
+					&& row[2].substring(0, term.length())
+							.toLowerCase(Locale.ENGLISH).equals(term)) {
+				distinct.add(row[1] + '\t' + text(row[2]));
+			}
+		}
+		List<String> results = new ArrayList<String>(distinct);
+		Collections.sort(results, new Comparator<String>() {
+			public int compare(String o1, String o2) {
+				return String.CASE_INSENSITIVE_ORDER.compare(
+						o1.substring(o1.indexOf('\t') + 1),
+						o2.substring(o2.indexOf('\t') + 1));
+			}
+		});
+		return results.size() > maxResults ? results.subList(0, maxResults)
+				: results;
+	}
+
+	private static String text(String term) {
+		return term.length() > ConceptPrefixIndex.TEXT_LENGTH ? term
+				.substring(0, ConceptPrefixIndex.TEXT_LENGTH) : term;
+	}
+
+	private static ConceptPrefixIndex build(List<String[]> rows) {
+		ConceptPrefixIndex.Builder builder = new ConceptPrefixIndex.Builder();
+		for (String[] row : rows)
+			builder.add(row[0], row[1], row[2]);
+		return builder.build();
+	}
+
+	private static void add(List<String[]> rows, String conceptId,
+			String term) {
+		rows.add(new String[] {
+				term.split("\\s+")[0].toLowerCase(Locale.ENGLISH), conceptId,
+				term });
+	}
+
+	/**
+	 * check that the completions are the rows of the query. The query does
+	 * not order rows with the same text, so where the limit cuts through
+	 * rows with the same text, the completions need only be a subset of the
+	 * rows.
+	 */
+	private static void assertSameAsQuery(List<String[]> rows,
+			ConceptPrefixIndex index, String fword, String term) {
+		List<String> expected = query(rows, fword, term, MAX_CONCEPTS);
+		List<String> all = query(rows, fword, term, Integer.MAX_VALUE);
+		List<ConceptPrefixIndex.Completion> completions = index.complete(
+				fword, term, MAX_CONCEPTS);
+		Assert.assertEquals(fword + "/" + term, expected.size(),
+				completions.size());
+		Set<String> keys = new HashSet<String>();
+		for (int i = 0; i < completions.size(); i++) {
+			ConceptPrefixIndex.Completion completion = completions.get(i);
+			String key = completion.getConceptId() + '\t'
+					+ completion.getText();
+			Assert.assertTrue("duplicate " + key, keys.add(key));
+			Assert.assertTrue("not in query " + key, all.contains(key));
+			Assert.assertEquals(fword, completion.getFword());
+			String expectedText = expected.get(i).substring(
+					expected.get(i).indexOf('\t') + 1);
+			Assert.assertEquals(expectedText.toLowerCase(Locale.ENGLISH),
+					completion.getText().toLowerCase(Locale.ENGLISH));
+		}
+		if (all.size() <= MAX_CONCEPTS)
+			Assert.assertEquals(new HashSet<String>(all), keys);
+	}
+
+	/**
+	 * random terms, completed with prefixes of random lengths
+	 */
+	@Test
+	public void testSameAsQuery() {
+		Random r = new Random(7);
+		List<String[]> rows = new ArrayList<String[]>();
+		for (int i = 0; i < 3000; i++) {
+			StringBuilder term = new StringBuilder();
+			int nWords = 1 + r.nextInt(5);
+			for (int j = 0; j < nWords; j++) {
+				if (j > 0)
+					term.append(' ');
+				String word = WORDS[r.nextInt(WORDS.length)];
+				term.append(r.nextInt(10) == 0 ? word.toUpperCase(Locale.ENGLISH)
+						: word);
+			}
+			add(rows, "C" + (1000000 + r.nextInt(500)), term.toString());
+		}
+		ConceptPrefixIndex index = build(rows);
+		Assert.assertEquals(rows.size(), index.size());
+		for (int i = 0; i < 500; i++) {
+			String[] row = rows.get(r.nextInt(rows.size()));
+			String term = row[2].substring(0, 1 + r.nextInt(row[2].length()))
+					.toLowerCase(Locale.ENGLISH);
+			String[] words = term.split("\\s+");
+			assertSameAsQuery(rows, index, words.length > 1 ? words[0] : term,
+					term);
+		}
+		assertSameAsQuery(rows, index, "heart", "heart failure acute");
+		assertSameAsQuery(rows, index, "nothing", "nothing");
+	}
+
+	/**
+	 * no more than 30 completions, the first 30 in term order
+	 */
+	@Test
+	public void testLimit() {
+		List<String[]> rows = new ArrayList<String[]>();
+		for (int i = 99; i >= 0; i--)
+			add(rows, "C00000" + (i < 10 ? "0" : "") + i, "pain site " + i);
+		ConceptPrefixIndex index = build(rows);
+		List<ConceptPrefixIndex.Completion> completions = index.complete(
+				"pain", "pain", MAX_CONCEPTS);
+		Assert.assertEquals(MAX_CONCEPTS, completions.size());
+		Assert.assertEquals("pain site 0", completions.get(0).getText());
+		Assert.assertEquals("pain site 1", completions.get(1).getText());
+		Assert.assertEquals("pain site 10", completions.get(2).getText());
+		Assert.assertEquals("pain site 35",
+				completions.get(MAX_CONCEPTS - 1).getText());
+		assertSameAsQuery(rows, index, "pain", "pain");
+		assertSameAsQuery(rows, index, "pain", "pain site 1");
+	}
+
+	/**
+	 * terms of a concept that agree on the first 30 characters are one
+	 * completion; the same text for different concepts is not
+	 */
+	@Test
+	public void testDistinctOnConceptAndText() {
+		List<String[]> rows = new ArrayList<String[]>();
+		String text = "chronic kidney disease stage 3";
+		Assert.assertEquals(ConceptPrefixIndex.TEXT_LENGTH, text.length());
+		add(rows, "C0000001", text + "a");
+		add(rows, "C0000001", text + "b");
+		add(rows, "C0000001", text);
+		add(rows, "C0000002", text + " (disorder)");
+		add(rows, "C0000003", "chronic pain");
+		ConceptPrefixIndex index = build(rows);
+		List<ConceptPrefixIndex.Completion> completions = index.complete(
+				"chronic", "chronic k", MAX_CONCEPTS);
+		Assert.assertEquals(2, completions.size());
+		Set<String> conceptIds = new HashSet<String>();
+		for (ConceptPrefixIndex.Completion completion : completions) {
+			Assert.assertEquals(text, completion.getText());
+			conceptIds.add(completion.getConceptId());
+		}
+		Assert.assertEquals(2, conceptIds.size());
+		assertSameAsQuery(rows, index, "chronic", "chronic");
+	}
+
+	/**
+	 * a single word is the first word: it has to match a first word exactly,
+	 * and is not a prefix of first words
+	 */
+	@Test
+	public void testFirstWordOnly() {
+		List<String[]> rows = new ArrayList<String[]>();
+		add(rows, "C0011849", "diabetes mellitus");
+		add(rows, "C0011849", "diabetes");
+		add(rows, "C0011847", "diabetes insipidus");
+		add(rows, "C0011882", "diabetic neuropathy");
+		add(rows, "C0018802", "heart failure");
+		ConceptPrefixIndex index = build(rows);
+		List<ConceptPrefixIndex.Completion> completions = index.complete(
+				"diabetes", "diabetes", MAX_CONCEPTS);
+		Assert.assertEquals(3, completions.size());
+		Assert.assertEquals("diabetes", completions.get(0).getText());
+		Assert.assertEquals("diabetes insipidus", completions.get(1)
+				.getText());
+		Assert.assertEquals("diabetes mellitus", completions.get(2).getText());
+		Assert.assertTrue(index.complete("diab", "diab", MAX_CONCEPTS)
+				.isEmpty());
+		Assert.assertTrue(index.complete("diabetic", "diabetic n",
+				MAX_CONCEPTS).size() == 1);
+		Assert.assertTrue(index.complete("zebra", "zebra", MAX_CONCEPTS)
+				.isEmpty());
+		assertSameAsQuery(rows, index, "diab", "diab");
+		assertSameAsQuery(rows, index, "diabetes", "diabetes");
+	}
+
+	/**
+	 * terms are matched ignoring case and come back as they are
+	 */
+	@Test
+	public void testIgnoresCase() {
+		List<String[]> rows = new ArrayList<String[]>();
+		add(rows, "C0004238", "Atrial fibrillation");
+		add(rows, "C0004239", "atrial flutter");
+		add(rows, "C0004240", "ATRIAL FIBROSIS");
+		ConceptPrefixIndex index = build(rows);
+		List<ConceptPrefixIndex.Completion> completions = index.complete(
+				"atrial", "atrial fib", MAX_CONCEPTS);
+		Assert.assertEquals(2, completions.size());
+		Assert.assertEquals("Atrial fibrillation", completions.get(0)
+				.getText());
+		Assert.assertEquals("ATRIAL FIBROSIS", completions.get(1).getText());
+		Assert.assertEquals("atrial", completions.get(0).getFword());
+		Assert.assertEquals(3, index.complete("atrial", "atrial", MAX_CONCEPTS)
+				.size());
+	}
+
+	@Test
+	public void testEmpty() {
+		ConceptPrefixIndex index = new ConceptPrefixIndex.Builder().build();
+		Assert.assertEquals(0, index.size());
+		Assert.assertTrue(index.complete("pain", "pain", MAX_CONCEPTS)
+				.isEmpty());
+	}
+}
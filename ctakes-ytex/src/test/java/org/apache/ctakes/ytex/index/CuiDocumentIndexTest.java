@@ -0,0 +1,196 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CuiDocumentIndexTest {
+	private File indexDir;
+
+	@Before
+	public void setup() throws IOException {
+		indexDir = File.createTempFile("cuiIndex", "");
+		indexDir.delete();
+	}
+
+	@After
+	public void cleanup() {
+		File[] files = indexDir.listFiles();
+		if (files != null) {
+			for (File file : files)
+				file.delete();
+		}
+		indexDir.delete();
+	}
+
+	/**
+	 * segments written by several writers are merged, and picked up by
+	 * refresh()
+	 */
+	@Test
+	public void testSearch() throws IOException {
+		CuiIndexWriter writer1 = new CuiIndexWriter(indexDir);
+		CuiIndexWriter writer2 = new CuiIndexWriter(indexDir);
+		writer1.add("C1", 10, 1, "HPI");
+		writer1.add("C2", 10, -1, null);
+		writer1.endDocument();
+		writer2.add("C1", 5, -1, "PMH");
+		writer2.add("C1", 5, -1, "PMH");
+		writer2.endDocument();
+		writer1.flush();
+		writer2.flush();
+		CuiDocumentIndex index = new CuiDocumentIndex(indexDir);
+		Assert.assertEquals(2, index.getDocumentCount());
+		Assert.assertEquals(Arrays.asList(10, 5), new ArrayList<Integer>(index
+				.search(Collections.singleton("C1"), null, null).keySet()));
+		Assert.assertEquals(Arrays.asList(5), new ArrayList<Integer>(index
+				.search(Collections.singleton("C1"), -1, null).keySet()));
+		Assert.assertEquals(Arrays.asList(10), new ArrayList<Integer>(index
+				.search(Collections.singleton("C1"), null, "HPI").keySet()));
+		// documents are returned once, with the first matching code
+		Map<Integer, String> results = index.search(Arrays.asList("C2", "C1"),
+				null, null);
+		Assert.assertEquals(Arrays.asList(10, 5), new ArrayList<Integer>(
+				results.keySet()));
+		Assert.assertEquals("C2", results.get(10));
+		// new segment for an earlier document
+		writer1.add("C2", 7, 1, "PMH");
+		writer1.endDocument();
+		writer1.flush();
+		Assert.assertEquals(1, index.refresh());
+		Assert.assertEquals(0, index.refresh());
+		Assert.assertEquals(Arrays.asList(10, 7), new ArrayList<Integer>(index
+				.search(Collections.singleton("C2"), null, null).keySet()));
+		Assert.assertEquals(Arrays.asList(7, 5), new ArrayList<Integer>(index
+				.search(Arrays.asList("C1", "C2"), null, "PMH").keySet()));
+	}
+
+	/**
+	 * several writers flush segments with interleaved and repeated document
+	 * ids and their own section numbering; every refresh merges them into
+	 * the postings read so far
+	 */
+	@Test
+	public void testInterleavedSegments() throws IOException {
+		String[] sections = { "HPI", "PMH", "ROS", "PLAN", "MEDS" };
+		Random r = new Random(3);
+		// code to occurrences: document id in the high int, polarity + 1 and
+		// section index + 1 in the low int
+		Map<String, TreeSet<Long>> expected = new HashMap<String, TreeSet<Long>>();
+		CuiDocumentIndex index = new CuiDocumentIndex(indexDir);
+		int documents = 0;
+		for (int round = 0; round < 3; round++) {
+			for (int w = 0; w < 4; w++) {
+				CuiIndexWriter writer = new CuiIndexWriter(indexDir);
+				for (int d = 0; d < 50; d++) {
+					int documentId = r.nextInt(2000);
+					for (int c = 1 + r.nextInt(4); c > 0; c--) {
+						String code = "C" + r.nextInt(20);
+						int polarity = r.nextInt(3) - 1;
+						int section = r.nextInt(sections.length + 1) - 1;
+						writer.add(code, documentId, polarity,
+								section < 0 ? null : sections[section]);
+						if (!expected.containsKey(code))
+							expected.put(code, new TreeSet<Long>());
+						expected.get(code).add(
+								((long) documentId << 32)
+										| ((polarity + 1) << 8) | (section + 1));
+					}
+					writer.endDocument();
+					documents++;
+				}
+				writer.flush();
+			}
+			Assert.assertEquals(4, index.refresh());
+			Assert.assertEquals(documents, index.getDocumentCount());
+			Assert.assertEquals(expected.size(), index.getConceptCount());
+			for (Map.Entry<String, TreeSet<Long>> e : expected.entrySet()) {
+				for (Integer polarity : Arrays.asList(null, -1, 0, 1)) {
+					for (int section = -1; section < sections.length; section++) {
+						TreeSet<Integer> documentIds = new TreeSet<Integer>(
+								Collections.reverseOrder());
+						for (long key : e.getValue()) {
+							if ((polarity == null || ((key >> 8) & 0xff) == polarity + 1)
+									&& (section < 0 || (key & 0xff) == section + 1))
+								documentIds.add((int) (key >>> 32));
+						}
+						List<Integer> results = new ArrayList<Integer>(index
+								.search(Collections.singleton(e.getKey()),
+										polarity,
+										section < 0 ? null : sections[section])
+								.keySet());
+						Assert.assertEquals(new ArrayList<Integer>(documentIds),
+								results);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * merged postings are in document id order, existing postings first, with
+	 * the merged sections renumbered
+	 */
+	@Test
+	public void testMergePostings() {
+		CuiPostingList postings = new CuiPostingList();
+		postings.add(1, 1, 1);
+		postings.add(5, 1, 1);
+		postings.add(9, 1, 1);
+		CuiPostingList other = new CuiPostingList();
+		other.add(0, -1, 1);
+		other.add(5, -1, 2);
+		other.add(7, -1, 0);
+		other.add(12, -1, 1);
+		postings.merge(other, new int[] { 0, 3, 4 });
+		int[][] merged = { { 0, -1, 3 }, { 1, 1, 1 }, { 5, 1, 1 },
+				{ 5, -1, 4 }, { 7, -1, 0 }, { 9, 1, 1 }, { 12, -1, 3 } };
+		Assert.assertEquals(merged.length, postings.size());
+		Assert.assertEquals(12, postings.getLastDocumentId());
+		CuiPostingList.Cursor cursor = postings.cursor();
+		for (int[] posting : merged) {
+			Assert.assertTrue(cursor.next());
+			Assert.assertEquals(posting[0], cursor.getDocumentId());
+			Assert.assertEquals(posting[1], cursor.getPolarity());
+			Assert.assertEquals(posting[2], cursor.getSection());
+		}
+		Assert.assertFalse(cursor.next());
+		// later documents are appended
+		CuiPostingList later = new CuiPostingList();
+		later.add(12, 0, 0);
+		later.add(20, 0, 1);
+		postings.merge(later, new int[] { 0, 2 });
+		Assert.assertEquals(merged.length + 2, postings.size());
+		Assert.assertEquals(20, postings.getLastDocumentId());
+	}
+}
@@ -0,0 +1,235 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.kernel;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GramMatrixFileTest {
+	private static final int INSTANCES = 300;
+	private static final int EVAL_ROWS = 200;
+	private static final int TILE_SIZE = 32;
+
+	private File file;
+	private long[] instanceIds;
+
+	@Before
+	public void setup() throws IOException {
+		file = File.createTempFile("kernelEval", GramMatrixFile.FILE_EXTENSION);
+		instanceIds = new long[INSTANCES];
+		for (int i = 0; i < INSTANCES; i++)
+			instanceIds[i] = 1000 + 7 * i;
+	}
+
+	@After
+	public void cleanup() {
+		file.delete();
+	}
+
+	/**
+	 * evaluate half the tiles and checkpoint, write values of further tiles
+	 * without marking them done as an interrupted run would, then reopen the
+	 * file, evaluate the remaining tiles and export rows from the read only
+	 * file.
+	 */
+	@Test
+	public void testResumeAndExport() throws IOException {
+		Set<Integer> checkpointed = new HashSet<Integer>();
+		GramMatrixFile gramMatrix = GramMatrixFile.create(file, instanceIds,
+				EVAL_ROWS, TILE_SIZE, false);
+		try {
+			List<Integer> evaluated = evaluatedTiles(gramMatrix);
+			Assert.assertTrue(evaluated.size() < gramMatrix.getTileCount());
+			for (int t = 0; t < evaluated.size(); t++) {
+				int tile = evaluated.get(t);
+				if (t % 2 == 0) {
+					evaluate(gramMatrix, tile);
+					gramMatrix.markTileDone(tile);
+					checkpointed.add(tile);
+				} else if (t % 3 == 0) {
+					// written but not done, evaluated again on resume
+					evaluate(gramMatrix, tile);
+				}
+			}
+			Assert.assertEquals(checkpointed.size(),
+					gramMatrix.getPendingTileCount());
+			gramMatrix.checkpoint();
+			Assert.assertEquals(0, gramMatrix.getPendingTileCount());
+		} finally {
+			gramMatrix.close();
+		}
+
+		gramMatrix = GramMatrixFile.create(file, instanceIds, EVAL_ROWS,
+				TILE_SIZE, false);
+		int resumed = 0;
+		try {
+			for (int tile = 0; tile < gramMatrix.getTileCount(); tile++) {
+				Assert.assertEquals(checkpointed.contains(tile),
+						gramMatrix.isTileDone(tile));
+				if (gramMatrix.isTileEvaluated(tile)
+						&& !gramMatrix.isTileDone(tile)) {
+					evaluate(gramMatrix, tile);
+					gramMatrix.markTileDone(tile);
+					resumed++;
+				}
+			}
+		} finally {
+			gramMatrix.close();
+		}
+		Assert.assertTrue(resumed > 0);
+
+		gramMatrix = GramMatrixFile.open(file, false);
+		try {
+			Assert.assertEquals(INSTANCES, gramMatrix.size());
+			Assert.assertEquals(EVAL_ROWS, gramMatrix.getEvalRows());
+			for (int tile = 0; tile < gramMatrix.getTileCount(); tile++)
+				Assert.assertEquals(gramMatrix.isTileEvaluated(tile),
+						gramMatrix.isTileDone(tile));
+			// export rows the way the exporters do: by instance id, with an
+			// id that is not in the gram matrix
+			List<Long> columnIds = new ArrayList<Long>();
+			for (int i = INSTANCES - 1; i >= 0; i -= 3)
+				columnIds.add(instanceIds[i]);
+			columnIds.add(-1L);
+			int[] columnIndices = gramMatrix.getIndices(columnIds);
+			Assert.assertEquals(-1, columnIndices[columnIndices.length - 1]);
+			double[] row = new double[columnIndices.length];
+			for (int i = 0; i < INSTANCES; i++) {
+				int rowIndex = gramMatrix.getIndex(instanceIds[i]);
+				Assert.assertEquals(i, rowIndex);
+				gramMatrix.getRow(rowIndex, columnIndices, row);
+				for (int c = 0; c < columnIndices.length; c++) {
+					int j = columnIndices[c];
+					Assert.assertEquals(j < 0 ? 0 : expected(i, j), row[c], 0d);
+				}
+			}
+		} finally {
+			gramMatrix.close();
+		}
+	}
+
+	@Test
+	public void testSinglePrecision() throws IOException {
+		GramMatrixFile gramMatrix = GramMatrixFile.create(file, instanceIds,
+				INSTANCES, TILE_SIZE, true);
+		try {
+			for (int tile = 0; tile < gramMatrix.getTileCount(); tile++)
+				evaluate(gramMatrix, tile);
+		} finally {
+			gramMatrix.close();
+		}
+		gramMatrix = GramMatrixFile.open(file, false);
+		try {
+			for (int i = 0; i < INSTANCES; i++)
+				for (int j = 0; j < INSTANCES; j++)
+					Assert.assertEquals((float) kernel(i, j),
+							gramMatrix.get(i, j), 0d);
+		} finally {
+			gramMatrix.close();
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testReopenDifferentLayout() throws IOException {
+		GramMatrixFile.create(file, instanceIds, EVAL_ROWS, TILE_SIZE, false)
+				.close();
+		GramMatrixFile.create(file, instanceIds, EVAL_ROWS, TILE_SIZE * 2,
+				false);
+	}
+
+	@Test
+	public void testCreateTileTooLarge() throws IOException {
+		file.delete();
+		try {
+			// 16384 x 16384 doubles are 2 GB
+			GramMatrixFile.create(file, instanceIds, EVAL_ROWS, 16384, false);
+			Assert.fail("tile larger than Integer.MAX_VALUE bytes");
+		} catch (IllegalArgumentException e) {
+			Assert.assertFalse(file.exists());
+		}
+		// the same tile size fits in floats
+		Assert.assertTrue(GramMatrixFile.isTileSizeValid(16384, 4));
+	}
+
+	@Test(expected = IOException.class)
+	public void testOpenTileTooLarge() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(GramMatrixFile.HEADER_BYTES)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(GramMatrixFile.MAGIC);
+		header.putInt(GramMatrixFile.VERSION);
+		header.putInt(1);
+		header.putInt(16384);
+		header.putInt(8);
+		header.putInt(1);
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.write(header.array());
+		} finally {
+			raf.close();
+		}
+		GramMatrixFile.open(file, false);
+	}
+
+	private static List<Integer> evaluatedTiles(GramMatrixFile gramMatrix) {
+		List<Integer> tiles = new ArrayList<Integer>();
+		for (int tile = 0; tile < gramMatrix.getTileCount(); tile++)
+			if (gramMatrix.isTileEvaluated(tile))
+				tiles.add(tile);
+		return tiles;
+	}
+
+	/**
+	 * set the values of a tile like the corpus kernel evaluator does
+	 */
+	private static void evaluate(GramMatrixFile gramMatrix, int tile) {
+		int rowStart = gramMatrix.getTileRow(tile) * TILE_SIZE;
+		int rowEnd = Math.min(rowStart + TILE_SIZE, gramMatrix.getEvalRows());
+		int columnStart = gramMatrix.getTileColumn(tile) * TILE_SIZE;
+		int columnEnd = Math.min(columnStart + TILE_SIZE, gramMatrix.size());
+		for (int i = rowStart; i < rowEnd; i++)
+			for (int j = Math.max(i, columnStart); j < columnEnd; j++)
+				gramMatrix.set(i, j, kernel(i, j));
+	}
+
+	private static double kernel(int i, int j) {
+		return 1d / (1 + Math.abs(i - j)) + 0.001 * Math.min(i, j);
+	}
+
+	/**
+	 * pairs of instances past evalRows are not evaluated and read as 0, the
+	 * diagonal reads as 1
+	 */
+	private static double expected(int i, int j) {
+		if (Math.min(i, j) < EVAL_ROWS)
+			return kernel(i, j);
+		return i == j ? 1 : 0;
+	}
+}
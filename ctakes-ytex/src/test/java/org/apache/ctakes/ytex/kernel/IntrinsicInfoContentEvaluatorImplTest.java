@@ -0,0 +1,193 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.kernel;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.ctakes.ytex.kernel.IntrinsicInfoContentEvaluatorImpl.IntrinsicICInfo;
+import org.apache.ctakes.ytex.kernel.model.ConcRel;
+import org.apache.ctakes.ytex.kernel.model.ConceptGraph;
+import org.apache.ctakes.ytex.kernel.model.ConceptGraphTestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IntrinsicInfoContentEvaluatorImplTest {
+	private static final int CONCEPTS = 2000;
+	/**
+	 * concepts from this index on are only reachable from a second root
+	 */
+	private static final int OTHER_ROOT = 1800;
+
+	/**
+	 * compare depth and intrinsic IC with the recursive computation the
+	 * evaluator used before it counted in topological order
+	 */
+	@Test
+	public void testMatchesRecursiveCounts() throws IOException {
+		for (long seed = 1; seed <= 5; seed++) {
+			ConceptGraph cg = randomGraph(new Random(seed), 1 + (int) seed);
+			Map<String, IntrinsicICInfo> icInfoMap = new HashMap<String, IntrinsicICInfo>();
+			short[] depthArray = new short[CONCEPTS];
+			computeSubsumerCount(cg.getConceptMap().get(cg.getRoot()),
+					icInfoMap, new HashMap<String, Set<String>>(), depthArray);
+			getLeaves(cg.getConceptMap().get(cg.getRoot()),
+					new HashMap<Integer, HashSet<Integer>>(), icInfoMap, null);
+			int maxLeaves = new IntrinsicInfoContentEvaluatorImpl()
+					.getAllLeaves(cg, null).size();
+
+			new IntrinsicInfoContentEvaluatorImpl()
+					.evaluateIntrinsicInfoContent("test", null, cg);
+
+			Assert.assertEquals(OTHER_ROOT, icInfoMap.size());
+			for (ConcRel cr : cg.getConceptList()) {
+				IntrinsicICInfo icInfo = icInfoMap.get(cr.getConceptID());
+				if (icInfo == null) {
+					// not below the root, left alone
+					Assert.assertEquals(-1d, cr.getIntrinsicInfoContent(), 0d);
+					continue;
+				}
+				Assert.assertEquals(cr.getConceptID(),
+						depthArray[cr.getNodeIndex()], cr.getDepth());
+				double ic = log2(maxLeaves + 1d)
+						- log2((double) icInfo.getLeafCount()
+								/ (double) icInfo.getSubsumerCount() + 1d);
+				Assert.assertEquals(cr.getConceptID(), ic,
+						cr.getIntrinsicInfoContent(), 1e-12);
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCycle() throws IOException {
+		ConceptGraph cg = randomGraph(new Random(1), 2);
+		// make a child of C1 a parent of C1 as well
+		ConcRel concept = cg.getConceptList().get(1);
+		ConcRel child = concept.getChildren().iterator().next();
+		child.getChildren().add(concept);
+		concept.getParents().add(child);
+		new IntrinsicInfoContentEvaluatorImpl().evaluateIntrinsicInfoContent(
+				"test", null, cg);
+	}
+
+	/**
+	 * random dag where each concept has up to maxParents parents with lower
+	 * indices. Concepts from OTHER_ROOT on are not below the root C0.
+	 */
+	private static ConceptGraph randomGraph(Random r, int maxParents) {
+		ConceptGraph cg = ConceptGraphTestUtils.randomDag(r, CONCEPTS,
+				maxParents, 0, OTHER_ROOT);
+		for (ConcRel cr : cg.getConceptList())
+			cr.setIntrinsicInfoContent(-1d);
+		cg.setRoot("C0");
+		return cg;
+	}
+
+	private static double log2(double x) {
+		return Math.log(x) / Math.log(2);
+	}
+
+	/**
+	 * the previous recursive subsumer count, without the debug output
+	 */
+	private static void computeSubsumerCount(ConcRel concept,
+			Map<String, IntrinsicICInfo> icInfoMap,
+			Map<String, Set<String>> subsumerMap, short[] depthArray) {
+		IntrinsicICInfo icInfo = icInfoMap.get(concept.getConceptID());
+		if (icInfo != null && icInfo.getSubsumerCount() > 0) {
+			return;
+		}
+		if (icInfo == null) {
+			icInfo = new IntrinsicICInfo(concept);
+			icInfoMap.put(concept.getConceptID(), icInfo);
+		}
+		Set<String> subsumers = getSubsumers(concept, subsumerMap, depthArray);
+		icInfo.setSubsumerCount(subsumers.size());
+		for (ConcRel child : concept.getChildren()) {
+			computeSubsumerCount(child, icInfoMap, subsumerMap, depthArray);
+		}
+	}
+
+	private static Set<String> getSubsumers(ConcRel concept,
+			Map<String, Set<String>> subsumerMap, short depthArray[]) {
+		if (subsumerMap.containsKey(concept.getConceptID()))
+			return subsumerMap.get(concept.getConceptID());
+		Set<String> subsumers = new HashSet<String>();
+		boolean calcDepth = depthArray[concept.getNodeIndex()] == 0;
+		short parentMaxDepth = 0;
+		if (concept.getParents() != null && !concept.getParents().isEmpty()) {
+			for (ConcRel parent : concept.getParents()) {
+				subsumers.addAll(getSubsumers(parent, subsumerMap, depthArray));
+				if (calcDepth) {
+					short parentDepth = depthArray[parent.getNodeIndex()];
+					if (parentDepth > parentMaxDepth)
+						parentMaxDepth = parentDepth;
+				}
+			}
+		}
+		if (calcDepth)
+			depthArray[concept.getNodeIndex()] = (short) (parentMaxDepth + 1);
+		subsumers.add(concept.getConceptID());
+		subsumerMap.put(concept.getConceptID(), subsumers);
+		return subsumers;
+	}
+
+	/**
+	 * the previous recursive leaf count, with a strong cache instead of soft
+	 * references and without the debug output
+	 */
+	private static HashSet<Integer> getLeaves(ConcRel concept,
+			Map<Integer, HashSet<Integer>> leafCache,
+			Map<String, IntrinsicICInfo> icInfoMap,
+			HashSet<Integer> visitedNodes) {
+		HashSet<Integer> leaves = leafCache.get(concept.getNodeIndex());
+		if (leaves != null)
+			return leaves;
+		leaves = new HashSet<Integer>();
+		leafCache.put(concept.getNodeIndex(), leaves);
+		if (concept.isLeaf()) {
+			leaves.add(concept.getNodeIndex());
+		} else {
+			IntrinsicICInfo icInfo = icInfoMap.get(concept.getConceptID());
+			boolean needLeaves = (icInfo != null && icInfo.getLeafCount() == 0);
+			HashSet<Integer> visitedNodesLocal = visitedNodes;
+			if (needLeaves || visitedNodesLocal == null) {
+				visitedNodesLocal = new HashSet<Integer>();
+			}
+			for (ConcRel child : concept.getChildren()) {
+				if (!visitedNodesLocal.contains(child.getNodeIndex())) {
+					leaves.addAll(getLeaves(child, leafCache, icInfoMap,
+							visitedNodesLocal));
+				}
+			}
+			if (visitedNodes != null && visitedNodes != visitedNodesLocal) {
+				visitedNodes.add(concept.getNodeIndex());
+				visitedNodes.addAll(visitedNodesLocal);
+			}
+			if (needLeaves) {
+				icInfo.setLeafCount(leaves.size());
+			}
+		}
+		return leaves;
+	}
+}
@@ -0,0 +1,106 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.kernel;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StreamingSparseDataTest {
+	private StreamingSparseData sparseData;
+
+	@Before
+	public void setup() throws IOException {
+		sparseData = new StreamingSparseData(null);
+	}
+
+	@After
+	public void cleanup() throws IOException {
+		sparseData.close();
+	}
+
+	private String toString(StreamingSparseData.Row row) {
+		StringBuilder b = new StringBuilder();
+		for (int i = 0; i < row.size(); i++) {
+			b.append(" ").append(row.getId(i)).append(":")
+					.append(row.getValue(i));
+		}
+		return b.toString().trim();
+	}
+
+	/**
+	 * attributes are interned in the order seen, numeric before nominal, and
+	 * the last value of a repeated attribute wins
+	 */
+	@Test
+	public void testCursor() throws IOException {
+		sparseData.addNumericWord(1, "b", 2d);
+		sparseData.addNumericWord(1, "a", 1d);
+		sparseData.addNumericWord(3, "a", 3d);
+		sparseData.addNumericWord(3, "a", 4d);
+		sparseData.addNominalWord(2, "color", "red");
+		sparseData.addNominalWord(3, "color", "red");
+		sparseData.addNominalWord(3, "color", "blue");
+		sparseData.addNominalWord(3, "size", "small");
+		Assert.assertEquals(5, sparseData.getAttributeCount());
+		StreamingSparseData.Cursor cursor = sparseData.openCursor();
+		try {
+			Assert.assertEquals("1:2.0 2:1.0", toString(cursor.getRow(1)));
+			Assert.assertEquals("3:1.0", toString(cursor.getRow(2)));
+			Assert.assertEquals("2:4.0 4:1.0 5:1.0",
+					toString(cursor.getRow(3)));
+			Assert.assertEquals("", toString(cursor.getRow(4)));
+		} finally {
+			cursor.close();
+		}
+		StringWriter sw = new StringWriter();
+		BufferedWriter w = new BufferedWriter(sw);
+		sparseData.writeAttributeNames(w);
+		w.close();
+		Assert.assertEquals("b\na\ncolor\tred\ncolor\tblue\nsize\n",
+				sw.toString());
+	}
+
+	/**
+	 * skipped instances are not returned
+	 */
+	@Test
+	public void testSkip() throws IOException {
+		sparseData.addNumericWord(1, "a", 1d);
+		sparseData.addNumericWord(2, "a", 2d);
+		sparseData.addNumericWord(3, "a", 3d);
+		StreamingSparseData.Cursor cursor = sparseData.openCursor();
+		try {
+			Assert.assertEquals("1:3.0", toString(cursor.getRow(3)));
+		} finally {
+			cursor.close();
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testUnordered() throws IOException {
+		sparseData.addNumericWord(2, "a", 1d);
+		sparseData.addNumericWord(1, "a", 1d);
+	}
+}
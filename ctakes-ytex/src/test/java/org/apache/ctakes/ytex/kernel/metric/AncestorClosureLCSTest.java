@@ -0,0 +1,145 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.kernel.metric;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.ctakes.ytex.kernel.model.ConcRel;
+import org.apache.ctakes.ytex.kernel.model.ConceptGraph;
+import org.apache.ctakes.ytex.kernel.model.ConceptGraphTestUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AncestorClosureLCSTest {
+	private static final int CONCEPTS = 2000;
+	private static final int OTHER_ROOT = 1800;
+
+	private ConceptGraph cg;
+	private AncestorClosureLCS closureLCS;
+
+	/**
+	 * random dag with two roots, where each other concept has one to three
+	 * parents with lower indices. Concepts from OTHER_ROOT on are only below
+	 * the second root.
+	 */
+	@Before
+	public void setup() {
+		cg = ConceptGraphTestUtils.randomDag(new Random(7), CONCEPTS, 3, 0,
+				OTHER_ROOT);
+		closureLCS = new AncestorClosureLCS(cg);
+	}
+
+	/**
+	 * the lcses are the common ancestors with the shortest path, as found by
+	 * an exhaustive search
+	 */
+	@Test
+	public void testShortestPath() {
+		Random r = new Random(11);
+		for (int t = 0; t < 2000; t++) {
+			ConcRel c1 = cg.getConceptList().get(r.nextInt(CONCEPTS));
+			ConcRel c2 = cg.getConceptList().get(r.nextInt(CONCEPTS));
+			Set<ConcRel> expected = new HashSet<ConcRel>();
+			Set<ConcRel> actual = new HashSet<ConcRel>();
+			Assert.assertEquals(exhaustiveLCS(c1, c2, expected),
+					closureLCS.getLeastCommonConcept(c1, c2, actual));
+			Assert.assertEquals(expected, actual);
+		}
+	}
+
+	/**
+	 * the path is never longer than the one found by the pruned search in
+	 * ConcRel, and when it is as long, it has all of the ConcRel lcses
+	 */
+	@Test
+	public void testConcRel() {
+		Random r = new Random(13);
+		for (int t = 0; t < 2000; t++) {
+			ConcRel c1 = cg.getConceptList().get(r.nextInt(CONCEPTS));
+			ConcRel c2 = cg.getConceptList().get(r.nextInt(CONCEPTS));
+			Set<ConcRel> concRelLcses = new HashSet<ConcRel>();
+			Set<ConcRel> lcses = new HashSet<ConcRel>();
+			int concRelDist = ConcRel.getLeastCommonConcept(c1, c2,
+					concRelLcses, null);
+			int dist = closureLCS.getLeastCommonConcept(c1, c2, lcses);
+			if (concRelDist < 0) {
+				Assert.assertEquals(-1, dist);
+			} else {
+				Assert.assertTrue(dist <= concRelDist);
+				if (dist == concRelDist)
+					Assert.assertTrue(lcses.containsAll(concRelLcses));
+			}
+		}
+	}
+
+	@Test
+	public void testSameAndUnrelatedConcepts() {
+		ConcRel c = cg.getConceptList().get(42);
+		Set<ConcRel> lcses = new HashSet<ConcRel>();
+		Assert.assertEquals(1, closureLCS.getLeastCommonConcept(c, c, lcses));
+		Assert.assertEquals(Collections.singleton(c), lcses);
+		lcses.clear();
+		Assert.assertEquals(-1, closureLCS.getLeastCommonConcept(c, cg
+				.getConceptList().get(OTHER_ROOT + 11), lcses));
+		Assert.assertTrue(lcses.isEmpty());
+	}
+
+	private static int exhaustiveLCS(ConcRel c1, ConcRel c2, Set<ConcRel> lcses) {
+		Map<ConcRel, Integer> dist1 = ancestorDistances(c1);
+		Map<ConcRel, Integer> dist2 = ancestorDistances(c2);
+		int minDist = Integer.MAX_VALUE;
+		for (Map.Entry<ConcRel, Integer> entry : dist1.entrySet()) {
+			Integer d2 = dist2.get(entry.getKey());
+			if (d2 == null)
+				continue;
+			int dist = entry.getValue() + d2;
+			if (dist < minDist) {
+				lcses.clear();
+				minDist = dist;
+			}
+			if (dist == minDist)
+				lcses.add(entry.getKey());
+		}
+		return lcses.isEmpty() ? -1 : minDist + 1;
+	}
+
+	private static Map<ConcRel, Integer> ancestorDistances(ConcRel c) {
+		Map<ConcRel, Integer> distances = new HashMap<ConcRel, Integer>();
+		LinkedList<ConcRel> queue = new LinkedList<ConcRel>();
+		distances.put(c, 0);
+		queue.add(c);
+		while (!queue.isEmpty()) {
+			ConcRel current = queue.removeFirst();
+			for (ConcRel parent : current.getParents()) {
+				if (!distances.containsKey(parent)) {
+					distances.put(parent, distances.get(current) + 1);
+					queue.add(parent);
+				}
+			}
+		}
+		return distances;
+	}
+}
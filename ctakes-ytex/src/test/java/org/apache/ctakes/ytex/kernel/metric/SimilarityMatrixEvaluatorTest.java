@@ -0,0 +1,197 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.kernel.metric;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ctakes.ytex.kernel.metric.ConceptSimilarityService.SimilarityMetricEnum;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SimilarityMatrixEvaluatorTest {
+	private ForkJoinPool pool;
+	private ConceptSimilarityService simSvc;
+	private Map<SimilarityMetricEnum, SimilarityMetric> metricMap;
+	/**
+	 * number of lcs lookups per unordered concept pair
+	 */
+	private Map<String, AtomicInteger> lcsLookups;
+
+	/**
+	 * a similarity service that only computes a fake lcs, and metrics that
+	 * depend on the order of the concepts, the lcs distance and the lcses
+	 */
+	@Before
+	public void setup() {
+		pool = new ForkJoinPool(4);
+		lcsLookups = new ConcurrentHashMap<String, AtomicInteger>();
+		simSvc = (ConceptSimilarityService) Proxy.newProxyInstance(
+				ConceptSimilarityService.class.getClassLoader(),
+				new Class<?>[] { ConceptSimilarityService.class },
+				new InvocationHandler() {
+					@SuppressWarnings("unchecked")
+					@Override
+					public Object invoke(Object proxy, Method method,
+							Object[] args) {
+						if (!"getLCS".equals(method.getName()))
+							throw new UnsupportedOperationException(method
+									.getName());
+						return getLCS((String) args[0], (String) args[1],
+								(Set<String>) args[2]);
+					}
+				});
+		metricMap = new EnumMap<SimilarityMetricEnum, SimilarityMetric>(
+				SimilarityMetricEnum.class);
+		metricMap.put(SimilarityMetricEnum.LCH, new SimilarityMetric() {
+			@Override
+			public double similarity(String concept1, String concept2,
+					Map<String, Double> conceptFilter, SimilarityInfo simInfo) {
+				return simInfo.getLcsDist() * 1000 + concept1.hashCode() % 100
+						+ (conceptFilter == null ? 0 : 0.5);
+			}
+		});
+		metricMap.put(SimilarityMetricEnum.PATH, new SimilarityMetric() {
+			@Override
+			public double similarity(String concept1, String concept2,
+					Map<String, Double> conceptFilter, SimilarityInfo simInfo) {
+				return simInfo.getLcses().toString().hashCode()
+						+ concept2.hashCode() / 1e6;
+			}
+		});
+		metricMap.put(SimilarityMetricEnum.PAGERANK, new SimilarityMetric() {
+			@Override
+			public double similarity(String concept1, String concept2,
+					Map<String, Double> conceptFilter, SimilarityInfo simInfo) {
+				return concept1.compareTo(concept2);
+			}
+		});
+	}
+
+	@After
+	public void cleanup() {
+		pool.shutdown();
+	}
+
+	private int getLCS(String concept1, String concept2, Set<String> lcses) {
+		String first = concept1.compareTo(concept2) < 0 ? concept1 : concept2;
+		String second = first == concept1 ? concept2 : concept1;
+		String key = first + "|" + second;
+		AtomicInteger count = lcsLookups.get(key);
+		if (count == null) {
+			lcsLookups.putIfAbsent(key, new AtomicInteger());
+			count = lcsLookups.get(key);
+		}
+		count.incrementAndGet();
+		lcses.add("L" + key);
+		if (key.hashCode() % 3 == 0)
+			lcses.add("M" + key);
+		return 1 + Math.abs(key.hashCode() % 7);
+	}
+
+	/**
+	 * every cell matches per-pair evaluation, and the lcs of each unordered
+	 * pair is looked up once
+	 */
+	@Test
+	public void testMatchesPairwise() {
+		Random r = new Random(3);
+		List<String> concepts1 = randomConcepts(r, 300);
+		List<String> concepts2 = randomConcepts(r, 250);
+		List<SimilarityMetricEnum> metrics = Arrays.asList(
+				SimilarityMetricEnum.PATH, SimilarityMetricEnum.LCH,
+				SimilarityMetricEnum.PAGERANK);
+		Map<String, Double> conceptFilter = Collections.singletonMap("C1",
+				1d);
+		SimilarityMatrix matrix = new SimilarityMatrix(concepts1, concepts2,
+				metrics);
+		new SimilarityMatrixEvaluator(simSvc, metricMap, pool).evaluate(
+				matrix, conceptFilter);
+		Assert.assertFalse(lcsLookups.isEmpty());
+		for (AtomicInteger count : lcsLookups.values())
+			Assert.assertEquals(1, count.get());
+		lcsLookups.clear();
+		for (int i = 0; i < concepts1.size(); i++) {
+			for (int j = 0; j < concepts2.size(); j++) {
+				SimilarityInfo simInfo = new SimilarityInfo();
+				simInfo.setLcsDist(getLCS(concepts1.get(i), concepts2.get(j),
+						simInfo.getLcses()));
+				for (int k = 0; k < metrics.size(); k++) {
+					double expected = metricMap.get(metrics.get(k))
+							.similarity(concepts1.get(i), concepts2.get(j),
+									conceptFilter, simInfo);
+					Assert.assertEquals(expected,
+							matrix.getSimilarity(i, j, k), 0d);
+				}
+			}
+		}
+	}
+
+	/**
+	 * pagerank alone does not need the lcs
+	 */
+	@Test
+	public void testNoLcsLookup() {
+		List<String> concepts = Arrays.asList("C1", "C2", "C1");
+		SimilarityMatrix matrix = new SimilarityMatrix(concepts, concepts,
+				Collections.singletonList(SimilarityMetricEnum.PAGERANK));
+		new SimilarityMatrixEvaluator(simSvc, metricMap, pool).evaluate(
+				matrix, null);
+		Assert.assertTrue(lcsLookups.isEmpty());
+		Assert.assertEquals(-1d, matrix.getSimilarity(0, 1, 0), 0d);
+		Assert.assertEquals(1d, matrix.getSimilarity(1, 2, 0), 0d);
+		Assert.assertEquals(0d, matrix.getSimilarity(2, 0, 0), 0d);
+	}
+
+	@Test
+	public void testEmpty() {
+		SimilarityMatrix matrix = new SimilarityMatrix(
+				Collections.<String> emptyList(), Arrays.asList("C1"),
+				Arrays.asList(SimilarityMetricEnum.LCH));
+		new SimilarityMatrixEvaluator(simSvc, metricMap, pool).evaluate(
+				matrix, null);
+		Assert.assertEquals(0, matrix.getSimilarities().length);
+		Assert.assertTrue(lcsLookups.isEmpty());
+	}
+
+	/**
+	 * concepts from a pool of 400, so that the lists have duplicates and
+	 * share concepts
+	 */
+	private static List<String> randomConcepts(Random r, int size) {
+		List<String> concepts = new ArrayList<String>(size);
+		for (int i = 0; i < size; i++)
+			concepts.add("C" + r.nextInt(400));
+		return concepts;
+	}
+}
@@ -0,0 +1,150 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.kernel.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompactConceptGraphTest {
+	private static final int CONCEPTS = 500;
+
+	private File file;
+	private ConceptGraph cg;
+
+	/**
+	 * random dag where each concept has one or two parents with lower indices
+	 */
+	@Before
+	public void setup() throws IOException {
+		file = File.createTempFile("conceptGraph",
+				CompactConceptGraph.FILE_EXTENSION);
+		cg = ConceptGraphTestUtils.randomDag(new Random(1), CONCEPTS, 2, 0);
+		for (ConcRel cr : cg.getConceptList()) {
+			cr.setDepth((short) (cr.getNodeIndex() % 7));
+			cr.setIntrinsicInfoContent(cr.getNodeIndex() * 0.5);
+		}
+		cg.setRoot("C0");
+		cg.setDepthMax((short) 6);
+		cg.setIntrinsicICMax(249.5);
+	}
+
+	@After
+	public void cleanup() {
+		file.delete();
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		CompactConceptGraph.write(cg, file);
+		ConceptGraph compact = CompactConceptGraph.read(file).toConceptGraph();
+		Assert.assertEquals("C0", compact.getRoot());
+		Assert.assertEquals(6, compact.getDepthMax());
+		Assert.assertEquals(249.5, compact.getIntrinsicICMax(), 0d);
+		Assert.assertEquals(CONCEPTS, compact.getConceptList().size());
+		Assert.assertEquals(CONCEPTS, compact.getConceptMap().size());
+		Assert.assertNull(compact.getConceptMap().get("C" + CONCEPTS));
+		for (int i = 0; i < CONCEPTS; i++) {
+			ConcRel expected = cg.getConceptList().get(i);
+			ConcRel actual = compact.getConceptMap().get("C" + i);
+			Assert.assertSame(actual, compact.getConceptList().get(i));
+			Assert.assertEquals(i, actual.getNodeIndex());
+			Assert.assertEquals(expected.getDepth(), actual.getDepth());
+			Assert.assertEquals(expected.getIntrinsicInfoContent(),
+					actual.getIntrinsicInfoContent(), 0d);
+			Assert.assertEquals(cuis(expected.getParents()),
+					cuis(actual.getParents()));
+			Assert.assertEquals(cuis(expected.getChildren()),
+					cuis(actual.getChildren()));
+		}
+	}
+
+	/**
+	 * least common subsumers found on the compact graph are those found on
+	 * the in-memory graph
+	 */
+	@Test
+	public void testLeastCommonConcept() throws IOException {
+		CompactConceptGraph.write(cg, file);
+		ConceptGraph compact = CompactConceptGraph.read(file).toConceptGraph();
+		Random r = new Random(2);
+		for (int t = 0; t < 500; t++) {
+			int i = r.nextInt(CONCEPTS);
+			int j = r.nextInt(CONCEPTS);
+			Set<ConcRel> expectedLcs = new HashSet<ConcRel>();
+			Set<ConcRel> actualLcs = new HashSet<ConcRel>();
+			int expected = ConcRel.getLeastCommonConcept(cg.getConceptList()
+					.get(i), cg.getConceptList().get(j), expectedLcs, null);
+			int actual = ConcRel.getLeastCommonConcept(compact
+					.getConceptList().get(i), compact.getConceptList().get(j),
+					actualLcs, null);
+			Assert.assertEquals(expected, actual);
+			Assert.assertEquals(cuis(expectedLcs), cuis(actualLcs));
+		}
+	}
+
+	/**
+	 * like a deserialized graph, a graph without a maximum depth only has the
+	 * relation arrays
+	 */
+	@Test
+	public void testCyclicGraphArrays() throws IOException {
+		cg.setDepthMax((short) 0);
+		CompactConceptGraph.write(cg, file);
+		ConceptGraph compact = CompactConceptGraph.read(file).toConceptGraph();
+		for (int i = 0; i < CONCEPTS; i++) {
+			ConcRel expected = cg.getConceptList().get(i);
+			ConcRel actual = compact.getConceptList().get(i);
+			Assert.assertTrue(actual.getParents().isEmpty());
+			Assert.assertTrue(actual.getChildren().isEmpty());
+			Assert.assertEquals(indices(expected.getParents()),
+					indices(actual.getParentsArray()));
+			Assert.assertEquals(indices(expected.getChildren()),
+					indices(actual.getChildrenArray()));
+		}
+	}
+
+	private static Set<String> cuis(Set<ConcRel> concepts) {
+		Set<String> cuis = new HashSet<String>();
+		for (ConcRel cr : concepts)
+			cuis.add(cr.getConceptID());
+		return cuis;
+	}
+
+	private static Set<Integer> indices(Set<ConcRel> concepts) {
+		Set<Integer> indices = new HashSet<Integer>();
+		for (ConcRel cr : concepts)
+			indices.add(cr.getNodeIndex());
+		return indices;
+	}
+
+	private static Set<Integer> indices(int[] array) {
+		Set<Integer> indices = new HashSet<Integer>();
+		for (int index : array)
+			indices.add(index);
+		return indices;
+	}
+}
@@ -0,0 +1,70 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.kernel.model;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * random concept graphs for the concept graph tests
+ */
+public class ConceptGraphTestUtils {
+	/**
+	 * random dag of the concepts C0 to C(concepts-1). Every concept that is
+	 * not a root has 1 to maxParents parents (fewer if a parent is drawn
+	 * twice), drawn from the concepts with lower indices in the same tree.
+	 * The tree of a concept is that of the closest root at or below its
+	 * index, so the concepts from one root up to the next are only
+	 * reachable from that root.
+	 * 
+	 * @param r
+	 *            random number generator
+	 * @param concepts
+	 *            number of concepts
+	 * @param maxParents
+	 *            maximum number of parents of a concept
+	 * @param roots
+	 *            indices of the roots in ascending order, starting with 0
+	 */
+	public static ConceptGraph randomDag(Random r, int concepts,
+			int maxParents, int... roots) {
+		if (roots.length == 0 || roots[0] != 0)
+			throw new IllegalArgumentException("the first root must be 0");
+		ConceptGraph cg = new ConceptGraph();
+		for (int i = 0; i < concepts; i++)
+			cg.addConcept("C" + i);
+		List<ConcRel> conceptList = cg.getConceptList();
+		int root = 0;
+		for (int i = 1; i < concepts; i++) {
+			if (root + 1 < roots.length && roots[root + 1] == i) {
+				root++;
+				continue;
+			}
+			int first = roots[root];
+			int parentCount = 1 + r.nextInt(maxParents);
+			for (int j = 0; j < parentCount; j++) {
+				ConcRel child = conceptList.get(i);
+				ConcRel parent = conceptList.get(first + r.nextInt(i - first));
+				child.getParents().add(parent);
+				parent.getChildren().add(child);
+			}
+		}
+		return cg;
+	}
+}
@@ -0,0 +1,164 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.kernel.pagerank;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.ctakes.ytex.kernel.model.ConcRel;
+import org.apache.ctakes.ytex.kernel.model.ConceptGraph;
+import org.apache.ctakes.ytex.kernel.model.ConceptGraphTestUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PageRankServiceImplTest {
+	private static final int CONCEPTS = 3000;
+	private static final int ITER = 30;
+	private static final double THRESHOLD = 1e-4;
+	private static final double DAMPING = 0.85;
+
+	private ConceptGraph cg;
+	private Random random;
+
+	/**
+	 * random dag where each concept has one to three parents with lower
+	 * indices. The relations are set as ConcRel sets and as the arrays that
+	 * pagerankIter reads.
+	 */
+	@Before
+	public void setup() {
+		random = new Random(5);
+		cg = ConceptGraphTestUtils.randomDag(random, CONCEPTS, 3, 0);
+		for (ConcRel cr : cg.getConceptList()) {
+			cr.setParentsArray(indices(cr.getParents()));
+			cr.setChildrenArray(indices(cr.getChildren()));
+		}
+	}
+
+	@Test
+	public void testRank2MatchesPagerankIter() {
+		PageRankServiceImpl service = new PageRankServiceImpl();
+		for (Map<Integer, Double> dampingVector : dampingVectors()) {
+			double[] expected = iterate(service, dampingVector);
+			Assert.assertArrayEquals(expected, service.rank2(dampingVector,
+					cg, ITER, THRESHOLD, DAMPING), 1e-12);
+		}
+		Assert.assertArrayEquals(iterate(service, null),
+				service.rank2(null, cg, ITER, THRESHOLD, DAMPING), 1e-12);
+	}
+
+	@Test
+	public void testParallelRank2() {
+		PageRankServiceImpl service = new PageRankServiceImpl();
+		PageRankServiceImpl parallel = new PageRankServiceImpl();
+		parallel.setParallel(true);
+		for (Map<Integer, Double> dampingVector : dampingVectors()) {
+			Assert.assertArrayEquals(service.rank2(dampingVector, cg, ITER,
+					THRESHOLD, DAMPING), parallel.rank2(dampingVector, cg,
+					ITER, THRESHOLD, DAMPING), 1e-12);
+		}
+	}
+
+	@Test
+	public void testRankBatchMatchesRank2() {
+		PageRankServiceImpl service = new PageRankServiceImpl();
+		List<Map<Integer, Double>> dampingVectors = dampingVectors();
+		double[][] ranks = service.rankBatch(dampingVectors, cg, ITER,
+				THRESHOLD, DAMPING);
+		Assert.assertEquals(dampingVectors.size(), ranks.length);
+		for (int b = 0; b < ranks.length; b++) {
+			Assert.assertArrayEquals(service.rank2(dampingVectors.get(b), cg,
+					ITER, THRESHOLD, DAMPING), ranks[b], 1e-12);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRankBatchTooLarge() {
+		Map<Integer, Double> dampingVector = Collections.singletonMap(0, 1d);
+		new PageRankServiceImpl().rankBatch(Collections.nCopies(
+				Integer.MAX_VALUE / CONCEPTS + 1, dampingVector), cg, ITER,
+				THRESHOLD, DAMPING);
+	}
+
+	/**
+	 * the iteration rank2 ran before it used the compressed adjacency
+	 */
+	private double[] iterate(PageRankServiceImpl service,
+			Map<Integer, Double> dampingVector) {
+		double N = CONCEPTS;
+		double[] scores = new double[CONCEPTS];
+		Map<Integer, Double> dampingVectorAdj = null;
+		if (dampingVector != null) {
+			dampingVectorAdj = new HashMap<Integer, Double>();
+			for (Map.Entry<Integer, Double> dvEntry : dampingVector.entrySet()) {
+				dampingVectorAdj.put(dvEntry.getKey(), dvEntry.getValue()
+						* (1 - DAMPING));
+				scores[dvEntry.getKey()] = dvEntry.getValue();
+			}
+		} else {
+			Arrays.fill(scores, 1d / N);
+		}
+		for (int i = 0; i < ITER; i++) {
+			double[] old = scores;
+			scores = service.pagerankIter(scores, dampingVectorAdj, cg,
+					DAMPING, N);
+			double diff = 0d;
+			for (int j = 0; j < CONCEPTS; j++)
+				diff += (scores[j] - old[j]) * (scores[j] - old[j]);
+			if (Math.sqrt(diff) <= THRESHOLD)
+				break;
+		}
+		return scores;
+	}
+
+	/**
+	 * single concept vectors as used by sim(), near the roots and the leaves,
+	 * and a vector that spreads over many concepts so that the iteration
+	 * becomes dense
+	 */
+	private List<Map<Integer, Double>> dampingVectors() {
+		List<Map<Integer, Double>> dampingVectors = new ArrayList<Map<Integer, Double>>();
+		dampingVectors.add(Collections.singletonMap(0, 1d));
+		dampingVectors.add(Collections.singletonMap(3, 1d));
+		dampingVectors.add(Collections.singletonMap(CONCEPTS / 2, 1d));
+		dampingVectors.add(Collections.singletonMap(CONCEPTS - 1, 1d));
+		Map<Integer, Double> spread = new HashMap<Integer, Double>();
+		for (int i = 0; i < CONCEPTS / 4; i++)
+			spread.put(random.nextInt(CONCEPTS), 0d);
+		for (Integer index : spread.keySet())
+			spread.put(index, 1d / spread.size());
+		dampingVectors.add(spread);
+		return dampingVectors;
+	}
+
+	private static int[] indices(Set<ConcRel> relations) {
+		int[] indices = new int[relations.size()];
+		int i = 0;
+		for (ConcRel cr : relations)
+			indices[i++] = cr.getNodeIndex();
+		return indices;
+	}
+}
@@ -0,0 +1,292 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.libsvm;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.ctakes.ytex.kernel.BagOfWordsDecorator;
+import org.apache.ctakes.ytex.kernel.InstanceData;
+import org.apache.ctakes.ytex.kernel.KernelUtilImpl;
+import org.apache.ctakes.ytex.kernel.SparseData;
+import org.apache.ctakes.ytex.kernel.SparseDataExporterImpl;
+import org.apache.ctakes.ytex.kernel.StreamingSparseData;
+import org.apache.ctakes.ytex.kernel.StreamingSparseDataFormatter;
+import org.apache.ctakes.ytex.libsvm.LibSVMFormatterFactory.LibSVMFormatter;
+import org.apache.ctakes.ytex.libsvm.LibSVMFormatterFactory.LibSVMStreamingFormatter;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * exports the same instances with the per fold {@link LibSVMFormatter} and the
+ * single pass {@link LibSVMStreamingFormatter}, and compares the files.
+ * Attribute indices may differ between the two, so data files are compared
+ * after mapping the indices back to attribute names.
+ */
+public class LibSVMStreamingFormatterTest {
+	/**
+	 * exporter with the attributes in memory instead of the attribute queries
+	 */
+	private static class TestExporter extends SparseDataExporterImpl {
+		private List<Object[]> nominalWords;
+		private List<Object[]> numericWords;
+
+		TestExporter(List<Object[]> numericWords, List<Object[]> nominalWords) {
+			this.numericWords = numericWords;
+			this.nominalWords = nominalWords;
+			this.setKernelUtil(new KernelUtilImpl());
+		}
+
+		@Override
+		protected SparseData loadData(InstanceData instanceLabel,
+				String instanceNumericWordQuery,
+				String instanceNominalWordQuery, String prepareScript,
+				String prepareScriptDelimiter, BagOfWordsDecorator bDecorator,
+				String label, Integer fold, Integer run) {
+			SparseData sparseData = new SparseData();
+			for (Object[] word : numericWords)
+				addNumericWordToInstance(sparseData, (Long) word[0],
+						(String) word[1], (Double) word[2]);
+			for (Object[] word : nominalWords)
+				addNominalWordToInstance(sparseData, (Long) word[0],
+						(String) word[1], (String) word[2]);
+			return sparseData;
+		}
+
+		@Override
+		protected void loadStreamingData(StreamingSparseData sparseData,
+				String instanceNumericWordQuery,
+				String instanceNominalWordQuery, String prepareScript,
+				String prepareScriptDelimiter, String fetchSize) {
+			try {
+				for (Object[] word : numericWords)
+					sparseData.addNumericWord((Long) word[0],
+							(String) word[1], (Double) word[2]);
+				for (Object[] word : nominalWords)
+					sparseData.addNominalWord((Long) word[0],
+							(String) word[1], (String) word[2]);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	private File dir;
+	private List<Object[]> nominalWords = new ArrayList<Object[]>();
+	private List<Object[]> numericWords = new ArrayList<Object[]>();
+	private Random r = new Random(3);
+
+	@Before
+	public void setup() throws IOException {
+		dir = File.createTempFile("libsvm", "");
+		dir.delete();
+		dir.mkdirs();
+		// attributes ordered by instance id, as the streaming queries must be
+		for (long instanceId = 1; instanceId <= 320; instanceId++) {
+			int n = r.nextInt(6);
+			for (int i = 0; i < n; i++)
+				numericWords.add(new Object[] { instanceId,
+						"w" + r.nextInt(40), (double) r.nextInt(5) });
+			n = r.nextInt(3);
+			for (int i = 0; i < n; i++)
+				nominalWords.add(new Object[] { instanceId,
+						"n" + r.nextInt(4), "v" + r.nextInt(3) });
+		}
+	}
+
+	@After
+	public void cleanup() {
+		delete(dir);
+	}
+
+	private static void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files)
+				delete(child);
+		}
+		file.delete();
+	}
+
+	/**
+	 * 2 labels, 2 runs, 3 folds, with some instances in no train/test set
+	 * and some instances without attributes
+	 */
+	@Test
+	public void testCrossValidation() throws IOException {
+		InstanceData instanceData = new InstanceData();
+		for (String label : new String[] { "l1", "l2" }) {
+			instanceData.getLabelToClassMap().put(label,
+					new TreeSet<String>(Arrays.asList("yes", "no")));
+			SortedMap<Integer, SortedMap<Integer, SortedMap<Boolean, SortedMap<Long, String>>>> runs = new TreeMap<Integer, SortedMap<Integer, SortedMap<Boolean, SortedMap<Long, String>>>>();
+			instanceData.getLabelToInstanceMap().put(label, runs);
+			for (int run = 1; run <= 2; run++) {
+				SortedMap<Integer, SortedMap<Boolean, SortedMap<Long, String>>> folds = new TreeMap<Integer, SortedMap<Boolean, SortedMap<Long, String>>>();
+				runs.put(run, folds);
+				for (int fold = 1; fold <= 3; fold++) {
+					SortedMap<Boolean, SortedMap<Long, String>> trainTest = new TreeMap<Boolean, SortedMap<Long, String>>();
+					folds.put(fold, trainTest);
+					trainTest.put(true, new TreeMap<Long, String>());
+					trainTest.put(false, new TreeMap<Long, String>());
+					for (long instanceId = 1; instanceId <= 330; instanceId++) {
+						if (r.nextInt(10) == 0)
+							continue;
+						trainTest.get(r.nextInt(3) != 0).put(instanceId,
+								r.nextBoolean() ? "yes" : "no");
+					}
+				}
+			}
+		}
+		// 2 labels * 2 runs * 3 folds * train/test * data/id
+		Assert.assertEquals(48, exportAndCompare(instanceData));
+	}
+
+	/**
+	 * a single train set without label, run or fold, with numeric classes
+	 */
+	@Test
+	public void testTrainOnly() throws IOException {
+		InstanceData instanceData = new InstanceData();
+		instanceData.getLabelToClassMap().put("",
+				new TreeSet<String>(Arrays.asList("1", "2", "3")));
+		SortedMap<Long, String> instanceClasses = new TreeMap<Long, String>();
+		for (long instanceId = 1; instanceId <= 320; instanceId += 2)
+			instanceClasses.put(instanceId, Integer.toString(1 + r.nextInt(3)));
+		SortedMap<Boolean, SortedMap<Long, String>> trainTest = new TreeMap<Boolean, SortedMap<Long, String>>();
+		trainTest.put(true, instanceClasses);
+		SortedMap<Integer, SortedMap<Boolean, SortedMap<Long, String>>> folds = new TreeMap<Integer, SortedMap<Boolean, SortedMap<Long, String>>>();
+		folds.put(0, trainTest);
+		SortedMap<Integer, SortedMap<Integer, SortedMap<Boolean, SortedMap<Long, String>>>> runs = new TreeMap<Integer, SortedMap<Integer, SortedMap<Boolean, SortedMap<Long, String>>>>();
+		runs.put(0, folds);
+		instanceData.getLabelToInstanceMap().put("", runs);
+		Assert.assertEquals(2, exportAndCompare(instanceData));
+	}
+
+	/**
+	 * export with both formatters and compare every data and id file
+	 * 
+	 * @return number of data and id files compared
+	 */
+	private int exportAndCompare(InstanceData instanceData) throws IOException {
+		File foldDir = new File(dir, "fold");
+		File streamDir = new File(dir, "stream");
+		TestExporter exporter = new TestExporter(numericWords, nominalWords);
+		Properties props = new Properties();
+		props.setProperty("outdir", foldDir.getPath());
+		exporter.exportData(instanceData,
+				new LibSVMFormatter(exporter.getKernelUtil()), props, null);
+		props = new Properties();
+		props.setProperty("outdir", streamDir.getPath());
+		props.setProperty(StreamingSparseDataFormatter.STREAM, "true");
+		exporter.exportData(instanceData, new LibSVMStreamingFormatter(
+				exporter.getKernelUtil()), props, null);
+
+		String[] names = foldDir.list();
+		Arrays.sort(names);
+		String[] streamNames = streamDir.list();
+		Arrays.sort(streamNames);
+		Assert.assertArrayEquals(names, streamNames);
+		int files = 0;
+		for (String name : names) {
+			List<String> expected = readLines(new File(foldDir, name));
+			List<String> actual = readLines(new File(streamDir, name));
+			if (name.endsWith("_id.txt")) {
+				Assert.assertEquals(name, expected, actual);
+				files++;
+			} else if (name.endsWith("_data.txt")) {
+				String attributes = name.replaceAll(
+						"(train|test)_data\\.txt$", "attributes.txt");
+				List<String> expectedNames = readLines(new File(foldDir,
+						attributes));
+				List<String> actualNames = readLines(new File(streamDir,
+						attributes));
+				Assert.assertEquals(name, expected.size(), actual.size());
+				Assert.assertFalse(name, expected.isEmpty());
+				for (int i = 0; i < expected.size(); i++) {
+					Assert.assertEquals(name + " line " + (i + 1),
+							decode(expected.get(i), expectedNames),
+							decode(actual.get(i), actualNames));
+				}
+				files++;
+			} else if (name.endsWith("class.properties")) {
+				Assert.assertEquals(name, readProperties(new File(foldDir,
+						name)), readProperties(new File(streamDir, name)));
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * @return class id, and attribute name to value; attribute indices must
+	 *         increase along the line
+	 */
+	private static Map<String, String> decode(String line,
+			List<String> attributeNames) {
+		Map<String, String> values = new TreeMap<String, String>();
+		String[] tokens = line.split("\t");
+		values.put("class", tokens[0]);
+		int lastIndex = 0;
+		for (int i = 1; i < tokens.length; i++) {
+			String[] indexValue = tokens[i].split(":");
+			int index = Integer.parseInt(indexValue[0]);
+			Assert.assertTrue(line, index > lastIndex);
+			lastIndex = index;
+			Assert.assertNull(line, values.put(attributeNames.get(index - 1),
+					indexValue[1]));
+		}
+		return values;
+	}
+
+	private static List<String> readLines(File file) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		BufferedReader r = new BufferedReader(new FileReader(file));
+		try {
+			String line;
+			while ((line = r.readLine()) != null)
+				lines.add(line);
+		} finally {
+			r.close();
+		}
+		return lines;
+	}
+
+	private static Properties readProperties(File file) throws IOException {
+		Properties props = new Properties();
+		FileReader r = new FileReader(file);
+		try {
+			props.load(r);
+		} finally {
+			r.close();
+		}
+		return props;
+	}
+}